@@ -41,4 +41,12 @@ public class VXQueryCommons {
         indexingFunctions.add(BuiltinFunctions.FN_UPDATE_INDEX_1.getFunctionIdentifier());
     }
 
+    public static final Set<FunctionIdentifier> indexModificationFunctions = new HashSet<>();
+
+    static {
+        indexModificationFunctions.add(BuiltinFunctions.FN_BUILD_INDEX_ON_COLLECTION_1.getFunctionIdentifier());
+        indexModificationFunctions.add(BuiltinFunctions.FN_DELETE_INDEX_1.getFunctionIdentifier());
+        indexModificationFunctions.add(BuiltinFunctions.FN_UPDATE_INDEX_1.getFunctionIdentifier());
+    }
+
 }
@@ -16,47 +16,16 @@
  */
 package org.apache.vxquery.compiler.algebricks;
 
-import org.apache.vxquery.datamodel.accessors.TaggedValuePointable;
+import org.apache.vxquery.runtime.factory.comparator.VXQueryBinaryComparatorFactory;
 
 import org.apache.hyracks.algebricks.common.exceptions.AlgebricksException;
 import org.apache.hyracks.algebricks.data.IBinaryComparatorFactoryProvider;
-import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
 import org.apache.hyracks.api.dataflow.value.IBinaryComparatorFactory;
 
 public class VXQueryComparatorFactoryProvider implements IBinaryComparatorFactoryProvider {
     @Override
     public IBinaryComparatorFactory getBinaryComparatorFactory(Object type, boolean ascending)
             throws AlgebricksException {
-        return new BinaryComparatorFactory(type, ascending);
-    }
-
-    private static class BinaryComparatorFactory implements IBinaryComparatorFactory {
-        private static final long serialVersionUID = 1L;
-
-        @SuppressWarnings("unused")
-        private final boolean ascending;
-
-        public BinaryComparatorFactory(Object type, boolean ascending) {
-            this.ascending = ascending;
-        }
-
-        @Override
-        public IBinaryComparator createBinaryComparator() {
-            final TaggedValuePointable tvp1 = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
-            final TaggedValuePointable tvp2 = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
-            return new IBinaryComparator() {
-                @Override
-                public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
-                    tvp1.set(b1, s1, l1);
-                    tvp2.set(b2, s2, l2);
-                    for (int i = 0; i < l1 && i < l2; ++i) {
-                        if (b1[s1 + i] != b2[s2 + i]) {
-                            return b1[s1 + i] - b2[s2 + i];
-                        }
-                    }
-                    return l1 - l2;
-                }
-            };
-        }
+        return ascending ? VXQueryBinaryComparatorFactory.ASC_INSTANCE : VXQueryBinaryComparatorFactory.DESC_INSTANCE;
     }
 }
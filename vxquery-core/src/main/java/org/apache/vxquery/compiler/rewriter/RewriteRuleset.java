@@ -86,6 +86,7 @@ import org.apache.vxquery.compiler.rewriter.rules.RemoveUnusedSortDistinctNodesR
 import org.apache.vxquery.compiler.rewriter.rules.RemoveUnusedUnnestIterateRule;
 import org.apache.vxquery.compiler.rewriter.rules.ReplaceSourceMapInDocExpression;
 import org.apache.vxquery.compiler.rewriter.rules.SetCollectionDataSourceRule;
+import org.apache.vxquery.compiler.rewriter.rules.SetJoinBuildSideRule;
 import org.apache.vxquery.compiler.rewriter.rules.SetVariableIdContextRule;
 import org.apache.vxquery.compiler.rewriter.rules.algebricksalternatives.ExtractFunctionsFromJoinConditionRule;
 import org.apache.vxquery.compiler.rewriter.rules.algebricksalternatives.InlineNestedVariablesRule;
@@ -326,6 +327,7 @@ public class RewriteRuleset {
         List<IAlgebraicRewriteRule> physicalPlanRewrites = new LinkedList<>();
         physicalPlanRewrites.add(new PullSelectOutOfEqJoin());
         physicalPlanRewrites.add(new PushFunctionsOntoEqJoinBranches());
+        physicalPlanRewrites.add(new SetJoinBuildSideRule());
         physicalPlanRewrites.add(new SetAlgebricksPhysicalOperatorsRule());
         physicalPlanRewrites.add(new SetExecutionModeRule());
         physicalPlanRewrites.add(new EnforceStructuralPropertiesRule());
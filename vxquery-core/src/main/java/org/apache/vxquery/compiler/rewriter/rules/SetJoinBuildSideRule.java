@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.compiler.rewriter.rules;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.lang3.mutable.Mutable;
+import org.apache.hyracks.algebricks.common.exceptions.AlgebricksException;
+import org.apache.hyracks.algebricks.core.algebra.base.ILogicalExpression;
+import org.apache.hyracks.algebricks.core.algebra.base.ILogicalOperator;
+import org.apache.hyracks.algebricks.core.algebra.base.IOptimizationContext;
+import org.apache.hyracks.algebricks.core.algebra.base.LogicalOperatorTag;
+import org.apache.hyracks.algebricks.core.algebra.base.LogicalVariable;
+import org.apache.hyracks.algebricks.core.algebra.expressions.AbstractFunctionCallExpression;
+import org.apache.hyracks.algebricks.core.algebra.expressions.BroadcastExpressionAnnotation;
+import org.apache.hyracks.algebricks.core.algebra.expressions.BroadcastExpressionAnnotation.BroadcastSide;
+import org.apache.hyracks.algebricks.core.algebra.functions.AlgebricksBuiltinFunctions;
+import org.apache.hyracks.algebricks.core.algebra.operators.logical.AbstractBinaryJoinOperator;
+import org.apache.hyracks.algebricks.core.algebra.operators.logical.DataSourceScanOperator;
+import org.apache.hyracks.algebricks.core.rewriter.base.IAlgebraicRewriteRule;
+import org.apache.vxquery.compiler.rewriter.rules.util.ExpressionToolbox;
+import org.apache.vxquery.metadata.AbstractVXQueryDataSource;
+import org.apache.vxquery.metadata.CollectionStatistics;
+import org.apache.vxquery.metadata.VXQueryMetadataProvider;
+
+/**
+ * Chooses the build side and the exchange of an equi-join from the size of the collections each input reads.
+ * The hash join builds its table from the right input, so the smaller input is moved to the right. The build input
+ * is broadcast to all partitions when that sends less data than partitioning both inputs, and it fits in the join
+ * memory.
+ * An input is estimated by the bytes of the collections it scans, halved for each select. The result of a join is
+ * estimated by its larger input. Joins with an input that does not scan a collection on the local file system are
+ * left unchanged.
+ * Swapping the inputs changes the order of the join results, even on a single partition: they follow the new probe
+ * input, the larger one, instead of the order of the for clauses. Like the results of a partitioned join, they are
+ * only correct as a set, so a query that needs them in order has to sort them.
+ *
+ * <pre>
+ * Before
+ *
+ *   plan__parent
+ *   JOIN( eq( $v1, $v2 ) )
+ *     plan__small ($v1)
+ *     plan__large ($v2)
+ *
+ * After
+ *
+ *   plan__parent
+ *   JOIN( eq( $v1, $v2 ) [broadcast $v1] )
+ *     plan__large ($v2)
+ *     plan__small ($v1)
+ * </pre>
+ */
+public class SetJoinBuildSideRule implements IAlgebraicRewriteRule {
+    private static final int SELECTIVITY_DIVISOR = 2;
+
+    @Override
+    public boolean rewritePre(Mutable<ILogicalOperator> opRef, IOptimizationContext context) throws AlgebricksException {
+        return false;
+    }
+
+    @Override
+    public boolean rewritePost(Mutable<ILogicalOperator> opRef, IOptimizationContext context)
+            throws AlgebricksException {
+        ILogicalOperator op = opRef.getValue();
+        if (op.getOperatorTag() != LogicalOperatorTag.INNERJOIN) {
+            return false;
+        }
+        AbstractBinaryJoinOperator join = (AbstractBinaryJoinOperator) op;
+        List<Mutable<ILogicalExpression>> equalities = new ArrayList<Mutable<ILogicalExpression>>();
+        ExpressionToolbox.findAllFunctionExpressions(join.getCondition(), AlgebricksBuiltinFunctions.EQ, equalities);
+        if (equalities.isEmpty()) {
+            return false;
+        }
+
+        VXQueryMetadataProvider metadata = (VXQueryMetadataProvider) context.getMetadataProvider();
+        long left = estimateBytes(join.getInputs().get(0).getValue(), metadata);
+        long right = estimateBytes(join.getInputs().get(1).getValue(), metadata);
+        if (left < 0 || right < 0) {
+            return false;
+        }
+        boolean modified = false;
+        if (left < right) {
+            Mutable<ILogicalOperator> leftRef = join.getInputs().get(0);
+            Mutable<ILogicalOperator> rightRef = join.getInputs().get(1);
+            ILogicalOperator tmp = leftRef.getValue();
+            leftRef.setValue(rightRef.getValue());
+            rightRef.setValue(tmp);
+            join.recomputeSchema();
+            long tmpBytes = left;
+            left = right;
+            right = tmpBytes;
+            modified = true;
+        }
+
+        long joinMemory = (long) context.getPhysicalOptimizationConfig().getMaxFramesForJoin()
+                * context.getPhysicalOptimizationConfig().getFrameSize();
+        Integer partitions = context.getComputationNodeDomain().cardinality();
+        if (partitions != null && partitions > 1 && right < joinMemory && right * (partitions - 1) < left) {
+            Collection<LogicalVariable> buildVariables = new ArrayList<LogicalVariable>();
+            PushFunctionsOntoEqJoinBranches.getProducedVariablesInDescendantsAndSelf(join.getInputs().get(1)
+                    .getValue(), buildVariables);
+            for (Mutable<ILogicalExpression> equality : equalities) {
+                if (setBroadcastSide((AbstractFunctionCallExpression) equality.getValue(), buildVariables)) {
+                    modified = true;
+                }
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * Mark the argument of an equality that the build input produces as the broadcast side.
+     */
+    private boolean setBroadcastSide(AbstractFunctionCallExpression equality,
+            Collection<LogicalVariable> buildVariables) {
+        if (equality.getAnnotations().containsKey(BroadcastExpressionAnnotation.BROADCAST_ANNOTATION_KEY)) {
+            return false;
+        }
+        BroadcastSide side = null;
+        List<LogicalVariable> used = new ArrayList<LogicalVariable>();
+        for (int i = 0; i < equality.getArguments().size() && side == null; ++i) {
+            used.clear();
+            equality.getArguments().get(i).getValue().getUsedVariables(used);
+            if (!used.isEmpty() && buildVariables.containsAll(used)) {
+                side = i == 0 ? BroadcastSide.LEFT : BroadcastSide.RIGHT;
+            }
+        }
+        if (side == null) {
+            return false;
+        }
+        BroadcastExpressionAnnotation annotation = new BroadcastExpressionAnnotation();
+        annotation.setObject(side);
+        equality.getAnnotations().put(BroadcastExpressionAnnotation.BROADCAST_ANNOTATION_KEY, annotation);
+        return true;
+    }
+
+    /**
+     * @return the estimated bytes an operator reads, or -1 if it reads anything besides local collections
+     */
+    private long estimateBytes(ILogicalOperator op, VXQueryMetadataProvider metadata) {
+        switch (op.getOperatorTag()) {
+            case DATASOURCESCAN:
+                Object ds = ((DataSourceScanOperator) op).getDataSource();
+                if (!(ds instanceof AbstractVXQueryDataSource)) {
+                    return -1;
+                }
+                CollectionStatistics statistics = metadata.getCollectionStatistics((AbstractVXQueryDataSource) ds);
+                return statistics == null ? -1 : statistics.getByteCount();
+            case EMPTYTUPLESOURCE:
+            case NESTEDTUPLESOURCE:
+                return -1;
+            case SELECT:
+                long input = estimateBytes(op.getInputs().get(0).getValue(), metadata);
+                return input < 0 ? -1 : input / SELECTIVITY_DIVISOR;
+            default:
+                long bytes = -1;
+                for (Mutable<ILogicalOperator> inputRef : op.getInputs()) {
+                    long inputBytes = estimateBytes(inputRef.getValue(), metadata);
+                    if (inputBytes < 0) {
+                        return -1;
+                    }
+                    bytes = Math.max(bytes, inputBytes);
+                }
+                return bytes;
+        }
+    }
+}
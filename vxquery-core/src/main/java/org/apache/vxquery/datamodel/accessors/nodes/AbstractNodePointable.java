@@ -25,5 +25,15 @@ public abstract class AbstractNodePointable extends AbstractPointable {
         return nodeTree.nodeIdExists() ? IntegerPointable.getInteger(bytes, getLocalNodeIdOffset(nodeTree)) : -1;
     }
 
+    /**
+     * The local node ids of a subtree are the interval from the id of its root to the id of its last descendant, so a
+     * node is a descendant of another in the same tree if its id is in the interval of the other.
+     *
+     * @return the local node id of the last node in the subtree, which is the node itself for nodes without children
+     */
+    public int getLastDescendantNodeId(NodeTreePointable nodeTree) {
+        return getLocalNodeId(nodeTree);
+    }
+
     abstract protected int getLocalNodeIdOffset(NodeTreePointable nodeTree);
 }
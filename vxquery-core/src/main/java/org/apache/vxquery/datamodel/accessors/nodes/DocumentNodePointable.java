@@ -21,16 +21,23 @@ import org.apache.vxquery.datamodel.accessors.SequencePointable;
 import org.apache.hyracks.api.dataflow.value.ITypeTraits;
 import org.apache.hyracks.data.std.api.IPointable;
 import org.apache.hyracks.data.std.api.IPointableFactory;
+import org.apache.hyracks.data.std.primitive.IntegerPointable;
 import org.apache.hyracks.data.std.primitive.VoidPointable;
 
 /*
  * Document {
- *  NodeId nodeId?;
+ *  LocalNodeId nodeId?;
  *  Sequence content;
  * }
+ *
+ * LocalNodeId {
+ *  int32 id;
+ *  int32 lastDescendantId;
+ * }
  */
 public class DocumentNodePointable extends AbstractNodePointable {
-    private static final int LOCAL_NODE_ID_SIZE = 4;
+    private static final int LOCAL_NODE_ID_SIZE = 8;
+    private static final int LAST_DESCENDANT_NODE_ID_OFFSET = 4;
     public static final IPointableFactory FACTORY = new IPointableFactory() {
         private static final long serialVersionUID = 1L;
 
@@ -53,6 +60,12 @@ public class DocumentNodePointable extends AbstractNodePointable {
         return start;
     }
 
+    @Override
+    public int getLastDescendantNodeId(NodeTreePointable nodeTree) {
+        return nodeTree.nodeIdExists() ? IntegerPointable.getInteger(bytes, getLocalNodeIdOffset(nodeTree)
+                + LAST_DESCENDANT_NODE_ID_OFFSET) : -1;
+    }
+
     private int getLocalNodeIdSize(NodeTreePointable nodeTree) {
         return nodeTree.nodeIdExists() ? LOCAL_NODE_ID_SIZE : 0;
     }
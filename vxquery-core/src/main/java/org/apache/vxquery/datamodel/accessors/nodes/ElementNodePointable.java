@@ -49,6 +49,7 @@ import org.apache.hyracks.data.std.primitive.VoidPointable;
  * 
  * LocalNodeId {
  *  int32 id;
+ *  int32 lastDescendantId;
  * }
  * 
  * NamespaceChunk {
@@ -62,7 +63,8 @@ public class ElementNodePointable extends AbstractNodePointable {
     public static final byte CHILDREN_CHUNK_EXISTS_MASK = (0x1 << 2);
 
     private static final int HEADER_SIZE = 1;
-    private static final int LOCAL_NODE_ID_SIZE = 4;
+    private static final int LOCAL_NODE_ID_SIZE = 8;
+    private static final int LAST_DESCENDANT_NODE_ID_OFFSET = 4;
     private static final int NS_ENTRY_SIZE = 4 * 2;
     private static final int NS_CHUNK_SIZE_SIZE = 4;
     public static final IPointableFactory FACTORY = new IPointableFactory() {
@@ -107,6 +109,12 @@ public class ElementNodePointable extends AbstractNodePointable {
         return nodeTree.nodeIdExists() ? IntegerPointable.getInteger(bytes, getLocalNodeIdOffset(nodeTree)) : -1;
     }
 
+    @Override
+    public int getLastDescendantNodeId(NodeTreePointable nodeTree) {
+        return nodeTree.nodeIdExists() ? IntegerPointable.getInteger(bytes, getLocalNodeIdOffset(nodeTree)
+                + LAST_DESCENDANT_NODE_ID_OFFSET) : -1;
+    }
+
     public int getNamespaceEntryCount(NodeTreePointable nodeTree) {
         return nsChunkExists() ? IntegerPointable.getInteger(bytes, getNamespaceChunkOffset(nodeTree)) : 0;
     }
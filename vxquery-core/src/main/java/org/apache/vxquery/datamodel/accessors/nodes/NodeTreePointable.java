@@ -95,11 +95,10 @@ public class NodeTreePointable extends AbstractPointable {
 
         @Override
         public int getStart(int index) {
-            int dataAreaStart = getDictionaryDataAreaStartOffset();
+            // The sorted array holds dictionary indexes, not offsets into the data area.
             int sortedPtrArrayStart = getDictionarySortedPointerArrayOffset();
-            int sortedSlotValue = IntegerPointable.getInteger(bytes,
-                    sortedPtrArrayStart + index * SORTED_PTR_SLOT_SIZE);
-            return dataAreaStart + sortedSlotValue;
+            int idx = IntegerPointable.getInteger(bytes, sortedPtrArrayStart + index * SORTED_PTR_SLOT_SIZE);
+            return getStringOffset(idx);
         }
 
         @Override
@@ -136,13 +135,17 @@ public class NodeTreePointable extends AbstractPointable {
         if (idx < 0 || idx >= nEntries) {
             throw new IllegalArgumentException(idx + " not within [0, " + nEntries + ")");
         }
-        int dataAreaStart = getDictionaryDataAreaStartOffset();
+        int stringOffset = getStringOffset(idx);
+        int strLen = UTF8StringUtil.getUTFLength(bytes, stringOffset);
+        int strMetaLen = UTF8StringUtil.getNumBytesToStoreLength(strLen);
+        string.set(bytes, stringOffset, strMetaLen + strLen);
+    }
+
+    private int getStringOffset(int idx) {
         int idxSlotValue = idx == 0 ? 0
                 : IntegerPointable.getInteger(bytes,
                         getDictionaryIndexPointerArrayOffset() + (idx - 1) * IDX_PTR_SLOT_SIZE);
-        int strLen = UTF8StringUtil.getUTFLength(bytes, dataAreaStart + idxSlotValue);
-        int strMetaLen = UTF8StringUtil.getNumBytesToStoreLength(strLen);
-        string.set(bytes, dataAreaStart + idxSlotValue, strMetaLen + strLen);
+        return getDictionaryDataAreaStartOffset() + idxSlotValue;
     }
 
     public int lookupString(UTF8StringPointable key) {
@@ -19,11 +19,8 @@ package org.apache.vxquery.datamodel.builders.nodes;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.Map.Entry;
-import java.util.TreeMap;
+import java.util.Arrays;
 
-import org.apache.hyracks.data.std.algorithms.BinarySearchAlgorithm;
-import org.apache.hyracks.data.std.collections.api.IValueReferenceVector;
 import org.apache.hyracks.data.std.primitive.IntegerPointable;
 import org.apache.hyracks.data.std.primitive.UTF8StringPointable;
 import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
@@ -32,64 +29,53 @@ import org.apache.hyracks.util.string.UTF8StringUtil;
 import org.apache.hyracks.util.string.UTF8StringWriter;
 import org.apache.vxquery.util.GrowableIntArray;
 
+/**
+ * Builds the string dictionary of a node tree.
+ * Strings are found through an open addressing hash table over the slots of the dictionary. The hash of a string is
+ * computed over its characters, so a {@link String} and its UTF-8 encoding have the same hash and are compared
+ * without converting one into the other. The sorted index written with the dictionary is only brought up to date
+ * when the dictionary is written.
+ * The builder keeps its buffers when it is reset, so it can be reused for every document of a scan.
+ */
 public class DictionaryBuilder {
+    private static final int INITIAL_TABLE_SIZE = 64;
+
     private final GrowableIntArray stringEndOffsets;
 
     private final GrowableIntArray sortedSlotIndexes;
 
+    private final GrowableIntArray slotHashes;
+
     private final ByteArrayAccessibleOutputStream dataBuffer;
 
     private final DataOutput dataBufferOut;
 
     private final ArrayBackedValueStorage cache;
 
-    private final TreeMap<String, Integer> hashSlotIndexes;
+    // Slot index + 1 of the string stored in each bucket, 0 for an empty bucket.
+    private int[] hashTable;
 
     private boolean cacheReady;
 
     private final UTF8StringWriter UTF8Writer = new UTF8StringWriter();
 
-    private final IValueReferenceVector sortedStringsVector = new IValueReferenceVector() {
-        @Override
-        public int getStart(int index) {
-            int slot = sortedSlotIndexes.getArray()[index];
-            return slot == 0 ? 0 : stringEndOffsets.getArray()[slot - 1];
-        }
-
-        @Override
-        public int getSize() {
-            return stringEndOffsets.getSize();
-        }
-
-        @Override
-        public int getLength(int index) {
-            int utfLength = UTF8StringUtil.getUTFLength(dataBuffer.getByteArray(), getStart(index));
-            return utfLength + UTF8StringUtil.getNumBytesToStoreLength(utfLength);
-        }
-
-        @Override
-        public byte[] getBytes(int index) {
-            return dataBuffer.getByteArray();
-        }
-    };
-
-    private final BinarySearchAlgorithm binSearch = new BinarySearchAlgorithm();
-
     public DictionaryBuilder() {
         stringEndOffsets = new GrowableIntArray();
         sortedSlotIndexes = new GrowableIntArray();
+        slotHashes = new GrowableIntArray();
         dataBuffer = new ByteArrayAccessibleOutputStream();
         dataBufferOut = new DataOutputStream(dataBuffer);
         cache = new ArrayBackedValueStorage();
-        hashSlotIndexes = new TreeMap<>();
+        hashTable = new int[INITIAL_TABLE_SIZE];
         cacheReady = false;
     }
 
     public void reset() {
         stringEndOffsets.clear();
         sortedSlotIndexes.clear();
+        slotHashes.clear();
         dataBuffer.reset();
-        hashSlotIndexes.clear();
+        Arrays.fill(hashTable, 0);
         cacheReady = false;
     }
 
@@ -104,6 +90,7 @@ public class DictionaryBuilder {
     }
 
     public void write(ArrayBackedValueStorage abvs) throws IOException {
+        sortNewSlots();
         DataOutput out = abvs.getDataOutput();
         int sizeOffset = abvs.getLength();
         out.writeInt(0);
@@ -113,15 +100,9 @@ public class DictionaryBuilder {
         for (int i = 0; i < entryCount; ++i) {
             out.writeInt(entryOffsets[i]);
         }
-        if (hashSlotIndexes.isEmpty()) {
-            int[] sortedOffsets = sortedSlotIndexes.getArray();
-            for (int i = 0; i < entryCount; ++i) {
-                out.writeInt(sortedOffsets[i]);
-            }
-        } else {
-            for (Entry<String, Integer> me : hashSlotIndexes.entrySet()) {
-                out.writeInt((Integer) me.getValue());
-            }
+        int[] sortedOffsets = sortedSlotIndexes.getArray();
+        for (int i = 0; i < entryCount; ++i) {
+            out.writeInt(sortedOffsets[i]);
         }
         out.write(dataBuffer.getByteArray(), 0, dataBuffer.size());
         // TODO can this value be determined before writing. Could this be append only.
@@ -129,29 +110,47 @@ public class DictionaryBuilder {
     }
 
     public int lookup(String str) {
-        Integer slotIndex = hashSlotIndexes.get(str);
-        if (slotIndex == null) {
-            try {
-                UTF8Writer.writeUTF8(str, dataBufferOut);
-                slotIndex = stringEndOffsets.getSize();
-                dataBufferOut.writeInt(slotIndex);
-            } catch (IOException e) {
-                throw new IllegalStateException(e);
+        int hash = str.hashCode();
+        int mask = hashTable.length - 1;
+        int bucket = spread(hash) & mask;
+        for (int entry = hashTable[bucket]; entry != 0; entry = hashTable[bucket]) {
+            int slotIndex = entry - 1;
+            if (slotHashes.getArray()[slotIndex] == hash && slotEquals(slotIndex, str)) {
+                return slotIndex;
             }
-            stringEndOffsets.append(dataBuffer.size());
-            hashSlotIndexes.put(str, slotIndex);
-            cacheReady = false;
+            bucket = (bucket + 1) & mask;
         }
-        return slotIndex;
+        try {
+            UTF8Writer.writeUTF8(str, dataBufferOut);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return addSlot(bucket, hash);
     }
 
     public int lookup(UTF8StringPointable str) {
-        boolean found = binSearch.find(sortedStringsVector, str);
-        int index = binSearch.getIndex();
-        if (found) {
-            return sortedSlotIndexes.getArray()[index];
+        byte[] bytes = str.getByteArray();
+        int start = str.getStartOffset();
+        int utfLength = UTF8StringUtil.getUTFLength(bytes, start);
+        int contentStart = start + UTF8StringUtil.getNumBytesToStoreLength(utfLength);
+        int hash = hash(bytes, contentStart, contentStart + utfLength);
+        int mask = hashTable.length - 1;
+        int bucket = spread(hash) & mask;
+        for (int entry = hashTable[bucket]; entry != 0; entry = hashTable[bucket]) {
+            int slotIndex = entry - 1;
+            if (slotHashes.getArray()[slotIndex] == hash && slotEquals(slotIndex, bytes, contentStart, utfLength)) {
+                return slotIndex;
+            }
+            bucket = (bucket + 1) & mask;
         }
-        dataBuffer.write(str.getByteArray(), str.getStartOffset(), str.getLength());
+        dataBuffer.write(bytes, start, str.getLength());
+        return addSlot(bucket, hash);
+    }
+
+    /**
+     * Finishes the slot whose string was just written to the data buffer.
+     */
+    private int addSlot(int bucket, int hash) {
         int slotIndex = stringEndOffsets.getSize();
         try {
             dataBufferOut.writeInt(slotIndex);
@@ -159,8 +158,139 @@ public class DictionaryBuilder {
             throw new IllegalStateException(e);
         }
         stringEndOffsets.append(dataBuffer.size());
-        sortedSlotIndexes.insert(index, slotIndex);
+        slotHashes.append(hash);
+        hashTable[bucket] = slotIndex + 1;
+        if (2 * stringEndOffsets.getSize() > hashTable.length) {
+            rehash();
+        }
         cacheReady = false;
         return slotIndex;
     }
+
+    private void rehash() {
+        hashTable = new int[hashTable.length * 2];
+        int mask = hashTable.length - 1;
+        int[] hashes = slotHashes.getArray();
+        for (int slotIndex = 0; slotIndex < slotHashes.getSize(); ++slotIndex) {
+            int bucket = spread(hashes[slotIndex]) & mask;
+            while (hashTable[bucket] != 0) {
+                bucket = (bucket + 1) & mask;
+            }
+            hashTable[bucket] = slotIndex + 1;
+        }
+    }
+
+    /**
+     * Inserts the slots added since the last write into the sorted index.
+     */
+    private void sortNewSlots() {
+        for (int slotIndex = sortedSlotIndexes.getSize(); slotIndex < stringEndOffsets.getSize(); ++slotIndex) {
+            int[] sorted = sortedSlotIndexes.getArray();
+            int low = 0;
+            int high = sortedSlotIndexes.getSize();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareSlots(sorted[mid], slotIndex) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            sortedSlotIndexes.insert(low, slotIndex);
+        }
+    }
+
+    private int getSlotStart(int slotIndex) {
+        return slotIndex == 0 ? 0 : stringEndOffsets.getArray()[slotIndex - 1];
+    }
+
+    private int getContentStart(byte[] data, int slotStart) {
+        return slotStart + UTF8StringUtil.getNumBytesToStoreLength(UTF8StringUtil.getUTFLength(data, slotStart));
+    }
+
+    private boolean slotEquals(int slotIndex, String str) {
+        byte[] data = dataBuffer.getByteArray();
+        int slotStart = getSlotStart(slotIndex);
+        int p = getContentStart(data, slotStart);
+        int end = p + UTF8StringUtil.getUTFLength(data, slotStart);
+        for (int i = 0; i < str.length(); ++i) {
+            if (p >= end || charAt(data, p) != str.charAt(i)) {
+                return false;
+            }
+            p += charSize(data, p);
+        }
+        return p == end;
+    }
+
+    private boolean slotEquals(int slotIndex, byte[] bytes, int contentStart, int utfLength) {
+        byte[] data = dataBuffer.getByteArray();
+        int slotStart = getSlotStart(slotIndex);
+        if (UTF8StringUtil.getUTFLength(data, slotStart) != utfLength) {
+            return false;
+        }
+        int p = getContentStart(data, slotStart);
+        for (int i = 0; i < utfLength; ++i) {
+            if (data[p + i] != bytes[contentStart + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the strings of two slots by their characters, the order used to search the dictionary.
+     */
+    private int compareSlots(int slotIndex1, int slotIndex2) {
+        byte[] data = dataBuffer.getByteArray();
+        int start1 = getSlotStart(slotIndex1);
+        int start2 = getSlotStart(slotIndex2);
+        int p1 = getContentStart(data, start1);
+        int p2 = getContentStart(data, start2);
+        int end1 = p1 + UTF8StringUtil.getUTFLength(data, start1);
+        int end2 = p2 + UTF8StringUtil.getUTFLength(data, start2);
+        while (p1 < end1 && p2 < end2) {
+            char c1 = charAt(data, p1);
+            char c2 = charAt(data, p2);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+            p1 += charSize(data, p1);
+            p2 += charSize(data, p2);
+        }
+        return (end1 - p1) - (end2 - p2);
+    }
+
+    /**
+     * Computes {@link String#hashCode()} of the string encoded in the bytes.
+     */
+    private static int hash(byte[] bytes, int start, int end) {
+        int hash = 0;
+        for (int p = start; p < end; p += charSize(bytes, p)) {
+            hash = 31 * hash + charAt(bytes, p);
+        }
+        return hash;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int charSize(byte[] bytes, int offset) {
+        int b = bytes[offset] & 0xff;
+        if (b < 0x80) {
+            return 1;
+        }
+        return (b & 0xe0) == 0xc0 ? 2 : 3;
+    }
+
+    private static char charAt(byte[] bytes, int offset) {
+        int b = bytes[offset] & 0xff;
+        if (b < 0x80) {
+            return (char) b;
+        }
+        if ((b & 0xe0) == 0xc0) {
+            return (char) (((b & 0x1f) << 6) | (bytes[offset + 1] & 0x3f));
+        }
+        return (char) (((b & 0x0f) << 12) | ((bytes[offset + 1] & 0x3f) << 6) | (bytes[offset + 2] & 0x3f));
+    }
 }
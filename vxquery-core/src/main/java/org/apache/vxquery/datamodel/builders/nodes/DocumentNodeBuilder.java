@@ -18,6 +18,8 @@ package org.apache.vxquery.datamodel.builders.nodes;
 
 import java.io.IOException;
 
+import org.apache.hyracks.data.std.api.IMutableValueStorage;
+import org.apache.hyracks.data.std.primitive.IntegerPointable;
 import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
 import org.apache.vxquery.datamodel.values.ValueTag;
 import org.apache.vxquery.util.GrowableIntArray;
@@ -29,6 +31,10 @@ public class DocumentNodeBuilder extends AbstractNodeBuilder {
 
     private int childrenCount;
 
+    private IMutableValueStorage mvs;
+
+    private int lastDescendantNodeIdOffset;
+
     public DocumentNodeBuilder() {
         childrenSlots = new GrowableIntArray();
         childrenDataArea = new ArrayBackedValueStorage();
@@ -39,12 +45,33 @@ public class DocumentNodeBuilder extends AbstractNodeBuilder {
         return ValueTag.DOCUMENT_NODE_TAG;
     }
 
+    @Override
+    public void reset(IMutableValueStorage mvs) throws IOException {
+        super.reset(mvs);
+        this.mvs = mvs;
+        lastDescendantNodeIdOffset = -1;
+    }
+
     @Override
     public void finish() throws IOException {
     }
 
     public void setLocalNodeId(int localNodeId) throws IOException {
         out.writeInt(localNodeId);
+        lastDescendantNodeIdOffset = mvs.getLength();
+        out.writeInt(localNodeId);
+    }
+
+    /**
+     * Close the node id interval of the document with the last local node id of the document.
+     *
+     * @param lastDescendantNodeId
+     *            : Local node id of the last node in the document
+     */
+    public void setLastDescendantNodeId(int lastDescendantNodeId) {
+        if (lastDescendantNodeIdOffset >= 0) {
+            IntegerPointable.setInteger(mvs.getByteArray(), lastDescendantNodeIdOffset, lastDescendantNodeId);
+        }
     }
 
     public void startChildrenChunk() {
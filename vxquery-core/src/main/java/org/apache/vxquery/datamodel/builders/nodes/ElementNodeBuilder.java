@@ -40,6 +40,8 @@ public class ElementNodeBuilder extends AbstractNodeBuilder {
 
     private int headerOffset;
 
+    private int lastDescendantNodeIdOffset;
+
     private int nsChunkStart;
 
     private int nsCount;
@@ -67,6 +69,7 @@ public class ElementNodeBuilder extends AbstractNodeBuilder {
         out.write(getValueTag());
         headerOffset = mvs.getLength();
         out.write(0);
+        lastDescendantNodeIdOffset = -1;
     }
 
     @Override
@@ -98,6 +101,21 @@ public class ElementNodeBuilder extends AbstractNodeBuilder {
 
     public void setLocalNodeId(int localNodeId) throws IOException {
         out.writeInt(localNodeId);
+        lastDescendantNodeIdOffset = mvs.getLength();
+        out.writeInt(localNodeId);
+    }
+
+    /**
+     * Close the node id interval of the element with the last local node id of its subtree. Until then the element
+     * is labeled as a leaf.
+     *
+     * @param lastDescendantNodeId
+     *            : Local node id of the last node in the subtree, or the element's own id
+     */
+    public void setLastDescendantNodeId(int lastDescendantNodeId) {
+        if (lastDescendantNodeIdOffset >= 0) {
+            IntegerPointable.setInteger(mvs.getByteArray(), lastDescendantNodeIdOffset, lastDescendantNodeId);
+        }
     }
 
     public void startNamespaceChunk() {
@@ -34,8 +34,10 @@ import org.apache.hyracks.data.std.primitive.VoidPointable;
 import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.util.BytesRef;
 import org.apache.vxquery.datamodel.accessors.PointablePool;
 import org.apache.vxquery.datamodel.accessors.PointablePoolFactory;
 import org.apache.vxquery.datamodel.accessors.SequencePointable;
@@ -73,6 +75,7 @@ public class IndexDocumentBuilder extends XMLSerializer {
     private final int lstart;
     private final IndexWriter writer;
     private final String filePath;
+    private final boolean storeNodeTree;
 
     class ComplexItem {
         public final StringField sf;
@@ -89,6 +92,7 @@ public class IndexDocumentBuilder extends XMLSerializer {
         writer = inWriter;
 
         this.filePath = file;
+        storeNodeTree = Boolean.parseBoolean(System.getProperty("vxquery.index_node_tree", "true"));
 
         //get bytes and info from doc pointer
         bstart = tvp.getByteArray();
@@ -104,8 +108,19 @@ public class IndexDocumentBuilder extends XMLSerializer {
 
     //This is a wrapper to start indexing using the functions adapted from XMLSerializer
     public void printStart() throws IOException {
+        writer.addDocument(createDocument());
+    }
 
+    /**
+     * Builds the lucene document of the file without adding it to the index. The document refers to the bytes of the
+     * document node, so they must not change until the document has been added.
+     */
+    public Document createDocument() throws IOException {
         doc.add(new StringField(Constants.FIELD_PATH, filePath, Field.Store.YES));
+        if (storeNodeTree) {
+            //Stored before the items so readers can stop once they have the tree
+            doc.add(new StoredField(Constants.FIELD_NODE_TREE, new BytesRef(bstart, sstart, lstart)));
+        }
         print(bstart, sstart, lstart, "0", "");
         for (int i = 1; i < results.size() - 1; i++) {
             //TODO: Since each doc is a file,
@@ -113,8 +128,7 @@ public class IndexDocumentBuilder extends XMLSerializer {
             //small enough to fit in memory
             doc.add(results.get(i).sf);
         }
-        writer.addDocument(doc);
-
+        return doc;
     }
 
     //adapted from XMLSerializer. The following functions are used to traverse the TaggedValuePointable
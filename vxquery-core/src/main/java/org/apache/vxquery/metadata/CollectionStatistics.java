@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.metadata;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Number and total size of the documents of a collection, used by the optimizer to compare the inputs of a join.
+ * The statistics of a collection directory are kept between compilations together with the modification time of each
+ * directory that was walked, and collected again once a document is added to or removed from any of them. A document
+ * that is rewritten in place does not change the modification time of its directory, so its size is estimated from
+ * the earlier collection until then.
+ */
+public class CollectionStatistics {
+    private static final ConcurrentMap<String, CollectionStatistics> CACHE = new ConcurrentHashMap<>();
+
+    private long documentCount;
+    private long byteCount;
+    private final List<File> directories = new ArrayList<>();
+    private final List<Long> lastModified = new ArrayList<>();
+
+    public long getDocumentCount() {
+        return documentCount;
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    public void add(CollectionStatistics other) {
+        documentCount += other.documentCount;
+        byteCount += other.byteCount;
+        directories.addAll(other.directories);
+        lastModified.addAll(other.lastModified);
+    }
+
+    /**
+     * @return true if none of the directories the statistics were collected from has changed since
+     */
+    public boolean isCurrent() {
+        for (int i = 0; i < directories.size(); ++i) {
+            if (directories.get(i).lastModified() != lastModified.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the statistics of a collection directory on the local file system, from the last collection if the
+     * directory has not changed since.
+     *
+     * @param directory
+     *            : Collection directory
+     * @return the statistics, or null if the directory does not exist
+     */
+    public static CollectionStatistics get(File directory) {
+        String key = directory.getAbsolutePath();
+        CollectionStatistics statistics = CACHE.get(key);
+        if (statistics != null && statistics.isCurrent()) {
+            return statistics;
+        }
+        statistics = collect(directory);
+        if (statistics == null) {
+            CACHE.remove(key);
+        } else {
+            CACHE.put(key, statistics);
+        }
+        return statistics;
+    }
+
+    /**
+     * Collect the statistics of a collection directory on the local file system.
+     *
+     * @param directory
+     *            : Collection directory
+     * @return the statistics, or null if the directory does not exist
+     */
+    public static CollectionStatistics collect(File directory) {
+        if (!directory.isDirectory()) {
+            return null;
+        }
+        CollectionStatistics statistics = new CollectionStatistics();
+        statistics.collectDirectory(directory, new VXQueryIOFileFilter());
+        return statistics;
+    }
+
+    private void collectDirectory(File directory, FileFilter documentFilter) {
+        // The time is read before the listing, so a change during the walk is seen by the next isCurrent().
+        directories.add(directory);
+        lastModified.add(directory.lastModified());
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collectDirectory(file, documentFilter);
+            } else if (documentFilter.accept(file)) {
+                documentCount++;
+                byteCount += file.length();
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
@@ -27,6 +28,7 @@ import java.net.InetAddress;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -63,10 +65,19 @@ import org.apache.hyracks.dataflow.std.base.AbstractSingleActivityOperatorDescri
 import org.apache.hyracks.dataflow.std.base.AbstractUnaryInputUnaryOutputOperatorNodePushable;
 import org.apache.hyracks.hdfs.ContextFactory;
 import org.apache.hyracks.hdfs2.dataflow.FileSplitsFactory;
+import org.apache.hyracks.util.string.UTF8StringUtil;
 import org.apache.vxquery.context.DynamicContext;
 import org.apache.vxquery.hdfs2.HDFSFunctions;
 import org.apache.vxquery.jsonparser.JSONParser;
+import org.apache.vxquery.runtime.functions.index.centralizer.IndexCentralizerUtil;
+import org.apache.vxquery.runtime.functions.index.update.Constants;
+import org.apache.vxquery.runtime.functions.index.update.PathSummary;
+import org.apache.vxquery.runtime.profile.RuntimeCounters;
+import org.apache.vxquery.types.ElementType;
+import org.apache.vxquery.types.NameTest;
+import org.apache.vxquery.types.SequenceType;
 import org.apache.vxquery.xmlparser.ITreeNodeIdProvider;
+import org.apache.vxquery.xmlparser.ParallelXMLParser;
 import org.apache.vxquery.xmlparser.TreeNodeIdProvider;
 import org.apache.vxquery.xmlparser.XMLParser;
 
@@ -103,11 +114,14 @@ public class VXQueryCollectionOperatorDescriptor extends AbstractSingleActivityO
             IRecordDescriptorProvider recordDescProvider, int partition, int nPartitions) throws HyracksDataException {
         final FrameTupleAccessor fta = new FrameTupleAccessor(
                 recordDescProvider.getInputRecordDescriptor(getActivityId(), 0));
-        final int fieldOutputCount = recordDescProvider.getOutputRecordDescriptor(getActivityId(), 0).getFieldCount();
+        final RecordDescriptor outputRecordDescriptor = recordDescProvider.getOutputRecordDescriptor(getActivityId(),
+                0);
+        final int fieldOutputCount = outputRecordDescriptor.getFieldCount();
         final IFrame frame = new VSizeFrame(ctx);
         final IFrameFieldAppender appender = new FrameFixedFieldTupleAppender(fieldOutputCount);
         final short partitionId = (short) ctx.getTaskAttemptId().getTaskId().getPartition();
-        final ITreeNodeIdProvider nodeIdProvider = new TreeNodeIdProvider(partitionId, dataSourceId, totalDataSources);
+        final ITreeNodeIdProvider nodeIdProvider = new TreeNodeIdProvider(partitionId, (short) nPartitions,
+                dataSourceId, totalDataSources);
         final String nodeId = ctx.getJobletContext().getApplicationContext().getNodeId();
         final DynamicContext dCtx = (DynamicContext) ctx.getJobletContext().getGlobalJobData();
         final ArrayBackedValueStorage jsonAbvs = new ArrayBackedValueStorage();
@@ -115,18 +129,47 @@ public class VXQueryCollectionOperatorDescriptor extends AbstractSingleActivityO
         final XMLParser parser = new XMLParser(false, nodeIdProvider, nodeId, appender, childSeq,
                 dCtx.getStaticContext());
         final JSONParser jparser = new JSONParser(valueSeq);
+        final int parserThreads = Integer.parseInt(System.getProperty("vxquery.parser_threads", "1"));
+        final RuntimeCounters counters = new RuntimeCounters(ctx, RuntimeCounters.getOperatorName(this));
+
+        final boolean usePathSummary = !childSeq.isEmpty()
+                && Boolean.parseBoolean(System.getProperty("vxquery.path_summary", "true"));
+        final File indexRoot = usePathSummary ? ctx.getIOManager().getIODevices().get(0).getMount() : null;
 
         return new AbstractUnaryInputUnaryOutputOperatorNodePushable() {
+            private ParallelXMLParser parallelParser;
+            private PathSummary pathSummary;
+            private BitSet matchingPaths;
+
             @Override
             public void open() throws HyracksDataException {
                 appender.reset(frame, true);
+                writer = counters.countOutput(writer, outputRecordDescriptor);
                 writer.open();
                 hdfs = new HDFSFunctions(nodeControllerInfos, hdfsConf);
+                if (parserThreads > 1) {
+                    parallelParser = new ParallelXMLParser(parserThreads, false, nodeIdProvider, nodeId, appender,
+                            childSeq, dCtx.getStaticContext());
+                }
+                if (usePathSummary) {
+                    pathSummary = readPathSummary();
+                    matchingPaths = pathSummary != null ? getMatchingPaths(pathSummary) : null;
+                }
             }
 
             @Override
             public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
-                fta.reset(buffer);
+                counters.startCpuTime();
+                try {
+                    fta.reset(buffer);
+                    counters.addTuplesIn(fta.getTupleCount());
+                    scanCollection();
+                } finally {
+                    counters.stopCpuTime();
+                }
+            }
+
+            private void scanCollection() throws HyracksDataException {
                 String collectionModifiedName = collectionName.replace("${nodeId}", nodeId);
 
                 if (!collectionModifiedName.contains("hdfs:/")) {
@@ -247,11 +290,79 @@ public class VXQueryCollectionOperatorDescriptor extends AbstractSingleActivityO
                 }
             }
 
+            /**
+             * Find the recorded paths that the child steps of this scan select.
+             */
+            private BitSet getMatchingPaths(PathSummary pathSummary) {
+                List<String> localNames = new ArrayList<>();
+                for (int typeCode : childSeq) {
+                    SequenceType sType = dCtx.getStaticContext().lookupSequenceType(typeCode);
+                    NameTest nameTest = ((ElementType) sType.getItemType()).getNameTest();
+                    byte[] localName = nameTest.getLocalName();
+                    if (localName == null) {
+                        localNames.add(null);
+                    } else {
+                        StringBuilder sb = new StringBuilder();
+                        UTF8StringUtil.toString(sb, localName, 0);
+                        localNames.add(sb.toString());
+                    }
+                }
+                return pathSummary.getMatchingPaths(localNames);
+            }
+
+            /**
+             * Load the path summary of the collection, if the collection has an index.
+             */
+            private PathSummary readPathSummary() {
+                String collection = collectionName.replace("${nodeId}", nodeId);
+                if (collection.contains("hdfs:/")) {
+                    return null;
+                }
+                String indexName = IndexCentralizerUtil.readIndexForCollection(indexRoot, collection);
+                if (indexName == null) {
+                    return null;
+                }
+                try {
+                    return PathSummary.read(new File(indexName, Constants.PATH_SUMMARY_FILE_NAME));
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Could not read the path summary of " + collection, e);
+                    return null;
+                }
+            }
+
+            /**
+             * Find the files of the collection that may contain the selected path, skipping XML files the path
+             * summary rules out.
+             */
+            private List<File> findCandidateFiles(File directory) {
+                List<File> candidates = new ArrayList<>();
+                Iterator<File> it = FileUtils.iterateFiles(directory, new VXQueryIOFileFilter(),
+                        TrueFileFilter.INSTANCE);
+                while (it.hasNext()) {
+                    File file = it.next();
+                    if (file.getName().toLowerCase().endsWith(".xml") && !pathSummary.mayContain(
+                            directory.toPath().relativize(file.toPath()).toString(), file, matchingPaths)) {
+                        if (LOGGER.isLoggable(Level.FINE)) {
+                            LOGGER.fine("Skipping XML document without matching paths: " + file.getAbsolutePath());
+                        }
+                        continue;
+                    }
+                    candidates.add(file);
+                }
+                return candidates;
+            }
+
             public void xmlAndJsonCollection(File directory) throws HyracksDataException {
                 Reader input;
+                // With a path summary the files are pruned once for all tuples, and a collection without any file
+                // that may match is not scanned at all.
+                List<File> candidates = pathSummary != null ? findCandidateFiles(directory) : null;
+                if (candidates != null && candidates.isEmpty()) {
+                    return;
+                }
                 for (int tupleIndex = 0; tupleIndex < fta.getTupleCount(); ++tupleIndex) {
-                    Iterator<File> it = FileUtils.iterateFiles(directory, new VXQueryIOFileFilter(),
-                            TrueFileFilter.INSTANCE);
+                    Iterator<File> it = candidates != null ? candidates.iterator()
+                            : FileUtils.iterateFiles(directory, new VXQueryIOFileFilter(), TrueFileFilter.INSTANCE);
                     while (it.hasNext()) {
                         File file = it.next();
                         String fileName = file.getName().toLowerCase();
@@ -259,11 +370,21 @@ public class VXQueryCollectionOperatorDescriptor extends AbstractSingleActivityO
                             if (LOGGER.isLoggable(Level.FINE)) {
                                 LOGGER.fine("Starting to read XML document: " + file.getAbsolutePath());
                             }
-                            parser.parseElements(file, writer, tupleIndex);
+                            counters.addBytesIn(file.length());
+                            if (parallelParser != null) {
+                                parallelParser.parseElements(file, writer, tupleIndex);
+                            } else {
+                                parser.parseElements(file, writer, tupleIndex);
+                            }
                         } else if (fileName.endsWith(".json")) {
                             if (LOGGER.isLoggable(Level.FINE)) {
                                 LOGGER.fine("Starting to read JSON document: " + file.getAbsolutePath());
                             }
+                            counters.addBytesIn(file.length());
+                            if (parallelParser != null) {
+                                // Keep the output in file order.
+                                parallelParser.flush(writer);
+                            }
                             try {
                                 jsonAbvs.reset();
                                 input = new InputStreamReader(new FileInputStream(file));
@@ -274,15 +395,24 @@ public class VXQueryCollectionOperatorDescriptor extends AbstractSingleActivityO
                         }
                     }
                 }
+                if (parallelParser != null) {
+                    parallelParser.flush(writer);
+                }
             }
 
             @Override
             public void fail() throws HyracksDataException {
+                if (parallelParser != null) {
+                    parallelParser.close();
+                }
                 writer.fail();
             }
 
             @Override
             public void close() throws HyracksDataException {
+                if (parallelParser != null) {
+                    parallelParser.close();
+                }
                 // Check if needed?
                 if (appender.getTupleCount() > 0) {
                     appender.flush(writer);
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.logging.Logger;
 
 import org.apache.hyracks.algebricks.common.exceptions.AlgebricksException;
+import org.apache.hyracks.algebricks.core.algebra.functions.FunctionIdentifier;
 import org.apache.hyracks.api.comm.IFrame;
 import org.apache.hyracks.api.comm.IFrameFieldAppender;
 import org.apache.hyracks.api.comm.VSizeFrame;
@@ -39,6 +40,7 @@ import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
 import org.apache.hyracks.dataflow.std.base.AbstractSingleActivityOperatorDescriptor;
 import org.apache.hyracks.dataflow.std.base.AbstractUnaryInputUnaryOutputOperatorNodePushable;
+import org.apache.vxquery.common.VXQueryCommons;
 import org.apache.vxquery.datamodel.accessors.TaggedValuePointable;
 import org.apache.vxquery.datamodel.values.XDMConstants;
 import org.apache.vxquery.exceptions.SystemException;
@@ -47,6 +49,7 @@ import org.apache.vxquery.runtime.functions.index.IndexConstructorUtil;
 import org.apache.vxquery.runtime.functions.index.VXQueryIndexReader;
 import org.apache.vxquery.runtime.functions.index.centralizer.IndexCentralizerUtil;
 import org.apache.vxquery.runtime.functions.index.update.IndexUpdater;
+import org.apache.vxquery.runtime.profile.RuntimeCounters;
 import org.apache.vxquery.xmlparser.ITreeNodeIdProvider;
 import org.apache.vxquery.xmlparser.TreeNodeIdProvider;
 
@@ -70,16 +73,31 @@ public class VXQueryIndexingOperatorDescriptor extends AbstractSingleActivityOpe
         childSeq = ds.getChildSeq();
     }
 
+    /**
+     * @return true if the operator builds, updates or deletes an index.
+     */
+    public boolean isIndexModification() {
+        for (FunctionIdentifier fid : VXQueryCommons.indexModificationFunctions) {
+            if (fid.getName().equals(functionCall)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public IOperatorNodePushable createPushRuntime(IHyracksTaskContext ctx,
             IRecordDescriptorProvider recordDescProvider, int partition, int nPartitions) throws HyracksDataException {
         final FrameTupleAccessor fta = new FrameTupleAccessor(
                 recordDescProvider.getInputRecordDescriptor(getActivityId(), 0));
-        final int fieldOutputCount = recordDescProvider.getOutputRecordDescriptor(getActivityId(), 0).getFieldCount();
+        final RecordDescriptor outputRecordDescriptor = recordDescProvider.getOutputRecordDescriptor(getActivityId(),
+                0);
+        final int fieldOutputCount = outputRecordDescriptor.getFieldCount();
         final IFrame frame = new VSizeFrame(ctx);
         final IFrameFieldAppender appender = new FrameFixedFieldTupleAppender(fieldOutputCount);
         final short partitionId = (short) ctx.getTaskAttemptId().getTaskId().getPartition();
-        final ITreeNodeIdProvider nodeIdProvider = new TreeNodeIdProvider(partitionId, dataSourceId, totalDataSources);
+        final ITreeNodeIdProvider nodeIdProvider = new TreeNodeIdProvider(partitionId, (short) nPartitions,
+                dataSourceId, totalDataSources);
         final String nodeId = ctx.getJobletContext().getApplicationContext().getNodeId();
         final String collectionName = collectionPartitions[partition % collectionPartitions.length];
         final String collectionModifiedName = collectionName.replace("${nodeId}", nodeId);
@@ -87,17 +105,29 @@ public class VXQueryIndexingOperatorDescriptor extends AbstractSingleActivityOpe
                 ctx.getIOManager().getIODevices().get(0).getMount());
         indexCentralizerUtil.readIndexDirectory();
         final IPointable result = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+        final RuntimeCounters counters = new RuntimeCounters(ctx, RuntimeCounters.getOperatorName(this));
 
         return new AbstractUnaryInputUnaryOutputOperatorNodePushable() {
             @Override
             public void open() throws HyracksDataException {
                 appender.reset(frame, true);
+                writer = counters.countOutput(writer, outputRecordDescriptor);
                 writer.open();
             }
 
             @Override
             public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
-                fta.reset(buffer);
+                counters.startCpuTime();
+                try {
+                    fta.reset(buffer);
+                    counters.addTuplesIn(fta.getTupleCount());
+                    processFunctionCall();
+                } finally {
+                    counters.stopCpuTime();
+                }
+            }
+
+            private void processFunctionCall() throws HyracksDataException {
 
                 final ArrayBackedValueStorage abvs = new ArrayBackedValueStorage();
                 final ArrayBackedValueStorage abvsFileNode = new ArrayBackedValueStorage();
@@ -165,7 +195,6 @@ public class VXQueryIndexingOperatorDescriptor extends AbstractSingleActivityOpe
                 try {
                     updater.setup();
                     updater.updateIndex();
-                    updater.updateMetadataFile();
                     updater.exit();
                     XDMConstants.setTrue(result);
                     FrameUtils.appendFieldToWriter(writer, appender, result.getByteArray(), result.getStartOffset(),
@@ -205,6 +234,12 @@ public class VXQueryIndexingOperatorDescriptor extends AbstractSingleActivityOpe
                     }
                 } catch (AlgebricksException e) {
                     throw new HyracksDataException("Could not read index.", e);
+                } finally {
+                    try {
+                        indexReader.close();
+                    } catch (IOException e) {
+                        throw new HyracksDataException("Could not close index " + indexModifiedName, e);
+                    }
                 }
             }
 
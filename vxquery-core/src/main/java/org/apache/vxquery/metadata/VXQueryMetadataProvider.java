@@ -19,6 +19,7 @@ package org.apache.vxquery.metadata;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -61,6 +62,7 @@ public class VXQueryMetadataProvider implements IMetadataProvider<String, String
     private final String hdfsConf;
     private final List<String> collections;
     private final Map<String, NodeControllerInfo> nodeControllerInfos;
+    private final Map<String, CollectionStatistics> collectionStatistics = new HashMap<>();
 
     public VXQueryMetadataProvider(String[] nodeList, Map<String, File> sourceFileMap, StaticContext staticCtx,
             String hdfsConf, Map<String, NodeControllerInfo> nodeControllerInfos, List<String> collections) {
@@ -85,6 +87,50 @@ public class VXQueryMetadataProvider implements IMetadataProvider<String, String
         return staticCtx;
     }
 
+    public int getNodeCount() {
+        return nodeList.length;
+    }
+
+    /**
+     * @return the statistics of every collection directory looked up so far
+     */
+    public Collection<CollectionStatistics> getCollectionStatistics() {
+        return new ArrayList<>(collectionStatistics.values());
+    }
+
+    /**
+     * Get the statistics of all partitions of a data source. A partition containing ${nodeId} is looked up for each
+     * node, which finds the data of all nodes when they share a file system with the cluster controller.
+     *
+     * @param ds
+     *            : Data source of a collection
+     * @return the statistics, or null if a partition is not found on the local file system
+     */
+    public CollectionStatistics getCollectionStatistics(AbstractVXQueryDataSource ds) {
+        CollectionStatistics total = new CollectionStatistics();
+        for (String partition : ds.getPartitions()) {
+            File mapped = sourceFileMap != null ? sourceFileMap.get(partition) : null;
+            String collection = mapped != null ? mapped.toString() : partition;
+            if (collection.contains("hdfs:/")) {
+                return null;
+            }
+            String[] nodes = collection.contains("${nodeId}") ? nodeList : new String[] { null };
+            for (String node : nodes) {
+                String directory = node != null ? collection.replace("${nodeId}", node) : collection;
+                CollectionStatistics statistics = collectionStatistics.get(directory);
+                if (statistics == null) {
+                    statistics = CollectionStatistics.get(new File(directory));
+                    if (statistics == null) {
+                        return null;
+                    }
+                    collectionStatistics.put(directory, statistics);
+                }
+                total.add(statistics);
+            }
+        }
+        return total;
+    }
+
     @Override
     public Pair<IOperatorDescriptor, AlgebricksPartitionConstraint> getScannerRuntime(IDataSource<String> dataSource,
             List<LogicalVariable> scanVariables, List<LogicalVariable> projectVariables, boolean projectPushed,
@@ -15,6 +15,7 @@
 package org.apache.vxquery.result;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 
 import org.apache.hyracks.api.comm.IFrameTupleAccessor;
@@ -23,7 +24,7 @@ import org.apache.hyracks.dataflow.common.comm.util.ByteBufferInputStream;
 
 public class ResultUtils {
     public static String getStringFromBuffer(ByteBuffer buffer, IFrameTupleAccessor fta) throws HyracksDataException {
-        String resultRecords = "";
+        StringBuilder resultRecords = new StringBuilder();
         ByteBufferInputStream bbis = new ByteBufferInputStream();
         try {
             fta.reset(buffer);
@@ -33,7 +34,7 @@ public class ResultUtils {
                 bbis.setByteBuffer(buffer, start);
                 byte[] recordBytes = new byte[length];
                 bbis.read(recordBytes, 0, length);
-                resultRecords += new String(recordBytes, 0, length);
+                resultRecords.append(new String(recordBytes, 0, length));
             }
         } finally {
             try {
@@ -42,6 +43,30 @@ public class ResultUtils {
                 throw new HyracksDataException(e);
             }
         }
-        return resultRecords;
+        return resultRecords.toString();
+    }
+
+    /**
+     * Writes the records of a result frame to a stream without decoding them.
+     *
+     * @param buffer
+     *            result frame
+     * @param fta
+     *            accessor for the tuples of the frame
+     * @param out
+     *            stream the records are written to
+     */
+    public static void writeBuffer(ByteBuffer buffer, IFrameTupleAccessor fta, OutputStream out)
+            throws HyracksDataException {
+        fta.reset(buffer);
+        try {
+            for (int tIndex = 0; tIndex < fta.getTupleCount(); tIndex++) {
+                int start = fta.getTupleStartOffset(tIndex);
+                int length = fta.getTupleEndOffset(tIndex) - start;
+                out.write(buffer.array(), buffer.arrayOffset() + start, length);
+            }
+        } catch (IOException e) {
+            throw new HyracksDataException(e);
+        }
     }
 }
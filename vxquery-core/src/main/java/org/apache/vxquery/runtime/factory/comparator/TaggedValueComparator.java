@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.runtime.factory.comparator;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
+import org.apache.vxquery.datamodel.accessors.SequencePointable;
+import org.apache.vxquery.datamodel.accessors.TaggedValuePointable;
+import org.apache.vxquery.datamodel.accessors.TypedPointables;
+import org.apache.vxquery.datamodel.accessors.atomic.XSDateTimePointable;
+import org.apache.vxquery.datamodel.api.ITimezone;
+import org.apache.vxquery.datamodel.util.DateTime;
+import org.apache.vxquery.datamodel.values.ValueTag;
+import org.apache.vxquery.runtime.functions.util.FunctionHelper;
+
+/**
+ * Orders tagged values the way an XQuery order by does: numbers by value across integer, decimal, float and double,
+ * strings by codepoint, dates and times by their UTC value, and the empty sequence before everything else.
+ * Values from different classes are ordered by class and then by tag so that the order stays total.
+ * Date and time values without a timezone are compared as if they were in UTC.
+ */
+public class TaggedValueComparator implements IBinaryComparator {
+    public static final int ORDER_CLASS_EMPTY = 0;
+    public static final int ORDER_CLASS_NUMERIC = 1;
+    public static final int ORDER_CLASS_STRING = 2;
+    public static final int ORDER_CLASS_OTHER = 3;
+
+    private static final double[] POWERS_OF_10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+    private static final long MAX_EXACT_DOUBLE = 1L << 53;
+
+    /**
+     * Timezone assumed for date and time values without one.
+     */
+    public static final ITimezone UTC = new ITimezone() {
+        @Override
+        public long getTimezoneHour() {
+            return 0;
+        }
+
+        @Override
+        public long getTimezoneMinute() {
+            return 0;
+        }
+
+        @Override
+        public long getTimezone() {
+            return 0;
+        }
+
+        @Override
+        public long getYearMonth() {
+            return 0;
+        }
+
+        @Override
+        public long getDayTime() {
+            return 0;
+        }
+    };
+
+    private final boolean ascending;
+    private final TaggedValuePointable tvp1 = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+    private final TaggedValuePointable tvp2 = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+    private final TaggedValuePointable itemp1 = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+    private final TaggedValuePointable itemp2 = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+    private final TypedPointables tp1 = new TypedPointables();
+    private final TypedPointables tp2 = new TypedPointables();
+    private final ArrayBackedValueStorage abvs = new ArrayBackedValueStorage();
+
+    public TaggedValueComparator(boolean ascending) {
+        this.ascending = ascending;
+    }
+
+    @Override
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) throws HyracksDataException {
+        tvp1.set(b1, s1, l1);
+        tvp2.set(b2, s2, l2);
+        TaggedValuePointable v1 = getSortValue(tvp1, tp1.seqp, itemp1);
+        TaggedValuePointable v2 = getSortValue(tvp2, tp2.seqp, itemp2);
+        int c;
+        try {
+            c = compareValues(v1, v2);
+        } catch (IOException e) {
+            throw new HyracksDataException(e);
+        }
+        return ascending ? c : -c;
+    }
+
+    private int compareValues(TaggedValuePointable v1, TaggedValuePointable v2) throws IOException {
+        int class1 = getOrderClass(v1, tp1.seqp);
+        int class2 = getOrderClass(v2, tp2.seqp);
+        if (class1 != class2) {
+            return class1 < class2 ? -1 : 1;
+        }
+        switch (class1) {
+            case ORDER_CLASS_EMPTY:
+                return 0;
+            case ORDER_CLASS_NUMERIC:
+                return compareNumbers(v1, v2);
+            case ORDER_CLASS_STRING:
+                v1.getValue(tp1.utf8sp);
+                v2.getValue(tp2.utf8sp);
+                return Integer.signum(tp1.utf8sp.compareTo(tp2.utf8sp));
+            default:
+                return compareOthers(v1, v2);
+        }
+    }
+
+    private int compareNumbers(TaggedValuePointable v1, TaggedValuePointable v2) {
+        int tag1 = v1.getTag();
+        int tag2 = v2.getTag();
+        boolean integer1 = FunctionHelper.isDerivedFromInteger(tag1);
+        boolean integer2 = FunctionHelper.isDerivedFromInteger(tag2);
+        if (integer1 && integer2) {
+            return Long.compare(getInteger(v1, tp1), getInteger(v2, tp2));
+        }
+        boolean exact1 = integer1 || tag1 == ValueTag.XS_DECIMAL_TAG;
+        boolean exact2 = integer2 || tag2 == ValueTag.XS_DECIMAL_TAG;
+        if (exact1 && exact2) {
+            return getDecimal(v1, tp1).compareTo(getDecimal(v2, tp2));
+        }
+        double d1 = getDouble(v1, tp1);
+        double d2 = getDouble(v2, tp2);
+        // NaN is ordered before every other number.
+        if (Double.isNaN(d1)) {
+            return Double.isNaN(d2) ? 0 : -1;
+        } else if (Double.isNaN(d2)) {
+            return 1;
+        }
+        return d1 < d2 ? -1 : (d1 > d2 ? 1 : 0);
+    }
+
+    private int compareOthers(TaggedValuePointable v1, TaggedValuePointable v2) throws IOException {
+        int tag1 = v1.getTag();
+        int tag2 = v2.getTag();
+        if (tag1 != tag2) {
+            return tag1 < tag2 ? -1 : 1;
+        }
+        switch (tag1) {
+            case ValueTag.XS_DATE_TAG:
+                v1.getValue(tp1.datep);
+                v2.getValue(tp2.datep);
+                return compareUtc(tp1.datep, tp2.datep, true);
+            case ValueTag.XS_DATETIME_TAG:
+                v1.getValue(tp1.datetimep);
+                v2.getValue(tp2.datetimep);
+                return compareUtc(tp1.datetimep, tp2.datetimep, true);
+            case ValueTag.XS_TIME_TAG:
+                v1.getValue(tp1.timep);
+                v2.getValue(tp2.timep);
+                return compareUtc(tp1.timep, tp2.timep, false);
+            case ValueTag.XS_DAY_TIME_DURATION_TAG:
+                v1.getValue(tp1.longp);
+                v2.getValue(tp2.longp);
+                return Long.compare(tp1.longp.getLong(), tp2.longp.getLong());
+            case ValueTag.XS_YEAR_MONTH_DURATION_TAG:
+                v1.getValue(tp1.intp);
+                v2.getValue(tp2.intp);
+                return Integer.compare(tp1.intp.getInteger(), tp2.intp.getInteger());
+            default:
+                return compareBytes(v1, v2);
+        }
+    }
+
+    private int compareUtc(ITimezone t1, ITimezone t2, boolean withDate) throws IOException {
+        abvs.reset();
+        DateTime.getUtcTimezoneDateTime(t1, UTC, abvs.getDataOutput());
+        DateTime.getUtcTimezoneDateTime(t2, UTC, abvs.getDataOutput());
+        byte[] bytes = abvs.getByteArray();
+        int start1 = abvs.getStartOffset() + 1;
+        int start2 = start1 + 1 + XSDateTimePointable.TYPE_TRAITS.getFixedLength();
+        if (withDate) {
+            int c = Long.compare(XSDateTimePointable.getYearMonth(bytes, start1),
+                    XSDateTimePointable.getYearMonth(bytes, start2));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Long.compare(XSDateTimePointable.getDayTime(bytes, start1), XSDateTimePointable.getDayTime(bytes, start2));
+    }
+
+    private static int compareBytes(TaggedValuePointable v1, TaggedValuePointable v2) {
+        byte[] b1 = v1.getByteArray();
+        byte[] b2 = v2.getByteArray();
+        int s1 = v1.getStartOffset();
+        int s2 = v2.getStartOffset();
+        int l1 = v1.getLength();
+        int l2 = v2.getLength();
+        for (int i = 0; i < l1 && i < l2; ++i) {
+            if (b1[s1 + i] != b2[s2 + i]) {
+                return (b1[s1 + i] & 0xff) - (b2[s2 + i] & 0xff);
+            }
+        }
+        return l1 - l2;
+    }
+
+    /**
+     * Unwraps a sequence holding a single item. Any other value is returned as is.
+     */
+    public static TaggedValuePointable getSortValue(TaggedValuePointable tvp, SequencePointable seqp,
+            TaggedValuePointable itemp) {
+        if (tvp.getTag() == ValueTag.SEQUENCE_TAG) {
+            tvp.getValue(seqp);
+            if (seqp.getEntryCount() == 1) {
+                seqp.getEntry(0, itemp);
+                return itemp;
+            }
+        }
+        return tvp;
+    }
+
+    public static int getOrderClass(TaggedValuePointable tvp, SequencePointable seqp) {
+        int tag = tvp.getTag();
+        switch (tag) {
+            case ValueTag.JS_NULL_TAG:
+                return ORDER_CLASS_EMPTY;
+            case ValueTag.SEQUENCE_TAG:
+                tvp.getValue(seqp);
+                return seqp.getEntryCount() == 0 ? ORDER_CLASS_EMPTY : ORDER_CLASS_OTHER;
+            case ValueTag.XS_ANY_URI_TAG:
+                return ORDER_CLASS_STRING;
+            default:
+                if (FunctionHelper.isDerivedFromString(tag)) {
+                    return ORDER_CLASS_STRING;
+                }
+                if (FunctionHelper.isDerivedFromDouble(tag)) {
+                    return ORDER_CLASS_NUMERIC;
+                }
+                return ORDER_CLASS_OTHER;
+        }
+    }
+
+    public static long getInteger(TaggedValuePointable tvp, TypedPointables tp) {
+        switch (tvp.getTag()) {
+            case ValueTag.XS_INT_TAG:
+            case ValueTag.XS_UNSIGNED_SHORT_TAG:
+                tvp.getValue(tp.intp);
+                return tp.intp.getInteger();
+            case ValueTag.XS_SHORT_TAG:
+            case ValueTag.XS_UNSIGNED_BYTE_TAG:
+                tvp.getValue(tp.shortp);
+                return tp.shortp.getShort();
+            case ValueTag.XS_BYTE_TAG:
+                tvp.getValue(tp.bytep);
+                return tp.bytep.getByte();
+            default:
+                tvp.getValue(tp.longp);
+                return tp.longp.getLong();
+        }
+    }
+
+    private static BigDecimal getDecimal(TaggedValuePointable tvp, TypedPointables tp) {
+        if (tvp.getTag() == ValueTag.XS_DECIMAL_TAG) {
+            tvp.getValue(tp.decp);
+            return BigDecimal.valueOf(tp.decp.getDecimalValue(), tp.decp.getDecimalPlace());
+        }
+        return BigDecimal.valueOf(getInteger(tvp, tp));
+    }
+
+    /**
+     * Returns the numeric value as a correctly rounded double, so the conversion never reverses the order of two
+     * numbers.
+     */
+    public static double getDouble(TaggedValuePointable tvp, TypedPointables tp) {
+        switch (tvp.getTag()) {
+            case ValueTag.XS_DOUBLE_TAG:
+                tvp.getValue(tp.doublep);
+                return tp.doublep.getDouble();
+            case ValueTag.XS_FLOAT_TAG:
+                tvp.getValue(tp.floatp);
+                return tp.floatp.getFloat();
+            case ValueTag.XS_DECIMAL_TAG:
+                tvp.getValue(tp.decp);
+                long value = tp.decp.getDecimalValue();
+                int place = tp.decp.getDecimalPlace();
+                if (value > -MAX_EXACT_DOUBLE && value < MAX_EXACT_DOUBLE && Math.abs(place) < POWERS_OF_10.length) {
+                    return place >= 0 ? value / POWERS_OF_10[place] : value * POWERS_OF_10[-place];
+                }
+                return BigDecimal.valueOf(value, place).doubleValue();
+            default:
+                return getInteger(tvp, tp);
+        }
+    }
+}
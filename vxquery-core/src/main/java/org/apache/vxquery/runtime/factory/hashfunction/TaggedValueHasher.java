@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.runtime.factory.hashfunction;
+
+import java.io.IOException;
+
+import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
+import org.apache.vxquery.datamodel.accessors.TaggedValuePointable;
+import org.apache.vxquery.datamodel.accessors.TypedPointables;
+import org.apache.vxquery.datamodel.accessors.atomic.XSDateTimePointable;
+import org.apache.vxquery.datamodel.api.ITimezone;
+import org.apache.vxquery.datamodel.util.DateTime;
+import org.apache.vxquery.datamodel.values.ValueTag;
+import org.apache.vxquery.runtime.factory.comparator.TaggedValueComparator;
+import org.apache.vxquery.runtime.functions.util.FunctionHelper;
+
+/**
+ * Hashes the value of a tagged value instead of its encoding, so values that are equal under the eq operator hash
+ * alike: all numeric types hash their double value, all string types hash their characters, and dates and times hash
+ * their UTC value. Values of other types hash their raw bytes.
+ */
+public class TaggedValueHasher {
+    private static final int NUMERIC_CLASS = 1;
+    private static final int STRING_CLASS = 2;
+    private static final int DURATION_CLASS = 3;
+
+    private final TypedPointables tp = new TypedPointables();
+    private final ArrayBackedValueStorage abvs = new ArrayBackedValueStorage();
+
+    /**
+     * @param tvp
+     *            value to hash
+     * @param implicitTimezone
+     *            timezone used for dates and times without one
+     * @param seed
+     *            seed of the hash function
+     * @return hash code of the value
+     */
+    public int hash(TaggedValuePointable tvp, ITimezone implicitTimezone, int seed) throws IOException {
+        int tag = tvp.getTag();
+        switch (tag) {
+            case ValueTag.XS_DOUBLE_TAG:
+            case ValueTag.XS_FLOAT_TAG:
+            case ValueTag.XS_DECIMAL_TAG:
+                return hashDouble(TaggedValueComparator.getDouble(tvp, tp), seed);
+            case ValueTag.XS_ANY_URI_TAG:
+                return hashBytes(STRING_CLASS, tvp.getByteArray(), tvp.getStartOffset() + 1, tvp.getLength() - 1,
+                        seed);
+            case ValueTag.XS_BOOLEAN_TAG:
+                tvp.getValue(tp.boolp);
+                return mix(tag, tp.boolp.getBoolean() ? 1 : 0, seed);
+            case ValueTag.XS_DAY_TIME_DURATION_TAG:
+                tvp.getValue(tp.longp);
+                return hashDuration(0, tp.longp.getLong(), seed);
+            case ValueTag.XS_YEAR_MONTH_DURATION_TAG:
+                tvp.getValue(tp.intp);
+                return hashDuration(tp.intp.getInteger(), 0, seed);
+            case ValueTag.XS_DURATION_TAG:
+                tvp.getValue(tp.durationp);
+                return hashDuration(tp.durationp.getYearMonth(), tp.durationp.getDayTime(), seed);
+            case ValueTag.XS_DATETIME_TAG:
+                tvp.getValue(tp.datetimep);
+                return hashUtc(tag, tp.datetimep, true, implicitTimezone, seed);
+            case ValueTag.XS_TIME_TAG:
+                tvp.getValue(tp.timep);
+                return hashUtc(tag, tp.timep, true, implicitTimezone, seed);
+            case ValueTag.XS_DATE_TAG:
+            case ValueTag.XS_G_DAY_TAG:
+            case ValueTag.XS_G_MONTH_DAY_TAG:
+            case ValueTag.XS_G_MONTH_TAG:
+            case ValueTag.XS_G_YEAR_MONTH_TAG:
+            case ValueTag.XS_G_YEAR_TAG:
+                tvp.getValue(tp.datep);
+                return hashUtc(tag, tp.datep, false, implicitTimezone, seed);
+            case ValueTag.XS_QNAME_TAG:
+                // Only the URI and the local name take part in comparisons.
+                tvp.getValue(tp.qnamep);
+                int h = hashBytes(tag, tp.qnamep.getByteArray(), tp.qnamep.getStartOffset(),
+                        tp.qnamep.getUriLength(), seed);
+                return hashBytes(h, tp.qnamep.getByteArray(),
+                        tp.qnamep.getStartOffset() + tp.qnamep.getUriLength() + tp.qnamep.getPrefixLength(),
+                        tp.qnamep.getLocalNameLength(), seed);
+            default:
+                if (FunctionHelper.isDerivedFromInteger(tag)) {
+                    return hashDouble(TaggedValueComparator.getDouble(tvp, tp), seed);
+                }
+                if (FunctionHelper.isDerivedFromString(tag)) {
+                    return hashBytes(STRING_CLASS, tvp.getByteArray(), tvp.getStartOffset() + 1,
+                            tvp.getLength() - 1, seed);
+                }
+                return hashBytes(0, tvp.getByteArray(), tvp.getStartOffset(), tvp.getLength(), seed);
+        }
+    }
+
+    private int hashUtc(int tag, ITimezone value, boolean withTime, ITimezone implicitTimezone, int seed)
+            throws IOException {
+        abvs.reset();
+        DateTime.getUtcTimezoneDateTime(value, implicitTimezone, abvs.getDataOutput());
+        int start = abvs.getStartOffset() + 1;
+        long yearMonth = XSDateTimePointable.getYearMonth(abvs.getByteArray(), start);
+        // Dates are equal when their UTC days are equal, whatever the time part ends up being.
+        long dayTime = withTime ? XSDateTimePointable.getDayTime(abvs.getByteArray(), start)
+                : XSDateTimePointable.getDay(abvs.getByteArray(), start);
+        return mix(mix(tag, yearMonth, seed), dayTime, seed);
+    }
+
+    private static int hashDouble(double value, int seed) {
+        // Equal numbers must hash alike: fold -0.0 into 0.0 and use a single NaN.
+        long bits = value == 0 ? 0 : Double.doubleToLongBits(value);
+        return mix(NUMERIC_CLASS, bits, seed);
+    }
+
+    private static int hashDuration(long yearMonth, long dayTime, int seed) {
+        return mix(mix(DURATION_CLASS, yearMonth, seed), dayTime, seed);
+    }
+
+    private static int hashBytes(int h, byte[] bytes, int start, int length, int seed) {
+        int hash = h ^ seed;
+        for (int i = start; i < start + length; ++i) {
+            hash = 31 * hash + bytes[i];
+        }
+        return fmix(hash ^ length);
+    }
+
+    private static int mix(int h, long value, int seed) {
+        long k = value * 0xc6a4a7935bd1e995L + (h ^ seed);
+        return fmix((int) (k ^ (k >>> 32)));
+    }
+
+    private static int fmix(int hash) {
+        int h = hash;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -18,22 +18,21 @@ package org.apache.vxquery.runtime.factory.hashfunction;
 
 import org.apache.hyracks.api.dataflow.value.IBinaryHashFunction;
 import org.apache.hyracks.api.dataflow.value.IBinaryHashFunctionFactory;
-import org.apache.hyracks.data.std.accessors.MurmurHash3BinaryHashFunctionFamily;
 
-public class VXQueryRawBinaryHashFunctionFactory implements IBinaryHashFunctionFactory {
+public class VXQueryBinaryHashFunctionFactory implements IBinaryHashFunctionFactory {
     private static final long serialVersionUID = 1L;
 
-    public static IBinaryHashFunctionFactory INSTANCE = new VXQueryRawBinaryHashFunctionFactory();
-
-    private VXQueryRawBinaryHashFunctionFactory() {
+    public static final IBinaryHashFunctionFactory INSTANCE = new VXQueryBinaryHashFunctionFactory();
 
+    private VXQueryBinaryHashFunctionFactory() {
     }
 
     @Override
     public IBinaryHashFunction createBinaryHashFunction() {
-
-        return MurmurHash3BinaryHashFunctionFamily.INSTANCE.createBinaryHashFunction(0);
-
+        return VXQueryBinaryHashFunctionFamily.INSTANCE.createBinaryHashFunction(0);
     }
 
+    private Object readResolve() {
+        return INSTANCE;
+    }
 }
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.runtime.factory.hashfunction;
+
+import java.io.IOException;
+
+import org.apache.hyracks.api.dataflow.value.IBinaryHashFunction;
+import org.apache.hyracks.api.dataflow.value.IBinaryHashFunctionFamily;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.vxquery.datamodel.accessors.SequencePointable;
+import org.apache.vxquery.datamodel.accessors.TaggedValuePointable;
+import org.apache.vxquery.runtime.factory.comparator.TaggedValueComparator;
+
+/**
+ * Hash functions consistent with {@link TaggedValueComparator}: values the comparator finds equal, such as an integer
+ * and a double with the same value, get the same hash code, so they meet in the same partition of a hash exchange,
+ * hash join or hash group-by.
+ */
+public class VXQueryBinaryHashFunctionFamily implements IBinaryHashFunctionFamily {
+    private static final long serialVersionUID = 1L;
+
+    public static final IBinaryHashFunctionFamily INSTANCE = new VXQueryBinaryHashFunctionFamily();
+
+    private VXQueryBinaryHashFunctionFamily() {
+    }
+
+    @Override
+    public IBinaryHashFunction createBinaryHashFunction(final int seed) {
+        final TaggedValueHasher hasher = new TaggedValueHasher();
+        final TaggedValuePointable tvp = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+        final TaggedValuePointable itemp = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+        final SequencePointable seqp = (SequencePointable) SequencePointable.FACTORY.createPointable();
+        return new IBinaryHashFunction() {
+            @Override
+            public int hash(byte[] bytes, int offset, int length) throws HyracksDataException {
+                tvp.set(bytes, offset, length);
+                TaggedValuePointable value = TaggedValueComparator.getSortValue(tvp, seqp, itemp);
+                if (TaggedValueComparator.getOrderClass(value,
+                        seqp) == TaggedValueComparator.ORDER_CLASS_EMPTY) {
+                    return seed;
+                }
+                try {
+                    return hasher.hash(value, TaggedValueComparator.UTC, seed);
+                } catch (IOException e) {
+                    throw new HyracksDataException(e);
+                }
+            }
+        };
+    }
+
+    private Object readResolve() {
+        return INSTANCE;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.runtime.factory.normalizedkey;
+
+import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputer;
+import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
+import org.apache.hyracks.data.std.primitive.UTF8StringPointable;
+import org.apache.vxquery.datamodel.accessors.TaggedValuePointable;
+import org.apache.vxquery.datamodel.accessors.TypedPointables;
+import org.apache.vxquery.runtime.factory.comparator.TaggedValueComparator;
+
+/**
+ * Computes a 32 bit prefix of the order defined by {@link TaggedValueComparator}. The top two bits hold the order
+ * class of the value and the remaining bits the leading bits of a number or the first characters of a string. Sorts
+ * only call the comparator when two prefixes are equal.
+ */
+public class VXQueryNormalizedKeyComputerFactory implements INormalizedKeyComputerFactory {
+    private static final long serialVersionUID = 1L;
+
+    public static final INormalizedKeyComputerFactory ASC_INSTANCE = new VXQueryNormalizedKeyComputerFactory(true);
+    public static final INormalizedKeyComputerFactory DESC_INSTANCE = new VXQueryNormalizedKeyComputerFactory(false);
+
+    private static final int PAYLOAD_BITS = 30;
+    private static final int TAG_SHIFT = PAYLOAD_BITS - 8;
+
+    private final boolean ascending;
+
+    private VXQueryNormalizedKeyComputerFactory(boolean ascending) {
+        this.ascending = ascending;
+    }
+
+    @Override
+    public INormalizedKeyComputer createNormalizedKeyComputer() {
+        final TaggedValuePointable tvp = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+        final TaggedValuePointable itemp = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+        final TypedPointables tp = new TypedPointables();
+        return new INormalizedKeyComputer() {
+            @Override
+            public int normalize(byte[] bytes, int start, int length) {
+                tvp.set(bytes, start, length);
+                TaggedValuePointable value = TaggedValueComparator.getSortValue(tvp, tp.seqp, itemp);
+                int orderClass = TaggedValueComparator.getOrderClass(value, tp.seqp);
+                int payload;
+                switch (orderClass) {
+                    case TaggedValueComparator.ORDER_CLASS_NUMERIC:
+                        payload = getNumberPrefix(TaggedValueComparator.getDouble(value, tp));
+                        break;
+                    case TaggedValueComparator.ORDER_CLASS_STRING:
+                        value.getValue(tp.utf8sp);
+                        payload = getStringPrefix(tp.utf8sp);
+                        break;
+                    case TaggedValueComparator.ORDER_CLASS_OTHER:
+                        payload = (value.getTag() & 0xff) << TAG_SHIFT;
+                        break;
+                    default:
+                        payload = 0;
+                }
+                int key = (orderClass << PAYLOAD_BITS) | payload;
+                return ascending ? key : ~key;
+            }
+        };
+    }
+
+    private static int getNumberPrefix(double value) {
+        if (Double.isNaN(value)) {
+            return 0;
+        }
+        // Map the bits of the double to a long that orders as an unsigned number. -0.0 and 0.0 compare equal.
+        long bits = Double.doubleToLongBits(value == 0 ? 0.0 : value);
+        long sortable = bits < 0 ? ~bits : bits | Long.MIN_VALUE;
+        return (int) (sortable >>> (Long.SIZE - PAYLOAD_BITS));
+    }
+
+    private static int getStringPrefix(UTF8StringPointable stringp) {
+        int offset = stringp.getMetaDataLength();
+        int end = offset + stringp.getUTF8Length();
+        int first = 0;
+        int second = 0;
+        if (offset < end) {
+            first = stringp.charAt(offset);
+            offset += stringp.charSize(offset);
+            if (offset < end) {
+                second = stringp.charAt(offset);
+            }
+        }
+        return (first << (PAYLOAD_BITS - 16)) | (second >>> (32 - PAYLOAD_BITS));
+    }
+
+    private Object readResolve() {
+        return ascending ? ASC_INSTANCE : DESC_INSTANCE;
+    }
+}
@@ -24,6 +24,8 @@ import org.apache.hyracks.algebricks.runtime.base.IScalarEvaluator;
 import org.apache.hyracks.algebricks.runtime.base.IScalarEvaluatorFactory;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
 import org.apache.hyracks.data.std.api.IPointable;
+import org.apache.hyracks.data.std.primitive.DoublePointable;
+import org.apache.hyracks.data.std.primitive.LongPointable;
 import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
 import org.apache.vxquery.datamodel.accessors.SequencePointable;
 import org.apache.vxquery.datamodel.accessors.TaggedValuePointable;
@@ -52,6 +54,12 @@ public abstract class AbstractMaxMinAggregateEvaluatorFactory extends
         final SequencePointable seqp = (SequencePointable) SequencePointable.FACTORY.createPointable();
         final TypedPointables tp1 = new TypedPointables();
         final TypedPointables tp2 = new TypedPointables();
+        final byte[] longBytes1 = new byte[LongPointable.TYPE_TRAITS.getFixedLength()];
+        final byte[] longBytes2 = new byte[LongPointable.TYPE_TRAITS.getFixedLength()];
+        final LongPointable longp1 = (LongPointable) LongPointable.FACTORY.createPointable();
+        final LongPointable longp2 = (LongPointable) LongPointable.FACTORY.createPointable();
+        final DoublePointable doublep1 = (DoublePointable) DoublePointable.FACTORY.createPointable();
+        final DoublePointable doublep2 = (DoublePointable) DoublePointable.FACTORY.createPointable();
 
         final ArrayBackedValueStorage abvs = new ArrayBackedValueStorage();
         final DataOutput dOut = abvs.getDataOutput();
@@ -89,12 +97,7 @@ public abstract class AbstractMaxMinAggregateEvaluatorFactory extends
                         throw new SystemException(ErrorCode.FORG0006);
                     }
                 } else {
-                    if (count != 0) {
-                        tvp2.set(abvs.getByteArray(), abvs.getStartOffset(), abvs.getLength());
-                    }
-                    if (count == 0
-                            || FunctionHelper.transformThenCompareMinMaxTaggedValues(aOpComparison, tvp1, tvp2, dCtx,
-                                    tp1, tp2)) {
+                    if (count == 0 || compare(tvp1)) {
                         try {
                             abvs.reset();
                             dOut.write(tvp1.getByteArray(), tvp1.getStartOffset(), tvp1.getLength());
@@ -106,6 +109,32 @@ public abstract class AbstractMaxMinAggregateEvaluatorFactory extends
                 }
             }
 
+            /**
+             * Compare the value with the current one. Integers and doubles of the same kind are compared directly,
+             * other values are transformed into comparable values first.
+             */
+            private boolean compare(TaggedValuePointable tvp1) throws HyracksDataException {
+                tvp2.set(abvs.getByteArray(), abvs.getStartOffset(), abvs.getLength());
+                try {
+                    if (FunctionHelper.isDerivedFromInteger(tvp1.getTag())
+                            && FunctionHelper.isDerivedFromInteger(tvp2.getTag())) {
+                        LongPointable.setLong(longBytes1, 0, FunctionHelper.getLong(tvp1, tp1));
+                        longp1.set(longBytes1, 0, longBytes1.length);
+                        LongPointable.setLong(longBytes2, 0, FunctionHelper.getLong(tvp2, tp2));
+                        longp2.set(longBytes2, 0, longBytes2.length);
+                        return aOpComparison.operateIntegerInteger(longp1, longp2);
+                    } else if (tvp1.getTag() == ValueTag.XS_DOUBLE_TAG && tvp2.getTag() == ValueTag.XS_DOUBLE_TAG) {
+                        tvp1.getValue(doublep1);
+                        tvp2.getValue(doublep2);
+                        return aOpComparison.operateDoubleDouble(doublep1, doublep2);
+                    }
+                } catch (IOException e) {
+                    throw new SystemException(ErrorCode.SYSE0001, e);
+                }
+                return FunctionHelper.transformThenCompareMinMaxTaggedValues(aOpComparison, tvp1, tvp2, dCtx, tp1,
+                        tp2);
+            }
+
         };
     }
 
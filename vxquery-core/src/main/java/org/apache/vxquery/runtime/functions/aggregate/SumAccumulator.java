@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.runtime.functions.aggregate;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hyracks.data.std.api.IPointable;
+import org.apache.hyracks.data.std.primitive.DoublePointable;
+import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
+import org.apache.vxquery.context.DynamicContext;
+import org.apache.vxquery.datamodel.accessors.TaggedValuePointable;
+import org.apache.vxquery.datamodel.accessors.TypedPointables;
+import org.apache.vxquery.datamodel.values.ValueTag;
+import org.apache.vxquery.exceptions.ErrorCode;
+import org.apache.vxquery.exceptions.SystemException;
+import org.apache.vxquery.runtime.functions.arithmetic.AddOperation;
+import org.apache.vxquery.runtime.functions.util.ArithmeticHelper;
+import org.apache.vxquery.runtime.functions.util.FunctionHelper;
+
+/**
+ * Running sum of the sum and average aggregates.
+ * While the values are integers and doubles, the sum is kept in a long or double field and a step only reads the
+ * value. The first value of another type, such as a decimal, a float, an untyped atomic value or a duration, moves
+ * the sum to a tagged value that is added to with {@link ArithmeticHelper} from then on. Both ways compute the same
+ * sums: integers wrap like the add operation and an integer added to a double is converted to double.
+ */
+public class SumAccumulator {
+    private static final int KIND_INTEGER = 0;
+    private static final int KIND_DOUBLE = 1;
+    private static final int KIND_TAGGED = 2;
+
+    private final ArithmeticHelper add;
+    private final TypedPointables tp = new TypedPointables();
+    private final ArrayBackedValueStorage abvsSum = new ArrayBackedValueStorage();
+    private final DataOutput dOutSum = abvsSum.getDataOutput();
+    private final TaggedValuePointable tvpSum = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+    private int kind;
+    private long longSum;
+    private double doubleSum;
+
+    public SumAccumulator(DynamicContext dCtx) {
+        add = new ArithmeticHelper(new AddOperation(), dCtx);
+    }
+
+    /**
+     * Start with the integer zero.
+     */
+    public void reset() {
+        kind = KIND_INTEGER;
+        longSum = 0;
+    }
+
+    /**
+     * Start with the value, as the first value of an average.
+     */
+    public void set(TaggedValuePointable tvp) throws SystemException {
+        if (FunctionHelper.isDerivedFromInteger(tvp.getTag())) {
+            kind = KIND_INTEGER;
+            longSum = FunctionHelper.getLong(tvp, tp);
+        } else if (tvp.getTag() == ValueTag.XS_DOUBLE_TAG) {
+            kind = KIND_DOUBLE;
+            doubleSum = DoublePointable.getDouble(tvp.getByteArray(), tvp.getStartOffset() + 1);
+        } else {
+            kind = KIND_TAGGED;
+            try {
+                abvsSum.reset();
+                dOutSum.write(tvp.getByteArray(), tvp.getStartOffset(), tvp.getLength());
+                tvpSum.set(abvsSum);
+            } catch (IOException e) {
+                throw new SystemException(ErrorCode.SYSE0001, e);
+            }
+        }
+    }
+
+    public void add(TaggedValuePointable tvp) throws SystemException {
+        if (kind != KIND_TAGGED) {
+            if (FunctionHelper.isDerivedFromInteger(tvp.getTag())) {
+                long value = FunctionHelper.getLong(tvp, tp);
+                if (kind == KIND_INTEGER) {
+                    longSum += value;
+                } else {
+                    doubleSum += value;
+                }
+                return;
+            } else if (tvp.getTag() == ValueTag.XS_DOUBLE_TAG) {
+                double value = DoublePointable.getDouble(tvp.getByteArray(), tvp.getStartOffset() + 1);
+                if (kind == KIND_INTEGER) {
+                    kind = KIND_DOUBLE;
+                    doubleSum = value + longSum;
+                } else {
+                    doubleSum += value;
+                }
+                return;
+            }
+            writeSum();
+            kind = KIND_TAGGED;
+        }
+        add.compute(tvp, tvpSum, tvpSum);
+    }
+
+    /**
+     * Set the result to the sum, which stays valid until the next call on the accumulator.
+     */
+    public void getSum(IPointable result) throws SystemException {
+        if (kind != KIND_TAGGED) {
+            writeSum();
+        }
+        result.set(tvpSum);
+    }
+
+    private void writeSum() throws SystemException {
+        try {
+            abvsSum.reset();
+            if (kind == KIND_INTEGER) {
+                dOutSum.write(ValueTag.XS_INTEGER_TAG);
+                dOutSum.writeLong(longSum);
+            } else {
+                dOutSum.write(ValueTag.XS_DOUBLE_TAG);
+                dOutSum.writeDouble(doubleSum);
+            }
+            tvpSum.set(abvsSum);
+        } catch (IOException e) {
+            throw new SystemException(ErrorCode.SYSE0001, e);
+        }
+    }
+}
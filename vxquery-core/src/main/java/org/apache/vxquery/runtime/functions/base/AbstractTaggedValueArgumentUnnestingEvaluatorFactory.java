@@ -23,6 +23,9 @@ import org.apache.hyracks.algebricks.runtime.base.IUnnestingEvaluator;
 import org.apache.hyracks.algebricks.runtime.base.IUnnestingEvaluatorFactory;
 import org.apache.hyracks.api.context.IHyracksTaskContext;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.api.IPointable;
+import org.apache.hyracks.dataflow.common.data.accessors.IFrameTupleReference;
+import org.apache.vxquery.runtime.profile.RuntimeCounters;
 
 public abstract class AbstractTaggedValueArgumentUnnestingEvaluatorFactory implements IUnnestingEvaluatorFactory {
     private static final long serialVersionUID = 1L;
@@ -42,7 +45,24 @@ public abstract class AbstractTaggedValueArgumentUnnestingEvaluatorFactory imple
         for (int i = 0; i < es.length; ++i) {
             es[i] = args[i].createScalarEvaluator(ctx);
         }
-        return createEvaluator(ctx, es);
+        final IUnnestingEvaluator evaluator = createEvaluator(ctx, es);
+        final RuntimeCounters counters = new RuntimeCounters(ctx, getClass().getSimpleName(), false);
+        return new IUnnestingEvaluator() {
+            @Override
+            public void init(IFrameTupleReference tuple) throws HyracksDataException {
+                counters.addTuplesIn(1);
+                evaluator.init(tuple);
+            }
+
+            @Override
+            public boolean step(IPointable result) throws HyracksDataException {
+                if (evaluator.step(result)) {
+                    counters.addTuplesOut(1);
+                    return true;
+                }
+                return false;
+            }
+        };
     }
 
     protected abstract IUnnestingEvaluator createEvaluator(IHyracksTaskContext ctx, IScalarEvaluator[] args) throws HyracksDataException;
@@ -17,6 +17,7 @@
 package org.apache.vxquery.runtime.functions.comparison.general;
 
 import java.io.DataOutput;
+import java.io.IOException;
 
 import org.apache.hyracks.algebricks.runtime.base.IScalarEvaluator;
 import org.apache.hyracks.algebricks.runtime.base.IScalarEvaluatorFactory;
@@ -31,6 +32,7 @@ import org.apache.vxquery.datamodel.accessors.SequencePointable;
 import org.apache.vxquery.datamodel.accessors.TaggedValuePointable;
 import org.apache.vxquery.datamodel.accessors.TypedPointables;
 import org.apache.vxquery.datamodel.values.ValueTag;
+import org.apache.vxquery.datamodel.values.XDMConstants;
 import org.apache.vxquery.exceptions.ErrorCode;
 import org.apache.vxquery.exceptions.SystemException;
 import org.apache.vxquery.runtime.functions.base.AbstractTaggedValueArgumentScalarEvaluator;
@@ -77,6 +79,7 @@ import org.apache.vxquery.runtime.functions.util.FunctionHelper;
 public abstract class AbstractGeneralComparisonScalarEvaluatorFactory extends
         AbstractTaggedValueArgumentScalarEvaluatorFactory {
     private static final long serialVersionUID = 1L;
+    private static final int HASH_SET_MIN_SIZE = 16;
 
     public AbstractGeneralComparisonScalarEvaluatorFactory(IScalarEvaluatorFactory[] args) {
         super(args);
@@ -107,6 +110,9 @@ public abstract class AbstractGeneralComparisonScalarEvaluatorFactory extends
                 .createPointable();
         final TaggedValuePointable tvpCompare1 = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
         final TaggedValuePointable tvpCompare2 = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+        final TaggedValuePointable tvpAtomized = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+        final GeneralEqualityHashSet hashSet = new GeneralEqualityHashSet();
+        final ArrayBackedValueStorage abvsHashSetArg = new ArrayBackedValueStorage();
 
         return new AbstractTaggedValueArgumentScalarEvaluator(args) {
             AbstractCastToOperation aCastToOp = new CastToStringOperation();
@@ -117,7 +123,10 @@ public abstract class AbstractGeneralComparisonScalarEvaluatorFactory extends
                 TaggedValuePointable tvpArg1 = args[0];
                 TaggedValuePointable tvpArg2 = args[1];
                 try {
-                    if (tvpArg1.getTag() == ValueTag.SEQUENCE_TAG) {
+                    TaggedValuePointable tvpSet = isHashable() ? getHashSetArgument(tvpArg1, tvpArg2) : null;
+                    if (tvpSet != null && buildHashSet(tvpSet)) {
+                        booleanResult = probeHashSet(tvpSet == tvpArg1 ? tvpArg2 : tvpArg1, tvpSet);
+                    } else if (tvpArg1.getTag() == ValueTag.SEQUENCE_TAG) {
                         tvpArg1.getValue(seqp1);
                         int seqLen = seqp1.getEntryCount();
                         for (int j = 0; j < seqLen; ++j) {
@@ -132,10 +141,11 @@ public abstract class AbstractGeneralComparisonScalarEvaluatorFactory extends
                         booleanResult = evaluateTaggedValueArgument2(aOp, tvpArg1, tvpArg2, dCtx);
                     }
 
-                    byte[] byteResult = new byte[2];
-                    byteResult[0] = ValueTag.XS_BOOLEAN_TAG;
-                    byteResult[1] = (byte) (booleanResult ? 1 : 0);
-                    result.set(byteResult, 0, 2);
+                    if (booleanResult) {
+                        XDMConstants.setTrue(result);
+                    } else {
+                        XDMConstants.setFalse(result);
+                    }
                 } catch (SystemException se) {
                     throw se;
                 } catch (Exception e) {
@@ -143,6 +153,156 @@ public abstract class AbstractGeneralComparisonScalarEvaluatorFactory extends
                 }
             }
 
+            /**
+             * @return the argument the hash set is built from, or null if neither argument has HASH_SET_MIN_SIZE
+             *         items. The argument of the current hash set is preferred, then the larger argument.
+             */
+            private TaggedValuePointable getHashSetArgument(TaggedValuePointable tvpArg1,
+                    TaggedValuePointable tvpArg2) {
+                if (isHashSetArgument(tvpArg2)) {
+                    return tvpArg2;
+                } else if (isHashSetArgument(tvpArg1)) {
+                    return tvpArg1;
+                }
+                int count1 = getItemCount(tvpArg1, seqp1);
+                int count2 = getItemCount(tvpArg2, seqp2);
+                if (Math.max(count1, count2) < HASH_SET_MIN_SIZE) {
+                    return null;
+                }
+                return count1 > count2 ? tvpArg1 : tvpArg2;
+            }
+
+            private int getItemCount(TaggedValuePointable tvp, SequencePointable seqp) {
+                if (tvp.getTag() != ValueTag.SEQUENCE_TAG) {
+                    return 1;
+                }
+                tvp.getValue(seqp);
+                return seqp.getEntryCount();
+            }
+
+            /**
+             * Build the hash set of the argument unless it was built for the same argument by an earlier call.
+             *
+             * @return false if the argument has values that are not supported by the hash set
+             */
+            private boolean buildHashSet(TaggedValuePointable tvpSet) throws SystemException, IOException {
+                if (!isHashSetArgument(tvpSet)) {
+                    abvsHashSetArg.reset();
+                    abvsHashSetArg.append(tvpSet);
+                    hashSet.reset();
+                    tvpSet.getValue(seqp1);
+                    int seqLen = seqp1.getEntryCount();
+                    for (int j = 0; j < seqLen; ++j) {
+                        seqp1.getEntry(j, p1);
+                        tvpSeq1.set(p1.getByteArray(), p1.getStartOffset(), p1.getLength());
+                        if (!addToHashSet(tvpSeq1)) {
+                            hashSet.reset();
+                            break;
+                        }
+                    }
+                }
+                return hashSet.getKind() != GeneralEqualityHashSet.KIND_EMPTY;
+            }
+
+            private boolean isHashSetArgument(TaggedValuePointable tvpSet) {
+                if (abvsHashSetArg.getLength() != tvpSet.getLength()) {
+                    return false;
+                }
+                byte[] bytes = abvsHashSetArg.getByteArray();
+                int start = abvsHashSetArg.getStartOffset();
+                byte[] setBytes = tvpSet.getByteArray();
+                int setStart = tvpSet.getStartOffset();
+                for (int i = 0; i < tvpSet.getLength(); ++i) {
+                    if (bytes[start + i] != setBytes[setStart + i]) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            private boolean addToHashSet(TaggedValuePointable tvpItem) throws SystemException, IOException {
+                atomize(tvpItem);
+                switch (getHashSetKind(tvpAtomized)) {
+                    case GeneralEqualityHashSet.KIND_STRING:
+                        return hashSet.addString(tvpAtomized.getByteArray(), tvpAtomized.getStartOffset() + 1,
+                                tvpAtomized.getLength() - 1);
+                    case GeneralEqualityHashSet.KIND_INTEGER:
+                        return hashSet.addLong(FunctionHelper.getLong(tvpAtomized, tp1));
+                    case GeneralEqualityHashSet.KIND_DOUBLE:
+                        return hashSet.addDouble(getDouble(tvpAtomized));
+                    default:
+                        return false;
+                }
+            }
+
+            /**
+             * Look up each item of the argument in the hash set. Items the hash set cannot answer for are compared
+             * with each item of the hash set argument.
+             */
+            private boolean probeHashSet(TaggedValuePointable tvpProbe, TaggedValuePointable tvpSet)
+                    throws SystemException, IOException {
+                if (tvpProbe.getTag() != ValueTag.SEQUENCE_TAG) {
+                    return probeHashSetItem(tvpProbe, tvpSet);
+                }
+                tvpProbe.getValue(seqp1);
+                int seqLen = seqp1.getEntryCount();
+                for (int j = 0; j < seqLen; ++j) {
+                    seqp1.getEntry(j, p1);
+                    tvpSeq1.set(p1.getByteArray(), p1.getStartOffset(), p1.getLength());
+                    if (probeHashSetItem(tvpSeq1, tvpSet)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            private boolean probeHashSetItem(TaggedValuePointable tvpItem, TaggedValuePointable tvpSet)
+                    throws SystemException, IOException {
+                atomize(tvpItem);
+                int kind = getHashSetKind(tvpAtomized);
+                if (kind != hashSet.getKind()) {
+                    return evaluateTaggedValueArgument2(aOp, tvpItem, tvpSet, dCtx);
+                } else if (kind == GeneralEqualityHashSet.KIND_STRING) {
+                    return hashSet.containsString(tvpAtomized.getByteArray(), tvpAtomized.getStartOffset() + 1,
+                            tvpAtomized.getLength() - 1);
+                } else if (kind == GeneralEqualityHashSet.KIND_INTEGER) {
+                    return hashSet.containsLong(FunctionHelper.getLong(tvpAtomized, tp1));
+                } else {
+                    return hashSet.containsDouble(getDouble(tvpAtomized));
+                }
+            }
+
+            private void atomize(TaggedValuePointable tvpItem) throws SystemException, IOException {
+                if (tvpItem.getTag() == ValueTag.NODE_TREE_TAG) {
+                    ah.atomize(tvpItem, ppool, tvpAtomized);
+                } else {
+                    tvpAtomized.set(tvpItem);
+                }
+            }
+
+            /**
+             * Strings and untyped atomic values are both compared as strings, integers as longs and doubles as
+             * doubles. Untyped atomic values are only hashed with strings, since they are cast to the type of a
+             * numeric value. Decimals and floats are not hashed, since they are compared with integers and each other
+             * as decimals or floats.
+             */
+            private int getHashSetKind(TaggedValuePointable tvp) {
+                switch (tvp.getTag()) {
+                    case ValueTag.XS_STRING_TAG:
+                    case ValueTag.XS_UNTYPED_ATOMIC_TAG:
+                        return GeneralEqualityHashSet.KIND_STRING;
+                    case ValueTag.XS_DOUBLE_TAG:
+                        return GeneralEqualityHashSet.KIND_DOUBLE;
+                    default:
+                        return FunctionHelper.isDerivedFromInteger(tvp.getTag()) ? GeneralEqualityHashSet.KIND_INTEGER
+                                : GeneralEqualityHashSet.KIND_EMPTY;
+                }
+            }
+
+            private double getDouble(TaggedValuePointable tvp) {
+                return DoublePointable.getDouble(tvp.getByteArray(), tvp.getStartOffset() + 1);
+            }
+
             /**
              * Check the second argument for a sequence and loop if required.
              *
@@ -383,4 +543,12 @@ public abstract class AbstractGeneralComparisonScalarEvaluatorFactory extends
     }
 
     protected abstract AbstractValueComparisonOperation createValueComparisonOperation();
+
+    /**
+     * @return true if the comparison is true exactly when some pair of values is equal, so that a large argument can
+     *         be answered with a hash set of its values
+     */
+    protected boolean isHashable() {
+        return false;
+    }
 }
@@ -32,4 +32,9 @@ public class GeneralEqComparisonScalarEvaluatorFactory extends AbstractGeneralCo
     protected AbstractValueComparisonOperation createValueComparisonOperation() {
         return new ValueEqComparisonOperation();
     }
+
+    @Override
+    protected boolean isHashable() {
+        return true;
+    }
 }
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.runtime.functions.comparison.general;
+
+import java.util.Arrays;
+
+import org.apache.vxquery.util.GrowableIntArray;
+
+/**
+ * Set of the atomic values of one side of a general equality comparison. Strings and untyped atomic values are kept
+ * by their UTF-8 bytes, integers as longs and doubles by their bits, so a value is found exactly when the pairwise
+ * comparison of two values of the same kind finds them equal. A set holds values of only one of these kinds. Other
+ * numeric types and values of different numeric kinds are compared with casts to decimal or float, which the set does
+ * not model, so they are left to the pairwise comparison.
+ * Values are found through an open addressing hash table with linear probing.
+ */
+public class GeneralEqualityHashSet {
+    public static final int KIND_EMPTY = 0;
+    public static final int KIND_STRING = 1;
+    public static final int KIND_INTEGER = 2;
+    public static final int KIND_DOUBLE = 3;
+
+    private static final int INITIAL_TABLE_SIZE = 64;
+
+    private int kind;
+    private byte[] stringBytes = new byte[1024];
+    private int stringBytesLength;
+    private final GrowableIntArray stringStarts = new GrowableIntArray();
+    private final GrowableIntArray stringLengths = new GrowableIntArray();
+    private long[] numbers = new long[INITIAL_TABLE_SIZE];
+    private final GrowableIntArray hashes = new GrowableIntArray();
+    private int size;
+    private int[] hashTable = new int[INITIAL_TABLE_SIZE];
+
+    public void reset() {
+        kind = KIND_EMPTY;
+        stringBytesLength = 0;
+        stringStarts.clear();
+        stringLengths.clear();
+        hashes.clear();
+        size = 0;
+        Arrays.fill(hashTable, 0);
+    }
+
+    public int getKind() {
+        return kind;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Add a string value.
+     *
+     * @return false if the set holds values of another kind
+     */
+    public boolean addString(byte[] bytes, int start, int length) {
+        if (!setKind(KIND_STRING)) {
+            return false;
+        }
+        int hash = hash(bytes, start, length);
+        int bucket = findString(bytes, start, length, hash);
+        if (hashTable[bucket] == 0) {
+            if (stringBytesLength + length > stringBytes.length) {
+                stringBytes = Arrays.copyOf(stringBytes, Math.max(stringBytes.length * 2, stringBytesLength + length));
+            }
+            System.arraycopy(bytes, start, stringBytes, stringBytesLength, length);
+            stringStarts.append(stringBytesLength);
+            stringLengths.append(length);
+            stringBytesLength += length;
+            addEntry(bucket, hash);
+        }
+        return true;
+    }
+
+    /**
+     * Add an integer value.
+     *
+     * @return false if the set holds values of another kind
+     */
+    public boolean addLong(long value) {
+        return addNumber(KIND_INTEGER, value);
+    }
+
+    /**
+     * Add a double value. NaN is not added, since it is not equal to any value.
+     *
+     * @return false if the set holds values of another kind
+     */
+    public boolean addDouble(double value) {
+        if (Double.isNaN(value)) {
+            return setKind(KIND_DOUBLE);
+        }
+        return addNumber(KIND_DOUBLE, getBits(value));
+    }
+
+    public boolean containsString(byte[] bytes, int start, int length) {
+        return kind == KIND_STRING && hashTable[findString(bytes, start, length, hash(bytes, start, length))] != 0;
+    }
+
+    public boolean containsLong(long value) {
+        return kind == KIND_INTEGER && hashTable[findNumber(value, hash(value))] != 0;
+    }
+
+    public boolean containsDouble(double value) {
+        if (kind != KIND_DOUBLE || Double.isNaN(value)) {
+            return false;
+        }
+        long bits = getBits(value);
+        return hashTable[findNumber(bits, hash(bits))] != 0;
+    }
+
+    /**
+     * Make the set a set of the kind.
+     *
+     * @return false if the set holds values of another kind
+     */
+    private boolean setKind(int valueKind) {
+        if (kind != KIND_EMPTY && kind != valueKind) {
+            return false;
+        }
+        kind = valueKind;
+        return true;
+    }
+
+    /**
+     * Add a number of the kind, as a long or as the bits of a double.
+     */
+    private boolean addNumber(int numberKind, long bits) {
+        if (!setKind(numberKind)) {
+            return false;
+        }
+        int hash = hash(bits);
+        int bucket = findNumber(bits, hash);
+        if (hashTable[bucket] == 0) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+            }
+            numbers[size] = bits;
+            addEntry(bucket, hash);
+        }
+        return true;
+    }
+
+    /**
+     * @return the bucket of the string, or the empty bucket where it would be added
+     */
+    private int findString(byte[] bytes, int start, int length, int hash) {
+        int mask = hashTable.length - 1;
+        int bucket = spread(hash) & mask;
+        for (int entry = hashTable[bucket]; entry != 0; entry = hashTable[bucket]) {
+            int index = entry - 1;
+            if (hashes.getArray()[index] == hash && stringEquals(index, bytes, start, length)) {
+                return bucket;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        return bucket;
+    }
+
+    private int findNumber(long bits, int hash) {
+        int mask = hashTable.length - 1;
+        int bucket = spread(hash) & mask;
+        for (int entry = hashTable[bucket]; entry != 0; entry = hashTable[bucket]) {
+            if (numbers[entry - 1] == bits) {
+                return bucket;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        return bucket;
+    }
+
+    private void addEntry(int bucket, int hash) {
+        hashes.append(hash);
+        hashTable[bucket] = ++size;
+        if (2 * size > hashTable.length) {
+            rehash();
+        }
+    }
+
+    private void rehash() {
+        hashTable = new int[hashTable.length * 2];
+        int mask = hashTable.length - 1;
+        int[] hashArray = hashes.getArray();
+        for (int index = 0; index < size; ++index) {
+            int bucket = spread(hashArray[index]) & mask;
+            while (hashTable[bucket] != 0) {
+                bucket = (bucket + 1) & mask;
+            }
+            hashTable[bucket] = index + 1;
+        }
+    }
+
+    private boolean stringEquals(int index, byte[] bytes, int start, int length) {
+        if (stringLengths.getArray()[index] != length) {
+            return false;
+        }
+        int stringStart = stringStarts.getArray()[index];
+        for (int i = 0; i < length; ++i) {
+            if (stringBytes[stringStart + i] != bytes[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Positive and negative zero are equal, so both have the bits of positive zero.
+     */
+    private static long getBits(double value) {
+        return value == 0.0d ? 0L : Double.doubleToLongBits(value);
+    }
+
+    private static int hash(byte[] bytes, int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; ++i) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash;
+    }
+
+    private static int hash(long bits) {
+        return (int) (bits ^ (bits >>> 32));
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -18,8 +18,8 @@ package org.apache.vxquery.runtime.functions.index;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.hyracks.data.std.api.IPointable;
@@ -35,7 +35,9 @@ import org.apache.vxquery.datamodel.builders.sequence.SequenceBuilder;
 import org.apache.vxquery.exceptions.ErrorCode;
 import org.apache.vxquery.exceptions.SystemException;
 import org.apache.vxquery.index.IndexDocumentBuilder;
+import org.apache.vxquery.runtime.functions.index.update.Constants;
 import org.apache.vxquery.runtime.functions.index.update.MetaFileUtil;
+import org.apache.vxquery.runtime.functions.index.update.PathSummary;
 import org.apache.vxquery.runtime.functions.index.update.XmlMetadata;
 import org.apache.vxquery.runtime.functions.util.FunctionHelper;
 import org.apache.vxquery.xmlparser.IParser;
@@ -45,7 +47,6 @@ import org.apache.vxquery.xmlparser.XMLParser;
 public class IndexConstructorUtil {
     private final TaggedValuePointable nodep = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
     private final SequenceBuilder sb = new SequenceBuilder();
-    private boolean isMetaFilePresent = false;
     private MetaFileUtil metaFileUtil;
     private ConcurrentHashMap<String, XmlMetadata> metadataMap = new ConcurrentHashMap<>();
 
@@ -54,8 +55,8 @@ public class IndexConstructorUtil {
             String nodeId) throws IOException {
 
         metaFileUtil = new MetaFileUtil(indexFolder);
-        isMetaFilePresent = metaFileUtil.isMetaFilePresent();
         metaFileUtil.setCollection(collectioFolder);
+        metadataMap.clear();
 
         File collectionDirectory = new File(collectioFolder);
         if (!collectionDirectory.exists()) {
@@ -72,17 +73,30 @@ public class IndexConstructorUtil {
 
             // Create will overwrite the index everytime
             iwc.setOpenMode(OpenMode.CREATE);
+            iwc.setRAMBufferSizeMB(getRamBufferSize());
 
             //Create an index writer
             IndexWriter writer = new IndexWriter(dir, iwc);
 
             //Add files to index
-            indexXmlFiles(collectionDirectory, writer, isElementPath, abvsFileNode, nodeIdProvider, sb, nodeId);
+            ParallelIndexBuilder builder = new ParallelIndexBuilder(writer, getIndexThreads(), nodeIdProvider, nodeId);
+            PathSummary pathSummary = null;
+            if (Boolean.parseBoolean(System.getProperty("vxquery.path_summary", "true"))) {
+                pathSummary = new PathSummary();
+                builder.setPathSummary(pathSummary, collectionDirectory);
+            }
+            try {
+                indexXmlFiles(collectionDirectory, builder);
+                builder.flush();
+            } finally {
+                builder.close();
+            }
 
-            if (!isMetaFilePresent) {
-                // Write metadata map to a file.
-                metaFileUtil.updateMetadataMap(metadataMap, indexFolder);
-                metaFileUtil.writeMetadataToFile();
+            File pathSummaryFile = new File(indexFolder, Constants.PATH_SUMMARY_FILE_NAME);
+            if (pathSummary != null) {
+                pathSummary.write(pathSummaryFile);
+            } else {
+                Files.deleteIfExists(pathSummaryFile.toPath());
             }
 
             //This makes write slower but search faster.
@@ -90,6 +104,10 @@ public class IndexConstructorUtil {
 
             writer.close();
 
+            // The index is created from scratch, so the metadata of a previous index is replaced.
+            metaFileUtil.updateMetadataMap(metadataMap, indexFolder);
+            metaFileUtil.writeMetadataToFile();
+
             sb.finish();
             result.set(abvs);
         } catch (IOException e) {
@@ -98,38 +116,39 @@ public class IndexConstructorUtil {
     }
 
     /*
-     * This function goes recursively one file at a time. First it turns the file into an ABVS document node, then
-     * it indexes that document node.
+     * This function goes recursively one file at a time. The files are turned into ABVS document nodes and indexed
+     * by the workers of the builder.
      */
-    public void indexXmlFiles(File collectionDirectory, IndexWriter writer, boolean isElementPath,
-            ArrayBackedValueStorage abvsFileNode, ITreeNodeIdProvider nodeIdProvider, SequenceBuilder sb, String nodeId)
-            throws IOException {
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy, HH:mm:ss");
-
+    public void indexXmlFiles(File collectionDirectory, ParallelIndexBuilder builder) throws IOException {
         for (File file : collectionDirectory.listFiles()) {
 
             if (readableXmlFile(file.getPath())) {
-                abvsFileNode.reset();
-
-                IndexDocumentBuilder ibuilder = getIndexBuilder(file, writer, abvsFileNode, nodeIdProvider, nodeId);
-
-                ibuilder.printStart();
-                if (!isMetaFilePresent) {
-                    XmlMetadata xmlMetadata = new XmlMetadata();
-                    xmlMetadata.setPath(file.getCanonicalPath());
-                    xmlMetadata.setFileName(file.getName());
-                    xmlMetadata.setLastModified(sdf.format(file.lastModified()));
-                    xmlMetadata.setMd5(metaFileUtil.generateMD5(file));
-                    metadataMap.put(file.getCanonicalPath(), xmlMetadata);
-                }
+                builder.addFile(file);
+                metadataMap.put(file.getCanonicalPath(), metaFileUtil.updateEntry(file, null));
 
             } else if (file.isDirectory()) {
                 // Consider all XML file in sub directories.
-                indexXmlFiles(file, writer, isElementPath, abvsFileNode, nodeIdProvider, sb, nodeId);
+                indexXmlFiles(file, builder);
             }
         }
     }
 
+    /**
+     * @return the number of threads parsing and indexing the files of a collection
+     */
+    public static int getIndexThreads() {
+        return Math.max(Integer.parseInt(System.getProperty("vxquery.index_threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors()))), 1);
+    }
+
+    /**
+     * @return the memory used to buffer added documents before they are flushed to a new segment
+     */
+    public static double getRamBufferSize() {
+        return Double.parseDouble(System.getProperty("vxquery.index_ram_buffer_mb",
+                String.valueOf(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB)));
+    }
+
     public boolean readableXmlFile(String path) {
         return path.toLowerCase().endsWith(".xml") || path.toLowerCase().endsWith(".xml.gz");
     }
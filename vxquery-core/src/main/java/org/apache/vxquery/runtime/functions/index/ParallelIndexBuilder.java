@@ -0,0 +1,206 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.vxquery.runtime.functions.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.vxquery.datamodel.accessors.TaggedValuePointable;
+import org.apache.vxquery.index.IndexDocumentBuilder;
+import org.apache.vxquery.runtime.functions.index.update.Constants;
+import org.apache.vxquery.runtime.functions.index.update.PathSummary;
+import org.apache.vxquery.runtime.functions.util.FunctionHelper;
+import org.apache.vxquery.xmlparser.ITreeNodeIdProvider;
+import org.apache.vxquery.xmlparser.XMLParser;
+
+/**
+ * Builds the lucene documents of a collection on a bounded pool of worker threads. Each worker parses a file into its
+ * own buffer, creates the document of that file and adds it to the index writer, which is thread safe. Each document
+ * records the position its file was submitted at in {@link Constants#FIELD_SEQUENCE}, and the index reader returns
+ * matches in that order, so query results do not depend on the number of threads.
+ */
+public class ParallelIndexBuilder {
+    private static final Logger LOGGER = Logger.getLogger("Parallel Index Builder");
+    private static final long PROGRESS_INTERVAL = 10000;
+
+    // The node ids of a stored node tree are replaced when the tree is read from the index.
+    private static final ITreeNodeIdProvider PLACEHOLDER_ID_PROVIDER = new ITreeNodeIdProvider() {
+        @Override
+        public int getId() {
+            return 0;
+        }
+    };
+
+    private final IndexWriter writer;
+    private final ITreeNodeIdProvider nodeIdProvider;
+    private final String nodeId;
+    private final ExecutorService executor;
+    private final Deque<ArrayBackedValueStorage> freeBuffers;
+    private final Deque<Future<IndexedFile>> pending;
+    private final int maxPending;
+    private PathSummary pathSummary;
+    private File collectionDirectory;
+    private final long startTime;
+    private long lastProgressTime;
+    private long nextSequence;
+    private int fileCount;
+    private long byteCount;
+
+    public ParallelIndexBuilder(IndexWriter writer, int threads, ITreeNodeIdProvider nodeIdProvider,
+            final String nodeId) {
+        this.writer = writer;
+        this.nodeIdProvider = nodeIdProvider == null ? null : PLACEHOLDER_ID_PROVIDER;
+        this.nodeId = nodeId;
+        freeBuffers = new ArrayDeque<>();
+        pending = new ArrayDeque<>();
+        maxPending = 2 * threads;
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "vxquery-indexer-" + nodeId);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        startTime = System.currentTimeMillis();
+        lastProgressTime = startTime;
+    }
+
+    /**
+     * Record the element paths of every added file in a summary.
+     *
+     * @param pathSummary
+     *            : Summary of the collection
+     * @param collectionDirectory
+     *            : Directory the files are relative to in the summary
+     */
+    public void setPathSummary(PathSummary pathSummary, File collectionDirectory) {
+        this.pathSummary = pathSummary;
+        this.collectionDirectory = collectionDirectory;
+    }
+
+    public void addFile(final File file) throws IOException {
+        if (pending.size() >= maxPending) {
+            addNext();
+        }
+        final ArrayBackedValueStorage buffer = freeBuffers.isEmpty() ? new ArrayBackedValueStorage()
+                : freeBuffers.pop();
+        buffer.reset();
+        final long sequence = nextSequence++;
+        pending.add(executor.submit(new Callable<IndexedFile>() {
+            @Override
+            public IndexedFile call() throws Exception {
+                FunctionHelper.readInDocFromString(file.getPath(), buffer,
+                        new XMLParser(false, nodeIdProvider, nodeId));
+                TaggedValuePointable nodep = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+                nodep.set(buffer.getByteArray(), buffer.getStartOffset(), buffer.getLength());
+                if (pathSummary != null) {
+                    pathSummary.addFile(collectionDirectory.toPath().relativize(file.toPath()).toString(), file,
+                            new PathSummary.ElementPathCollector().collect(nodep));
+                }
+                Document doc = new IndexDocumentBuilder(nodep, writer, file.getCanonicalPath()).createDocument();
+                doc.add(new NumericDocValuesField(Constants.FIELD_SEQUENCE, sequence));
+                writer.addDocument(doc);
+                return new IndexedFile(file.length(), buffer);
+            }
+        }));
+    }
+
+    /**
+     * Waits until the documents of every submitted file are added.
+     */
+    public void flush() throws IOException {
+        while (!pending.isEmpty()) {
+            addNext();
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.log(Level.INFO, "Indexed " + getProgress());
+        }
+    }
+
+    public void close() {
+        for (Future<IndexedFile> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        executor.shutdownNow();
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    private void addNext() throws IOException {
+        IndexedFile indexedFile;
+        try {
+            indexedFile = pending.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        freeBuffers.push(indexedFile.buffer);
+        ++fileCount;
+        byteCount += indexedFile.length;
+
+        long now = System.currentTimeMillis();
+        if (now - lastProgressTime >= PROGRESS_INTERVAL) {
+            lastProgressTime = now;
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.log(Level.INFO, "Indexing in progress: " + getProgress());
+            }
+        }
+    }
+
+    private String getProgress() {
+        long elapsed = Math.max(System.currentTimeMillis() - startTime, 1);
+        return fileCount + " files (" + byteCount + " bytes) in " + elapsed + " ms, "
+                + (fileCount * 1000L / elapsed) + " files/s, " + (byteCount / 1024 * 1000L / elapsed) + " KB/s";
+    }
+
+    private static class IndexedFile {
+        private final long length;
+        private final ArrayBackedValueStorage buffer;
+
+        IndexedFile(long length, ArrayBackedValueStorage buffer) {
+            this.length = length;
+            this.buffer = buffer;
+        }
+    }
+}
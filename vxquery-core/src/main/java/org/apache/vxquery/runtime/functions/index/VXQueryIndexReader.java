@@ -16,9 +16,12 @@
 */
 package org.apache.vxquery.runtime.functions.index;
 
+import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.hyracks.algebricks.common.exceptions.AlgebricksException;
@@ -26,22 +29,36 @@ import org.apache.hyracks.api.comm.IFrameFieldAppender;
 import org.apache.hyracks.api.comm.IFrameWriter;
 import org.apache.hyracks.api.context.IHyracksTaskContext;
 import org.apache.hyracks.data.std.api.IPointable;
+import org.apache.hyracks.data.std.primitive.UTF8StringPointable;
 import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
+import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.StoredFieldVisitor;
 import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
 import org.apache.vxquery.context.DynamicContext;
+import org.apache.vxquery.datamodel.accessors.SequencePointable;
+import org.apache.vxquery.datamodel.accessors.TaggedValuePointable;
+import org.apache.vxquery.datamodel.accessors.atomic.CodedQNamePointable;
+import org.apache.vxquery.datamodel.accessors.nodes.DocumentNodePointable;
+import org.apache.vxquery.datamodel.accessors.nodes.ElementNodePointable;
+import org.apache.vxquery.datamodel.accessors.nodes.NodeTreePointable;
+import org.apache.vxquery.datamodel.values.ValueTag;
 import org.apache.vxquery.exceptions.ErrorCode;
 import org.apache.vxquery.exceptions.SystemException;
 import org.apache.vxquery.index.IndexAttributes;
+import org.apache.vxquery.runtime.functions.index.update.Constants;
 import org.apache.vxquery.runtime.functions.util.FunctionHelper;
 import org.apache.vxquery.types.ElementType;
 import org.apache.vxquery.types.NameTest;
@@ -57,21 +74,38 @@ public class VXQueryIndexReader {
 
     private ArrayBackedValueStorage nodeAbvs = new ArrayBackedValueStorage();
 
-    private int indexPlace;
-    private int indexLength;
+    private static final String ITEM_FIELD = "item";
+
     private String elementPath;
     private String indexName;
     private List<SequenceType> childSequenceTypes;
     private IndexReader reader;
     private IndexSearcher searcher;
     private QueryParser parser;
-    private ScoreDoc[] hits;
     private SAXContentHandler handler;
     private Query query;
-    private Document doc;
-    private List<IndexableField> fields;
+    private Weight weight;
+    private long[] matches = new long[0];
+    private int matchCount;
+    private int nextMatch;
+    private final List<String> fields = new ArrayList<>();
+    private final StoredFieldVisitor itemVisitor = new ItemFieldVisitor();
+    private byte[] nodeTree;
     private IHyracksTaskContext ctx;
     private String[] childLocalName = null;
+    private byte[][] childLocalNameBytes = null;
+    private ITreeNodeIdProvider nodeIdProvider;
+
+    private final ArrayBackedValueStorage elementAbvs = new ArrayBackedValueStorage();
+    private final NodeTreePointable ntp = (NodeTreePointable) NodeTreePointable.FACTORY.createPointable();
+    private final DocumentNodePointable dnp = (DocumentNodePointable) DocumentNodePointable.FACTORY.createPointable();
+    private final ElementNodePointable enp = (ElementNodePointable) ElementNodePointable.FACTORY.createPointable();
+    private final CodedQNamePointable cqp = (CodedQNamePointable) CodedQNamePointable.FACTORY.createPointable();
+    private final UTF8StringPointable namep = (UTF8StringPointable) UTF8StringPointable.FACTORY.createPointable();
+    private final TaggedValuePointable rootTvp = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+    private SequencePointable[] stepChildren;
+    private TaggedValuePointable[] stepChild;
+    private int[] stepNameCodes;
     private IFrameFieldAppender appender;
     private boolean firstElement;
 
@@ -86,6 +120,10 @@ public class VXQueryIndexReader {
             childSequenceTypes.add(dCtx.getStaticContext().lookupSequenceType(typeCode));
         }
         childLocalName = new String[childSequenceTypes.size()];
+        childLocalNameBytes = new byte[childSequenceTypes.size()][];
+        stepChildren = new SequencePointable[childSequenceTypes.size()];
+        stepChild = new TaggedValuePointable[childSequenceTypes.size()];
+        stepNameCodes = new int[childSequenceTypes.size()];
         int index = 0;
         StringBuilder stb = new StringBuilder();
         stb.append("/");
@@ -94,6 +132,9 @@ public class VXQueryIndexReader {
             ElementType eType = (ElementType) nodeType;
             NameTest nameTest = eType.getNameTest();
             childLocalName[index] = FunctionHelper.getStringFromBytes(nameTest.getLocalName());
+            childLocalNameBytes[index] = nameTest.getLocalName();
+            stepChildren[index] = (SequencePointable) SequencePointable.FACTORY.createPointable();
+            stepChild[index] = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
 
             stb.append(childLocalName[index]);
             if (index != childSequenceTypes.size() - 1) {
@@ -107,41 +148,97 @@ public class VXQueryIndexReader {
     public boolean step(IPointable result, IFrameWriter writer, int tupleIndex) throws AlgebricksException {
         /*each step will create a tuple for a single xml file
         * This is done using the parse function
-        * checkoverflow is used throughout. This is because memory might not be
-        * able to hold all of the results at once, so we return 1 million at
-        * a time and check when we need to get more
+        * Matching documents are read one at a time from the index segments,
+        * so neither the number of hits nor the memory needed is bounded by a
+        * top-N search. Only a sort key is kept for each hit.
         */
-        if (indexPlace < indexLength) {
+        if (reader == null) {
+            return false;
+        }
+        try {
+            if (!nextDocument()) {
+                close();
+                return false;
+            }
             nodeAbvs.reset();
-            try {
-                //TODO: now we get back the entire document
-                doc = searcher.doc(hits[indexPlace].doc);
-                fields = doc.getFields();
+            if (nodeTree != null) {
+                writeStoredElements(writer);
+            } else {
                 handler.setupElementWriter(writer, tupleIndex);
                 this.firstElement = true;
                 parse(nodeAbvs);
-            } catch (IOException e) {
-                throw new AlgebricksException(e);
             }
-            indexPlace += 1;
-            result.set(nodeAbvs.getByteArray(), nodeAbvs.getStartOffset(), nodeAbvs.getLength());
-            return true;
+        } catch (IOException e) {
+            throw new AlgebricksException(e);
+        }
+        result.set(nodeAbvs.getByteArray(), nodeAbvs.getStartOffset(), nodeAbvs.getLength());
+        return true;
+    }
+
+    /*Moves to the next live document matching the query and loads its item
+     * fields. Hits are not scored since they are returned in the order their
+     * files were added to the index.
+     */
+    private boolean nextDocument() throws IOException {
+        if (nextMatch >= matchCount) {
+            return false;
+        }
+        fields.clear();
+        nodeTree = null;
+        reader.document((int) matches[nextMatch++], itemVisitor);
+        return true;
+    }
+
+    /*Collects the live documents matching the query, sorted by the sequence
+     * number the index builder gave each file and then by document id. The
+     * index writer stores documents added by several threads in any order.
+     * Documents without a sequence number come last, in index order.
+     */
+    private void collectMatches() throws IOException {
+        matchCount = 0;
+        nextMatch = 0;
+        for (LeafReaderContext leaf : reader.leaves()) {
+            Scorer scorer = weight.scorer(leaf);
+            if (scorer == null) {
+                continue;
+            }
+            Bits liveDocs = leaf.reader().getLiveDocs();
+            NumericDocValues sequences = leaf.reader().getNumericDocValues(Constants.FIELD_SEQUENCE);
+            Bits hasSequence = leaf.reader().getDocsWithField(Constants.FIELD_SEQUENCE);
+            DocIdSetIterator leafDocs = scorer.iterator();
+            for (int docId = leafDocs.nextDoc(); docId != DocIdSetIterator.NO_MORE_DOCS; docId = leafDocs.nextDoc()) {
+                if (liveDocs != null && !liveDocs.get(docId)) {
+                    continue;
+                }
+                long sequence = Integer.MAX_VALUE;
+                if (sequences != null && hasSequence != null && hasSequence.get(docId)) {
+                    sequence = Math.min(sequences.get(docId), Integer.MAX_VALUE);
+                }
+                if (matchCount == matches.length) {
+                    matches = Arrays.copyOf(matches, Math.max(16, matchCount * 2));
+                }
+                matches[matchCount++] = sequence << 32 | (leaf.docBase + docId);
+            }
+        }
+        Arrays.sort(matches, 0, matchCount);
+    }
+
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
         }
-        return false;
     }
 
     public void init() throws SystemException {
 
         int partition = ctx.getTaskAttemptId().getTaskId().getPartition();
-        ITreeNodeIdProvider nodeIdProvider = new TreeNodeIdProvider((short) partition);
+        nodeIdProvider = new TreeNodeIdProvider((short) partition);
         handler = new SAXContentHandler(false, nodeIdProvider, appender, childSequenceTypes);
 
         nodeAbvs.reset();
-        indexPlace = 0;
 
         try {
-            indexPlace = 0;
-
             //Create the index reader.
             reader = DirectoryReader.open(FSDirectory.open(Paths.get(indexName)));
         } catch (IOException e) {
@@ -151,7 +248,7 @@ public class VXQueryIndexReader {
         searcher = new IndexSearcher(reader);
         Analyzer analyzer = new CaseSensitiveAnalyzer();
 
-        parser = new CaseSensitiveQueryParser("item", analyzer);
+        parser = new CaseSensitiveQueryParser(ITEM_FIELD, analyzer);
 
         String queryString = elementPath.replaceAll("/", ".");
         queryString = "item:" + queryString + "*";
@@ -160,25 +257,86 @@ public class VXQueryIndexReader {
         elementPath = elementPath.substring(0, lastslash) + ":" + elementPath.substring(lastslash + 1);
         elementPath = elementPath.replaceAll("/", ".") + ".element";
 
-        TopDocs results = null;
         try {
             query = parser.parse(queryString);
-
-            //TODO: Right now it only returns 1000000 results
-            results = searcher.search(query, 1000000);
+            weight = searcher.createNormalizedWeight(query, false);
+            collectMatches();
         } catch (Exception e) {
             throw new SystemException(null, e);
         }
+    }
 
-        hits = results.scoreDocs;
-        indexPlace = 0;
-        indexLength = hits.length;
+    /*Copies the elements on the requested path out of the node tree stored
+     * with the document. Each element is written as its own node tree made of
+     * the document dictionary and the element bytes, without re-parsing.
+     */
+    private void writeStoredElements(IFrameWriter writer) throws IOException {
+        if (nodeTree.length == 0 || nodeTree[0] != ValueTag.NODE_TREE_TAG) {
+            throw new IOException("Unexpected node tree stored in index " + indexName);
+        }
+        ntp.set(nodeTree, 1, nodeTree.length - 1);
+        for (int i = 0; i < stepNameCodes.length; ++i) {
+            if (childLocalNameBytes[i] == null) {
+                stepNameCodes[i] = -1;
+                continue;
+            }
+            namep.set(childLocalNameBytes[i], 0, childLocalNameBytes[i].length);
+            stepNameCodes[i] = ntp.lookupString(namep);
+            if (stepNameCodes[i] < 0) {
+                // The document has no element with this name.
+                return;
+            }
+        }
+        ntp.getRootNode(rootTvp);
+        if (rootTvp.getTag() != ValueTag.DOCUMENT_NODE_TAG || stepNameCodes.length == 0) {
+            return;
+        }
+        rootTvp.getValue(dnp);
+        dnp.getContent(ntp, stepChildren[0]);
+        writeStepMatches(0, writer);
+    }
+
+    private void writeStepMatches(int step, IFrameWriter writer) throws IOException {
+        SequencePointable children = stepChildren[step];
+        TaggedValuePointable child = stepChild[step];
+        int childCount = children.getEntryCount();
+        for (int i = 0; i < childCount; ++i) {
+            children.getEntry(i, child);
+            if (child.getTag() != ValueTag.ELEMENT_NODE_TAG) {
+                continue;
+            }
+            child.getValue(enp);
+            enp.getName(cqp);
+            if (stepNameCodes[step] >= 0 && cqp.getLocalCode() != stepNameCodes[step]) {
+                continue;
+            }
+            if (step == stepNameCodes.length - 1) {
+                writeElement(child, writer);
+            } else {
+                enp.getChildrenSequence(ntp, stepChildren[step + 1]);
+                writeStepMatches(step + 1, writer);
+            }
+        }
+    }
+
+    private void writeElement(TaggedValuePointable element, IFrameWriter writer) throws IOException {
+        elementAbvs.reset();
+        DataOutput out = elementAbvs.getDataOutput();
+        out.write(ValueTag.NODE_TREE_TAG);
+        out.write(nodeTree[1]);
+        if (ntp.nodeIdExists()) {
+            out.writeInt(nodeIdProvider.getId());
+        }
+        out.write(nodeTree, ntp.getDictionaryOffset(), ntp.getDictionarySize());
+        out.write(element.getByteArray(), element.getStartOffset(), element.getLength());
+        FrameUtils.appendFieldToWriter(writer, appender, elementAbvs.getByteArray(), elementAbvs.getStartOffset(),
+                elementAbvs.getLength());
     }
 
     public void parse(ArrayBackedValueStorage abvsFileNode) throws IOException {
         try {
             for (int i = 0; i < fields.size(); i++) {
-                String fieldValue = fields.get(i).stringValue();
+                String fieldValue = fields.get(i);
                 if (fieldValue.equals(elementPath)) {
                     handler.startDocument();
                     this.firstElement = true;
@@ -193,8 +351,7 @@ public class VXQueryIndexReader {
     private int buildElement(ArrayBackedValueStorage abvsFileNode, int fieldNum) throws SAXException {
         int whereIFinish = fieldNum;
         int firstFinish;
-        IndexableField field = fields.get(fieldNum);
-        String contents = field.stringValue();
+        String contents = fields.get(fieldNum);
         String uri = "";
 
         int firstColon = contents.indexOf(':');
@@ -241,7 +398,7 @@ public class VXQueryIndexReader {
             boolean noMoreChildren = false;
 
             while (whereIFinish + 1 < fields.size() && !noMoreChildren) {
-                if (isChild(fields.get(whereIFinish + 1), field)) {
+                if (isChild(fields.get(whereIFinish + 1), contents)) {
                     whereIFinish = buildElement(abvsFileNode, whereIFinish + 1);
                 } else {
                     noMoreChildren = true;
@@ -262,11 +419,11 @@ public class VXQueryIndexReader {
         int nextindex = fieldnum + 1;
         boolean foundattributes = false;
         if (nextindex < fields.size()) {
-            IndexableField nextguy;
+            String nextguy;
 
             while (nextindex < fields.size()) {
                 nextguy = fields.get(nextindex);
-                String contents = nextguy.stringValue();
+                String contents = nextguy;
                 int firstcolon = contents.indexOf(':');
                 int lastdot = contents.lastIndexOf('.');
                 String lastbit = contents.substring(firstcolon + 1, lastdot);
@@ -274,8 +431,7 @@ public class VXQueryIndexReader {
                 if (isDirectChildAttribute(nextguy, fields.get(fieldnum))) {
                     foundattributes = true;
                     n.add(lastbit);
-                    IndexableField nextnextguy = fields.get(nextindex + 1);
-                    contents = nextnextguy.stringValue();
+                    contents = fields.get(nextindex + 1);
                     firstcolon = contents.indexOf(':');
                     lastdot = contents.lastIndexOf('.');
                     String nextlastbit = contents.substring(firstcolon + 1, lastdot);
@@ -298,10 +454,7 @@ public class VXQueryIndexReader {
         }
     }
 
-    boolean isChild(IndexableField child, IndexableField adult) {
-        String childId = child.stringValue();
-        String adultId = adult.stringValue();
-
+    boolean isChild(String childId, String adultId) {
         int lastDotChild = childId.lastIndexOf('.');
         int lastDotAdult = adultId.lastIndexOf('.');
 
@@ -312,18 +465,42 @@ public class VXQueryIndexReader {
         return childPath.startsWith(adultPath + ":") || childPath.startsWith(adultPath + ".");
     }
 
-    boolean isDirectChildAttribute(IndexableField child, IndexableField adult) {
-        String childId = child.stringValue();
-        String adultId = adult.stringValue();
-
+    boolean isDirectChildAttribute(String childId, String adultId) {
         String childPath = childId.substring(0, childId.lastIndexOf('.'));
         String adultPath = adultId.substring(0, adultId.lastIndexOf('.'));
         adultPath = adultPath.replaceFirst(":", ".");
-        String[] childSegments = child.stringValue().split("\\.");
+        String[] childSegments = childId.split("\\.");
 
         String childType = childSegments[childSegments.length - 1];
 
         return childPath.startsWith(adultPath + ":") && "attribute".equals(childType);
     }
 
+    /*Loads the stored node tree of a document if there is one, and its item
+     * fields otherwise. The file path is skipped and items are kept as strings
+     * instead of building a Document.
+     */
+    private class ItemFieldVisitor extends StoredFieldVisitor {
+        @Override
+        public Status needsField(FieldInfo fieldInfo) {
+            if (nodeTree != null) {
+                return Status.STOP;
+            }
+            if (Constants.FIELD_NODE_TREE.equals(fieldInfo.name)) {
+                return Status.YES;
+            }
+            return ITEM_FIELD.equals(fieldInfo.name) ? Status.YES : Status.NO;
+        }
+
+        @Override
+        public void binaryField(FieldInfo fieldInfo, byte[] value) {
+            nodeTree = value;
+        }
+
+        @Override
+        public void stringField(FieldInfo fieldInfo, byte[] value) {
+            fields.add(new String(value, StandardCharsets.UTF_8));
+        }
+    }
+
 }
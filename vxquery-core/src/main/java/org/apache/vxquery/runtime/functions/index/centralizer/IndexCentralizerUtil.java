@@ -16,20 +16,21 @@
  */
 package org.apache.vxquery.runtime.functions.index.centralizer;
 
+import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 
 import org.apache.commons.io.FileUtils;
@@ -37,22 +38,32 @@ import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
 import org.apache.vxquery.datamodel.builders.atomic.StringValueBuilder;
 import org.apache.vxquery.datamodel.builders.sequence.SequenceBuilder;
 import org.apache.vxquery.datamodel.values.ValueTag;
+import org.apache.vxquery.runtime.functions.index.update.MetadataLog;
 
 /**
  * Class for maintaining the centralized index information file.
  * Index centralization procedure.
  * User can specify the collection directory in VXQuery.java, ncConfig.ioDevices = &lt; index_directory &gt; .
  * Then all the indexes will be created in that particular directory in sub-folders corresponding to collections.
- * There will be a single xml file, located in the directory specified in local.xml, which contains all information
- * about the existing indexes.
+ * There will be a single binary log file, located in the directory specified in local.xml, which contains all
+ * information about the existing indexes.
  * This class can be used to read, add, delete, modify the entries and write the file back to the disk.
  */
 public class IndexCentralizerUtil {
 
-    private static final String FILE_NAME = "VXQuery-Index-Directory.xml";
+    private static final String FILE_NAME = "VXQuery-Index-Directory.meta";
+    private static final String LEGACY_FILE_NAME = "VXQuery-Index-Directory.xml";
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_REMOVE = 2;
+    private static final int MIN_COMPACTION_RECORDS = 1024;
     private final List<String> collections = new ArrayList<>();
     private static final Logger LOGGER = Logger.getLogger("IndexCentralizerUtil");
     private File xmlFile;
+    private final MetadataLog directoryLog;
+    private final String directoryPath;
+    // Collection to index entries of each directory file, as last read or written. Guarded by the class lock, like
+    // writes to the file, since all instances share the file and indexCollectionMap.
+    private static final Map<String, Map<String, String>> persistedEntries = new HashMap<>();
     private String indexPath;
     public static ConcurrentHashMap<String, IndexLocator> indexCollectionMap = new ConcurrentHashMap<>();
     private static final StringValueBuilder svb = new StringValueBuilder();
@@ -68,7 +79,10 @@ public class IndexCentralizerUtil {
                 LOGGER.log(Level.SEVERE, "Could not create the index directory for path: " + indexPath + " " + e);
             }
         }
-        xmlFile = new File(index.getPath() + "/" + FILE_NAME);
+        xmlFile = new File(index.getPath() + "/" + LEGACY_FILE_NAME);
+        File directoryFile = new File(index.getPath() + "/" + FILE_NAME);
+        directoryPath = directoryFile.getAbsolutePath();
+        directoryLog = new MetadataLog(directoryFile);
     }
 
     /**
@@ -136,40 +150,141 @@ public class IndexCentralizerUtil {
 
     /**
      * Read the collection, index directory file and populate the HashMap.
+     * A directory written in the earlier XML format is read as well, and replaced on the next write.
      */
     public void readIndexDirectory() {
-        if (xmlFile.exists()) {
+        synchronized (IndexCentralizerUtil.class) {
+            Map<String, String> persisted = getPersisted();
+            persisted.clear();
+            collections.clear();
+            readEntries(directoryLog, xmlFile, persisted);
+
+            for (Map.Entry<String, String> entry : persisted.entrySet()) {
+                IndexLocator il = new IndexLocator();
+                il.setCollection(entry.getKey());
+                il.setIndex(entry.getValue());
+                indexCollectionMap.put(il.getCollection(), il);
+                this.collections.add(il.getCollection());
+            }
+        }
+    }
+
+    /**
+     * Find the index of a collection in the directory file of an index root. Unlike {@link #readIndexDirectory()},
+     * neither the root nor the shared index entries are changed.
+     *
+     * @param indexRoot
+     *            : Directory holding the index directory file
+     * @param collection
+     *            : Collection directory
+     * @return the index folder, or null if the collection has no index
+     */
+    public static String readIndexForCollection(File indexRoot, String collection) {
+        Map<String, String> entries = new HashMap<>();
+        readEntries(new MetadataLog(new File(indexRoot, FILE_NAME)), new File(indexRoot, LEGACY_FILE_NAME), entries);
+        return entries.get(collection);
+    }
+
+    private static void readEntries(MetadataLog directoryLog, File xmlFile, final Map<String, String> entries) {
+        if (directoryLog.exists()) {
+            try {
+                directoryLog.read(new MetadataLog.IRecordHandler() {
+                    @Override
+                    public void handle(byte type, DataInput in) throws IOException {
+                        String collection = in.readUTF();
+                        if (type == RECORD_PUT) {
+                            entries.put(collection, in.readUTF());
+                        } else {
+                            entries.remove(collection);
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Could not read the index directory due to " + e);
+            }
+        } else if (xmlFile.exists()) {
             try {
                 JAXBContext jaxbContext = JAXBContext.newInstance(IndexDirectory.class);
                 Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
                 IndexDirectory indexDirectory = (IndexDirectory) jaxbUnmarshaller.unmarshal(xmlFile);
 
                 for (IndexLocator il : indexDirectory.getDirectory()) {
-                    indexCollectionMap.put(il.getCollection(), il);
-                    this.collections.add(il.getCollection());
+                    entries.put(il.getCollection(), il.getIndex());
                 }
             } catch (JAXBException e) {
                 LOGGER.log(Level.SEVERE, "Could not read the XML file due to " + e);
             }
         }
-
     }
 
     /**
      * Write back the contents of the HashMap to the file.
+     * Only the entries added, changed or removed since the file was read are appended to it.
      */
     public void writeIndexDirectory() {
-        IndexDirectory id = new IndexDirectory();
-        List<IndexLocator> indexLocators = new ArrayList<>(indexCollectionMap.values());
-        id.setDirectory(indexLocators);
-        try {
-            FileOutputStream fileOutputStream = new FileOutputStream(this.xmlFile);
-            JAXBContext context = JAXBContext.newInstance(IndexDirectory.class);
-            Marshaller jaxbMarshaller = context.createMarshaller();
-            jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-            jaxbMarshaller.marshal(id, fileOutputStream);
-        } catch (JAXBException | FileNotFoundException e) {
-            LOGGER.log(Level.SEVERE, "Could not read the XML file due to " + e);
+        synchronized (IndexCentralizerUtil.class) {
+            Map<String, String> persisted = getPersisted();
+            try {
+                if (!directoryLog.exists() || directoryLog.isDamaged() || directoryLog.getRecordCount() > Math
+                        .max(MIN_COMPACTION_RECORDS, 2 * indexCollectionMap.size())) {
+                    persisted.clear();
+                    try (MetadataLog.Writer writer = directoryLog.rewrite()) {
+                        for (IndexLocator il : indexCollectionMap.values()) {
+                            writeEntry(writer, il);
+                        }
+                        writer.commit();
+                    }
+                    Files.deleteIfExists(xmlFile.toPath());
+                    return;
+                }
+
+                List<IndexLocator> changed = new ArrayList<>();
+                for (IndexLocator il : indexCollectionMap.values()) {
+                    if (!il.getIndex().equals(persisted.get(il.getCollection()))) {
+                        changed.add(il);
+                    }
+                }
+                List<String> removed = new ArrayList<>();
+                for (String collection : persisted.keySet()) {
+                    if (!indexCollectionMap.containsKey(collection)) {
+                        removed.add(collection);
+                    }
+                }
+                if (changed.isEmpty() && removed.isEmpty()) {
+                    return;
+                }
+                try (MetadataLog.Writer writer = directoryLog.append()) {
+                    for (IndexLocator il : changed) {
+                        writeEntry(writer, il);
+                    }
+                    for (String collection : removed) {
+                        writer.startRecord(RECORD_REMOVE).writeUTF(collection);
+                        persisted.remove(collection);
+                    }
+                    writer.commit();
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Could not write the index directory due to " + e);
+            }
+        }
+    }
+
+    private void writeEntry(MetadataLog.Writer writer, IndexLocator il) throws IOException {
+        DataOutput out = writer.startRecord(RECORD_PUT);
+        out.writeUTF(il.getCollection());
+        out.writeUTF(il.getIndex());
+        getPersisted().put(il.getCollection(), il.getIndex());
+    }
+
+    /**
+     * @return the entries of the directory file of this instance, to be used while holding the class lock
+     */
+    private Map<String, String> getPersisted() {
+        Map<String, String> persisted = persistedEntries.get(directoryPath);
+        if (persisted == null) {
+            persisted = new HashMap<>();
+            persistedEntries.put(directoryPath, persisted);
         }
+        return persisted;
     }
 }
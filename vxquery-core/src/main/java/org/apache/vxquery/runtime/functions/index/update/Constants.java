@@ -21,7 +21,11 @@ package org.apache.vxquery.runtime.functions.index.update;
  */
 public class Constants {
     public static final String FIELD_PATH = "path";
-    public static final String META_FILE_NAME = "vxquery_index.xml";
+    public static final String FIELD_NODE_TREE = "tree";
+    public static final String FIELD_SEQUENCE = "sequence";
+    public static final String META_FILE_NAME = "vxquery_index.meta";
+    public static final String LEGACY_META_FILE_NAME = "vxquery_index.xml";
+    public static final String PATH_SUMMARY_FILE_NAME = "vxquery_paths.meta";
 
     private Constants() {
     }
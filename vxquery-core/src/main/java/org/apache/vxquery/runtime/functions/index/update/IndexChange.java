@@ -0,0 +1,73 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.vxquery.runtime.functions.index.update;
+
+import java.io.Serializable;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Entry of the change journal kept in the metadata file.
+ * Each entry records a file that was added to, updated in or deleted from the index by an index update.
+ */
+@XmlRootElement(name = "change")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class IndexChange implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {
+        ADDED,
+        UPDATED,
+        DELETED
+    }
+
+    @XmlAttribute(name = "time")
+    private long time;
+
+    @XmlAttribute(name = "type")
+    private Type type;
+
+    @XmlAttribute(name = "path")
+    private String path;
+
+    public IndexChange() {
+    }
+
+    public IndexChange(long time, Type type, String path) {
+        this.time = time;
+        this.type = type;
+        this.path = path;
+    }
+
+    /**
+     * @return time of the index update in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getPath() {
+        return path;
+    }
+}
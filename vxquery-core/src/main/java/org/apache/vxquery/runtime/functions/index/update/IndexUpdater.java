@@ -20,7 +20,6 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -32,6 +31,7 @@ import org.apache.log4j.Logger;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.vxquery.datamodel.builders.sequence.SequenceBuilder;
@@ -44,6 +44,9 @@ import org.apache.vxquery.xmlparser.ITreeNodeIdProvider;
 
 /**
  * Update the index if the source files are changed.
+ * Only added, changed and deleted files are indexed again, and the segments they are written to are merged by a
+ * tiered merge policy. Set vxquery.index_force_merge to true to merge the whole index into a single segment after
+ * each update instead.
  */
 public class IndexUpdater {
     private MetaFileUtil metaFileUtil;
@@ -59,7 +62,8 @@ public class IndexUpdater {
     private String collectionFolder;
     private String indexFolder;
     private final Logger LOGGER = Logger.getLogger("Index Updater");
-    private SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
+    private final boolean forceMerge = Boolean.parseBoolean(System.getProperty("vxquery.index_force_merge", "false"));
+    private long updateTime;
     private IndexConstructorUtil indexConstructorUtil = new IndexConstructorUtil();
 
     public IndexUpdater(String indexFolder, IPointable result, ArrayBackedValueStorage abvs, ITreeNodeIdProvider nodeIdProvider,
@@ -94,7 +98,8 @@ public class IndexUpdater {
 
         Directory fsdir = FSDirectory.open(Paths.get(indexFolder));
         indexWriter = new IndexWriter(fsdir, new IndexWriterConfig(new CaseSensitiveAnalyzer())
-                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND).setMergePolicy(new TieredMergePolicy())
+                .setRAMBufferSizeMB(IndexConstructorUtil.getRamBufferSize()));
     }
 
     /**
@@ -109,11 +114,16 @@ public class IndexUpdater {
             throw new IOException("The collection directory (" + collectionFolder + ") does not exist.");
         }
 
+        updateTime = System.currentTimeMillis();
+
         //Execute update index process
         updateIndex(collectionDirectory);
 
         //Detect deleted files and execute the delete index process.
         deleteIndexOfDeletedFiles(metadataMap.keySet(), pathsFromFileList);
+
+        // The metadata must not record changes the index does not have yet.
+        indexWriter.commit();
         updateMetadataFile();
     }
 
@@ -124,7 +134,9 @@ public class IndexUpdater {
      *             : If exiting the index folder generates {@link IOException}
      */
     public void exit() throws IOException {
-        indexWriter.forceMerge(1);
+        if (forceMerge) {
+            indexWriter.forceMerge(1);
+        }
 
         indexWriter.close();
 
@@ -160,7 +172,6 @@ public class IndexUpdater {
             pathsFromFileList.add(file.getCanonicalPath());
             if (indexConstructorUtil.readableXmlFile(file.getCanonicalPath())) {
                 XmlMetadata data = metadataMap.get(file.getCanonicalPath());
-                String md5 = metaFileUtil.generateMD5(file);
 
                 abvsFileNode.reset();
 
@@ -171,7 +182,7 @@ public class IndexUpdater {
                     // If the file has changed, delete the existing document, create a new index document and add it
                     // to the current index.
                     // At the same time, update the metadata for the file.
-                    if (!md5.equals(data.getMd5())) {
+                    if (metaFileUtil.isChanged(file, data)) {
 
                         //Update index corresponding to the xml file.
                         indexWriter.deleteDocuments(new Term(Constants.FIELD_PATH, file.getCanonicalPath()));
@@ -184,8 +195,10 @@ public class IndexUpdater {
                         }
 
                         //Update the metadata map.
-                        XmlMetadata metadata = updateEntry(file, data);
+                        XmlMetadata metadata = metaFileUtil.updateEntry(file, data);
                         metadataMap.replace(file.getCanonicalPath(), metadata);
+                        metaFileUtil.addChange(
+                                new IndexChange(updateTime, IndexChange.Type.UPDATED, file.getCanonicalPath()));
 
                     }
                 } else {
@@ -200,8 +213,10 @@ public class IndexUpdater {
                         LOGGER.log(Level.DEBUG, "New Index is created for newly added file " + file.getCanonicalPath());
                     }
 
-                    XmlMetadata metadata = updateEntry(file, null);
+                    XmlMetadata metadata = metaFileUtil.updateEntry(file, null);
                     metadataMap.put(file.getCanonicalPath(), metadata);
+                    metaFileUtil.addChange(
+                            new IndexChange(updateTime, IndexChange.Type.ADDED, file.getCanonicalPath()));
                 }
             } else if (file.isDirectory()) {
                 updateIndex(file);
@@ -209,29 +224,6 @@ public class IndexUpdater {
         }
     }
 
-    /**
-     * Update the current XmlMetadata object related to the currently reading XML file.
-     *
-     * @param file
-     *            : XML file
-     * @param metadata
-     *            : Existing metadata object
-     * @return : XML metadata object with updated fields.
-     * @throws IOException
-     *             : If getting the file info generates {@link IOException}
-     */
-    private XmlMetadata updateEntry(File file, XmlMetadata metadataArg) throws IOException {
-        XmlMetadata metadata = metadataArg;
-        if (metadata == null) {
-            metadata = new XmlMetadata();
-        }
-        metadata.setFileName(file.getName());
-        metadata.setPath(file.getCanonicalPath());
-        metadata.setMd5(metaFileUtil.generateMD5(file));
-        metadata.setLastModified(sdf.format(file.lastModified()));
-        return metadata;
-    }
-
     /**
      * Delete the index of deleted files.
      *
@@ -245,21 +237,17 @@ public class IndexUpdater {
     private void deleteIndexOfDeletedFiles(Set<String> pathsFromMap, Set<String> pathsFromFileList) throws IOException {
         Set<String> sfm = new HashSet<>(pathsFromMap);
 
-        // If any file has been deleted from the collection, the number of files stored in metadata is higher  than
-        // the actual number of files.
         // With set difference, the paths of deleted files are taken from the stored metadata.
         // Delete the corresponding indexes of each file from the index and as well as remove the entry from the
         // metadata file.
-
-        if (sfm.size() > pathsFromFileList.size()) {
-            sfm.removeAll(pathsFromFileList);
-
-            for (String s : sfm) {
-                metadataMap.remove(s);
-                indexWriter.deleteDocuments(new Term(Constants.FIELD_PATH, s));
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.log(Level.DEBUG, "Index of the deleted file " + s + " was deleted from the index!");
-                }
+        sfm.removeAll(pathsFromFileList);
+
+        for (String s : sfm) {
+            metadataMap.remove(s);
+            indexWriter.deleteDocuments(new Term(Constants.FIELD_PATH, s));
+            metaFileUtil.addChange(new IndexChange(updateTime, IndexChange.Type.DELETED, s));
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.log(Level.DEBUG, "Index of the deleted file " + s + " was deleted from the index!");
             }
         }
     }
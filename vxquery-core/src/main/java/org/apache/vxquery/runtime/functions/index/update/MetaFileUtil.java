@@ -16,23 +16,25 @@
 */
 package org.apache.vxquery.runtime.functions.index.update;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.bind.DatatypeConverter;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 
 import org.apache.log4j.Level;
@@ -43,14 +45,37 @@ import org.apache.log4j.Logger;
  */
 public class MetaFileUtil {
 
+    private static final byte RECORD_INFO = 1;
+    private static final byte RECORD_PUT = 2;
+    private static final byte RECORD_REMOVE = 3;
+    private static final byte RECORD_CHANGE = 4;
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
     private File metaFile;
+    private File legacyMetaFile;
+    private MetadataLog metaLog;
     private static final Logger LOGGER = Logger.getLogger("MetadataFileUtil");
     private String index;
     private String collection;
     private ConcurrentHashMap<String, XmlMetadata> indexMap = new ConcurrentHashMap<>();
+    private List<IndexChange> journal = new ArrayList<>();
+    // State of the metadata file, used to append only what changed
+    private ConcurrentHashMap<String, XmlMetadata> persistedMap;
+    private final Set<String> persistedPaths = new HashSet<>();
+    private String persistedCollection;
+    private String persistedIndex;
+    private int unwrittenChanges;
+    private final boolean useChecksums;
+    private final int journalSize;
+    private final SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
 
     public MetaFileUtil(String indexFolder) {
         this.metaFile = new File(indexFolder + "/" + Constants.META_FILE_NAME);
+        this.legacyMetaFile = new File(indexFolder + "/" + Constants.LEGACY_META_FILE_NAME);
+        this.metaLog = new MetadataLog(metaFile);
+        // Files are compared by size and modification time unless checksums are requested.
+        this.useChecksums = "checksum".equals(System.getProperty("vxquery.index_change_detection", "mtime"));
+        this.journalSize = Integer.parseInt(System.getProperty("vxquery.index_journal_size", "1000"));
     }
 
     /**
@@ -59,7 +84,7 @@ public class MetaFileUtil {
      * @return true if the metadata file is present
      */
     public boolean isMetaFilePresent() {
-        return metaFile.exists();
+        return metaFile.exists() || legacyMetaFile.exists();
     }
 
     /**
@@ -89,18 +114,87 @@ public class MetaFileUtil {
 
     /**
      * Read the metadata file and create an in-memory map containing collection paths and xml files.
+     * Metadata written in the earlier XML format is read as well, and replaced by the binary format on the next write.
      */
     public void readMetadataFile() {
+        if (!metaLog.exists()) {
+            if (legacyMetaFile.exists()) {
+                readLegacyMetadataFile();
+            }
+            return;
+        }
+        try {
+            metaLog.read(new MetadataLog.IRecordHandler() {
+                @Override
+                public void handle(byte type, DataInput in) throws IOException {
+                    replayRecord(type, in);
+                }
+            });
+            for (XmlMetadata metadata : indexMap.values()) {
+                metadata.setDirty(false);
+            }
+            persistedMap = indexMap;
+            persistedCollection = collection;
+            persistedIndex = index;
+            if (metaLog.isDamaged() && LOGGER.isEnabledFor(Level.WARN)) {
+                LOGGER.log(Level.WARN, "Ignoring the incomplete end of the metadata file " + metaFile);
+            }
+        } catch (IOException e) {
+            if (LOGGER.isTraceEnabled()) {
+                LOGGER.log(Level.ERROR, "Could not read the metadata file due to " + e);
+            }
+        }
+    }
+
+    private void replayRecord(byte type, DataInput in) throws IOException {
+        switch (type) {
+            case RECORD_INFO:
+                collection = readString(in);
+                index = readString(in);
+                break;
+            case RECORD_PUT:
+                XmlMetadata metadata = new XmlMetadata();
+                metadata.setPath(in.readUTF());
+                metadata.setFileName(readString(in));
+                metadata.setMd5(readString(in));
+                metadata.setLastModified(readString(in));
+                metadata.setSize(in.readLong());
+                metadata.setModified(in.readLong());
+                indexMap.put(metadata.getPath(), metadata);
+                persistedPaths.add(metadata.getPath());
+                break;
+            case RECORD_REMOVE:
+                String path = in.readUTF();
+                indexMap.remove(path);
+                persistedPaths.remove(path);
+                break;
+            case RECORD_CHANGE:
+                journal.add(new IndexChange(in.readLong(), IndexChange.Type.values()[in.readByte()], in.readUTF()));
+                if (journal.size() > journalSize) {
+                    journal.remove(0);
+                }
+                break;
+            default:
+                throw new IOException("Unknown record type " + type + " in the metadata file " + metaFile);
+        }
+    }
+
+    private void readLegacyMetadataFile() {
         try {
             JAXBContext jaxbContext = JAXBContext.newInstance(VXQueryIndex.class);
             Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
-            XmlMetadataCollection indexes = (XmlMetadataCollection) jaxbUnmarshaller.unmarshal(metaFile);
+            XmlMetadataCollection indexes = (XmlMetadataCollection) jaxbUnmarshaller.unmarshal(legacyMetaFile);
 
             this.collection = indexes.getCollection();
             this.index = indexes.getIndexLocation();
 
-            for (XmlMetadata metadata : indexes.getMetadataList()) {
-                this.indexMap.put(index, metadata);
+            if (indexes.getMetadataList() != null) {
+                for (XmlMetadata metadata : indexes.getMetadataList()) {
+                    this.indexMap.put(metadata.getPath(), metadata);
+                }
+            }
+            if (indexes.getJournal() != null) {
+                this.journal = new ArrayList<>(indexes.getJournal());
             }
         } catch (JAXBException e) {
             if (LOGGER.isTraceEnabled()) {
@@ -110,35 +204,124 @@ public class MetaFileUtil {
     }
 
     /**
-     * Write the content of the ConcurrentHashMap to the xml metadata file.
+     * Write the content of the ConcurrentHashMap to the metadata file.
+     * If the map was read from the file, only the entries that changed since then and the new journal entries are
+     * appended. The file is rewritten when the map was replaced, or when most of its records have been superseded.
      */
     public void writeMetadataToFile() {
-        XmlMetadataCollection xmlMetadataCollection = new XmlMetadataCollection();
-        List<XmlMetadata> metadataList = new ArrayList<>();
+        try {
+            if (persistedMap != indexMap || metaLog.isDamaged()) {
+                rewriteMetadataFile();
+                return;
+            }
 
-        for (Map.Entry<String, XmlMetadata> entry : this.indexMap.entrySet()) {
-            metadataList.add(entry.getValue());
-        }
+            List<XmlMetadata> changed = new ArrayList<>();
+            for (XmlMetadata metadata : indexMap.values()) {
+                if (metadata.isDirty() || !persistedPaths.contains(metadata.getPath())) {
+                    changed.add(metadata);
+                }
+            }
+            List<String> removed = new ArrayList<>();
+            for (String path : persistedPaths) {
+                if (!indexMap.containsKey(path)) {
+                    removed.add(path);
+                }
+            }
+            boolean infoChanged = !Objects.equals(collection, persistedCollection)
+                    || !Objects.equals(index, persistedIndex);
+            int changes = Math.min(unwrittenChanges, journal.size());
 
-        xmlMetadataCollection.setMetadataList(metadataList);
-        xmlMetadataCollection.setCollection(collection);
-        xmlMetadataCollection.setIndexLocation(this.index);
-        try {
-            FileOutputStream fileOutputStream = new FileOutputStream(this.metaFile);
-            JAXBContext jaxbContext = JAXBContext.newInstance(VXQueryIndex.class);
-            Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
-            jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-            jaxbMarshaller.marshal(xmlMetadataCollection, fileOutputStream);
+            int records = metaLog.getRecordCount() + changed.size() + removed.size() + changes + (infoChanged ? 1 : 0);
+            if (records > Math.max(MIN_COMPACTION_RECORDS, 2 * (indexMap.size() + journal.size() + 1))) {
+                rewriteMetadataFile();
+                return;
+            }
+
+            try (MetadataLog.Writer writer = metaLog.append()) {
+                if (infoChanged) {
+                    writeInfo(writer);
+                }
+                for (XmlMetadata metadata : changed) {
+                    writeEntry(writer, metadata);
+                }
+                for (String path : removed) {
+                    writer.startRecord(RECORD_REMOVE).writeUTF(path);
+                    persistedPaths.remove(path);
+                }
+                for (IndexChange change : journal.subList(journal.size() - changes, journal.size())) {
+                    writeChange(writer, change);
+                }
+                writer.commit();
+            }
+            unwrittenChanges = 0;
 
             if (LOGGER.isDebugEnabled()) {
-                LOGGER.log(Level.DEBUG, "Writing metadata file completed successfully!");
+                LOGGER.log(Level.DEBUG, "Appended " + (changed.size() + removed.size()) + " entries to the metadata file");
             }
-        } catch (JAXBException | FileNotFoundException e) {
+        } catch (IOException e) {
             if (LOGGER.isTraceEnabled()) {
-                LOGGER.log(Level.ERROR, "Could not read the XML file due to " + e);
+                LOGGER.log(Level.ERROR, "Could not write the metadata file due to " + e);
+            }
+        }
+    }
+
+    private void rewriteMetadataFile() throws IOException {
+        persistedPaths.clear();
+        try (MetadataLog.Writer writer = metaLog.rewrite()) {
+            writeInfo(writer);
+            for (XmlMetadata metadata : indexMap.values()) {
+                writeEntry(writer, metadata);
+            }
+            for (IndexChange change : journal) {
+                writeChange(writer, change);
             }
+            writer.commit();
+        }
+        persistedMap = indexMap;
+        unwrittenChanges = 0;
+        Files.deleteIfExists(legacyMetaFile.toPath());
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.log(Level.DEBUG, "Writing metadata file completed successfully!");
+        }
+    }
+
+    private void writeInfo(MetadataLog.Writer writer) throws IOException {
+        DataOutput out = writer.startRecord(RECORD_INFO);
+        writeString(out, collection);
+        writeString(out, index);
+        persistedCollection = collection;
+        persistedIndex = index;
+    }
+
+    private void writeEntry(MetadataLog.Writer writer, XmlMetadata metadata) throws IOException {
+        DataOutput out = writer.startRecord(RECORD_PUT);
+        out.writeUTF(metadata.getPath());
+        writeString(out, metadata.getFileName());
+        writeString(out, metadata.getMd5());
+        writeString(out, metadata.getLastModified());
+        out.writeLong(metadata.getSize());
+        out.writeLong(metadata.getModified());
+        metadata.setDirty(false);
+        persistedPaths.add(metadata.getPath());
+    }
+
+    private void writeChange(MetadataLog.Writer writer, IndexChange change) throws IOException {
+        DataOutput out = writer.startRecord(RECORD_CHANGE);
+        out.writeLong(change.getTime());
+        out.writeByte(change.getType().ordinal());
+        out.writeUTF(change.getPath());
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
         }
+    }
 
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
     }
 
     /**
@@ -153,7 +336,13 @@ public class MetaFileUtil {
     public String generateMD5(File file) throws IOException {
         try {
             MessageDigest md = MessageDigest.getInstance("MD5");
-            md.update(Files.readAllBytes(file.toPath()));
+            byte[] buffer = new byte[65536];
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    md.update(buffer, 0, read);
+                }
+            }
             byte[] md5 = md.digest();
             return DatatypeConverter.printHexBinary(md5);
         } catch (NoSuchAlgorithmException e) {
@@ -164,6 +353,90 @@ public class MetaFileUtil {
         }
     }
 
+    /**
+     * Check whether a file has changed since its metadata was recorded.
+     * A file whose size or modification time differs is changed. When checksums are used, a file of the same size
+     * is only changed if its checksum differs, otherwise its modification time decides.
+     * Metadata recorded without size and modification time is compared by checksum.
+     * When the checksum matches, the size and modification time of the file are recorded in the metadata, so the
+     * metadata file holds them after the next write.
+     *
+     * @param file
+     *            : XML file
+     * @param metadata
+     *            : Metadata recorded for the file
+     * @return true if the file has changed
+     * @throws IOException
+     *             : The file is not available
+     */
+    public boolean isChanged(File file, XmlMetadata metadata) throws IOException {
+        boolean recorded = metadata.getSize() != 0 || metadata.getModified() != 0;
+        if (recorded && file.length() != metadata.getSize()) {
+            return true;
+        }
+        if (!recorded || useChecksums) {
+            if (metadata.getMd5() == null || !metadata.getMd5().equals(generateMD5(file))) {
+                return true;
+            }
+            if (!recorded || file.lastModified() != metadata.getModified()) {
+                metadata.setLastModified(sdf.format(file.lastModified()));
+                metadata.setSize(file.length());
+                metadata.setModified(file.lastModified());
+            }
+            return false;
+        }
+        return file.lastModified() != metadata.getModified();
+    }
+
+    /**
+     * Record the current state of a file in its metadata.
+     * The checksum is only computed when files are compared by checksum.
+     *
+     * @param file
+     *            : XML file
+     * @param metadataArg
+     *            : Existing metadata object, or null for a new file
+     * @return XML metadata object with updated fields.
+     * @throws IOException
+     *             : The file is not available
+     */
+    public XmlMetadata updateEntry(File file, XmlMetadata metadataArg) throws IOException {
+        XmlMetadata metadata = metadataArg;
+        if (metadata == null) {
+            metadata = new XmlMetadata();
+        }
+        metadata.setFileName(file.getName());
+        metadata.setPath(file.getCanonicalPath());
+        metadata.setMd5(useChecksums ? generateMD5(file) : null);
+        metadata.setLastModified(sdf.format(file.lastModified()));
+        metadata.setSize(file.length());
+        metadata.setModified(file.lastModified());
+        return metadata;
+    }
+
+    /**
+     * Append an entry to the change journal. Only the latest entries are kept.
+     *
+     * @param change
+     *            : Change made to the index
+     */
+    public void addChange(IndexChange change) {
+        journal.add(change);
+        ++unwrittenChanges;
+        if (journal.size() > journalSize) {
+            journal.subList(0, journal.size() - journalSize).clear();
+        }
+    }
+
+    /**
+     * Get the change journal, oldest entry first.
+     *
+     * @return list of changes made to the index
+     */
+    public List<IndexChange> getJournal() {
+        return journal;
+    }
+
     /**
      * Delete the existing Metadata file.
      *
@@ -171,7 +444,10 @@ public class MetaFileUtil {
      */
     public boolean deleteMetaDataFile() {
         try {
-            Files.delete(Paths.get(metaFile.getCanonicalPath()));
+            Files.deleteIfExists(legacyMetaFile.toPath());
+            metaLog.delete();
+            persistedMap = null;
+            persistedPaths.clear();
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.log(Level.DEBUG, "Metadata file deleted!");
             }
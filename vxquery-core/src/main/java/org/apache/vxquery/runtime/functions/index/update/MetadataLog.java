@@ -0,0 +1,292 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.vxquery.runtime.functions.index.update;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary file of metadata records.
+ * The file starts with a header, followed by records of the form: length, CRC32, type, payload.
+ * The state is restored by replaying the records in order, so an update only appends the records that changed.
+ * A record cut short by a failed write ends the log; the records before it are still read, and the damaged end is
+ * cut off before new records are appended.
+ * Once a log holds mostly superseded records, its owner rewrites it with the current state, which replaces the
+ * old file atomically.
+ * Records only become part of the log once the {@link Writer} is committed.
+ */
+public class MetadataLog {
+    private static final int MAGIC = 0x5658514d;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 12;
+
+    public interface IRecordHandler {
+        /**
+         * Replay one record.
+         *
+         * @param type
+         *            : Record type given when the record was written
+         * @param in
+         *            : Payload of the record
+         */
+        void handle(byte type, DataInput in) throws IOException;
+    }
+
+    private final File file;
+    private int recordCount;
+    private boolean damaged;
+    private long validLength = -1;
+
+    public MetadataLog(File file) {
+        this.file = file;
+    }
+
+    public boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * @return the number of records in the file, as of the last read or write
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return true if the last read stopped at an incomplete or corrupt record, which must not be appended to
+     */
+    public boolean isDamaged() {
+        return damaged;
+    }
+
+    /**
+     * Replay all records of the file in the order they were written.
+     *
+     * @param handler
+     *            : Receives each record
+     * @throws IOException
+     *             : If the file cannot be read or is not a metadata log
+     */
+    public void read(IRecordHandler handler) throws IOException {
+        recordCount = 0;
+        damaged = false;
+        validLength = -1;
+        long fileLength = Files.size(file.toPath());
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported metadata file " + file);
+            }
+            validLength = HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[256];
+            while (true) {
+                int first = in.read();
+                if (first < 0) {
+                    return;
+                }
+                int length;
+                try {
+                    length = first << 24 | in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8
+                            | in.readUnsignedByte();
+                    long checksum = in.readLong();
+                    if (length <= 0 || length > fileLength - validLength - RECORD_HEADER_SIZE) {
+                        damaged = true;
+                        return;
+                    }
+                    if (buffer.length < length) {
+                        buffer = new byte[Math.max(length, buffer.length * 2)];
+                    }
+                    in.readFully(buffer, 0, length);
+                    crc.reset();
+                    crc.update(buffer, 0, length);
+                    if (crc.getValue() != checksum) {
+                        damaged = true;
+                        return;
+                    }
+                } catch (EOFException e) {
+                    damaged = true;
+                    return;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(buffer, 1, length - 1));
+                handler.handle(buffer[0], record);
+                validLength += RECORD_HEADER_SIZE + length;
+                ++recordCount;
+            }
+        }
+    }
+
+    /**
+     * Open the log to add records after the existing ones. A missing file is created.
+     * If the last read found a damaged record, the file is first cut back to the records before it, since records
+     * after the damaged one would not be read.
+     *
+     * @return writer for the new records
+     * @throws IOException
+     *             : If the file cannot be opened
+     */
+    public Writer append() throws IOException {
+        if (!file.exists()) {
+            return rewrite();
+        }
+        if (damaged) {
+            truncate(validLength);
+            damaged = false;
+        }
+        return new Writer(file, new FileOutputStream(file, true), recordCount);
+    }
+
+    /**
+     * Open a new log that replaces the existing file once the writer is committed.
+     *
+     * @return writer for the records of the new log
+     * @throws IOException
+     *             : If the file cannot be created
+     */
+    public Writer rewrite() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        Writer writer = new Writer(tmp, new FileOutputStream(tmp), 0);
+        writer.out.writeInt(MAGIC);
+        writer.out.writeInt(VERSION);
+        return writer;
+    }
+
+    public boolean delete() throws IOException {
+        recordCount = 0;
+        damaged = false;
+        validLength = -1;
+        return Files.deleteIfExists(file.toPath());
+    }
+
+    private void truncate(long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+    }
+
+    /**
+     * Writes records to the log. Nothing is added to the log unless {@link #commit()} succeeds; closing the writer
+     * without a commit discards the records written so far.
+     */
+
+    public class Writer implements Closeable {
+        private final File target;
+        private final FileOutputStream fileOut;
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+        private final DataOutputStream recordOut = new DataOutputStream(record);
+        private final CRC32 crc = new CRC32();
+        private final long startLength;
+        private int count;
+        private boolean committed;
+
+        private Writer(File target, FileOutputStream out, int count) {
+            this.target = target;
+            this.fileOut = out;
+            this.out = new DataOutputStream(new BufferedOutputStream(out, 65536));
+            this.startLength = target.length();
+            this.count = count;
+        }
+
+        /**
+         * Start a new record. The payload is written to the returned output until the next call or
+         * {@link #commit()}.
+         *
+         * @param type
+         *            : Record type passed to the {@link IRecordHandler}
+         * @return output for the payload of the record
+         * @throws IOException
+         *             : If the previous record cannot be written
+         */
+        public DataOutput startRecord(byte type) throws IOException {
+            flushRecord();
+            recordOut.writeByte(type);
+            return recordOut;
+        }
+
+        private void flushRecord() throws IOException {
+            if (record.size() == 0) {
+                return;
+            }
+            byte[] bytes = record.toByteArray();
+            crc.reset();
+            crc.update(bytes, 0, bytes.length);
+            out.writeInt(bytes.length);
+            out.writeLong(crc.getValue());
+            out.write(bytes);
+            record.reset();
+            ++count;
+        }
+
+        /**
+         * Write the last record, make the records durable and, for a rewrite, replace the existing file.
+         *
+         * @throws IOException
+         *             : If the records cannot be written, in which case {@link #close()} discards them
+         */
+        public void commit() throws IOException {
+            flushRecord();
+            out.flush();
+            fileOut.getFD().sync();
+            out.close();
+            if (!target.equals(file)) {
+                Files.move(target.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+            committed = true;
+            recordCount = count;
+            damaged = false;
+            validLength = file.length();
+        }
+
+        /**
+         * Release the file. Without a successful {@link #commit()}, the records of this writer are discarded: the
+         * temporary file of a rewrite is deleted and an append is cut back to where it started.
+         */
+        @Override
+        public void close() throws IOException {
+            if (committed) {
+                return;
+            }
+            try {
+                out.close();
+            } finally {
+                if (target.equals(file)) {
+                    truncate(startLength);
+                } else {
+                    Files.deleteIfExists(target.toPath());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.vxquery.runtime.functions.index.update;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hyracks.data.std.primitive.UTF8StringPointable;
+import org.apache.hyracks.util.string.UTF8StringUtil;
+import org.apache.vxquery.datamodel.accessors.SequencePointable;
+import org.apache.vxquery.datamodel.accessors.TaggedValuePointable;
+import org.apache.vxquery.datamodel.accessors.atomic.CodedQNamePointable;
+import org.apache.vxquery.datamodel.accessors.nodes.DocumentNodePointable;
+import org.apache.vxquery.datamodel.accessors.nodes.ElementNodePointable;
+import org.apache.vxquery.datamodel.accessors.nodes.NodeTreePointable;
+import org.apache.vxquery.datamodel.values.ValueTag;
+
+/**
+ * Structural summary of a collection: the distinct element paths of its XML files, and which of them occur in each
+ * file. A path is the sequence of local names from the root element down, such as "/site/people/person".
+ * Files are identified by their path relative to the collection directory, and are only described by the summary
+ * while their size and modification time are the recorded ones.
+ */
+public class PathSummary {
+    private static final byte RECORD_PATH = 1;
+    private static final byte RECORD_FILE = 2;
+
+    private final List<String> paths = new ArrayList<>();
+    private final Map<String, Integer> pathIds = new HashMap<>();
+    private final Map<String, FileEntry> files = new HashMap<>();
+
+    private static class FileEntry {
+        private final long size;
+        private final long modified;
+        private final BitSet paths;
+
+        FileEntry(long size, long modified, BitSet paths) {
+            this.size = size;
+            this.modified = modified;
+            this.paths = paths;
+        }
+    }
+
+    /**
+     * Record the element paths of a file.
+     *
+     * @param relativePath
+     *            : Path of the file relative to the collection directory
+     * @param file
+     *            : The file, whose size and modification time are recorded
+     * @param elementPaths
+     *            : Element paths of the file
+     */
+    public synchronized void addFile(String relativePath, File file, Set<String> elementPaths) {
+        BitSet bits = new BitSet();
+        for (String path : elementPaths) {
+            Integer id = pathIds.get(path);
+            if (id == null) {
+                id = paths.size();
+                paths.add(path);
+                pathIds.put(path, id);
+            }
+            bits.set(id);
+        }
+        files.put(relativePath, new FileEntry(file.length(), file.lastModified(), bits));
+    }
+
+    public int getPathCount() {
+        return paths.size();
+    }
+
+    public int getFileCount() {
+        return files.size();
+    }
+
+    /**
+     * Find the recorded paths that match a child path from the root element.
+     *
+     * @param localNames
+     *            : Local name of each step, null for any name
+     * @return ids of the paths with exactly these steps
+     */
+    public BitSet getMatchingPaths(List<String> localNames) {
+        BitSet matching = new BitSet();
+        for (int id = 0; id < paths.size(); ++id) {
+            String[] steps = paths.get(id).substring(1).split("/");
+            if (steps.length != localNames.size()) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < steps.length && matches; ++i) {
+                matches = localNames.get(i) == null || localNames.get(i).equals(steps[i]);
+            }
+            if (matches) {
+                matching.set(id);
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Check whether a file may contain any of the given paths. Files that are not in the summary, or that changed
+     * since it was built, may contain any path.
+     *
+     * @param relativePath
+     *            : Path of the file relative to the collection directory
+     * @param file
+     *            : The file
+     * @param matchingPaths
+     *            : Path ids returned by {@link #getMatchingPaths(List)}
+     * @return false if the file certainly has none of the paths
+     */
+    public boolean mayContain(String relativePath, File file, BitSet matchingPaths) {
+        FileEntry entry = files.get(relativePath);
+        if (entry == null || entry.size != file.length() || entry.modified != file.lastModified()) {
+            return true;
+        }
+        return entry.paths.intersects(matchingPaths);
+    }
+
+    public synchronized void write(File summaryFile) throws IOException {
+        try (MetadataLog.Writer writer = new MetadataLog(summaryFile).rewrite()) {
+            for (String path : paths) {
+                writer.startRecord(RECORD_PATH).writeUTF(path);
+            }
+            for (Map.Entry<String, FileEntry> entry : files.entrySet()) {
+                DataOutput out = writer.startRecord(RECORD_FILE);
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().size);
+                out.writeLong(entry.getValue().modified);
+                long[] words = entry.getValue().paths.toLongArray();
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+            writer.commit();
+        }
+    }
+
+    /**
+     * Read a summary written by {@link #write(File)}.
+     *
+     * @param summaryFile
+     *            : The summary file
+     * @return the summary, or null if there is no summary file
+     * @throws IOException
+     *             : If the summary cannot be read
+     */
+    public static PathSummary read(File summaryFile) throws IOException {
+        MetadataLog log = new MetadataLog(summaryFile);
+        if (!log.exists()) {
+            return null;
+        }
+        final PathSummary summary = new PathSummary();
+        log.read(new MetadataLog.IRecordHandler() {
+            @Override
+            public void handle(byte type, DataInput in) throws IOException {
+                if (type == RECORD_PATH) {
+                    String path = in.readUTF();
+                    summary.pathIds.put(path, summary.paths.size());
+                    summary.paths.add(path);
+                } else if (type == RECORD_FILE) {
+                    String relativePath = in.readUTF();
+                    long size = in.readLong();
+                    long modified = in.readLong();
+                    long[] words = new long[in.readInt()];
+                    for (int i = 0; i < words.length; ++i) {
+                        words[i] = in.readLong();
+                    }
+                    summary.files.put(relativePath, new FileEntry(size, modified, BitSet.valueOf(words)));
+                }
+            }
+        });
+        // A summary that misses files is still correct, since unknown files are never pruned.
+        return summary;
+    }
+
+    /**
+     * Collects the element paths of parsed documents.
+     * A collector is not thread safe.
+     */
+    public static class ElementPathCollector {
+        private final NodeTreePointable ntp = (NodeTreePointable) NodeTreePointable.FACTORY.createPointable();
+        private final DocumentNodePointable dnp = (DocumentNodePointable) DocumentNodePointable.FACTORY
+                .createPointable();
+        private final ElementNodePointable enp = (ElementNodePointable) ElementNodePointable.FACTORY
+                .createPointable();
+        private final CodedQNamePointable cqp = (CodedQNamePointable) CodedQNamePointable.FACTORY.createPointable();
+        private final UTF8StringPointable stringp = (UTF8StringPointable) UTF8StringPointable.FACTORY
+                .createPointable();
+        private final List<SequencePointable> sequences = new ArrayList<>();
+        private final List<TaggedValuePointable> items = new ArrayList<>();
+        private final Map<Integer, String> names = new HashMap<>();
+
+        /**
+         * @param nodeTree
+         *            : Node tree of a document
+         * @return the element paths of the document
+         */
+        public Set<String> collect(TaggedValuePointable nodeTree) {
+            Set<String> elementPaths = new HashSet<>();
+            if (nodeTree.getTag() != ValueTag.NODE_TREE_TAG) {
+                return elementPaths;
+            }
+            nodeTree.getValue(ntp);
+            names.clear();
+            TaggedValuePointable root = getItem(0);
+            ntp.getRootNode(root);
+            if (root.getTag() == ValueTag.DOCUMENT_NODE_TAG) {
+                root.getValue(dnp);
+                SequencePointable content = getSequence(0);
+                dnp.getContent(ntp, content);
+                collectChildren(content, "", 0, elementPaths);
+            } else if (root.getTag() == ValueTag.ELEMENT_NODE_TAG) {
+                collectElement(root, "", 0, elementPaths);
+            }
+            return elementPaths;
+        }
+
+        private void collectChildren(SequencePointable children, String parentPath, int level,
+                Set<String> elementPaths) {
+            TaggedValuePointable item = getItem(level + 1);
+            for (int i = 0; i < children.getEntryCount(); ++i) {
+                children.getEntry(i, item);
+                if (item.getTag() == ValueTag.ELEMENT_NODE_TAG) {
+                    collectElement(item, parentPath, level + 1, elementPaths);
+                }
+            }
+        }
+
+        private void collectElement(TaggedValuePointable element, String parentPath, int level,
+                Set<String> elementPaths) {
+            element.getValue(enp);
+            enp.getName(cqp);
+            String path = parentPath + "/" + getName(cqp.getLocalCode());
+            elementPaths.add(path);
+            if (enp.childrenChunkExists()) {
+                SequencePointable children = getSequence(level);
+                enp.getChildrenSequence(ntp, children);
+                collectChildren(children, path, level, elementPaths);
+            }
+        }
+
+        private String getName(int code) {
+            String name = names.get(code);
+            if (name == null) {
+                ntp.getString(code, stringp);
+                StringBuilder sb = new StringBuilder();
+                UTF8StringUtil.toString(sb, stringp.getByteArray(), stringp.getStartOffset());
+                name = sb.toString();
+                names.put(code, name);
+            }
+            return name;
+        }
+
+        private SequencePointable getSequence(int level) {
+            while (sequences.size() <= level) {
+                sequences.add((SequencePointable) SequencePointable.FACTORY.createPointable());
+            }
+            return sequences.get(level);
+        }
+
+        private TaggedValuePointable getItem(int level) {
+            while (items.size() <= level) {
+                items.add((TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable());
+            }
+            return items.get(level);
+        }
+    }
+}
@@ -29,6 +29,8 @@ import javax.xml.bind.annotation.XmlRootElement;
  * - MD5 Checksum String
  * - File name
  * - Last modified date
+ * - File size and modification time, used to detect changed files
+ * Every setter marks the metadata as not yet written to the metadata file.
  */
 @XmlRootElement(name = "file")
 @XmlAccessorType(XmlAccessType.FIELD)
@@ -39,6 +41,9 @@ public class XmlMetadata implements Serializable {
     private String md5;
     private String fileName;
     private String lastModified;
+    private long size;
+    private long modified;
+    private transient boolean dirty = true;
 
     public String getPath() {
         return path;
@@ -46,6 +51,7 @@ public class XmlMetadata implements Serializable {
 
     public void setPath(String path) {
         this.path = path;
+        dirty = true;
     }
 
     public String getMd5() {
@@ -54,6 +60,7 @@ public class XmlMetadata implements Serializable {
 
     public void setMd5(String md5) {
         this.md5 = md5;
+        dirty = true;
     }
 
     public String getFileName() {
@@ -62,6 +69,7 @@ public class XmlMetadata implements Serializable {
 
     public void setFileName(String fileName) {
         this.fileName = fileName;
+        dirty = true;
     }
 
     public String getLastModified() {
@@ -70,5 +78,38 @@ public class XmlMetadata implements Serializable {
 
     public void setLastModified(String lastModified) {
         this.lastModified = lastModified;
+        dirty = true;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+        dirty = true;
+    }
+
+    /**
+     * @return modification time of the file in milliseconds since the epoch, or 0 if it was not recorded
+     */
+    public long getModified() {
+        return modified;
+    }
+
+    public void setModified(long modified) {
+        this.modified = modified;
+        dirty = true;
+    }
+
+    /**
+     * @return true if the metadata changed since it was last written to or read from the metadata file
+     */
+    boolean isDirty() {
+        return dirty;
+    }
+
+    void setDirty(boolean dirty) {
+        this.dirty = dirty;
     }
 }
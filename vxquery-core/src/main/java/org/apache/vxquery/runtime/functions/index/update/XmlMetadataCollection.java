@@ -20,6 +20,7 @@ import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
 import java.util.List;
 
@@ -40,6 +41,10 @@ public class XmlMetadataCollection {
     @XmlElement(name = "file", type = XmlMetadata.class)
     private List<XmlMetadata> metadataList;
 
+    @XmlElementWrapper(name = "journal")
+    @XmlElement(name = "change", type = IndexChange.class)
+    private List<IndexChange> journal;
+
     public List<XmlMetadata> getMetadataList() {
         return metadataList;
     }
@@ -63,4 +68,12 @@ public class XmlMetadataCollection {
     public void setCollection(String collection) {
         this.collection = collection;
     }
+
+    public List<IndexChange> getJournal() {
+        return journal;
+    }
+
+    public void setJournal(List<IndexChange> journal) {
+        this.journal = journal;
+    }
 }
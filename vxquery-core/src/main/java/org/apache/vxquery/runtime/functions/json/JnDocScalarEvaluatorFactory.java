@@ -34,7 +34,7 @@ import org.apache.vxquery.exceptions.SystemException;
 import org.apache.vxquery.jsonparser.JSONParser;
 import org.apache.vxquery.runtime.functions.base.AbstractTaggedValueArgumentScalarEvaluator;
 import org.apache.vxquery.runtime.functions.base.AbstractTaggedValueArgumentScalarEvaluatorFactory;
-import org.apache.vxquery.runtime.functions.util.FunctionHelper;
+import org.apache.vxquery.runtime.functions.util.DocumentCache;
 import org.apache.vxquery.xmlparser.IParser;
 
 public class JnDocScalarEvaluatorFactory extends AbstractTaggedValueArgumentScalarEvaluatorFactory {
@@ -52,6 +52,8 @@ public class JnDocScalarEvaluatorFactory extends AbstractTaggedValueArgumentScal
         final ArrayBackedValueStorage abvs = new ArrayBackedValueStorage();
         final ByteBufferInputStream bbis = new ByteBufferInputStream();
         final DataInputStream di = new DataInputStream(bbis);
+        final IParser parser = new JSONParser();
+        final DocumentCache documentCache = DocumentCache.getInstance();
 
         return new AbstractTaggedValueArgumentScalarEvaluator(args) {
 
@@ -63,12 +65,11 @@ public class JnDocScalarEvaluatorFactory extends AbstractTaggedValueArgumentScal
                 }
                 tvp.getValue(stringp);
                 try {
-                    IParser parser = new JSONParser();
-                    FunctionHelper.readInDocFromPointable(stringp, abvs, parser);
+                    documentCache.read(stringp.toString(), DocumentCache.KIND_JSON, parser, null, abvs,
+                            result);
                 } catch (IOException e) {
                     throw new SystemException(ErrorCode.FODC0002, e);
                 }
-                result.set(abvs);
             }
 
         };
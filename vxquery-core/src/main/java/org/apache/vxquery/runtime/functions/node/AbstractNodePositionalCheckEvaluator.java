@@ -24,6 +24,7 @@ import org.apache.vxquery.datamodel.values.XDMConstants;
 import org.apache.vxquery.exceptions.ErrorCode;
 import org.apache.vxquery.exceptions.SystemException;
 import org.apache.vxquery.runtime.functions.base.AbstractTaggedValueArgumentScalarEvaluator;
+import org.apache.vxquery.runtime.functions.nodeid.NodeIdSorter;
 import org.apache.vxquery.runtime.functions.util.FunctionHelper;
 
 import org.apache.hyracks.algebricks.runtime.base.IScalarEvaluator;
@@ -37,6 +38,9 @@ public abstract class AbstractNodePositionalCheckEvaluator extends AbstractTagge
 
     private final TypedPointables tp = new TypedPointables();
 
+    private final TaggedValuePointable rootTvp = (TaggedValuePointable) TaggedValuePointable.FACTORY
+            .createPointable();
+
     @Override
     protected void evaluate(TaggedValuePointable[] args, IPointable result) throws SystemException {
 
@@ -47,12 +51,20 @@ public abstract class AbstractNodePositionalCheckEvaluator extends AbstractTagge
             throw new SystemException(ErrorCode.FORG0006);
         }
 
-        if (nodeCompare(FunctionHelper.getLocalNodeId(args[0], tp), FunctionHelper.getLocalNodeId(args[1], tp))) {
+        if (nodeCompare(getNodeLabel(args[0]), getNodeLabel(args[1]))) {
             XDMConstants.setTrue(result);
         } else {
             XDMConstants.setFalse(result);
         }
     }
 
-    abstract protected boolean nodeCompare(int firstId, int secondId);
+    /**
+     * @return the document order key of a node from its tree id and local node id, or -1 without node ids
+     */
+    private long getNodeLabel(TaggedValuePointable node) {
+        int localNodeId = FunctionHelper.getLocalNodeId(node, tp, rootTvp);
+        return localNodeId < 0 ? -1 : NodeIdSorter.getKey(tp.ntp.getRootNodeId(), localNodeId);
+    }
+
+    abstract protected boolean nodeCompare(long firstId, long secondId);
 }
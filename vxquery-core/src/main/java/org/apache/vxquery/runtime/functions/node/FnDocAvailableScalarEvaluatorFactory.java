@@ -24,6 +24,7 @@ import org.apache.hyracks.api.context.IHyracksTaskContext;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
 import org.apache.hyracks.data.std.api.IPointable;
 import org.apache.hyracks.data.std.primitive.UTF8StringPointable;
+import org.apache.hyracks.data.std.primitive.VoidPointable;
 import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
 import org.apache.hyracks.dataflow.common.comm.util.ByteBufferInputStream;
 import org.apache.vxquery.datamodel.accessors.SequencePointable;
@@ -34,7 +35,7 @@ import org.apache.vxquery.exceptions.ErrorCode;
 import org.apache.vxquery.exceptions.SystemException;
 import org.apache.vxquery.runtime.functions.base.AbstractTaggedValueArgumentScalarEvaluator;
 import org.apache.vxquery.runtime.functions.base.AbstractTaggedValueArgumentScalarEvaluatorFactory;
-import org.apache.vxquery.runtime.functions.util.FunctionHelper;
+import org.apache.vxquery.runtime.functions.util.DocumentCache;
 import org.apache.vxquery.xmlparser.IParser;
 import org.apache.vxquery.xmlparser.ITreeNodeIdProvider;
 import org.apache.vxquery.xmlparser.TreeNodeIdProvider;
@@ -58,8 +59,12 @@ public class FnDocAvailableScalarEvaluatorFactory extends AbstractTaggedValueArg
         final int partition = ctx.getTaskAttemptId().getTaskId().getPartition();
         final ITreeNodeIdProvider nodeIdProvider = new TreeNodeIdProvider((short) partition);
         final String nodeId = ctx.getJobletContext().getApplicationContext().getNodeId();
+        final DocumentCache documentCache = DocumentCache.getInstance();
+        final VoidPointable document = (VoidPointable) VoidPointable.FACTORY.createPointable();
 
         return new AbstractTaggedValueArgumentScalarEvaluator(args) {
+            private IParser parser;
+
             @Override
             protected void evaluate(TaggedValuePointable[] args, IPointable result) throws SystemException {
                 TaggedValuePointable tvp = args[0];
@@ -77,8 +82,11 @@ public class FnDocAvailableScalarEvaluatorFactory extends AbstractTaggedValueArg
                 }
                 tvp.getValue(stringp);
                 try {
-                    IParser parser = new XMLParser(false, nodeIdProvider, nodeId);
-                    FunctionHelper.readInDocFromPointable(stringp, abvs, parser);
+                    if (parser == null) {
+                        parser = new XMLParser(false, nodeIdProvider, nodeId);
+                    }
+                    documentCache.read(stringp.toString(), DocumentCache.KIND_XML, parser, null, abvs,
+                            document);
                     XDMConstants.setTrue(result);
                 } catch (Exception e) {
                     XDMConstants.setFalse(result);
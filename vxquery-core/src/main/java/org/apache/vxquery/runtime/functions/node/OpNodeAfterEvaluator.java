@@ -26,7 +26,7 @@ public class OpNodeAfterEvaluator extends AbstractNodePositionalCheckEvaluator {
     }
 
     @Override
-    protected boolean nodeCompare(int firstId, int secondId) {
+    protected boolean nodeCompare(long firstId, long secondId) {
         return (firstId > secondId);
     }
 
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.runtime.functions.nodeid;
+
+/**
+ * Sorts the positions of sequence items in document order. Each item has a key made of its tree id and its local node
+ * id, which the parser assigns in document order. The keys are sorted with a stable LSD radix sort over primitive
+ * arrays, so equal nodes keep their input order. Keys added in order are not sorted again.
+ * A sorter is not thread safe and is reused between sequences.
+ */
+public class NodeIdSorter {
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int DIGIT_MASK = RADIX - 1;
+    private static final int INITIAL_SIZE = 16;
+
+    private long[] keys = new long[INITIAL_SIZE];
+    private int[] positions = new int[INITIAL_SIZE];
+    private long[] keyBuffer = new long[INITIAL_SIZE];
+    private int[] positionBuffer = new int[INITIAL_SIZE];
+    private final int[] counts = new int[RADIX];
+    private int size;
+    private boolean ordered;
+
+    /**
+     * @param treeId
+     *            : Id of the node tree, shared by all nodes of a document
+     * @param localNodeId
+     *            : Id of the node in its tree
+     * @return the document order key of a node
+     */
+    public static long getKey(int treeId, int localNodeId) {
+        return ((long) treeId << 32) | (localNodeId & 0xFFFFFFFFL);
+    }
+
+    public void reset() {
+        size = 0;
+        ordered = true;
+    }
+
+    public void add(long key, int position) {
+        if (size == keys.length) {
+            grow();
+        }
+        if (size > 0 && key < keys[size - 1]) {
+            ordered = false;
+        }
+        keys[size] = key;
+        positions[size] = position;
+        ++size;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return true if the keys were added in document order, in which case {@link #sort()} does not move them
+     */
+    public boolean isOrderedInput() {
+        return ordered;
+    }
+
+    /**
+     * Sort the keys added since the last reset. Call once per reset.
+     */
+    public void sort() {
+        if (ordered) {
+            return;
+        }
+        for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+            sortDigit(shift);
+        }
+    }
+
+    /**
+     * @return the input position of the i-th item in document order
+     */
+    public int getPosition(int i) {
+        return positions[i];
+    }
+
+    /**
+     * @return true if the i-th item in document order has the same key as the item before it
+     */
+    public boolean hasPreviousKey(int i) {
+        return i > 0 && keys[i] == keys[i - 1];
+    }
+
+    /**
+     * One counting sort pass on the digit at shift. The sign bit is flipped so negative keys come first. A pass is
+     * skipped when all keys have the same digit, which is common for the high digits of tree ids.
+     */
+    private void sortDigit(int shift) {
+        for (int d = 0; d < RADIX; ++d) {
+            counts[d] = 0;
+        }
+        for (int i = 0; i < size; ++i) {
+            ++counts[getDigit(keys[i], shift)];
+        }
+        if (counts[getDigit(keys[0], shift)] == size) {
+            return;
+        }
+        int offset = 0;
+        for (int d = 0; d < RADIX; ++d) {
+            int count = counts[d];
+            counts[d] = offset;
+            offset += count;
+        }
+        for (int i = 0; i < size; ++i) {
+            int target = counts[getDigit(keys[i], shift)]++;
+            keyBuffer[target] = keys[i];
+            positionBuffer[target] = positions[i];
+        }
+        long[] tmpKeys = keys;
+        keys = keyBuffer;
+        keyBuffer = tmpKeys;
+        int[] tmpPositions = positions;
+        positions = positionBuffer;
+        positionBuffer = tmpPositions;
+    }
+
+    private static int getDigit(long key, int shift) {
+        return (int) ((key ^ Long.MIN_VALUE) >>> shift) & DIGIT_MASK;
+    }
+
+    private void grow() {
+        int newSize = keys.length * 2;
+        long[] newKeys = new long[newSize];
+        System.arraycopy(keys, 0, newKeys, 0, size);
+        keys = newKeys;
+        int[] newPositions = new int[newSize];
+        System.arraycopy(positions, 0, newPositions, 0, size);
+        positions = newPositions;
+        keyBuffer = new long[newSize];
+        positionBuffer = new int[newSize];
+    }
+}
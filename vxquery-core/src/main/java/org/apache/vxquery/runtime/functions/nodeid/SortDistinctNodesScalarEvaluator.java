@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.runtime.functions.nodeid;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.apache.hyracks.algebricks.runtime.base.IScalarEvaluator;
+import org.apache.hyracks.data.std.api.IPointable;
+import org.apache.hyracks.data.std.primitive.VoidPointable;
+import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
+import org.apache.vxquery.datamodel.accessors.SequencePointable;
+import org.apache.vxquery.datamodel.accessors.TaggedValuePointable;
+import org.apache.vxquery.datamodel.accessors.TypedPointables;
+import org.apache.vxquery.datamodel.builders.sequence.SequenceBuilder;
+import org.apache.vxquery.datamodel.values.ValueTag;
+import org.apache.vxquery.exceptions.ErrorCode;
+import org.apache.vxquery.exceptions.SystemException;
+import org.apache.vxquery.runtime.functions.base.AbstractTaggedValueArgumentScalarEvaluator;
+import org.apache.vxquery.runtime.functions.util.FunctionHelper;
+
+/**
+ * Puts a sequence of nodes in document order and/or removes duplicate nodes, using the tree id and local node id of
+ * each node. Sequences that hold atomic values, or nodes without ids (such as constructed nodes), are returned
+ * unchanged. A sequence that already has the requested order is returned without copying.
+ */
+public class SortDistinctNodesScalarEvaluator extends AbstractTaggedValueArgumentScalarEvaluator {
+    private final boolean sort;
+    private final boolean distinct;
+    private final ArrayBackedValueStorage abvs = new ArrayBackedValueStorage();
+    private final SequenceBuilder sb = new SequenceBuilder();
+    private final SequencePointable seq = (SequencePointable) SequencePointable.FACTORY.createPointable();
+    private final TaggedValuePointable itemTvp = (TaggedValuePointable) TaggedValuePointable.FACTORY
+            .createPointable();
+    private final TaggedValuePointable rootTvp = (TaggedValuePointable) TaggedValuePointable.FACTORY
+            .createPointable();
+    private final VoidPointable p1 = (VoidPointable) VoidPointable.FACTORY.createPointable();
+    private final VoidPointable p2 = (VoidPointable) VoidPointable.FACTORY.createPointable();
+    private final TypedPointables tp = new TypedPointables();
+    private final NodeIdSorter sorter = new NodeIdSorter();
+    private final BitSet duplicates = new BitSet();
+
+    /**
+     * @param args
+     *            : Evaluator of the sequence
+     * @param sort
+     *            : Put the nodes in document order
+     * @param distinct
+     *            : Remove duplicate nodes
+     */
+    public SortDistinctNodesScalarEvaluator(IScalarEvaluator[] args, boolean sort, boolean distinct) {
+        super(args);
+        this.sort = sort;
+        this.distinct = distinct;
+    }
+
+    @Override
+    protected void evaluate(TaggedValuePointable[] args, IPointable result) throws SystemException {
+        TaggedValuePointable tvp = args[0];
+        if (tvp.getTag() != ValueTag.SEQUENCE_TAG) {
+            result.set(tvp);
+            return;
+        }
+        tvp.getValue(seq);
+        int seqLen = seq.getEntryCount();
+        if (seqLen < 2 || !readKeys(seqLen)) {
+            result.set(tvp);
+            return;
+        }
+        sorter.sort();
+        duplicates.clear();
+        if (distinct) {
+            findDuplicates();
+        }
+        if ((!sort || sorter.isOrderedInput()) && duplicates.isEmpty()) {
+            result.set(tvp);
+            return;
+        }
+        try {
+            abvs.reset();
+            sb.reset(abvs);
+            for (int i = 0; i < seqLen; ++i) {
+                int position = sort ? sorter.getPosition(i) : i;
+                if (!duplicates.get(position)) {
+                    seq.getEntry(position, p1);
+                    sb.addItem(p1);
+                }
+            }
+            sb.finish();
+            result.set(abvs);
+        } catch (IOException e) {
+            throw new SystemException(ErrorCode.SYSE0001, e);
+        }
+    }
+
+    /**
+     * Add the key of each item to the sorter.
+     *
+     * @return false if an item is not a node with ids
+     */
+    private boolean readKeys(int seqLen) {
+        sorter.reset();
+        for (int i = 0; i < seqLen; ++i) {
+            seq.getEntry(i, itemTvp);
+            if (itemTvp.getTag() != ValueTag.NODE_TREE_TAG) {
+                return false;
+            }
+            int localNodeId = FunctionHelper.getLocalNodeId(itemTvp, tp, rootTvp);
+            if (localNodeId < 0 || !tp.ntp.nodeIdExists()) {
+                return false;
+            }
+            sorter.add(NodeIdSorter.getKey(tp.ntp.getRootNodeId(), localNodeId), i);
+        }
+        return true;
+    }
+
+    /**
+     * Mark every node that is the same as a node before it in the input. Nodes with equal keys are only the same if
+     * their bytes are, so a reused tree id never removes a node.
+     */
+    private void findDuplicates() {
+        int first = 0;
+        for (int i = 1; i < sorter.getSize(); ++i) {
+            if (!sorter.hasPreviousKey(i)) {
+                first = i;
+                continue;
+            }
+            seq.getEntry(sorter.getPosition(first), p1);
+            seq.getEntry(sorter.getPosition(i), p2);
+            if (isEqual(p1, p2)) {
+                duplicates.set(sorter.getPosition(i));
+            }
+        }
+    }
+
+    private static boolean isEqual(IPointable p1, IPointable p2) {
+        if (p1.getLength() != p2.getLength()) {
+            return false;
+        }
+        byte[] bytes1 = p1.getByteArray();
+        byte[] bytes2 = p2.getByteArray();
+        for (int i = 0; i < p1.getLength(); ++i) {
+            if (bytes1[p1.getStartOffset() + i] != bytes2[p2.getStartOffset() + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -17,6 +17,7 @@
 package org.apache.vxquery.runtime.functions.sequence;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.apache.hyracks.algebricks.runtime.base.IScalarEvaluator;
 import org.apache.hyracks.algebricks.runtime.base.IScalarEvaluatorFactory;
@@ -24,16 +25,17 @@ import org.apache.hyracks.api.context.IHyracksTaskContext;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
 import org.apache.hyracks.data.std.api.IPointable;
 import org.apache.hyracks.data.std.primitive.UTF8StringPointable;
-import org.apache.hyracks.data.std.primitive.VoidPointable;
 import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
 import org.apache.vxquery.context.DynamicContext;
 import org.apache.vxquery.datamodel.accessors.SequencePointable;
 import org.apache.vxquery.datamodel.accessors.TaggedValuePointable;
 import org.apache.vxquery.datamodel.accessors.TypedPointables;
+import org.apache.vxquery.datamodel.accessors.atomic.XSDateTimePointable;
 import org.apache.vxquery.datamodel.builders.sequence.SequenceBuilder;
 import org.apache.vxquery.datamodel.values.ValueTag;
 import org.apache.vxquery.exceptions.ErrorCode;
 import org.apache.vxquery.exceptions.SystemException;
+import org.apache.vxquery.runtime.factory.hashfunction.TaggedValueHasher;
 import org.apache.vxquery.runtime.functions.base.AbstractTaggedValueArgumentScalarEvaluator;
 import org.apache.vxquery.runtime.functions.base.AbstractTaggedValueArgumentScalarEvaluatorFactory;
 import org.apache.vxquery.runtime.functions.comparison.AbstractValueComparisonOperation;
@@ -57,12 +59,17 @@ public class FnDistinctValuesScalarEvaluatorFactory extends AbstractTaggedValueA
         final AbstractValueComparisonOperation aOp = new ValueEqComparisonOperation();
         final TaggedValuePointable tvpDistinct = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
         final TaggedValuePointable tvpCheck = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
-        final VoidPointable p = (VoidPointable) VoidPointable.FACTORY.createPointable();
         final UTF8StringPointable stringp = (UTF8StringPointable) UTF8StringPointable.FACTORY.createPointable();
+        final XSDateTimePointable ctxDatetimep = (XSDateTimePointable) XSDateTimePointable.FACTORY.createPointable();
+        final TaggedValueHasher hasher = new TaggedValueHasher();
         final TypedPointables tp1 = new TypedPointables();
         final TypedPointables tp2 = new TypedPointables();
 
         return new AbstractTaggedValueArgumentScalarEvaluator(args) {
+            // Open addressing table of the distinct entries seen so far, along with their hash codes.
+            private int[] entries = new int[0];
+            private int[] hashes = new int[0];
+
             @Override
             protected void evaluate(TaggedValuePointable[] args, IPointable result) throws SystemException {
                 try {
@@ -82,27 +89,27 @@ public class FnDistinctValuesScalarEvaluatorFactory extends AbstractTaggedValueA
                     if (tvp1.getTag() == ValueTag.SEQUENCE_TAG) {
                         tvp1.getValue(seq);
                         int seqLen = seq.getEntryCount();
+                        int mask = resetTable(seqLen);
+                        dCtx.getCurrentDateTime(ctxDatetimep);
 
-                        // Add remaining distinct item.
-                        boolean found = false;
+                        // Add the first occurrence of each distinct item.
                         for (int j = 0; j < seqLen; ++j) {
-                            seq.getEntry(j, p);
-                            tvpDistinct.set(p.getByteArray(), p.getStartOffset(), p.getLength());
-
-                            // Check if item is distinct.
-                            if (j + 1 < seqLen) {
-                                for (int k = j + 1; k < seqLen; ++k) {
-                                    seq.getEntry(k, p);
-                                    tvpCheck.set(p.getByteArray(), p.getStartOffset(), p.getLength());
-                                    if (FunctionHelper.compareTaggedValues(aOp, tvpDistinct, tvpCheck, dCtx, tp1, tp2)) {
-                                        found = true;
-                                        break;
-                                    }
+                            seq.getEntry(j, tvpDistinct);
+                            int hash = hasher.hash(tvpDistinct, ctxDatetimep, 0);
+                            int slot = hash & mask;
+                            boolean found = false;
+                            while (!found && entries[slot] >= 0) {
+                                if (hashes[slot] == hash) {
+                                    seq.getEntry(entries[slot], tvpCheck);
+                                    found = isEqual(tvpDistinct, tvpCheck);
                                 }
+                                slot = (slot + 1) & mask;
                             }
 
                             // Add distinct item.
                             if (!found) {
+                                entries[slot] = j;
+                                hashes[slot] = hash;
                                 sb.addItem(tvpDistinct);
                             }
                         }
@@ -115,6 +122,41 @@ public class FnDistinctValuesScalarEvaluatorFactory extends AbstractTaggedValueA
                     throw new SystemException(ErrorCode.SYSE0001);
                 }
             }
+
+            private int resetTable(int itemCount) {
+                int size = Integer.highestOneBit(Math.max(itemCount, 1)) << 2;
+                if (entries.length < size) {
+                    entries = new int[size];
+                    hashes = new int[size];
+                }
+                Arrays.fill(entries, 0, size, -1);
+                return size - 1;
+            }
+
+            private boolean isEqual(TaggedValuePointable tvp1, TaggedValuePointable tvp2) {
+                // Values that cannot be compared are distinct, and NaN is equal to itself.
+                if (isNaN(tvp1, tp1) && isNaN(tvp2, tp2)) {
+                    return true;
+                }
+                try {
+                    return FunctionHelper.compareTaggedValues(aOp, tvp1, tvp2, dCtx, tp1, tp2);
+                } catch (SystemException e) {
+                    return false;
+                }
+            }
         };
     }
+
+    private static boolean isNaN(TaggedValuePointable tvp, TypedPointables tp) {
+        switch (tvp.getTag()) {
+            case ValueTag.XS_DOUBLE_TAG:
+                tvp.getValue(tp.doublep);
+                return Double.isNaN(tp.doublep.getDouble());
+            case ValueTag.XS_FLOAT_TAG:
+                tvp.getValue(tp.floatp);
+                return Float.isNaN(tp.floatp.getFloat());
+            default:
+                return false;
+        }
+    }
 }
@@ -64,6 +64,13 @@ public abstract class AbstractPathStepScalarEvaluator extends AbstractTaggedValu
     @Override
     protected abstract void evaluate(TaggedValuePointable[] args, IPointable result) throws SystemException;
 
+    /**
+     * Must be called when {@link #ntp} is set to another node tree.
+     */
+    protected void resetNodeTest() {
+        filter.resetNodeTree();
+    }
+
     protected boolean matches() {
         return filter.accept(ntp, itemTvp);
     }
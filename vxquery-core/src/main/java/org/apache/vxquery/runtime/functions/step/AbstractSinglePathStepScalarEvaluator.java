@@ -85,10 +85,12 @@ public abstract class AbstractSinglePathStepScalarEvaluator extends AbstractPath
                         throw new SystemException(ErrorCode.SYSE0001);
                     }
                     itemTvp2.getValue(ntp);
+                    resetNodeTest();
                     processNodeTree();
                 }
             } else if (args[0].getTag() == ValueTag.NODE_TREE_TAG) {
                 args[0].getValue(ntp);
+                resetNodeTest();
                 processNodeTree();
             } else {
                 throw new SystemException(ErrorCode.SYSE0001);
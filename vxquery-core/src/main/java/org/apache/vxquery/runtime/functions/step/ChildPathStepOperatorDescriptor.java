@@ -53,6 +53,9 @@ public class ChildPathStepOperatorDescriptor extends AbstractForwardAxisPathStep
             throw new SystemException(ErrorCode.SYSE0001);
         }
         tvp.getValue(ntp);
+        for (INodeFilter f : filter) {
+            f.resetNodeTree();
+        }
     }
 
     protected void setFilterCode(List<Integer> typeCodes) {
@@ -61,6 +61,7 @@ public class ChildPathStepUnnesting extends AbstractForwardAxisPathStep {
             SequenceType sType = dCtx.getStaticContext().lookupSequenceType(ip.getInteger());
             filter = NodeTestFilter.getNodeTestFilter(sType);
         }
+        filter.resetNodeTree();
 
         if (args[0].getTag() == ValueTag.SEQUENCE_TAG) {
             args[0].getValue(seqNtp);
@@ -87,6 +88,7 @@ public class ChildPathStepUnnesting extends AbstractForwardAxisPathStep {
                     return true;
                 }
                 indexSeqArgs++;
+                filter.resetNodeTree();
             }
         } else {
             // Single node tree input.
@@ -27,6 +27,8 @@ import org.apache.hyracks.data.std.primitive.IntegerPointable;
 import org.apache.vxquery.datamodel.accessors.PointablePool;
 import org.apache.vxquery.datamodel.accessors.SequencePointable;
 import org.apache.vxquery.datamodel.accessors.TaggedValuePointable;
+import org.apache.vxquery.datamodel.accessors.nodes.DocumentNodePointable;
+import org.apache.vxquery.datamodel.accessors.nodes.ElementNodePointable;
 import org.apache.vxquery.datamodel.values.ValueTag;
 import org.apache.vxquery.exceptions.ErrorCode;
 import org.apache.vxquery.exceptions.SystemException;
@@ -46,9 +48,16 @@ public class DescendantOrSelfPathStepUnnesting extends AbstractForwardAxisPathSt
     private final TaggedValuePointable tvpItem = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
     private final TaggedValuePointable tvpNtp = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
     private final TaggedValuePointable tvpStep = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+    private final DocumentNodePointable dnp = (DocumentNodePointable) DocumentNodePointable.FACTORY.createPointable();
+    private final ElementNodePointable enp = (ElementNodePointable) ElementNodePointable.FACTORY.createPointable();
     private INodeFilter filter;
     private int filterLookupID = -1;
     private boolean isfilter = false;
+    private boolean newNodeTree;
+    private boolean hasSubtree;
+    private int subtreeTreeId;
+    private int subtreeStart;
+    private int subtreeEnd;
 
     public DescendantOrSelfPathStepUnnesting(IHyracksTaskContext ctx, PointablePool pp, boolean testSelf) {
         super(ctx, pp);
@@ -58,6 +67,8 @@ public class DescendantOrSelfPathStepUnnesting extends AbstractForwardAxisPathSt
     protected void init(TaggedValuePointable[] args) throws SystemException {
         returnSelf = true;
         indexSeqArgs = 0;
+        newNodeTree = true;
+        hasSubtree = false;
         indexSequence.add(0);
         returnSequence.add(0);
 
@@ -72,6 +83,7 @@ public class DescendantOrSelfPathStepUnnesting extends AbstractForwardAxisPathSt
                 SequenceType sType = dCtx.getStaticContext().lookupSequenceType(ip.getInteger());
                 filter = NodeTestFilter.getNodeTestFilter(sType);
             }
+            filter.resetNodeTree();
         }
         // Check the argument passed in as sequence or node tree.
         if (args[0].getTag() == ValueTag.SEQUENCE_TAG) {
@@ -95,12 +107,19 @@ public class DescendantOrSelfPathStepUnnesting extends AbstractForwardAxisPathSt
                 }
                 tvpNtp.getValue(ntp);
                 ntp.getRootNode(tvpStep);
-                if (processNodeTree(tvpStep, result)) {
-                    return true;
+                if (!newNodeTree || !isInPreviousSubtree(tvpStep)) {
+                    newNodeTree = false;
+                    if (processNodeTree(tvpStep, result)) {
+                        return true;
+                    }
                 }
                 // Next node tree in sequence.
                 indexSeqArgs++;
+                newNodeTree = true;
                 returnSelf = true;
+                if (isfilter) {
+                    filter.resetNodeTree();
+                }
             }
         } else {
             // Single node tree input.
@@ -112,6 +131,47 @@ public class DescendantOrSelfPathStepUnnesting extends AbstractForwardAxisPathSt
         return false;
     }
 
+    /**
+     * Structural join of the context nodes by their node id intervals. A context node in the subtree of an earlier
+     * context node of the same tree has no descendants that were not already returned, so it is skipped. For context
+     * nodes in document order only the outermost open subtree has to be kept.
+     *
+     * @param rootTVP
+     *            Root node of the context node tree
+     * @return true if the context node is a descendant of the last context node that was not skipped
+     */
+    private boolean isInPreviousSubtree(TaggedValuePointable rootTVP) {
+        if (!ntp.nodeIdExists()) {
+            return false;
+        }
+        int localNodeId;
+        int lastDescendantNodeId;
+        switch (rootTVP.getTag()) {
+            case ValueTag.DOCUMENT_NODE_TAG:
+                rootTVP.getValue(dnp);
+                localNodeId = dnp.getLocalNodeId(ntp);
+                lastDescendantNodeId = dnp.getLastDescendantNodeId(ntp);
+                break;
+            case ValueTag.ELEMENT_NODE_TAG:
+                rootTVP.getValue(enp);
+                localNodeId = enp.getLocalNodeId(ntp);
+                lastDescendantNodeId = enp.getLastDescendantNodeId(ntp);
+                break;
+            default:
+                // Attributes are not on the descendant axis, and other nodes have no descendants.
+                return false;
+        }
+        int treeId = ntp.getRootNodeId();
+        if (hasSubtree && treeId == subtreeTreeId && subtreeStart < localNodeId && localNodeId <= subtreeEnd) {
+            return true;
+        }
+        hasSubtree = true;
+        subtreeTreeId = treeId;
+        subtreeStart = localNodeId;
+        subtreeEnd = lastDescendantNodeId;
+        return false;
+    }
+
     private boolean processNodeTree(TaggedValuePointable rootTVP, IPointable result) throws HyracksDataException {
         if (testSelf && returnSelf) {
             returnSelf = false;
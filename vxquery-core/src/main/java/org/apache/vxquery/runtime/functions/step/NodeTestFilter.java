@@ -37,44 +37,13 @@ public class NodeTestFilter {
         switch (nodeType.getNodeKind()) {
             case ATTRIBUTE: {
                 AttributeType aType = (AttributeType) nodeType;
-                NameTest nameTest = aType.getNameTest();
-                byte[] uri = nameTest.getUri();
-                byte[] localName = nameTest.getLocalName();
-                final UTF8StringPointable urip = (UTF8StringPointable) (uri == null ? null
-                        : UTF8StringPointable.FACTORY.createPointable());
-                final UTF8StringPointable localp = (UTF8StringPointable) (localName == null ? null
-                        : UTF8StringPointable.FACTORY.createPointable());
-                if (uri != null) {
-                    urip.set(uri, 0, uri.length);
-                }
-                if (localName != null) {
-                    localp.set(localName, 0, localName.length);
-                }
-                final UTF8StringPointable temp = (UTF8StringPointable) UTF8StringPointable.FACTORY.createPointable();
                 final AttributeNodePointable anp = (AttributeNodePointable) AttributeNodePointable.FACTORY
                         .createPointable();
-                final CodedQNamePointable cqp = (CodedQNamePointable) CodedQNamePointable.FACTORY.createPointable();
-                filter = new INodeFilter() {
+                filter = new NameTestFilter(ValueTag.ATTRIBUTE_NODE_TAG, aType.getNameTest()) {
                     @Override
-                    public boolean accept(NodeTreePointable ntp, TaggedValuePointable tvp) {
-                        if (tvp.getTag() != ValueTag.ATTRIBUTE_NODE_TAG) {
-                            return false;
-                        }
+                    protected void getName(TaggedValuePointable tvp, CodedQNamePointable cqp) {
                         tvp.getValue(anp);
                         anp.getName(cqp);
-                        if (urip != null) {
-                            ntp.getString(cqp.getNamespaceCode(), temp);
-                            if (urip.compareTo(temp) != 0) {
-                                return false;
-                            }
-                        }
-                        if (localp != null) {
-                            ntp.getString(cqp.getLocalCode(), temp);
-                            if (localp.compareTo(temp) != 0) {
-                                return false;
-                            }
-                        }
-                        return true;
                     }
                 };
                 break;
@@ -100,43 +69,12 @@ public class NodeTestFilter {
 
             case ELEMENT: {
                 ElementType eType = (ElementType) nodeType;
-                NameTest nameTest = eType.getNameTest();
-                byte[] uri = nameTest.getUri();
-                byte[] localName = nameTest.getLocalName();
-                final UTF8StringPointable urip = (UTF8StringPointable) (uri == null ? null
-                        : UTF8StringPointable.FACTORY.createPointable());
-                final UTF8StringPointable localp = (UTF8StringPointable) (localName == null ? null
-                        : UTF8StringPointable.FACTORY.createPointable());
-                if (uri != null) {
-                    urip.set(uri, 0, uri.length);
-                }
-                if (localName != null) {
-                    localp.set(localName, 0, localName.length);
-                }
-                final UTF8StringPointable temp = (UTF8StringPointable) UTF8StringPointable.FACTORY.createPointable();
                 final ElementNodePointable enp = (ElementNodePointable) ElementNodePointable.FACTORY.createPointable();
-                final CodedQNamePointable cqp = (CodedQNamePointable) CodedQNamePointable.FACTORY.createPointable();
-                filter = new INodeFilter() {
+                filter = new NameTestFilter(ValueTag.ELEMENT_NODE_TAG, eType.getNameTest()) {
                     @Override
-                    public boolean accept(NodeTreePointable ntp, TaggedValuePointable tvp) {
-                        if (tvp.getTag() != ValueTag.ELEMENT_NODE_TAG) {
-                            return false;
-                        }
+                    protected void getName(TaggedValuePointable tvp, CodedQNamePointable cqp) {
                         tvp.getValue(enp);
                         enp.getName(cqp);
-                        if (urip != null) {
-                            ntp.getString(cqp.getNamespaceCode(), temp);
-                            if (urip.compareTo(temp) != 0) {
-                                return false;
-                            }
-                        }
-                        if (localp != null) {
-                            ntp.getString(cqp.getLocalCode(), temp);
-                            if (localp.compareTo(temp) != 0) {
-                                return false;
-                            }
-                        }
-                        return true;
                     }
                 };
                 break;
@@ -175,5 +113,68 @@ public class NodeTestFilter {
 
     public interface INodeFilter {
         public boolean accept(NodeTreePointable ntp, TaggedValuePointable tvp);
+
+        /**
+         * Must be called before the filter accepts nodes of another node tree than the previous ones.
+         */
+        public default void resetNodeTree() {
+        }
+    }
+
+    /**
+     * Tests the name of element or attribute nodes. The names of the test are looked up in the dictionary of the
+     * node tree once, so each node is tested by comparing name codes.
+     */
+    private abstract static class NameTestFilter implements INodeFilter {
+        private static final int UNRESOLVED = -2;
+        private static final int MISSING = -1;
+
+        private final byte tag;
+        private final UTF8StringPointable urip;
+        private final UTF8StringPointable localp;
+        private final CodedQNamePointable cqp = (CodedQNamePointable) CodedQNamePointable.FACTORY.createPointable();
+        private int uriCode = UNRESOLVED;
+        private int localCode = UNRESOLVED;
+
+        NameTestFilter(byte tag, NameTest nameTest) {
+            this.tag = tag;
+            urip = createPointable(nameTest.getUri());
+            localp = createPointable(nameTest.getLocalName());
+        }
+
+        private static UTF8StringPointable createPointable(byte[] bytes) {
+            if (bytes == null) {
+                return null;
+            }
+            UTF8StringPointable p = (UTF8StringPointable) UTF8StringPointable.FACTORY.createPointable();
+            p.set(bytes, 0, bytes.length);
+            return p;
+        }
+
+        protected abstract void getName(TaggedValuePointable tvp, CodedQNamePointable cqp);
+
+        @Override
+        public boolean accept(NodeTreePointable ntp, TaggedValuePointable tvp) {
+            if (tvp.getTag() != tag) {
+                return false;
+            }
+            if (localCode == UNRESOLVED) {
+                uriCode = urip == null ? MISSING : ntp.lookupString(urip);
+                localCode = localp == null ? MISSING : ntp.lookupString(localp);
+            }
+            if ((urip != null && uriCode == MISSING) || (localp != null && localCode == MISSING)) {
+                // No node of the tree can have the name.
+                return false;
+            }
+            getName(tvp, cqp);
+            return (urip == null || cqp.getNamespaceCode() == uriCode)
+                    && (localp == null || cqp.getLocalCode() == localCode);
+        }
+
+        @Override
+        public void resetNodeTree() {
+            uriCode = UNRESOLVED;
+            localCode = UNRESOLVED;
+        }
     }
 }
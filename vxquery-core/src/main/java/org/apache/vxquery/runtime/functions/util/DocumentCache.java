@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.runtime.functions.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hyracks.data.std.api.IPointable;
+import org.apache.hyracks.data.std.primitive.IntegerPointable;
+import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
+import org.apache.vxquery.datamodel.accessors.nodes.NodeTreePointable;
+import org.apache.vxquery.datamodel.values.ValueTag;
+import org.apache.vxquery.xmlparser.IParser;
+import org.apache.vxquery.xmlparser.ITreeNodeIdProvider;
+
+/**
+ * Cache of parsed documents for fn:doc and jn:json-doc, shared by all tasks and jobs of a node controller.
+ * A document is keyed by its parser kind and canonical path, and a cached copy is only used while the file keeps the
+ * size and modification time it had when it was parsed. The cache holds at most "vxquery.doc_cache_size" bytes
+ * (64 MB by default, 0 disables it) and evicts the least recently used documents first. HDFS files are not cached.
+ * A cached XML document is copied for each read and given a new tree id, as if it had been parsed again, since the
+ * tree ids of the evaluators reading it restart with every job.
+ */
+public class DocumentCache {
+    public static final String KIND_XML = "xml";
+    public static final String KIND_JSON = "json";
+
+    private static final long DEFAULT_SIZE = 64L * 1024 * 1024;
+    private static final DocumentCache INSTANCE = new DocumentCache(
+            Long.parseLong(System.getProperty("vxquery.doc_cache_size", String.valueOf(DEFAULT_SIZE))));
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, CachedDocument> documents = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private static class CachedDocument {
+        private final long size;
+        private final long modified;
+        private final byte[] value;
+
+        CachedDocument(long size, long modified, byte[] value) {
+            this.size = size;
+            this.modified = modified;
+            this.value = value;
+        }
+    }
+
+    public DocumentCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static DocumentCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Read a parsed document from the cache, or parse it and add it to the cache.
+     *
+     * @param fName
+     *            : File name of the document
+     * @param kind
+     *            : Kind of the parser, so that a file parsed in different ways has separate entries
+     * @param parser
+     *            : Parser for the document if it is not cached
+     * @param nodeIdProvider
+     *            : Tree ids of the documents the parser creates, or null if the document is only checked and its
+     *            tree id is not used
+     * @param abvs
+     *            : Storage the document is parsed or copied into
+     * @param result
+     *            : Set to the parsed document, which must not be modified
+     * @throws IOException
+     *             : If the document does not exist or cannot be parsed
+     */
+    public void read(String fName, String kind, IParser parser, ITreeNodeIdProvider nodeIdProvider,
+            ArrayBackedValueStorage abvs, IPointable result) throws IOException {
+        abvs.reset();
+        if (maxBytes <= 0 || fName.contains("hdfs:/")) {
+            FunctionHelper.readInDocFromString(fName, abvs, parser);
+            result.set(abvs);
+            return;
+        }
+        File file = new File(fName);
+        if (!file.exists()) {
+            throw new FileNotFoundException(file.getAbsolutePath());
+        }
+        String key = kind + ":" + file.getCanonicalPath();
+        long size = file.length();
+        long modified = file.lastModified();
+        byte[] value = get(key, size, modified);
+        if (value == null) {
+            FunctionHelper.readInDocFromString(fName, abvs, parser);
+            value = Arrays.copyOfRange(abvs.getByteArray(), abvs.getStartOffset(),
+                    abvs.getStartOffset() + abvs.getLength());
+            put(key, new CachedDocument(size, modified, value));
+            result.set(abvs);
+        } else if (nodeIdProvider == null) {
+            result.set(value, 0, value.length);
+        } else {
+            abvs.getDataOutput().write(value);
+            setTreeId(abvs, nodeIdProvider.getId());
+            result.set(abvs);
+        }
+    }
+
+    /**
+     * Replace the tree id of a parsed XML document. Node ids within the tree are relative to the tree id, so they
+     * stay valid.
+     */
+    private static void setTreeId(ArrayBackedValueStorage abvs, int treeId) {
+        byte[] bytes = abvs.getByteArray();
+        int start = abvs.getStartOffset();
+        if (abvs.getLength() >= 1 + 1 + 4 && bytes[start] == ValueTag.NODE_TREE_TAG
+                && (bytes[start + 1] & NodeTreePointable.HEADER_NODEID_EXISTS_MASK) != 0) {
+            IntegerPointable.setInteger(bytes, start + 2, treeId);
+        }
+    }
+
+    public synchronized int getDocumentCount() {
+        return documents.size();
+    }
+
+    public synchronized long getByteCount() {
+        return bytes;
+    }
+
+    private synchronized byte[] get(String key, long size, long modified) {
+        CachedDocument document = documents.get(key);
+        if (document == null) {
+            return null;
+        }
+        if (document.size != size || document.modified != modified) {
+            documents.remove(key);
+            bytes -= document.value.length;
+            return null;
+        }
+        return document.value;
+    }
+
+    private synchronized void put(String key, CachedDocument document) {
+        if (document.value.length > maxBytes) {
+            return;
+        }
+        CachedDocument previous = documents.put(key, document);
+        if (previous != null) {
+            bytes -= previous.value.length;
+        }
+        bytes += document.value.length;
+        Iterator<Map.Entry<String, CachedDocument>> it = documents.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().getValue().value.length;
+            it.remove();
+        }
+    }
+}
@@ -1032,6 +1032,20 @@ public class FunctionHelper {
 
     public static void getIntegerPointable(TaggedValuePointable tvp, DataOutput dOut, TypedPointables tp)
             throws SystemException, IOException {
+        dOut.write(ValueTag.XS_INTEGER_TAG);
+        dOut.writeLong(getLong(tvp, tp));
+    }
+
+    /**
+     * Get the value of an integer or of a type derived from integer without copying it.
+     *
+     * @param tvp
+     *            : Value with an integer tag
+     * @param tp
+     *            : Pointables to read the value
+     * @return the value, or 0 for other tags
+     */
+    public static long getLong(TaggedValuePointable tvp, TypedPointables tp) {
         long value;
         switch (tvp.getTag()) {
             case ValueTag.XS_INTEGER_TAG:
@@ -1066,8 +1080,7 @@ public class FunctionHelper {
             default:
                 value = 0;
         }
-        dOut.write(ValueTag.XS_INTEGER_TAG);
-        dOut.writeLong(value);
+        return value;
     }
 
     /**
@@ -1080,7 +1093,22 @@ public class FunctionHelper {
      * @return local node id
      */
     public static int getLocalNodeId(TaggedValuePointable tvp1, TypedPointables tp) {
-        final TaggedValuePointable tvp = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+        return getLocalNodeId(tvp1, tp, (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable());
+    }
+
+    /**
+     * Get the local node id from a tagged value pointable when available, without allocating pointables.
+     * The node tree of the value is left in tp.ntp.
+     *
+     * @param tvp1
+     *            pointable
+     * @param tp
+     *            Typed pointable
+     * @param tvp
+     *            pointable for the root node
+     * @return local node id
+     */
+    public static int getLocalNodeId(TaggedValuePointable tvp1, TypedPointables tp, TaggedValuePointable tvp) {
         int localNodeId = -1;
         if (tvp1.getTag() == ValueTag.NODE_TREE_TAG) {
             tvp1.getValue(tp.ntp);
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.runtime.profile;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.IActivity;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.job.profiling.counters.ICounter;
+import org.apache.hyracks.api.job.profiling.counters.ICounterContext;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+
+/**
+ * Counters of a VXQuery operator or unnesting evaluator in the hyracks job profile.
+ * A counter is named "vxquery/[operator]/[counter]". The counters of all tasks with the same operator name are summed
+ * up when the profile is read.
+ * CPU time is the time of the task thread in nanoseconds, so work done by helper threads is not included. It is only
+ * measured for operators that process a frame at a time, since reading the thread time costs about as much as a call
+ * of an unnesting evaluator. The operators downstream run on the same thread when a frame is written to them, so the
+ * measurement is paused while the output of {@link #countOutput(IFrameWriter, RecordDescriptor)} passes a frame on.
+ */
+public class RuntimeCounters {
+    public static final String PREFIX = "vxquery/";
+    public static final String TUPLES_IN = "tuples-in";
+    public static final String TUPLES_OUT = "tuples-out";
+    public static final String BYTES_IN = "bytes-in";
+    public static final String BYTES_OUT = "bytes-out";
+    public static final String CPU_TIME = "cpu-time";
+
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final ICounter tuplesIn;
+    private final ICounter tuplesOut;
+    private final ICounter bytesIn;
+    private final ICounter bytesOut;
+    private final ICounter cpuTime;
+    private long cpuStart = -1;
+
+    public RuntimeCounters(IHyracksTaskContext ctx, String operator) {
+        this(ctx, operator, true);
+    }
+
+    /**
+     * @param measureCpuTime
+     *            : Whether the operator measures its CPU time. Without it, no CPU time counter is added to the profile.
+     */
+    public RuntimeCounters(IHyracksTaskContext ctx, String operator, boolean measureCpuTime) {
+        ICounterContext counterContext = ctx.getCounterContext();
+        String prefix = PREFIX + operator + "/";
+        tuplesIn = counterContext.getCounter(prefix + TUPLES_IN, true);
+        tuplesOut = counterContext.getCounter(prefix + TUPLES_OUT, true);
+        bytesIn = counterContext.getCounter(prefix + BYTES_IN, true);
+        bytesOut = counterContext.getCounter(prefix + BYTES_OUT, true);
+        cpuTime = measureCpuTime ? counterContext.getCounter(prefix + CPU_TIME, true) : null;
+    }
+
+    /**
+     * @return the name of an operator in a job, such as "VXQueryCollectionOperatorDescriptor[ODID:2]"
+     */
+    public static String getOperatorName(IActivity activity) {
+        return activity.getClass().getSimpleName() + "[" + activity.getActivityId().getOperatorDescriptorId() + "]";
+    }
+
+    public void addTuplesIn(long count) {
+        tuplesIn.update(count);
+    }
+
+    public void addTuplesOut(long count) {
+        tuplesOut.update(count);
+    }
+
+    public void addBytesIn(long count) {
+        bytesIn.update(count);
+    }
+
+    /**
+     * Start measuring the CPU time of the current thread. Calls may not be nested.
+     */
+    public void startCpuTime() {
+        if (cpuTime != null && THREAD_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_BEAN.isThreadCpuTimeEnabled()) {
+            cpuStart = THREAD_BEAN.getCurrentThreadCpuTime();
+        }
+    }
+
+    public void stopCpuTime() {
+        if (cpuStart >= 0) {
+            cpuTime.update(THREAD_BEAN.getCurrentThreadCpuTime() - cpuStart);
+            cpuStart = -1;
+        }
+    }
+
+    /**
+     * Count the tuples and tuple bytes of the frames written to an output.
+     *
+     * @param writer
+     *            : Output of the operator
+     * @param recordDescriptor
+     *            : Record descriptor of the output
+     * @return writer that counts and forwards the frames
+     */
+    public IFrameWriter countOutput(final IFrameWriter writer, RecordDescriptor recordDescriptor) {
+        final FrameTupleAccessor fta = new FrameTupleAccessor(recordDescriptor);
+        return new IFrameWriter() {
+            @Override
+            public void open() throws HyracksDataException {
+                writer.open();
+            }
+
+            @Override
+            public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+                fta.reset(buffer);
+                int tupleCount = fta.getTupleCount();
+                tuplesOut.update(tupleCount);
+                if (tupleCount > 0) {
+                    bytesOut.update(fta.getTupleEndOffset(tupleCount - 1) - fta.getTupleStartOffset(0));
+                }
+                boolean measuring = cpuStart >= 0;
+                stopCpuTime();
+                try {
+                    writer.nextFrame(buffer);
+                } finally {
+                    if (measuring) {
+                        startCpuTime();
+                    }
+                }
+            }
+
+            @Override
+            public void flush() throws HyracksDataException {
+                boolean measuring = cpuStart >= 0;
+                stopCpuTime();
+                try {
+                    writer.flush();
+                } finally {
+                    if (measuring) {
+                        startCpuTime();
+                    }
+                }
+            }
+
+            @Override
+            public void fail() throws HyracksDataException {
+                writer.fail();
+            }
+
+            @Override
+            public void close() throws HyracksDataException {
+                writer.close();
+            }
+        };
+    }
+}
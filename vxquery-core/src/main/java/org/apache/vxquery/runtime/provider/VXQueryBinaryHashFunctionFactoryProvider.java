@@ -16,7 +16,7 @@
  */
 package org.apache.vxquery.runtime.provider;
 
-import org.apache.vxquery.runtime.factory.hashfunction.VXQueryRawBinaryHashFunctionFactory;
+import org.apache.vxquery.runtime.factory.hashfunction.VXQueryBinaryHashFunctionFactory;
 
 import org.apache.hyracks.algebricks.common.exceptions.AlgebricksException;
 import org.apache.hyracks.algebricks.data.IBinaryHashFunctionFactoryProvider;
@@ -32,8 +32,8 @@ public class VXQueryBinaryHashFunctionFactoryProvider implements IBinaryHashFunc
     @Override
     public IBinaryHashFunctionFactory getBinaryHashFunctionFactory(Object type) throws AlgebricksException {
 
-        // Treat all data as a raw array of bytes.
-        return VXQueryRawBinaryHashFunctionFactory.INSTANCE;
+        // Hash the value rather than its encoding, consistently with the comparators.
+        return VXQueryBinaryHashFunctionFactory.INSTANCE;
 
     }
 
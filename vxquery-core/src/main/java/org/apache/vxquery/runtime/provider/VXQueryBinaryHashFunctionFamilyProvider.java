@@ -19,7 +19,7 @@ package org.apache.vxquery.runtime.provider;
 import org.apache.hyracks.algebricks.common.exceptions.AlgebricksException;
 import org.apache.hyracks.algebricks.data.IBinaryHashFunctionFamilyProvider;
 import org.apache.hyracks.api.dataflow.value.IBinaryHashFunctionFamily;
-import org.apache.hyracks.data.std.accessors.MurmurHash3BinaryHashFunctionFamily;
+import org.apache.vxquery.runtime.factory.hashfunction.VXQueryBinaryHashFunctionFamily;
 
 public class VXQueryBinaryHashFunctionFamilyProvider implements IBinaryHashFunctionFamilyProvider {
 
@@ -30,7 +30,7 @@ public class VXQueryBinaryHashFunctionFamilyProvider implements IBinaryHashFunct
 
     @Override
     public IBinaryHashFunctionFamily getBinaryHashFunctionFamily(Object type) throws AlgebricksException {
-        return MurmurHash3BinaryHashFunctionFamily.INSTANCE;
+        return VXQueryBinaryHashFunctionFamily.INSTANCE;
     }
 
 }
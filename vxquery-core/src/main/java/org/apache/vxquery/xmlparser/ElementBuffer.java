@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.xmlparser;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hyracks.api.comm.IFrameFieldAppender;
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.primitive.IntegerPointable;
+import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
+import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
+import org.apache.vxquery.datamodel.accessors.nodes.NodeTreePointable;
+import org.apache.vxquery.datamodel.values.ValueTag;
+
+/**
+ * Holds the elements produced while parsing one document so they can be written to a frame writer later, on a
+ * different thread than the one that parsed them.
+ * Tree node ids are assigned when the buffer is written out, so documents parsed out of order still receive the same
+ * ids as a sequential scan.
+ */
+public class ElementBuffer {
+    private static final int INITIAL_ELEMENT_COUNT = 16;
+    private static final int NODE_ID_OFFSET = 2;
+
+    private final ArrayBackedValueStorage abvs;
+    private int[] ends;
+    private int count;
+
+    public ElementBuffer() {
+        abvs = new ArrayBackedValueStorage();
+        ends = new int[INITIAL_ELEMENT_COUNT];
+        count = 0;
+    }
+
+    public void reset() {
+        abvs.reset();
+        count = 0;
+    }
+
+    public int getElementCount() {
+        return count;
+    }
+
+    public void addElement(byte[] bytes, int start, int length) throws HyracksDataException {
+        try {
+            abvs.getDataOutput().write(bytes, start, length);
+        } catch (IOException e) {
+            throw new HyracksDataException(e);
+        }
+        if (count == ends.length) {
+            ends = Arrays.copyOf(ends, ends.length * 2);
+        }
+        ends[count++] = abvs.getLength();
+    }
+
+    public void write(IFrameWriter writer, IFrameFieldAppender appender, ITreeNodeIdProvider nodeIdProvider)
+            throws HyracksDataException {
+        byte[] bytes = abvs.getByteArray();
+        int start = abvs.getStartOffset();
+        for (int i = 0; i < count; ++i) {
+            int end = abvs.getStartOffset() + ends[i];
+            if (nodeIdProvider != null && bytes[start] == ValueTag.NODE_TREE_TAG
+                    && (bytes[start + 1] & NodeTreePointable.HEADER_NODEID_EXISTS_MASK) != 0) {
+                IntegerPointable.setInteger(bytes, start + NODE_ID_OFFSET, nodeIdProvider.getId());
+            }
+            FrameUtils.appendFieldToWriter(writer, appender, bytes, start, end - start);
+            start = end;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.xmlparser;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hyracks.api.comm.IFrameFieldAppender;
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.vxquery.context.StaticContext;
+
+/**
+ * Parses the files of a collection on a bounded pool of worker threads. Each worker owns its own {@link XMLParser}
+ * and the parsed elements of every file are handed to the frame writer in the order the files were submitted.
+ * Each scan starts its own worker threads and stops them in {@link #close()}.
+ */
+public class ParallelXMLParser {
+    private static final ITreeNodeIdProvider PLACEHOLDER_ID_PROVIDER = new ITreeNodeIdProvider() {
+        @Override
+        public int getId() {
+            return 0;
+        }
+    };
+
+    private final BlockingQueue<XMLParser> parsers;
+    private final Deque<ElementBuffer> freeBuffers;
+    private final Deque<Future<ElementBuffer>> pending;
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final ITreeNodeIdProvider nodeIdProvider;
+    private final IFrameFieldAppender appender;
+
+    public ParallelXMLParser(int threads, boolean attachTypes, ITreeNodeIdProvider nodeIdProvider,
+            final String nodeId, IFrameFieldAppender appender, List<Integer> childSeq, StaticContext staticContext)
+            throws HyracksDataException {
+        this.nodeIdProvider = nodeIdProvider;
+        this.appender = appender;
+        // Node ids are assigned in submission order when the buffers are written out.
+        ITreeNodeIdProvider workerIdProvider = nodeIdProvider == null ? null : PLACEHOLDER_ID_PROVIDER;
+        parsers = new ArrayBlockingQueue<>(threads);
+        for (int i = 0; i < threads; ++i) {
+            parsers.add(new XMLParser(attachTypes, workerIdProvider, nodeId, appender, childSeq, staticContext));
+        }
+        freeBuffers = new ArrayDeque<>();
+        pending = new ArrayDeque<>();
+        maxPending = 2 * threads;
+        final AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "vxquery-parser-" + nodeId + "-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public void parseElements(final File file, IFrameWriter writer, final int tupleIndex)
+            throws HyracksDataException {
+        if (pending.size() >= maxPending) {
+            writeNext(writer);
+        }
+        final ElementBuffer buffer = freeBuffers.isEmpty() ? new ElementBuffer() : freeBuffers.pop();
+        buffer.reset();
+        pending.add(executor.submit(new Callable<ElementBuffer>() {
+            @Override
+            public ElementBuffer call() throws Exception {
+                XMLParser parser = parsers.take();
+                try {
+                    parser.parseElements(file, buffer, tupleIndex);
+                } finally {
+                    parsers.add(parser);
+                }
+                return buffer;
+            }
+        }));
+    }
+
+    /**
+     * Writes the elements of every submitted file, waiting for the workers when needed.
+     */
+    public void flush(IFrameWriter writer) throws HyracksDataException {
+        while (!pending.isEmpty()) {
+            writeNext(writer);
+        }
+    }
+
+    public void close() {
+        for (Future<ElementBuffer> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        executor.shutdownNow();
+    }
+
+    private void writeNext(IFrameWriter writer) throws HyracksDataException {
+        ElementBuffer buffer;
+        try {
+            buffer = pending.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HyracksDataException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof HyracksDataException) {
+                throw (HyracksDataException) e.getCause();
+            }
+            throw new HyracksDataException(e.getCause());
+        }
+        buffer.write(writer, appender, nodeIdProvider);
+        freeBuffers.push(buffer);
+    }
+}
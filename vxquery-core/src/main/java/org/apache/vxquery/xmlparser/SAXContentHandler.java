@@ -71,6 +71,7 @@ public class SAXContentHandler implements ContentHandler, LexicalHandler {
     protected IFrameFieldAppender appender;
     private int tupleIndex;
     private IFrameWriter writer;
+    private ElementBuffer elementBuffer;
 
     // Element writing and path step variables
     protected boolean skipping;
@@ -154,6 +155,13 @@ public class SAXContentHandler implements ContentHandler, LexicalHandler {
     public void setupElementWriter(IFrameWriter writer, int tupleIndex) {
         this.writer = writer;
         this.tupleIndex = tupleIndex;
+        this.elementBuffer = null;
+    }
+
+    public void setupElementBuffer(ElementBuffer elementBuffer, int tupleIndex) {
+        this.writer = null;
+        this.tupleIndex = tupleIndex;
+        this.elementBuffer = elementBuffer;
     }
 
     @Override
@@ -170,6 +178,21 @@ public class SAXContentHandler implements ContentHandler, LexicalHandler {
         pendingText = true;
     }
 
+    /**
+     * Appends character data given as modified UTF-8 bytes without a length.
+     */
+    public void characters(byte[] bytes, int start, int length) throws SAXException {
+        if (skipping) {
+            return;
+        }
+        try {
+            textGA.getDataOutput().write(bytes, start, length);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+        pendingText = true;
+    }
+
     @Override
     public void endDocument() throws SAXException {
         if (skipping) {
@@ -177,6 +200,9 @@ public class SAXContentHandler implements ContentHandler, LexicalHandler {
         }
         try {
             flushText();
+            if (createNodeIds) {
+                docb.setLastDescendantNodeId(nodeIdCounter - 1);
+            }
             docb.endChildrenChunk();
             docb.finish();
             if (appender != null) {
@@ -207,6 +233,9 @@ public class SAXContentHandler implements ContentHandler, LexicalHandler {
             }
             flushText();
             ElementNodeBuilder enb = enbStack.remove(enbStack.size() - 1);
+            if (createNodeIds) {
+                enb.setLastDescendantNodeId(nodeIdCounter - 1);
+            }
             enb.endChildrenChunk();
             endChildInParent(enb, nonSkipped);
             freeENB(enb);
@@ -256,6 +285,14 @@ public class SAXContentHandler implements ContentHandler, LexicalHandler {
         return textGAInternal;
     }
 
+    private GrowableArray bytesToGrowableArray(byte[] bytes, int start, int length) throws IOException {
+        textGAInternal.reset();
+        utf8bInternal.reset(textGAInternal, length);
+        textGAInternal.getDataOutput().write(bytes, start, length);
+        utf8bInternal.finish();
+        return textGAInternal;
+    }
+
     @Override
     public void setDocumentLocator(Locator locator) {
     }
@@ -270,6 +307,8 @@ public class SAXContentHandler implements ContentHandler, LexicalHandler {
             skipping = false;
         }
         db.reset();
+        // Local node ids restart with each document, so a document gets the same ids whichever worker parses it.
+        nodeIdCounter = 0;
         try {
             textGA.reset();
             utf8b.reset(textGA, STRING_EXPECTED_LENGTH);
@@ -323,6 +362,32 @@ public class SAXContentHandler implements ContentHandler, LexicalHandler {
 
     @Override
     public void startElement(String uri, String localName, String name, Attributes atts) throws SAXException {
+        int idx = name.indexOf(':');
+        String prefix = idx < 0 ? "" : name.substring(0, idx);
+        if (!startElementNode(uri, localName, prefix)) {
+            return;
+        }
+        try {
+            final int nAttrs = atts.getLength();
+            for (int i = 0; i < nAttrs; ++i) {
+                String aName = atts.getQName(i);
+                int aIdx = aName.indexOf(':');
+                addAttribute(atts.getURI(i), atts.getLocalName(i), aIdx < 0 ? "" : aName.substring(0, aIdx),
+                        stringToGrowableArray(atts.getValue(i)));
+            }
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+        endAttributes();
+    }
+
+    /**
+     * Starts an element node. When the element is not skipped, the caller reports its attributes through
+     * {@link #attributeNode(String, String, String, byte[], int, int)} and then calls {@link #endAttributes()}.
+     *
+     * @return true if the element is added to the tree
+     */
+    public boolean startElementNode(String uri, String localName, String prefix) throws SAXException {
         ++depth;
         boolean start = false;
         if (!isIndexHandler) {
@@ -330,12 +395,10 @@ public class SAXContentHandler implements ContentHandler, LexicalHandler {
         }
 
         if (skipping) {
-            return;
+            return false;
         }
         try {
             flushText();
-            int idx = name.indexOf(':');
-            String prefix = idx < 0 ? "" : name.substring(0, idx);
             ElementNodeBuilder enb = createENB();
             startChildInParent(enb, start);
             int uriCode = db.lookup(uri);
@@ -352,42 +415,68 @@ public class SAXContentHandler implements ContentHandler, LexicalHandler {
                 enb.setLocalNodeId(nodeIdCounter++);
             }
             enb.startAttributeChunk();
-            final int nAttrs = atts.getLength();
-            for (int i = 0; i < nAttrs; ++i) {
-                String aName = atts.getQName(i);
-                int aIdx = aName.indexOf(':');
-                int aPrefixCode = db.lookup(aIdx < 0 ? "" : aName.substring(0, aIdx));
-                int aLocalNameCode = db.lookup(atts.getLocalName(i));
-                int aUriCode = db.lookup(atts.getURI(i));
-                String aValue = atts.getValue(i);
-                tempABVS.reset();
-                DataOutput tempOut = tempABVS.getDataOutput();
-                tempOut.write(ValueTag.XS_UNTYPED_ATOMIC_TAG);
-                stringToGrowableArray(aValue);
-                tempOut.write(textGAInternal.getByteArray(), 0, textGAInternal.getLength());
-                enb.startAttribute(anb);
-                anb.setName(aUriCode, aLocalNameCode, aPrefixCode);
-                if (attachTypes) {
-                    int typeUriCode = db.lookup(XQueryConstants.XS_NSURI);
-                    int typeLocalNameCode = db.lookup(BuiltinTypeQNames.UNTYPED_ATOMIC_STR);
-                    int typePrefixCode = db.lookup(XQueryConstants.XS_PREFIX);
-                    anb.setType(typeUriCode, typeLocalNameCode, typePrefixCode);
-                }
-                if (createNodeIds) {
-                    anb.setLocalNodeId(nodeIdCounter++);
-                }
-                anb.setValue(tempABVS);
-                enb.endAttribute(anb);
-            }
+            enbStack.add(enb);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the element started last does not match its child path step. No descendant of such an element
+     * can be selected, so a tokenizer may skip its content and report only the matching end tag.
+     */
+    public boolean canSkipChildren() {
+        return skipping && !isIndexHandler && subElement != null && depth <= subElement.length
+                && !subElement[depth - 1];
+    }
+
+    /**
+     * Adds an attribute to the element started last. The value is given as modified UTF-8 bytes without a length.
+     */
+    public void attributeNode(String uri, String localName, String prefix, byte[] bytes, int start, int length)
+            throws SAXException {
+        try {
+            addAttribute(uri, localName, prefix, bytesToGrowableArray(bytes, start, length));
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    public void endAttributes() throws SAXException {
+        try {
+            ElementNodeBuilder enb = peekENBStackTop();
             enb.endAttributeChunk();
             enb.startChildrenChunk();
-            enbStack.add(enb);
         } catch (IOException e) {
-            e.printStackTrace();
             throw new SAXException(e);
         }
     }
 
+    private void addAttribute(String uri, String localName, String prefix, GrowableArray value) throws IOException {
+        int aPrefixCode = db.lookup(prefix);
+        int aLocalNameCode = db.lookup(localName);
+        int aUriCode = db.lookup(uri);
+        tempABVS.reset();
+        DataOutput tempOut = tempABVS.getDataOutput();
+        tempOut.write(ValueTag.XS_UNTYPED_ATOMIC_TAG);
+        tempOut.write(value.getByteArray(), 0, value.getLength());
+        ElementNodeBuilder enb = peekENBStackTop();
+        enb.startAttribute(anb);
+        anb.setName(aUriCode, aLocalNameCode, aPrefixCode);
+        if (attachTypes) {
+            int typeUriCode = db.lookup(XQueryConstants.XS_NSURI);
+            int typeLocalNameCode = db.lookup(BuiltinTypeQNames.UNTYPED_ATOMIC_STR);
+            int typePrefixCode = db.lookup(XQueryConstants.XS_PREFIX);
+            anb.setType(typeUriCode, typeLocalNameCode, typePrefixCode);
+        }
+        if (createNodeIds) {
+            anb.setLocalNodeId(nodeIdCounter++);
+        }
+        anb.setValue(tempABVS);
+        enb.endAttribute(anb);
+    }
+
     @Override
     public void startPrefixMapping(String prefix, String uri) throws SAXException {
     }
@@ -415,6 +504,30 @@ public class SAXContentHandler implements ContentHandler, LexicalHandler {
         }
     }
 
+    /**
+     * Adds a comment given as modified UTF-8 bytes without a length.
+     */
+    public void comment(byte[] bytes, int start, int length) throws SAXException {
+        if (skipping) {
+            return;
+        }
+        try {
+            flushText();
+            startChildInParent(cnb);
+            if (createNodeIds) {
+                cnb.setLocalNodeId(nodeIdCounter++);
+            }
+            textGA.getDataOutput().write(bytes, start, length);
+            utf8b.finish();
+            cnb.setValue(textGA);
+            endChildInParent(cnb);
+            textGA.reset();
+            utf8b.reset(textGA, STRING_EXPECTED_LENGTH);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
     private void appendCharArray(char[] ch, int start, int length) throws IOException {
         for (int i = 0; i < length; ++i) {
             utf8b.appendChar(ch[i + start]);
@@ -545,6 +658,10 @@ public class SAXContentHandler implements ContentHandler, LexicalHandler {
     }
 
     private void addNodeToTuple(TaggedValuePointable result, int t) throws HyracksDataException {
+        if (elementBuffer != null) {
+            elementBuffer.addElement(result.getByteArray(), result.getStartOffset(), result.getLength());
+            return;
+        }
         FrameUtils.appendFieldToWriter(writer, appender, result.getByteArray(), result.getStartOffset(),
                 result.getLength());
         //        // Send to the writer.
@@ -16,35 +16,58 @@
  */
 package org.apache.vxquery.xmlparser;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns tree ids. The high bit is clear for the documents of a data source scan and set for the documents that
+ * functions such as fn:doc read, so the two never share an id.
+ * <p>
+ * A scan's tree id then holds the partition, then the data source, each in the fewest bits they need, and a counter in
+ * all remaining bits, so ids are distinct for each partition and data source and increase in scan order until the
+ * counter wraps.
+ * <p>
+ * A read document's tree id holds the low {@value #DOCUMENT_PARTITION_BITS} bits of the partition, then a counter that
+ * every such provider of the process shares. Documents read by different evaluators therefore never get the same id,
+ * until the node controller has read 2^{@value #DOCUMENT_COUNTER_BITS} of them.
+ */
 public class TreeNodeIdProvider implements ITreeNodeIdProvider {
+    private static final int ID_BITS = Integer.SIZE - 1;
+    private static final int DOCUMENT_FLAG = 1 << ID_BITS;
+    private static final int DOCUMENT_PARTITION_BITS = 10;
+    private static final int DOCUMENT_COUNTER_BITS = ID_BITS - DOCUMENT_PARTITION_BITS;
+    private static final AtomicInteger DOCUMENT_COUNTER = new AtomicInteger();
 
-    private final short partitionDataSource;
-    private final short dataSouceScanId;
-    private final byte dataSourceBits;
-    private short currentId;
+    private final int prefix;
+    private final int counterMask;
+    private final AtomicInteger sharedCounter;
+    private int currentId;
 
-    public TreeNodeIdProvider(short partitionDataSource, short dataSouceScanId, short totalDataSources) {
-        this.partitionDataSource = partitionDataSource;
-        this.dataSouceScanId = dataSouceScanId;
-        this.dataSourceBits = getBitsNeeded(totalDataSources);
+    public TreeNodeIdProvider(short partitionDataSource, short nPartitions, short dataSouceScanId,
+            short totalDataSources) {
+        int partitionBits = getBitsNeeded(nPartitions - 1);
+        int counterBits = ID_BITS - partitionBits - getBitsNeeded(totalDataSources);
+        long partitionPrefix = (long) partitionDataSource << (ID_BITS - partitionBits);
+        prefix = (int) (partitionPrefix | ((long) dataSouceScanId << counterBits));
+        counterMask = (int) ((1L << counterBits) - 1);
+        sharedCounter = null;
         currentId = 0;
     }
 
     public TreeNodeIdProvider(short partition) {
-        this.partitionDataSource = partition;
-        dataSouceScanId = 0;
-        dataSourceBits = 0;
+        int partitionMask = (1 << DOCUMENT_PARTITION_BITS) - 1;
+        prefix = DOCUMENT_FLAG | ((partition & partitionMask) << DOCUMENT_COUNTER_BITS);
+        counterMask = (1 << DOCUMENT_COUNTER_BITS) - 1;
+        sharedCounter = DOCUMENT_COUNTER;
         currentId = 0;
     }
 
     public int getId() {
-        int p = partitionDataSource;
-        int dssi = dataSouceScanId;
-        return (p << 16) | (dssi << (16 - dataSourceBits)) | currentId++;
+        int counter = sharedCounter == null ? currentId++ : sharedCounter.getAndIncrement();
+        return prefix | (counter & counterMask);
     }
 
-    private byte getBitsNeeded(int number) {
-        byte count = 0;
+    private static int getBitsNeeded(int number) {
+        int count = 0;
         while (number > 0) {
             count++;
             number = number >> 1;
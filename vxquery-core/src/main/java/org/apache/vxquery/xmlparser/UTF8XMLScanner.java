@@ -0,0 +1,1054 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.xmlparser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Tokenizes UTF-8 encoded XML files directly from their bytes and reports the nodes to a {@link SAXContentHandler}
+ * through its byte level methods. A file is read in chunks into a window that is reused between files and keeps the
+ * bytes from the start of the current token, so it only grows to the size of the largest token. Text and attribute
+ * values are passed on as modified UTF-8 bytes, so no strings are created for them.
+ * The scanner checks that the bytes are valid UTF-8 of XML characters, that names are XML names, that "]]>" does not
+ * appear in content and "--" not in comments, besides the nesting of the markup, quoting, references and namespace
+ * prefixes. Subtrees that the handler's child path steps cannot select are skipped by scanning for the matching end
+ * tag, without tokenizing or checking their content.
+ * Documents the scanner does not handle (a DOCTYPE, a non UTF-8 encoding, or a file larger than 2GB) are left to the
+ * SAX parser.
+ */
+public class UTF8XMLScanner {
+    private static final String XML_PREFIX = "xml";
+    private static final String XML_NS_URI = "http://www.w3.org/XML/1998/namespace";
+    private static final String XMLNS_PREFIX = "xmlns";
+    private static final int INITIAL_SIZE = 64;
+    private static final int MAX_CACHED_NAMES = 1 << 16;
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int MAX_RETAINED_WINDOW_SIZE = 1 << 20;
+
+    private final SAXContentHandler handler;
+    private final NameCache names;
+    private final int chunkSize;
+
+    // The bytes of the file from windowStart to windowEnd. Offsets are from the start of the file.
+    private FileChannel channel;
+    private byte[] window;
+    private int windowStart;
+    private int windowEnd;
+    // First offset that is still read, bytes before it may be dropped from the window.
+    private int mark;
+    private int pos;
+    private int end;
+
+    private final ByteArray text;
+    private final ByteArray attributeValues;
+    private final ByteArray markup;
+
+    // Attributes of the current start tag.
+    private Name[] attributeNames;
+    private String[] attributeUris;
+    private int[] attributeStarts;
+    private int[] attributeLengths;
+    private int attributeCount;
+
+    // Open elements.
+    private Name[] elementNames;
+    private String[] elementUris;
+    private int[] namespaceMarks;
+    private int depth;
+
+    // In scope namespace bindings.
+    private String[] namespacePrefixes;
+    private String[] namespaceUris;
+    private int namespaceCount;
+
+    public UTF8XMLScanner(SAXContentHandler handler) {
+        this(handler, CHUNK_SIZE);
+    }
+
+    UTF8XMLScanner(SAXContentHandler handler, int chunkSize) {
+        this.handler = handler;
+        this.chunkSize = chunkSize;
+        names = new NameCache();
+        text = new ByteArray();
+        attributeValues = new ByteArray();
+        markup = new ByteArray();
+        attributeNames = new Name[INITIAL_SIZE];
+        attributeUris = new String[INITIAL_SIZE];
+        attributeStarts = new int[INITIAL_SIZE];
+        attributeLengths = new int[INITIAL_SIZE];
+        elementNames = new Name[INITIAL_SIZE];
+        elementUris = new String[INITIAL_SIZE];
+        namespaceMarks = new int[INITIAL_SIZE];
+        namespacePrefixes = new String[INITIAL_SIZE];
+        namespaceUris = new String[INITIAL_SIZE];
+        window = new byte[chunkSize];
+    }
+
+    /**
+     * Parses the file and reports it to the handler.
+     *
+     * @return false if the file was not parsed because it needs a full XML parser
+     */
+    public boolean parse(File file) throws IOException, SAXException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            channel = in.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return false;
+            }
+            pos = 0;
+            end = (int) size;
+            mark = 0;
+            windowStart = 0;
+            windowEnd = 0;
+            if (!scanProlog()) {
+                return false;
+            }
+            reset();
+            handler.startDocument();
+            scanDocument();
+            handler.endDocument();
+            return true;
+        } finally {
+            channel = null;
+            if (window.length > MAX_RETAINED_WINDOW_SIZE) {
+                window = new byte[chunkSize];
+            }
+        }
+    }
+
+    /**
+     * @return the byte at the offset, which must not be before the mark or at the end of the file
+     */
+    private byte byteAt(int offset) throws SAXException {
+        if (offset >= windowEnd) {
+            fill(offset);
+        }
+        return window[offset - windowStart];
+    }
+
+    /**
+     * Reads the file at least up to the offset. The bytes before the mark are dropped from the window and the window
+     * grows when the bytes from the mark do not fit.
+     */
+    private void fill(int offset) throws SAXException {
+        if (mark > windowStart) {
+            System.arraycopy(window, mark - windowStart, window, 0, windowEnd - mark);
+            windowStart = mark;
+        }
+        int needed = offset + 1 - windowStart;
+        if (needed > window.length) {
+            window = Arrays.copyOf(window, Math.max(needed, window.length * 2));
+        }
+        int length = Math.min(window.length - (windowEnd - windowStart), end - windowEnd);
+        length = Math.min(length, Math.max(chunkSize, offset + 1 - windowEnd));
+        ByteBuffer bytes = ByteBuffer.wrap(window, windowEnd - windowStart, length);
+        try {
+            while (windowEnd <= offset) {
+                int count = channel.read(bytes);
+                if (count < 0) {
+                    throw new SAXException("Premature end of file.");
+                }
+                windowEnd += count;
+            }
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    private void reset() {
+        text.length = 0;
+        depth = 0;
+        namespaceCount = 0;
+        pushNamespace(XML_PREFIX, XML_NS_URI);
+        pushNamespace("", "");
+        if (names.size() > MAX_CACHED_NAMES) {
+            names.clear();
+        }
+    }
+
+    /**
+     * Skips the byte order mark and XML declaration and checks that the prolog can be handled by this scanner.
+     */
+    private boolean scanProlog() throws SAXException {
+        if (end >= 3 && (byteAt(0) & 0xFF) == 0xEF && (byteAt(1) & 0xFF) == 0xBB && (byteAt(2) & 0xFF) == 0xBF) {
+            pos = 3;
+        } else if (end >= 2 && ((byteAt(0) & 0xFF) == 0xFE || (byteAt(0) & 0xFF) == 0xFF)) {
+            // UTF-16 byte order mark.
+            return false;
+        }
+        if (startsWith(pos, "<?xml") && pos + 5 < end && isWhitespace(byteAt(pos + 5))) {
+            int declEnd = indexOf(pos, "?>");
+            if (declEnd < 0) {
+                throw new SAXException("The XML declaration must end with \"?>\".");
+            }
+            String encoding = getPseudoAttribute(pos + 5, declEnd, "encoding");
+            if (encoding != null && !encoding.equalsIgnoreCase("UTF-8") && !encoding.equalsIgnoreCase("UTF8")
+                    && !encoding.equalsIgnoreCase("US-ASCII") && !encoding.equalsIgnoreCase("ASCII")) {
+                return false;
+            }
+            pos = declEnd + 2;
+        }
+        int i = pos;
+        while (i < end) {
+            byte b = byteAt(i);
+            if (isWhitespace(b)) {
+                ++i;
+            } else if (startsWith(i, "<!--")) {
+                int close = indexOf(i + 4, "-->");
+                i = close < 0 ? end : close + 3;
+            } else if (startsWith(i, "<?")) {
+                int close = indexOf(i + 2, "?>");
+                i = close < 0 ? end : close + 2;
+            } else {
+                return !startsWith(i, "<!DOCTYPE");
+            }
+        }
+        return true;
+    }
+
+    private String getPseudoAttribute(int start, int stop, String name) throws SAXException {
+        String decl = new String(getBytes(start, stop), StandardCharsets.US_ASCII);
+        int idx = decl.indexOf(name);
+        if (idx < 0) {
+            return null;
+        }
+        int eq = decl.indexOf('=', idx + name.length());
+        if (eq < 0) {
+            return null;
+        }
+        int q = eq + 1;
+        while (q < decl.length() && Character.isWhitespace(decl.charAt(q))) {
+            ++q;
+        }
+        if (q >= decl.length()) {
+            return null;
+        }
+        int close = decl.indexOf(decl.charAt(q), q + 1);
+        return close < 0 ? null : decl.substring(q + 1, close);
+    }
+
+    private void scanDocument() throws SAXException {
+        boolean rootSeen = false;
+        while (pos < end) {
+            mark = pos;
+            byte b = byteAt(pos);
+            if (b == '<') {
+                flushText();
+                byte next = pos + 1 < end ? byteAt(pos + 1) : 0;
+                if (next == '/') {
+                    scanEndTag();
+                } else if (next == '?') {
+                    scanProcessingInstruction();
+                } else if (next == '!') {
+                    if (startsWith(pos, "<!--")) {
+                        scanComment();
+                    } else if (depth > 0 && startsWith(pos, "<![CDATA[")) {
+                        scanCData();
+                    } else {
+                        throw new SAXException("The markup in the document is not well-formed.");
+                    }
+                } else {
+                    if (depth == 0 && rootSeen) {
+                        throw new SAXException("The markup in the document following the root element must be "
+                                + "well-formed.");
+                    }
+                    rootSeen = true;
+                    scanStartTag();
+                }
+            } else if (depth == 0) {
+                if (!isWhitespace(b)) {
+                    throw new SAXException("Content is not allowed in " + (rootSeen ? "trailing section." : "prolog."));
+                }
+                ++pos;
+            } else if (b == '&') {
+                scanReference(text);
+            } else {
+                int start = pos;
+                while (pos < end) {
+                    b = byteAt(pos);
+                    if (b == '<' || b == '&') {
+                        break;
+                    } else if (b == '>' && pos - start >= 2 && byteAt(pos - 1) == ']' && byteAt(pos - 2) == ']') {
+                        throw new SAXException("The character sequence \"]]>\" must not appear in content unless "
+                                + "used to mark the end of a CDATA section.");
+                    }
+                    ++pos;
+                }
+                appendNormalized(start, pos, text);
+            }
+        }
+        if (!rootSeen) {
+            throw new SAXException("Premature end of file.");
+        }
+        if (depth > 0) {
+            throw new SAXException("XML document structures must start and end within the same entity.");
+        }
+    }
+
+    private void flushText() throws SAXException {
+        if (text.length > 0) {
+            handler.characters(text.bytes, 0, text.length);
+            text.length = 0;
+        }
+    }
+
+    private void scanStartTag() throws SAXException {
+        ++pos;
+        Name name = scanName();
+        int namespaceMark = namespaceCount;
+        attributeCount = 0;
+        attributeValues.length = 0;
+        boolean empty = false;
+        while (true) {
+            boolean spaced = skipWhitespace();
+            byte b = current();
+            if (b == '>') {
+                ++pos;
+                break;
+            } else if (b == '/') {
+                ++pos;
+                expect('>');
+                empty = true;
+                break;
+            } else if (!spaced) {
+                throw new SAXException("Element type \"" + name.qName
+                        + "\" must be followed by either attribute specifications, \">\" or \"/>\".");
+            }
+            Name attribute = scanName();
+            skipWhitespace();
+            expect('=');
+            skipWhitespace();
+            byte quote = current();
+            if (quote != '"' && quote != '\'') {
+                throw new SAXException("Open quote is expected for attribute \"" + attribute.qName
+                        + "\" associated with an element type \"" + name.qName + "\".");
+            }
+            ++pos;
+            int valueStart = attributeValues.length;
+            scanAttributeValue(quote);
+            int valueLength = attributeValues.length - valueStart;
+            if (attribute.qName.equals(XMLNS_PREFIX)) {
+                pushNamespace("", toString(attributeValues, valueStart, valueLength));
+                attributeValues.length = valueStart;
+            } else if (attribute.prefix.equals(XMLNS_PREFIX)) {
+                pushNamespace(attribute.localName, toString(attributeValues, valueStart, valueLength));
+                attributeValues.length = valueStart;
+            } else {
+                addAttribute(name, attribute, valueStart, valueLength);
+            }
+        }
+
+        String uri = lookupNamespace(name);
+        resolveAttributes(name);
+        pushElement(name, uri, namespaceMark);
+        if (handler.startElementNode(uri, name.localName, name.prefix)) {
+            for (int i = 0; i < attributeCount; ++i) {
+                Name attribute = attributeNames[i];
+                handler.attributeNode(attributeUris[i], attribute.localName, attribute.prefix, attributeValues.bytes,
+                        attributeStarts[i], attributeLengths[i]);
+            }
+            handler.endAttributes();
+        } else if (!empty && handler.canSkipChildren()) {
+            skipChildren();
+            scanEndTag();
+            return;
+        }
+        if (empty) {
+            endElement();
+        }
+    }
+
+    /**
+     * Moves to the end tag of the element without reporting its content. Only the nesting of the markup is tracked,
+     * the content is not checked for well-formedness.
+     */
+    private void skipChildren() throws SAXException {
+        int level = 1;
+        while (true) {
+            mark = pos;
+            int lt = indexOf(pos, '<');
+            if (lt < 0 || lt + 1 >= end) {
+                throw new SAXException("XML document structures must start and end within the same entity.");
+            }
+            mark = lt;
+            byte next = byteAt(lt + 1);
+            if (next == '/') {
+                if (--level == 0) {
+                    pos = lt;
+                    return;
+                }
+                pos = skipTo(lt + 2, ">");
+            } else if (next == '!') {
+                if (startsWith(lt, "<!--")) {
+                    pos = skipTo(lt + 4, "-->");
+                } else if (startsWith(lt, "<![CDATA[")) {
+                    pos = skipTo(lt + 9, "]]>");
+                } else {
+                    pos = skipTo(lt + 2, ">");
+                }
+            } else if (next == '?') {
+                pos = skipTo(lt + 2, "?>");
+            } else {
+                // Start tag, the attribute values may contain '>'.
+                int i = lt + 1;
+                byte quote = 0;
+                byte previous = 0;
+                while (i < end) {
+                    byte b = byteAt(i);
+                    if (quote != 0) {
+                        if (b == quote) {
+                            quote = 0;
+                        }
+                    } else if (b == '"' || b == '\'') {
+                        quote = b;
+                    } else if (b == '>') {
+                        break;
+                    }
+                    previous = b;
+                    ++i;
+                }
+                if (i >= end) {
+                    throw new SAXException("XML document structures must start and end within the same entity.");
+                }
+                if (previous != '/') {
+                    ++level;
+                }
+                pos = i + 1;
+            }
+        }
+    }
+
+    private int skipTo(int offset, String s) throws SAXException {
+        int idx = indexOf(offset, s);
+        if (idx < 0) {
+            throw new SAXException("XML document structures must start and end within the same entity.");
+        }
+        return idx + s.length();
+    }
+
+    private void addAttribute(Name element, Name attribute, int valueStart, int valueLength) throws SAXException {
+        for (int i = 0; i < attributeCount; ++i) {
+            if (attributeNames[i] == attribute) {
+                throw new SAXException("Attribute \"" + attribute.qName + "\" was already specified for element \""
+                        + element.qName + "\".");
+            }
+        }
+        if (attributeCount == attributeNames.length) {
+            attributeNames = Arrays.copyOf(attributeNames, attributeCount * 2);
+            attributeUris = Arrays.copyOf(attributeUris, attributeCount * 2);
+            attributeStarts = Arrays.copyOf(attributeStarts, attributeCount * 2);
+            attributeLengths = Arrays.copyOf(attributeLengths, attributeCount * 2);
+        }
+        attributeNames[attributeCount] = attribute;
+        attributeStarts[attributeCount] = valueStart;
+        attributeLengths[attributeCount] = valueLength;
+        ++attributeCount;
+    }
+
+    /**
+     * Looks up the namespaces of the attributes, once all namespace declarations of the start tag are known, and
+     * checks that no two attributes have the same local name and namespace.
+     */
+    private void resolveAttributes(Name element) throws SAXException {
+        for (int i = 0; i < attributeCount; ++i) {
+            Name attribute = attributeNames[i];
+            String uri = attribute.prefix.isEmpty() ? "" : lookupNamespace(attribute);
+            for (int j = 0; j < i; ++j) {
+                if (attributeNames[j].localName.equals(attribute.localName) && attributeUris[j].equals(uri)) {
+                    throw new SAXException("Attribute \"" + attribute.localName + "\" bound to namespace \"" + uri
+                            + "\" was already specified for element \"" + element.qName + "\".");
+                }
+            }
+            attributeUris[i] = uri;
+        }
+    }
+
+    private void scanEndTag() throws SAXException {
+        pos += 2;
+        Name name = scanName();
+        skipWhitespace();
+        expect('>');
+        if (depth == 0) {
+            throw new SAXException("The markup in the document following the root element must be well-formed.");
+        }
+        Name open = elementNames[depth - 1];
+        if (open != name && !open.qName.equals(name.qName)) {
+            throw new SAXException("The element type \"" + open.qName
+                    + "\" must be terminated by the matching end-tag \"</" + open.qName + ">\".");
+        }
+        endElement();
+    }
+
+    private void endElement() throws SAXException {
+        --depth;
+        Name name = elementNames[depth];
+        handler.endElement(elementUris[depth], name.localName, name.qName);
+        namespaceCount = namespaceMarks[depth];
+    }
+
+    private void scanComment() throws SAXException {
+        int start = pos + 4;
+        int close = indexOf(start, "-->");
+        if (close < 0) {
+            throw new SAXException("The comment must end with \"-->\".");
+        }
+        if (indexOf(start, "--") < close) {
+            throw new SAXException("The string \"--\" is not permitted within comments.");
+        }
+        markup.length = 0;
+        appendNormalized(start, close, markup);
+        pos = close + 3;
+        handler.comment(markup.bytes, 0, markup.length);
+    }
+
+    private void scanCData() throws SAXException {
+        int start = pos + 9;
+        int close = indexOf(start, "]]>");
+        if (close < 0) {
+            throw new SAXException("The CDATA section must end with \"]]>\".");
+        }
+        appendNormalized(start, close, text);
+        pos = close + 3;
+    }
+
+    private void scanProcessingInstruction() throws SAXException {
+        pos += 2;
+        Name target = scanName();
+        if (target.qName.equalsIgnoreCase(XML_PREFIX)) {
+            throw new SAXException("The processing instruction target matching \"[xX][mM][lL]\" is not allowed.");
+        }
+        skipWhitespace();
+        int close = indexOf(pos, "?>");
+        if (close < 0) {
+            throw new SAXException("The processing instruction must end with \"?>\".");
+        }
+        markup.length = 0;
+        appendNormalized(pos, close, markup);
+        pos = close + 2;
+        handler.processingInstruction(target.qName, toString(markup, 0, markup.length));
+    }
+
+    private void scanAttributeValue(byte quote) throws SAXException {
+        while (true) {
+            if (pos >= end) {
+                throw new SAXException("XML document structures must start and end within the same entity.");
+            }
+            byte b = byteAt(pos);
+            if (b == quote) {
+                ++pos;
+                return;
+            } else if (b == '&') {
+                scanReference(attributeValues);
+            } else if (b == '<') {
+                throw new SAXException("The value of attribute must not contain the '<' character.");
+            } else {
+                int start = pos;
+                while (pos < end) {
+                    b = byteAt(pos);
+                    if (b == quote || b == '&' || b == '<') {
+                        break;
+                    }
+                    ++pos;
+                }
+                int valueStart = attributeValues.length;
+                appendNormalized(start, pos, attributeValues);
+                // Attribute value normalization for literal white space.
+                byte[] bytes = attributeValues.bytes;
+                for (int i = valueStart; i < attributeValues.length; ++i) {
+                    if (bytes[i] == '\n' || bytes[i] == '\t') {
+                        bytes[i] = ' ';
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the character of a character or predefined entity reference. The reference ends at the first ';', which
+     * must come before any byte that cannot be part of a reference. Character references may have any number of
+     * digits, as long as their value is an XML character.
+     */
+    private void scanReference(ByteArray target) throws SAXException {
+        int close = pos + 1;
+        while (close < end) {
+            byte b = byteAt(close);
+            if (b == ';') {
+                break;
+            } else if (isWhitespace(b) || b == '<' || b == '&' || b == '"' || b == '\'') {
+                throw new SAXException("The entity reference must end with the ';' delimiter.");
+            }
+            ++close;
+        }
+        if (close >= end) {
+            throw new SAXException("The entity reference must end with the ';' delimiter.");
+        }
+        if (byteAt(pos + 1) == '#') {
+            int codePoint = 0;
+            int radix = 10;
+            int i = pos + 2;
+            if (i < close && byteAt(i) == 'x') {
+                radix = 16;
+                ++i;
+            }
+            if (i == close) {
+                throw new SAXException("A decimal or hexadecimal representation must follow \"&#\".");
+            }
+            for (; i < close; ++i) {
+                int digit = Character.digit(byteAt(i), radix);
+                if (digit < 0 || codePoint > Character.MAX_CODE_POINT) {
+                    throw new SAXException("A decimal or hexadecimal representation must follow \"&#\".");
+                }
+                codePoint = codePoint * radix + digit;
+            }
+            if (!isXmlChar(codePoint)) {
+                throw new SAXException("Character reference \"&#" + codePoint + "\" is an invalid XML character.");
+            }
+            target.appendCodePoint(codePoint);
+        } else if (startsWith(pos, "&lt;")) {
+            target.append((byte) '<');
+        } else if (startsWith(pos, "&gt;")) {
+            target.append((byte) '>');
+        } else if (startsWith(pos, "&amp;")) {
+            target.append((byte) '&');
+        } else if (startsWith(pos, "&apos;")) {
+            target.append((byte) '\'');
+        } else if (startsWith(pos, "&quot;")) {
+            target.append((byte) '"');
+        } else {
+            throw new SAXException("The entity \"" + new String(getBytes(pos + 1, close), StandardCharsets.UTF_8)
+                    + "\" was referenced, but not declared.");
+        }
+        pos = close + 1;
+    }
+
+    /**
+     * Copies the bytes into the target, normalizing line ends and encoding supplementary characters as surrogate
+     * pairs (modified UTF-8). Bytes that are not the UTF-8 encoding of XML characters are rejected.
+     */
+    private void appendNormalized(int start, int stop, ByteArray target) throws SAXException {
+        int i = start;
+        while (i < stop) {
+            int runStart = i;
+            byte b = 0;
+            // Printable ASCII is copied as is, control characters and non-ASCII bytes are negative or below space.
+            while (i < stop) {
+                b = byteAt(i);
+                if (b < 0x20) {
+                    break;
+                }
+                ++i;
+            }
+            target.append(window, runStart - windowStart, i - runStart);
+            if (i >= stop) {
+                break;
+            }
+            if (b == '\r') {
+                target.append((byte) '\n');
+                ++i;
+                if (i < stop && byteAt(i) == '\n') {
+                    ++i;
+                }
+            } else if (b == '\n' || b == '\t') {
+                target.append(b);
+                ++i;
+            } else if (b >= 0) {
+                throw invalidCharacter(b);
+            } else {
+                i = appendMultiByte(i, stop, target);
+            }
+        }
+    }
+
+    /**
+     * Checks and copies one multi byte UTF-8 sequence.
+     *
+     * @return the offset after the sequence
+     */
+    private int appendMultiByte(int i, int stop, ByteArray target) throws SAXException {
+        int b = byteAt(i) & 0xFF;
+        int length;
+        int codePoint;
+        int min;
+        if ((b & 0xE0) == 0xC0) {
+            length = 2;
+            codePoint = b & 0x1F;
+            min = 0x80;
+        } else if ((b & 0xF0) == 0xE0) {
+            length = 3;
+            codePoint = b & 0x0F;
+            min = 0x800;
+        } else if ((b & 0xF8) == 0xF0) {
+            length = 4;
+            codePoint = b & 0x07;
+            min = Character.MIN_SUPPLEMENTARY_CODE_POINT;
+        } else {
+            throw invalidByte(1);
+        }
+        if (i + length > stop) {
+            throw invalidByte(length);
+        }
+        for (int j = 1; j < length; ++j) {
+            int c = byteAt(i + j) & 0xFF;
+            if ((c & 0xC0) != 0x80) {
+                throw invalidByte(j + 1);
+            }
+            codePoint = (codePoint << 6) | (c & 0x3F);
+        }
+        if (codePoint < min) {
+            throw invalidByte(length);
+        }
+        if (!isXmlChar(codePoint)) {
+            throw invalidCharacter(codePoint);
+        }
+        if (length == 4) {
+            target.appendCodePoint(codePoint);
+        } else {
+            target.append(window, i - windowStart, length);
+        }
+        return i + length;
+    }
+
+    private static boolean isXmlChar(int c) {
+        return c == 0x9 || c == 0xA || c == 0xD || (c >= 0x20 && c <= 0xD7FF) || (c >= 0xE000 && c <= 0xFFFD)
+                || (c >= Character.MIN_SUPPLEMENTARY_CODE_POINT && c <= Character.MAX_CODE_POINT);
+    }
+
+    private static SAXException invalidByte(int index) {
+        return new SAXException("Invalid byte " + index + " of UTF-8 sequence.");
+    }
+
+    private static SAXException invalidCharacter(int codePoint) {
+        return new SAXException("An invalid XML character (Unicode: 0x" + Integer.toHexString(codePoint)
+                + ") was found in the document.");
+    }
+
+    private Name scanName() throws SAXException {
+        int start = pos;
+        int hash = 0;
+        while (pos < end) {
+            byte b = byteAt(pos);
+            if (isWhitespace(b) || b == '>' || b == '/' || b == '=' || b == '<' || b == '?' || b == '"'
+                    || b == '\'') {
+                break;
+            }
+            hash = 31 * hash + b;
+            ++pos;
+        }
+        if (pos == start) {
+            throw new SAXException("The markup in the document is not well-formed.");
+        }
+        Name name = names.lookup(window, start - windowStart, pos - start, hash);
+        if (!name.valid) {
+            throw new SAXException("The name \"" + name.qName + "\" is not a valid XML name.");
+        }
+        return name;
+    }
+
+    private String lookupNamespace(Name name) throws SAXException {
+        for (int i = namespaceCount - 1; i >= 0; --i) {
+            if (namespacePrefixes[i].equals(name.prefix)) {
+                return namespaceUris[i];
+            }
+        }
+        throw new SAXException(
+                "The prefix \"" + name.prefix + "\" for element \"" + name.qName + "\" is not bound.");
+    }
+
+    private void pushNamespace(String prefix, String uri) {
+        if (namespaceCount == namespacePrefixes.length) {
+            namespacePrefixes = Arrays.copyOf(namespacePrefixes, namespaceCount * 2);
+            namespaceUris = Arrays.copyOf(namespaceUris, namespaceCount * 2);
+        }
+        namespacePrefixes[namespaceCount] = prefix;
+        namespaceUris[namespaceCount] = uri;
+        ++namespaceCount;
+    }
+
+    private void pushElement(Name name, String uri, int namespaceMark) {
+        if (depth == elementNames.length) {
+            elementNames = Arrays.copyOf(elementNames, depth * 2);
+            elementUris = Arrays.copyOf(elementUris, depth * 2);
+            namespaceMarks = Arrays.copyOf(namespaceMarks, depth * 2);
+        }
+        elementNames[depth] = name;
+        elementUris[depth] = uri;
+        namespaceMarks[depth] = namespaceMark;
+        ++depth;
+    }
+
+    private byte current() throws SAXException {
+        if (pos >= end) {
+            throw new SAXException("XML document structures must start and end within the same entity.");
+        }
+        return byteAt(pos);
+    }
+
+    private void expect(char c) throws SAXException {
+        if (current() != c) {
+            throw new SAXException("The markup in the document is not well-formed, expected '" + c + "'.");
+        }
+        ++pos;
+    }
+
+    private boolean skipWhitespace() throws SAXException {
+        int start = pos;
+        while (pos < end && isWhitespace(byteAt(pos))) {
+            ++pos;
+        }
+        return pos > start;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+    }
+
+    private boolean startsWith(int offset, String s) throws SAXException {
+        if (offset + s.length() > end) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); ++i) {
+            if (byteAt(offset + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(int offset, String s) throws SAXException {
+        byte first = (byte) s.charAt(0);
+        for (int i = offset; i + s.length() <= end; ++i) {
+            if (byteAt(i) == first && startsWith(i, s)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(int offset, char c) throws SAXException {
+        for (int i = offset; i < end; ++i) {
+            if (byteAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private byte[] getBytes(int start, int stop) throws SAXException {
+        byte[] bytes = new byte[stop - start];
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = byteAt(start + i);
+        }
+        return bytes;
+    }
+
+    /**
+     * Decodes modified UTF-8, which has supplementary characters as surrogate pairs of three byte sequences.
+     */
+    private static String toString(ByteArray array, int start, int length) {
+        byte[] bytes = array.bytes;
+        char[] chars = new char[length];
+        int count = 0;
+        int i = start;
+        while (i < start + length) {
+            int b = bytes[i] & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+                i += 1;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[count++] = (char) (((b & 0x1F) << 6) | (bytes[i + 1] & 0x3F));
+                i += 2;
+            } else {
+                chars[count++] = (char) (((b & 0x0F) << 12) | ((bytes[i + 1] & 0x3F) << 6) | (bytes[i + 2] & 0x3F));
+                i += 3;
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private static final class ByteArray {
+        byte[] bytes = new byte[256];
+        int length;
+
+        void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
+
+        void append(byte b) {
+            ensureCapacity(length + 1);
+            bytes[length++] = b;
+        }
+
+        void append(byte[] source, int start, int count) {
+            if (count <= 0) {
+                return;
+            }
+            ensureCapacity(length + count);
+            System.arraycopy(source, start, bytes, length, count);
+            length += count;
+        }
+
+        void appendCodePoint(int codePoint) {
+            if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                appendChar(Character.highSurrogate(codePoint));
+                appendChar(Character.lowSurrogate(codePoint));
+            } else {
+                appendChar((char) codePoint);
+            }
+        }
+
+        private void appendChar(char c) {
+            ensureCapacity(length + 3);
+            if (c > 0 && c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[length++] = (byte) (0xC0 | (c >> 6));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                bytes[length++] = (byte) (0xE0 | (c >> 12));
+                bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static final class Name {
+        final byte[] bytes;
+        final int hash;
+        final String qName;
+        final String prefix;
+        final String localName;
+        final boolean valid;
+        Name next;
+
+        Name(byte[] bytes, int hash) {
+            this.bytes = bytes;
+            this.hash = hash;
+            String decoded;
+            try {
+                decoded = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+            } catch (CharacterCodingException e) {
+                decoded = null;
+            }
+            qName = decoded == null ? new String(bytes, StandardCharsets.UTF_8) : decoded;
+            int idx = qName.indexOf(':');
+            prefix = idx < 0 ? "" : qName.substring(0, idx);
+            localName = idx < 0 ? qName : qName.substring(idx + 1);
+            valid = decoded != null && (idx < 0 ? isNCName(qName) : isNCName(prefix) && isNCName(localName));
+        }
+
+        /**
+         * @return true if the name is an XML name without colons
+         */
+        private static boolean isNCName(String name) {
+            if (name.isEmpty()) {
+                return false;
+            }
+            for (int i = 0; i < name.length();) {
+                int c = name.codePointAt(i);
+                if (i == 0 ? !isNameStartChar(c) : !isNameChar(c)) {
+                    return false;
+                }
+                i += Character.charCount(c);
+            }
+            return true;
+        }
+
+        private static boolean isNameStartChar(int c) {
+            return (c >= 'A' && c <= 'Z') || c == '_' || (c >= 'a' && c <= 'z') || (c >= 0xC0 && c <= 0xD6)
+                    || (c >= 0xD8 && c <= 0xF6) || (c >= 0xF8 && c <= 0x2FF) || (c >= 0x370 && c <= 0x37D)
+                    || (c >= 0x37F && c <= 0x1FFF) || (c >= 0x200C && c <= 0x200D) || (c >= 0x2070 && c <= 0x218F)
+                    || (c >= 0x2C00 && c <= 0x2FEF) || (c >= 0x3001 && c <= 0xD7FF) || (c >= 0xF900 && c <= 0xFDCF)
+                    || (c >= 0xFDF0 && c <= 0xFFFD) || (c >= 0x10000 && c <= 0xEFFFF);
+        }
+
+        private static boolean isNameChar(int c) {
+            return isNameStartChar(c) || c == '-' || c == '.' || (c >= '0' && c <= '9') || c == 0xB7
+                    || (c >= 0x300 && c <= 0x36F) || (c >= 0x203F && c <= 0x2040);
+        }
+    }
+
+    /**
+     * Interns the names seen in the markup so each distinct name is decoded only once.
+     */
+    private static final class NameCache {
+        private Name[] table = new Name[256];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            Arrays.fill(table, null);
+            size = 0;
+        }
+
+        Name lookup(byte[] source, int start, int length, int hash) {
+            int idx = hash & (table.length - 1);
+            for (Name n = table[idx]; n != null; n = n.next) {
+                if (n.hash == hash && matches(n.bytes, source, start, length)) {
+                    return n;
+                }
+            }
+            byte[] bytes = Arrays.copyOfRange(source, start, start + length);
+            Name n = new Name(bytes, hash);
+            n.next = table[idx];
+            table[idx] = n;
+            if (++size > table.length * 3 / 4) {
+                rehash();
+            }
+            return n;
+        }
+
+        private static boolean matches(byte[] bytes, byte[] source, int start, int length) {
+            if (bytes.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; ++i) {
+                if (bytes[i] != source[start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            Name[] old = table;
+            table = new Name[old.length * 2];
+            for (Name head : old) {
+                Name n = head;
+                while (n != null) {
+                    Name next = n.next;
+                    int idx = n.hash & (table.length - 1);
+                    n.next = table[idx];
+                    table[idx] = n;
+                    n = next;
+                }
+            }
+        }
+    }
+}
@@ -45,6 +45,7 @@ public class XMLParser implements IParser {
     final InputSource in;
     final String nodeId;
     final int bufferSize;
+    final UTF8XMLScanner scanner;
 
     public XMLParser(boolean attachTypes, ITreeNodeIdProvider idProvider, String nodeId) throws HyracksDataException {
         this(attachTypes, idProvider, nodeId, null, null, null);
@@ -65,6 +66,8 @@ public class XMLParser implements IParser {
                 }
                 handler = new SAXContentHandler(attachTypes, idProvider, appender, childSequenceTypes);
             }
+            scanner = Boolean.parseBoolean(System.getProperty("vxquery.byte_scanner", "true"))
+                    ? new UTF8XMLScanner(handler) : null;
             parser.setContentHandler(handler);
             parser.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
             in = new InputSource();
@@ -87,7 +90,20 @@ public class XMLParser implements IParser {
     }
 
     public void parseElements(File file, IFrameWriter writer, int tupleIndex) throws HyracksDataException {
+        handler.setupElementWriter(writer, tupleIndex);
+        parseElements(file);
+    }
+
+    public void parseElements(File file, ElementBuffer elementBuffer, int tupleIndex) throws HyracksDataException {
+        handler.setupElementBuffer(elementBuffer, tupleIndex);
+        parseElements(file);
+    }
+
+    private void parseElements(File file) throws HyracksDataException {
         try {
+            if (scanner != null && scanner.parse(file)) {
+                return;
+            }
             Reader input;
             if (bufferSize > 0) {
                 input = new BufferedReader(new InputStreamReader(new FileInputStream(file)), bufferSize);
@@ -95,7 +111,6 @@ public class XMLParser implements IParser {
                 input = new InputStreamReader(new FileInputStream(file));
             }
             in.setCharacterStream(input);
-            handler.setupElementWriter(writer, tupleIndex);
             parser.parse(in);
             input.close();
         } catch (FileNotFoundException e) {
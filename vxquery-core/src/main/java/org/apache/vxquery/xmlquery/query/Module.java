@@ -14,8 +14,12 @@
  */
 package org.apache.vxquery.xmlquery.query;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import org.apache.vxquery.compiler.CompilerControlBlock;
 import org.apache.vxquery.context.StaticContext;
+import org.apache.vxquery.metadata.CollectionStatistics;
 
 import org.apache.hyracks.algebricks.core.algebra.base.ILogicalPlan;
 import org.apache.hyracks.api.job.JobSpecification;
@@ -28,6 +32,7 @@ public class Module {
     private PrologVariable[] gVariables;
     private ILogicalPlan body;
     private JobSpecification jobSpec;
+    private Collection<CollectionStatistics> collectionStatistics = Collections.emptyList();
 
     public Module() {
     }
@@ -87,4 +92,15 @@ public class Module {
     public void setHyracksJobSpecification(JobSpecification jobSpec) {
         this.jobSpec = jobSpec;
     }
+
+    /**
+     * @return the statistics of the collections the optimizer based its choices on
+     */
+    public Collection<CollectionStatistics> getCollectionStatistics() {
+        return collectionStatistics;
+    }
+
+    public void setCollectionStatistics(Collection<CollectionStatistics> collectionStatistics) {
+        this.collectionStatistics = collectionStatistics;
+    }
 }
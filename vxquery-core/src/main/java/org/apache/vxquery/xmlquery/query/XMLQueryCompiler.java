@@ -69,6 +69,7 @@ import org.apache.vxquery.exceptions.SystemException;
 import org.apache.vxquery.metadata.VXQueryMetadataProvider;
 import org.apache.vxquery.runtime.provider.VXQueryBinaryHashFunctionFactoryProvider;
 import org.apache.vxquery.runtime.provider.VXQueryBinaryHashFunctionFamilyProvider;
+import org.apache.vxquery.runtime.provider.VXQueryNormalizedKeyComputerFactoryProvider;
 import org.apache.vxquery.types.BuiltinTypeRegistry;
 import org.apache.vxquery.types.Quantifier;
 import org.apache.vxquery.types.SequenceType;
@@ -162,6 +163,7 @@ public class XMLQueryCompiler {
         builder.setPrinterProvider(VXQueryPrinterFactoryProvider.INSTANCE);
         builder.setExpressionRuntimeProvider(new VXQueryExpressionRuntimeProvider());
         builder.setComparatorFactoryProvider(new VXQueryComparatorFactoryProvider());
+        builder.setNormalizedKeyComputerFactoryProvider(VXQueryNormalizedKeyComputerFactoryProvider.INSTANCE);
         builder.setBinaryBooleanInspectorFactory(new VXQueryBinaryBooleanInspectorFactory());
         builder.setBinaryIntegerInspectorFactory(new VXQueryBinaryIntegerInspectorFactory());
         builder.setExpressionTypeComputer(new IExpressionTypeComputer() {
@@ -241,6 +243,7 @@ public class XMLQueryCompiler {
         jobSpec = compiler.createJob(null, null);
         jobSpec.setFrameSize(frameSize);
         module.setHyracksJobSpecification(jobSpec);
+        module.setCollectionStatistics(mdProvider.getCollectionStatistics());
         listener.notifyCodegenResult(module);
     }
 
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.compiler.rewriter.rules;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.mutable.Mutable;
+import org.apache.hyracks.algebricks.core.algebra.base.ILogicalOperator;
+import org.apache.hyracks.algebricks.core.algebra.base.LogicalOperatorTag;
+import org.apache.hyracks.algebricks.core.algebra.operators.logical.AbstractBinaryJoinOperator;
+import org.apache.hyracks.algebricks.core.algebra.operators.logical.DataSourceScanOperator;
+import org.apache.hyracks.api.client.NodeControllerInfo;
+import org.apache.hyracks.api.comm.NetworkAddress;
+import org.apache.hyracks.api.dataset.ResultSetId;
+import org.apache.vxquery.compiler.CompilerControlBlock;
+import org.apache.vxquery.context.RootStaticContextImpl;
+import org.apache.vxquery.context.StaticContextImpl;
+import org.apache.vxquery.metadata.AbstractVXQueryDataSource;
+import org.apache.vxquery.xmlquery.query.XMLQueryCompiler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SetJoinBuildSideRuleTest {
+    private File small;
+    private File large;
+
+    @Before
+    public void setUp() throws IOException {
+        small = createCollection("stations", 1, 1);
+        large = createCollection("sensors", 4, 100);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(small);
+        FileUtils.deleteDirectory(large);
+    }
+
+    @Test
+    public void smallerLeftInputBecomesBuildSide() throws Exception {
+        AbstractBinaryJoinOperator join = compileJoin(small, large);
+        Assert.assertTrue(scans(join.getInputs().get(0).getValue(), large));
+        Assert.assertTrue(scans(join.getInputs().get(1).getValue(), small));
+    }
+
+    @Test
+    public void smallerRightInputStaysBuildSide() throws Exception {
+        AbstractBinaryJoinOperator join = compileJoin(large, small);
+        Assert.assertTrue(scans(join.getInputs().get(0).getValue(), large));
+        Assert.assertTrue(scans(join.getInputs().get(1).getValue(), small));
+    }
+
+    private static File createCollection(String name, int documents, int records) throws IOException {
+        File directory = File.createTempFile("vxquery", name);
+        directory.delete();
+        directory.mkdir();
+        for (int d = 0; d < documents; ++d) {
+            StringBuilder xml = new StringBuilder("<collection>");
+            for (int r = 0; r < records; ++r) {
+                xml.append("<record><id>").append(r).append("</id><value>").append(d * records + r)
+                        .append("</value></record>");
+            }
+            xml.append("</collection>");
+            FileUtils.writeStringToFile(new File(directory, "document" + d + ".xml"), xml.toString(), "UTF-8");
+        }
+        return directory;
+    }
+
+    private static AbstractBinaryJoinOperator compileJoin(File first, File second) throws Exception {
+        String query = "for $a in collection(\"" + first.getAbsolutePath() + "\")/collection/record\n"
+                + "for $b in collection(\"" + second.getAbsolutePath() + "\")/collection/record\n"
+                + "where $a/id eq $b/id\n" + "return $b/value";
+        Map<String, NodeControllerInfo> nodeControllerInfos = new HashMap<String, NodeControllerInfo>();
+        nodeControllerInfos.put("nc1",
+                new NodeControllerInfo("nc1", null, new NetworkAddress("127.0.0.1", 0), null, null, 1));
+        XMLQueryCompiler compiler = new XMLQueryCompiler(null, nodeControllerInfos, 65536);
+        CompilerControlBlock ccb = new CompilerControlBlock(new StaticContextImpl(RootStaticContextImpl.INSTANCE),
+                new ResultSetId(System.nanoTime()), null);
+        compiler.compile("join", new StringReader(query), ccb, Integer.MAX_VALUE, null);
+        AbstractBinaryJoinOperator join = null;
+        for (Mutable<ILogicalOperator> root : compiler.getModule().getBody().getRoots()) {
+            join = join != null ? join : findJoin(root.getValue());
+        }
+        Assert.assertNotNull(join);
+        return join;
+    }
+
+    private static AbstractBinaryJoinOperator findJoin(ILogicalOperator op) {
+        if (op.getOperatorTag() == LogicalOperatorTag.INNERJOIN) {
+            return (AbstractBinaryJoinOperator) op;
+        }
+        for (Mutable<ILogicalOperator> input : op.getInputs()) {
+            AbstractBinaryJoinOperator join = findJoin(input.getValue());
+            if (join != null) {
+                return join;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if a scan below the operator reads the collection
+     */
+    private static boolean scans(ILogicalOperator op, File collection) {
+        if (op.getOperatorTag() == LogicalOperatorTag.DATASOURCESCAN) {
+            Object ds = ((DataSourceScanOperator) op).getDataSource();
+            if (ds instanceof AbstractVXQueryDataSource) {
+                for (String partition : ((AbstractVXQueryDataSource) ds).getPartitions()) {
+                    if (partition.contains(collection.getName())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        for (Mutable<ILogicalOperator> input : op.getInputs()) {
+            if (scans(input.getValue(), collection)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.vxquery.datamodel;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hyracks.data.std.primitive.IntegerPointable;
+import org.apache.hyracks.data.std.primitive.UTF8StringPointable;
+import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
+import org.apache.vxquery.datamodel.builders.atomic.StringValueBuilder;
+import org.apache.vxquery.datamodel.builders.nodes.DictionaryBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DictionaryBuilderTest {
+    private final DictionaryBuilder db = new DictionaryBuilder();
+    private final StringValueBuilder svb = new StringValueBuilder();
+    private final ArrayBackedValueStorage abvsString = new ArrayBackedValueStorage();
+    private final UTF8StringPointable stringp = (UTF8StringPointable) UTF8StringPointable.FACTORY.createPointable();
+
+    private int lookupUTF8(String str) throws IOException {
+        abvsString.reset();
+        svb.write(str, abvsString.getDataOutput());
+        stringp.set(abvsString);
+        return db.lookup(stringp);
+    }
+
+    @Test
+    public void testStringAndUTF8LookupsShareSlots() throws IOException {
+        db.reset();
+        int a = db.lookup("item");
+        int b = lookupUTF8("name");
+        int c = db.lookup("\u00e9l\u00e9ment");
+        Assert.assertEquals(a, lookupUTF8("item"));
+        Assert.assertEquals(b, db.lookup("name"));
+        Assert.assertEquals(c, lookupUTF8("\u00e9l\u00e9ment"));
+        Assert.assertEquals(3, getEntryCount(write()));
+    }
+
+    @Test
+    public void testSortedIndex() throws IOException {
+        TreeMap<String, Integer> expected = new TreeMap<>();
+        // Reuse the builder across documents, writing in between lookups.
+        for (int document = 0; document < 3; ++document) {
+            db.reset();
+            expected.clear();
+            for (int i = 0; i < 500; ++i) {
+                String str = (i % 3 == 0 ? "\u4e2d" : "n") + ((i * 7919 + document) % 211);
+                int slot = i % 2 == 0 ? db.lookup(str) : lookupUTF8(str);
+                if (!expected.containsKey(str)) {
+                    expected.put(str, slot);
+                }
+                Assert.assertEquals((int) expected.get(str), slot);
+                if (i % 100 == 0) {
+                    write();
+                }
+            }
+
+            ArrayBackedValueStorage abvs = write();
+            int entryCount = getEntryCount(abvs);
+            Assert.assertEquals(expected.size(), entryCount);
+            int sortedOffset = 8 + 4 * entryCount;
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+                Assert.assertEquals((int) entry.getValue(),
+                        IntegerPointable.getInteger(abvs.getByteArray(), sortedOffset + 4 * i++));
+            }
+        }
+    }
+
+    private ArrayBackedValueStorage write() throws IOException {
+        ArrayBackedValueStorage abvs = new ArrayBackedValueStorage();
+        db.write(abvs);
+        return abvs;
+    }
+
+    private int getEntryCount(ArrayBackedValueStorage abvs) {
+        return IntegerPointable.getInteger(abvs.getByteArray(), 4);
+    }
+}
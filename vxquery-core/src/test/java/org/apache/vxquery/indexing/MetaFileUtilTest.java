@@ -23,6 +23,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import javax.xml.bind.JAXBException;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.vxquery.runtime.functions.index.update.IndexChange;
 import org.apache.vxquery.runtime.functions.index.update.MetaFileUtil;
 import org.apache.vxquery.runtime.functions.index.update.XmlMetadata;
 import org.junit.AfterClass;
@@ -38,7 +39,10 @@ import org.junit.runners.MethodSorters;
  * 2) Generating MD5 Hashes
  * 3) Detecting file changes
  * 4) Updating metadata
- * 5) Delete metadata file
+ * 5) Reading metadata and change journal from the file
+ * 6) Detecting changed files by size and modification time
+ * 7) Appending changed and removed entries to the metadata file
+ * 8) Delete metadata file
  */
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class MetaFileUtilTest {
@@ -144,6 +148,81 @@ public class MetaFileUtilTest {
         }
     }
 
+    /**
+     * Read the metadata and the change journal back from the file.
+     */
+    @Test
+    public void step6b_testReadMetadataFile() {
+        metaFileUtil.addChange(new IndexChange(1L, IndexChange.Type.UPDATED, TestConstants.XML_FILE));
+        metaFileUtil.writeMetadataToFile();
+
+        MetaFileUtil fromFile = new MetaFileUtil(TestConstants.INDEX_DIR);
+        fromFile.readMetadataFile();
+        Assert.assertEquals(TestConstants.getXMLMetadataString(modifiedMap.get(TestConstants.XML_FILE)),
+                TestConstants.getXMLMetadataString(fromFile.getMetadata().get(TestConstants.XML_FILE)));
+        Assert.assertEquals(1, fromFile.getJournal().size());
+        Assert.assertEquals(IndexChange.Type.UPDATED, fromFile.getJournal().get(0).getType());
+        Assert.assertEquals(TestConstants.XML_FILE, fromFile.getJournal().get(0).getPath());
+    }
+
+    /**
+     * Detect changed files by their size and modification time.
+     */
+    @Test
+    public void step6c_testDetectChangesBySizeAndTime() throws IOException {
+        File xml = new File(TestConstants.XML_FILE);
+        XmlMetadata metadata = metaFileUtil.updateEntry(xml, null);
+        Assert.assertEquals(xml.length(), metadata.getSize());
+        Assert.assertFalse(metaFileUtil.isChanged(xml, metadata));
+
+        metadata.setModified(metadata.getModified() - 1000);
+        Assert.assertTrue(metaFileUtil.isChanged(xml, metadata));
+
+        metadata = metaFileUtil.updateEntry(xml, metadata);
+        metadata.setSize(metadata.getSize() + 1);
+        Assert.assertTrue(metaFileUtil.isChanged(xml, metadata));
+    }
+
+    /**
+     * Record the size and modification time of a file whose checksum matches.
+     */
+    @Test
+    public void step6c_testRecordTimeWhenChecksumMatches() throws IOException {
+        File xml = new File(TestConstants.XML_FILE);
+        XmlMetadata metadata = new XmlMetadata();
+        metadata.setMd5(metaFileUtil.generateMD5(xml));
+        Assert.assertFalse(metaFileUtil.isChanged(xml, metadata));
+        Assert.assertEquals(xml.length(), metadata.getSize());
+        Assert.assertEquals(xml.lastModified(), metadata.getModified());
+        Assert.assertFalse(metaFileUtil.isChanged(xml, metadata));
+    }
+
+    /**
+     * Append an added and a removed entry to the file and read them back.
+     */
+    @Test
+    public void step6d_testAppendChangedEntries() {
+        MetaFileUtil fromFile = new MetaFileUtil(TestConstants.INDEX_DIR);
+        fromFile.readMetadataFile();
+        ConcurrentHashMap<String, XmlMetadata> metadataMap = fromFile.getMetadata();
+        XmlMetadata added = new XmlMetadata();
+        added.setFileName("added.xml");
+        added.setPath(TestConstants.INDEX_DIR + "/added.xml");
+        metadataMap.put(added.getPath(), added);
+        fromFile.updateMetadataMap(metadataMap, TestConstants.INDEX_DIR);
+        fromFile.writeMetadataToFile();
+
+        metadataMap.remove(TestConstants.XML_FILE);
+        fromFile.writeMetadataToFile();
+
+        MetaFileUtil reread = new MetaFileUtil(TestConstants.INDEX_DIR);
+        reread.readMetadataFile();
+        Assert.assertFalse(reread.getMetadata().containsKey(TestConstants.XML_FILE));
+        Assert.assertEquals(TestConstants.getXMLMetadataString(added),
+                TestConstants.getXMLMetadataString(reread.getMetadata().get(added.getPath())));
+        Assert.assertEquals(1, reread.getJournal().size());
+    }
+
     /**
      * Test deletion of metadata file
      */
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.indexing;
+
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.vxquery.runtime.functions.index.update.MetadataLog;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test cases for the metadata log: damaged ends, impossible record lengths and writers that are not committed.
+ */
+public class MetadataLogTest {
+    private static final byte RECORD = 1;
+
+    private static File directory;
+
+    @BeforeClass
+    public static void setup() throws IOException {
+        directory = Files.createTempDirectory("metadata-log").toFile();
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testAppendAfterIncompleteLength() throws IOException {
+        File file = new File(directory, "incomplete-length");
+        write(new MetadataLog(file), "a", "b");
+        appendBytes(file, new byte[] { 0, 0 });
+
+        MetadataLog log = new MetadataLog(file);
+        Assert.assertEquals(2, read(log).size());
+        Assert.assertTrue(log.isDamaged());
+
+        try (MetadataLog.Writer writer = log.append()) {
+            writer.startRecord(RECORD).writeUTF("c");
+            writer.commit();
+        }
+        MetadataLog reread = new MetadataLog(file);
+        Assert.assertEquals(3, read(reread).size());
+        Assert.assertFalse(reread.isDamaged());
+    }
+
+    @Test
+    public void testImpossibleLength() throws IOException {
+        File file = new File(directory, "impossible-length");
+        write(new MetadataLog(file), "a");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file, true))) {
+            out.writeInt(Integer.MAX_VALUE);
+            out.writeLong(0);
+        }
+
+        MetadataLog log = new MetadataLog(file);
+        Assert.assertEquals(1, read(log).size());
+        Assert.assertTrue(log.isDamaged());
+    }
+
+    @Test
+    public void testRewriteWithoutCommit() throws IOException {
+        File file = new File(directory, "rewrite");
+        write(new MetadataLog(file), "a");
+
+        MetadataLog log = new MetadataLog(file);
+        try (MetadataLog.Writer writer = log.rewrite()) {
+            writer.startRecord(RECORD).writeUTF("b");
+        }
+        Assert.assertFalse(new File(file.getPath() + ".tmp").exists());
+        List<String> values = read(log);
+        Assert.assertEquals(1, values.size());
+        Assert.assertEquals("a", values.get(0));
+    }
+
+    @Test
+    public void testAppendWithoutCommit() throws IOException {
+        File file = new File(directory, "append");
+        write(new MetadataLog(file), "a");
+        long length = file.length();
+
+        MetadataLog log = new MetadataLog(file);
+        read(log);
+        try (MetadataLog.Writer writer = log.append()) {
+            writer.startRecord(RECORD).writeUTF("b");
+            writer.startRecord(RECORD).writeUTF("c");
+        }
+        Assert.assertEquals(length, file.length());
+        Assert.assertEquals(1, read(log).size());
+    }
+
+    private static void write(MetadataLog log, String... values) throws IOException {
+        try (MetadataLog.Writer writer = log.rewrite()) {
+            for (String value : values) {
+                writer.startRecord(RECORD).writeUTF(value);
+            }
+            writer.commit();
+        }
+    }
+
+    private static void appendBytes(File file, byte[] bytes) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(bytes);
+        }
+    }
+
+    private static List<String> read(MetadataLog log) throws IOException {
+        final List<String> values = new ArrayList<>();
+        log.read(new MetadataLog.IRecordHandler() {
+            @Override
+            public void handle(byte type, DataInput in) throws IOException {
+                values.add(in.readUTF());
+            }
+        });
+        return values;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.vxquery.indexing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.vxquery.runtime.functions.index.CaseSensitiveAnalyzer;
+import org.apache.vxquery.runtime.functions.index.ParallelIndexBuilder;
+import org.apache.vxquery.runtime.functions.index.update.Constants;
+import org.apache.vxquery.runtime.functions.index.update.PathSummary;
+import org.apache.vxquery.xmlparser.TreeNodeIdProvider;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test cases for building the documents of a collection on several threads.
+ */
+public class ParallelIndexBuilderTest {
+    private static final File DIR = new File(TestConstants.INDEX_DIR, "parallel");
+    private static final File COLLECTION = new File(DIR, "collection");
+    private static final File INDEX = new File(DIR, "index");
+    private static final int FILE_COUNT = 50;
+
+    private static final List<File> files = new ArrayList<>();
+
+    @BeforeClass
+    public static void setup() throws IOException {
+        FileUtils.deleteDirectory(DIR);
+        FileUtils.forceMkdir(COLLECTION);
+        for (int i = 0; i < FILE_COUNT; ++i) {
+            // Files of different sizes finish parsing out of order.
+            StringBuilder xml = new StringBuilder("<catalog>");
+            for (int j = 0; j < (i % 7) * 100; ++j) {
+                xml.append("<book><title>").append(i).append('-').append(j).append("</title></book>");
+            }
+            xml.append("</catalog>");
+            File file = new File(COLLECTION, "file" + i + ".xml");
+            FileUtils.writeStringToFile(file, xml.toString());
+            files.add(file);
+        }
+    }
+
+    @Test
+    public void testDocumentsNumberedInSubmissionOrder() throws IOException {
+        PathSummary pathSummary = new PathSummary();
+        long bytes = 0;
+        try (Directory directory = FSDirectory.open(INDEX.toPath())) {
+            IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new CaseSensitiveAnalyzer()));
+            ParallelIndexBuilder builder = new ParallelIndexBuilder(writer, 4, new TreeNodeIdProvider((short) 0),
+                    "nc1");
+            builder.setPathSummary(pathSummary, COLLECTION);
+            try {
+                for (File file : files) {
+                    builder.addFile(file);
+                    bytes += file.length();
+                }
+                builder.flush();
+            } finally {
+                builder.close();
+            }
+            Assert.assertEquals(FILE_COUNT, builder.getFileCount());
+            Assert.assertEquals(bytes, builder.getByteCount());
+            writer.close();
+
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                Assert.assertEquals(FILE_COUNT, reader.maxDoc());
+                NumericDocValues sequences = MultiDocValues.getNumericValues(reader, Constants.FIELD_SEQUENCE);
+                String[] paths = new String[FILE_COUNT];
+                for (int i = 0; i < FILE_COUNT; ++i) {
+                    paths[(int) sequences.get(i)] = reader.document(i).get(Constants.FIELD_PATH);
+                }
+                for (int i = 0; i < FILE_COUNT; ++i) {
+                    Assert.assertEquals(files.get(i).getCanonicalPath(), paths[i]);
+                }
+            }
+        }
+        Assert.assertEquals(FILE_COUNT, pathSummary.getFileCount());
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        FileUtils.deleteDirectory(DIR);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.vxquery.indexing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.vxquery.runtime.functions.index.update.PathSummary;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test cases for the path summary of a collection: matching child paths, skipping files and reading the summary back.
+ */
+public class PathSummaryTest {
+    private static final File DIR = new File(TestConstants.INDEX_DIR, "paths");
+
+    @BeforeClass
+    public static void setup() throws IOException {
+        FileUtils.forceMkdir(DIR);
+        FileUtils.writeStringToFile(new File(DIR, "books.xml"), "<catalog><book><title/></book></catalog>");
+        FileUtils.writeStringToFile(new File(DIR, "cds.xml"), "<catalog><cd><title/></cd></catalog>");
+    }
+
+    @Test
+    public void testSkipFilesWithoutMatchingPaths() throws IOException {
+        File books = new File(DIR, "books.xml");
+        File cds = new File(DIR, "cds.xml");
+        PathSummary summary = new PathSummary();
+        summary.addFile("books.xml", books,
+                new HashSet<>(Arrays.asList("/catalog", "/catalog/book", "/catalog/book/title")));
+        summary.addFile("cds.xml", cds, new HashSet<>(Arrays.asList("/catalog", "/catalog/cd", "/catalog/cd/title")));
+        File summaryFile = new File(DIR, "summary.meta");
+        summary.write(summaryFile);
+
+        PathSummary read = PathSummary.read(summaryFile);
+        Assert.assertEquals(5, read.getPathCount());
+        Assert.assertEquals(2, read.getFileCount());
+
+        BitSet bookPaths = read.getMatchingPaths(Arrays.asList("catalog", "book"));
+        Assert.assertTrue(read.mayContain("books.xml", books, bookPaths));
+        Assert.assertFalse(read.mayContain("cds.xml", cds, bookPaths));
+
+        BitSet titles = read.getMatchingPaths(Arrays.asList("catalog", null, "title"));
+        Assert.assertTrue(read.mayContain("books.xml", books, titles));
+        Assert.assertTrue(read.mayContain("cds.xml", cds, titles));
+
+        // Files that changed or are not in the summary are never skipped.
+        FileUtils.writeStringToFile(cds, "<catalog><book/></catalog>");
+        cds.setLastModified(cds.lastModified() + 2000);
+        Assert.assertTrue(read.mayContain("cds.xml", cds, bookPaths));
+        Assert.assertTrue(read.mayContain("dvds.xml", cds, bookPaths));
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        FileUtils.deleteDirectory(DIR);
+    }
+}
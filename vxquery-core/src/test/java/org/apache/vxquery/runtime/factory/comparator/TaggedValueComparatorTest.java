@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.runtime.factory.comparator;
+
+import java.io.IOException;
+
+import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputer;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
+import org.apache.vxquery.datamodel.AbstractPointableTest;
+import org.apache.vxquery.datamodel.accessors.TaggedValuePointable;
+import org.apache.vxquery.datamodel.builders.sequence.SequenceBuilder;
+import org.apache.vxquery.runtime.factory.normalizedkey.VXQueryNormalizedKeyComputerFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The comparator test checks the order of values from the same and from different order classes.
+ * 1. Empty sequence before numbers, numbers before strings.
+ * 2. Numbers ordered by value across integer and double, NaN first.
+ * 3. Strings ordered by codepoint regardless of their length.
+ * 4. Normalized keys never contradict the comparator, in either direction.
+ */
+public class TaggedValueComparatorTest extends AbstractPointableTest {
+    private static final Object[] ORDERED_VALUES = { Double.NaN, Double.NEGATIVE_INFINITY, -1000000000000L, -3,
+            -2.5, -0.0, 0, 1L, 1.5, 2, 2.0000001, 1000000000000L, Double.POSITIVE_INFINITY, "", "A", "a", "aa",
+            "ab", "b", "é", "中" };
+
+    private final ArrayBackedValueStorage abvs = new ArrayBackedValueStorage();
+    private final SequenceBuilder sb = new SequenceBuilder();
+
+    @Test
+    public void testAscendingOrder() throws IOException {
+        checkOrder(true);
+    }
+
+    @Test
+    public void testDescendingOrder() throws IOException {
+        checkOrder(false);
+    }
+
+    @Test
+    public void testEqualNumbers() throws IOException {
+        IBinaryComparator comparator = VXQueryBinaryComparatorFactory.ASC_INSTANCE.createBinaryComparator();
+        Assert.assertEquals(0, compare(comparator, getValue(2), getValue(2L)));
+        Assert.assertEquals(0, compare(comparator, getValue(2L), getValue(2.0)));
+        Assert.assertEquals(0, compare(comparator, getValue(0.0), getValue(-0.0)));
+        Assert.assertEquals(0, compare(comparator, getValue(Double.NaN), getValue(Double.NaN)));
+    }
+
+    private void checkOrder(boolean ascending) throws IOException {
+        IBinaryComparator comparator = (ascending ? VXQueryBinaryComparatorFactory.ASC_INSTANCE
+                : VXQueryBinaryComparatorFactory.DESC_INSTANCE).createBinaryComparator();
+        INormalizedKeyComputer nkc = (ascending ? VXQueryNormalizedKeyComputerFactory.ASC_INSTANCE
+                : VXQueryNormalizedKeyComputerFactory.DESC_INSTANCE).createNormalizedKeyComputer();
+        TaggedValuePointable[] values = new TaggedValuePointable[ORDERED_VALUES.length + 1];
+        values[0] = getEmptySequence();
+        for (int i = 0; i < ORDERED_VALUES.length; ++i) {
+            values[i + 1] = getValue(ORDERED_VALUES[i]);
+        }
+        for (int i = 0; i < values.length; ++i) {
+            for (int j = 0; j < values.length; ++j) {
+                int expected = Integer.signum(ascending ? Integer.compare(i, j) : Integer.compare(j, i));
+                if (isEqual(i, j)) {
+                    expected = 0;
+                }
+                Assert.assertEquals("Comparing " + describe(i) + " and " + describe(j), expected,
+                        Integer.signum(compare(comparator, values[i], values[j])));
+                long key1 = normalize(nkc, values[i]);
+                long key2 = normalize(nkc, values[j]);
+                if (key1 != key2) {
+                    Assert.assertEquals("Normalized keys of " + describe(i) + " and " + describe(j), expected,
+                            Long.signum(key1 - key2));
+                }
+            }
+        }
+    }
+
+    private static boolean isEqual(int i, int j) {
+        if (i == j) {
+            return true;
+        }
+        // -0.0 and 0 are equal.
+        String a = describe(i);
+        String b = describe(j);
+        return (a.equals("-0.0") && b.equals("0")) || (a.equals("0") && b.equals("-0.0"));
+    }
+
+    private static String describe(int i) {
+        return i == 0 ? "()" : String.valueOf(ORDERED_VALUES[i - 1]);
+    }
+
+    private static int compare(IBinaryComparator comparator, TaggedValuePointable v1, TaggedValuePointable v2)
+            throws HyracksDataException {
+        return comparator.compare(v1.getByteArray(), v1.getStartOffset(), v1.getLength(), v2.getByteArray(),
+                v2.getStartOffset(), v2.getLength());
+    }
+
+    private static long normalize(INormalizedKeyComputer nkc, TaggedValuePointable v) {
+        return nkc.normalize(v.getByteArray(), v.getStartOffset(), v.getLength()) & 0xffffffffL;
+    }
+
+    private TaggedValuePointable getValue(Object value) throws IOException {
+        TaggedValuePointable tvp = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+        getTaggedValuePointable(value, tvp);
+        return tvp;
+    }
+
+    private TaggedValuePointable getEmptySequence() throws IOException {
+        TaggedValuePointable tvp = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+        abvs.reset();
+        sb.reset(abvs);
+        sb.finish();
+        tvp.set(abvs);
+        return tvp;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.runtime.factory.hashfunction;
+
+import java.io.IOException;
+
+import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.dataflow.value.IBinaryHashFunction;
+import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
+import org.apache.vxquery.datamodel.AbstractPointableTest;
+import org.apache.vxquery.datamodel.accessors.TaggedValuePointable;
+import org.apache.vxquery.datamodel.builders.sequence.SequenceBuilder;
+import org.apache.vxquery.runtime.factory.comparator.VXQueryBinaryComparatorFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The hasher test checks that values equal under the eq operator hash alike.
+ * 1. Numbers of different types with the same value.
+ * 2. -0.0 and 0, and NaN.
+ * 3. Different values and different seeds give different hash codes.
+ * 4. The hash function family agrees with the comparator for numbers and single item sequences.
+ */
+public class TaggedValueHasherTest extends AbstractPointableTest {
+    private final TaggedValueHasher hasher = new TaggedValueHasher();
+
+    @Test
+    public void testEqualNumbers() throws IOException {
+        Assert.assertEquals(hash(2, 0), hash(2L, 0));
+        Assert.assertEquals(hash(2L, 0), hash(2.0, 0));
+        Assert.assertEquals(hash(0, 0), hash(-0.0, 0));
+        Assert.assertEquals(hash(Double.NaN, 0), hash(Double.NaN, 0));
+    }
+
+    @Test
+    public void testDifferentValues() throws IOException {
+        Assert.assertNotEquals(hash(1, 0), hash(2, 0));
+        Assert.assertNotEquals(hash(1.5, 0), hash(1, 0));
+        Assert.assertNotEquals(hash("a", 0), hash("b", 0));
+        Assert.assertNotEquals(hash("1", 0), hash(1, 0));
+    }
+
+    @Test
+    public void testSeeds() throws IOException {
+        Assert.assertEquals(hash("abc", 7), hash("abc", 7));
+        Assert.assertNotEquals(hash("abc", 0), hash("abc", 7));
+        Assert.assertNotEquals(hash(3L, 0), hash(3L, 7));
+    }
+
+    @Test
+    public void testFamilyMatchesComparator() throws IOException {
+        IBinaryComparator comparator = VXQueryBinaryComparatorFactory.ASC_INSTANCE.createBinaryComparator();
+        IBinaryHashFunction hashFunction = VXQueryBinaryHashFunctionFamily.INSTANCE.createBinaryHashFunction(11);
+        TaggedValuePointable[] values = { getValue(5), getValue(5L), getValue(5.0), getSingleton(5L),
+                getValue(-0.0), getValue(0) };
+        for (TaggedValuePointable v1 : values) {
+            for (TaggedValuePointable v2 : values) {
+                if (comparator.compare(v1.getByteArray(), v1.getStartOffset(), v1.getLength(), v2.getByteArray(),
+                        v2.getStartOffset(), v2.getLength()) == 0) {
+                    Assert.assertEquals(hash(hashFunction, v1), hash(hashFunction, v2));
+                }
+            }
+        }
+        Assert.assertEquals(hash(hashFunction, values[0]), hash(hashFunction, values[3]));
+    }
+
+    private int hash(Object value, int seed) throws IOException {
+        return hasher.hash(getValue(value), null, seed);
+    }
+
+    private static int hash(IBinaryHashFunction hashFunction, TaggedValuePointable tvp) throws IOException {
+        return hashFunction.hash(tvp.getByteArray(), tvp.getStartOffset(), tvp.getLength());
+    }
+
+    private TaggedValuePointable getValue(Object value) throws IOException {
+        TaggedValuePointable tvp = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+        getTaggedValuePointable(value, tvp);
+        return tvp;
+    }
+
+    private TaggedValuePointable getSingleton(Object value) throws IOException {
+        ArrayBackedValueStorage abvs = new ArrayBackedValueStorage();
+        SequenceBuilder sb = new SequenceBuilder();
+        sb.reset(abvs);
+        sb.addItem(getValue(value));
+        sb.finish();
+        TaggedValuePointable tvp = (TaggedValuePointable) TaggedValuePointable.FACTORY.createPointable();
+        tvp.set(abvs);
+        return tvp;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.runtime.functions.comparison.general;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for the general equality hash set: strings, integers, doubles, growing and mixed kinds.
+ */
+public class GeneralEqualityHashSetTest {
+    private final GeneralEqualityHashSet set = new GeneralEqualityHashSet();
+
+    @Test
+    public void testStrings() {
+        set.reset();
+        for (int i = 0; i < 1000; ++i) {
+            Assert.assertTrue(addString("code" + i));
+        }
+        Assert.assertTrue(addString("code7"));
+        Assert.assertEquals(1000, set.getSize());
+        Assert.assertTrue(containsString("code999"));
+        Assert.assertFalse(containsString("code1000"));
+        Assert.assertFalse(set.containsLong(7));
+    }
+
+    @Test
+    public void testDoubles() {
+        set.reset();
+        for (int i = 0; i < 1000; ++i) {
+            Assert.assertTrue(set.addDouble(i * 0.5));
+        }
+        Assert.assertTrue(set.addDouble(Double.NaN));
+        Assert.assertTrue(set.containsDouble(499.5));
+        Assert.assertTrue(set.containsDouble(-0.0));
+        Assert.assertFalse(set.containsDouble(Double.NaN));
+        Assert.assertFalse(set.containsDouble(500));
+        Assert.assertFalse(set.containsLong(1));
+        Assert.assertFalse(containsString("1"));
+    }
+
+    @Test
+    public void testIntegers() {
+        set.reset();
+        for (int i = 0; i < 1000; ++i) {
+            Assert.assertTrue(set.addLong(i * 7L));
+        }
+        Assert.assertTrue(set.containsLong(6993));
+        Assert.assertFalse(set.containsLong(6994));
+        Assert.assertFalse(set.containsDouble(7));
+        Assert.assertEquals(GeneralEqualityHashSet.KIND_INTEGER, set.getKind());
+    }
+
+    @Test
+    public void testIntegersAboveDoublePrecision() {
+        // 2^53 + 1 has no double of its own, so it would be found as 2^53 if it was converted.
+        long twoToThe53 = 9007199254740992L;
+        set.reset();
+        Assert.assertTrue(set.addLong(twoToThe53 + 1));
+        Assert.assertTrue(set.addLong(Long.MAX_VALUE));
+        Assert.assertTrue(set.containsLong(twoToThe53 + 1));
+        Assert.assertFalse(set.containsLong(twoToThe53));
+        Assert.assertTrue(set.containsLong(Long.MAX_VALUE));
+        Assert.assertFalse(set.containsLong(Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    public void testMixedKindsAreRejected() {
+        set.reset();
+        Assert.assertEquals(GeneralEqualityHashSet.KIND_EMPTY, set.getKind());
+        Assert.assertTrue(set.addLong(1));
+        Assert.assertFalse(addString("1"));
+        Assert.assertFalse(set.addDouble(1));
+        Assert.assertFalse(set.addDouble(Double.NaN));
+        set.reset();
+        Assert.assertTrue(set.addDouble(1));
+        Assert.assertFalse(set.addLong(1));
+        set.reset();
+        Assert.assertTrue(addString("1"));
+        Assert.assertFalse(set.addLong(1));
+        Assert.assertFalse(set.addDouble(1));
+        Assert.assertEquals(GeneralEqualityHashSet.KIND_STRING, set.getKind());
+    }
+
+    private boolean addString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return set.addString(bytes, 0, bytes.length);
+    }
+
+    private boolean containsString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return set.containsString(bytes, 0, bytes.length);
+    }
+}
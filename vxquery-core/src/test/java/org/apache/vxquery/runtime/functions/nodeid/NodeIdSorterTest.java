@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.runtime.functions.nodeid;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for sorting node ids in document order: ordered input, duplicates, negative tree ids and growing.
+ */
+public class NodeIdSorterTest {
+    private final NodeIdSorter sorter = new NodeIdSorter();
+
+    @Test
+    public void testOrderedInput() {
+        sorter.reset();
+        for (int i = 0; i < 5; ++i) {
+            sorter.add(NodeIdSorter.getKey(1, i), i);
+        }
+        Assert.assertTrue(sorter.isOrderedInput());
+        sorter.sort();
+        for (int i = 0; i < 5; ++i) {
+            Assert.assertEquals(i, sorter.getPosition(i));
+            Assert.assertFalse(sorter.hasPreviousKey(i));
+        }
+    }
+
+    @Test
+    public void testDuplicatesKeepInputOrder() {
+        sorter.reset();
+        sorter.add(NodeIdSorter.getKey(2, 7), 0);
+        sorter.add(NodeIdSorter.getKey(1, 300), 1);
+        sorter.add(NodeIdSorter.getKey(2, 7), 2);
+        sorter.add(NodeIdSorter.getKey(1, 4), 3);
+        Assert.assertFalse(sorter.isOrderedInput());
+        sorter.sort();
+        Assert.assertArrayEquals(new int[] { 3, 1, 0, 2 }, getPositions());
+        Assert.assertTrue(sorter.hasPreviousKey(3));
+        Assert.assertFalse(sorter.hasPreviousKey(2));
+    }
+
+    @Test
+    public void testNegativeTreeIds() {
+        sorter.reset();
+        sorter.add(NodeIdSorter.getKey(5, 1), 0);
+        sorter.add(NodeIdSorter.getKey(-3, 2), 1);
+        sorter.add(NodeIdSorter.getKey(0, 3), 2);
+        sorter.sort();
+        Assert.assertArrayEquals(new int[] { 1, 2, 0 }, getPositions());
+    }
+
+    @Test
+    public void testRandomKeys() {
+        Random random = new Random(42);
+        long[] keys = new long[1000];
+        sorter.reset();
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = NodeIdSorter.getKey(random.nextInt(20) - 10, random.nextInt(100000));
+            sorter.add(keys[i], i);
+        }
+        sorter.sort();
+        Assert.assertEquals(keys.length, sorter.getSize());
+        for (int i = 1; i < keys.length; ++i) {
+            long previous = keys[sorter.getPosition(i - 1)];
+            long current = keys[sorter.getPosition(i)];
+            Assert.assertTrue(previous <= current);
+            if (previous == current) {
+                Assert.assertTrue(sorter.getPosition(i - 1) < sorter.getPosition(i));
+            }
+        }
+    }
+
+    private int[] getPositions() {
+        int[] positions = new int[sorter.getSize()];
+        for (int i = 0; i < positions.length; ++i) {
+            positions[i] = sorter.getPosition(i);
+        }
+        return positions;
+    }
+}
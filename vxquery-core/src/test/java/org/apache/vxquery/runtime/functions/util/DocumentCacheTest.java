@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.runtime.functions.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.primitive.IntegerPointable;
+import org.apache.hyracks.data.std.primitive.VoidPointable;
+import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
+import org.apache.vxquery.datamodel.accessors.nodes.NodeTreePointable;
+import org.apache.vxquery.datamodel.values.ValueTag;
+import org.apache.vxquery.xmlparser.IParser;
+import org.apache.vxquery.xmlparser.ITreeNodeIdProvider;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test cases for the parsed document cache: hits, tree ids, changed files and eviction of the least recently used
+ * document.
+ */
+public class DocumentCacheTest {
+    private static final File DIR = new File("/tmp/vxquery_doc_cache");
+
+    private final ArrayBackedValueStorage abvs = new ArrayBackedValueStorage();
+    private final VoidPointable result = (VoidPointable) VoidPointable.FACTORY.createPointable();
+
+    /**
+     * Copies the document as its parsed value and counts how often it is called.
+     */
+    private static class CountingParser implements IParser {
+        private int count;
+
+        @Override
+        public int parse(Reader input, ArrayBackedValueStorage abvs) throws HyracksDataException {
+            ++count;
+            try {
+                abvs.getDataOutput().write(IOUtils.toByteArray(input, "UTF-8"));
+                input.close();
+            } catch (IOException e) {
+                throw new HyracksDataException(e);
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Writes a node tree holding only its tree id, taken from the provider.
+     */
+    private static class TreeIdParser implements IParser {
+        private final ITreeNodeIdProvider nodeIdProvider;
+        private int count;
+
+        TreeIdParser(ITreeNodeIdProvider nodeIdProvider) {
+            this.nodeIdProvider = nodeIdProvider;
+        }
+
+        @Override
+        public int parse(Reader input, ArrayBackedValueStorage abvs) throws HyracksDataException {
+            ++count;
+            try {
+                abvs.getDataOutput().write(ValueTag.NODE_TREE_TAG);
+                abvs.getDataOutput().write(NodeTreePointable.HEADER_NODEID_EXISTS_MASK);
+                abvs.getDataOutput().writeInt(nodeIdProvider.getId());
+                input.close();
+            } catch (IOException e) {
+                throw new HyracksDataException(e);
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Counts from 0 like the tree ids of the evaluators of a new job.
+     */
+    private static class CountingNodeIdProvider implements ITreeNodeIdProvider {
+        private int id;
+
+        @Override
+        public int getId() {
+            return id++;
+        }
+    }
+
+    @BeforeClass
+    public static void setup() throws IOException {
+        FileUtils.forceMkdir(DIR);
+        FileUtils.writeStringToFile(new File(DIR, "a.xml"), "aaaaaaaaaa");
+        FileUtils.writeStringToFile(new File(DIR, "b.xml"), "bbbbbbbbbb");
+    }
+
+    @Test
+    public void testCachedDocumentIsNotParsedAgain() throws IOException {
+        DocumentCache cache = new DocumentCache(100);
+        CountingParser parser = new CountingParser();
+        String a = new File(DIR, "a.xml").getPath();
+        cache.read(a, DocumentCache.KIND_XML, parser, null, abvs, result);
+        cache.read(a, DocumentCache.KIND_XML, parser, null, abvs, result);
+        Assert.assertEquals(1, parser.count);
+        Assert.assertEquals("aaaaaaaaaa", new String(result.getByteArray(), result.getStartOffset(),
+                result.getLength(), "UTF-8"));
+
+        // A different parser kind does not share the entry.
+        cache.read(a, DocumentCache.KIND_JSON, parser, null, abvs, result);
+        Assert.assertEquals(2, parser.count);
+        Assert.assertEquals(2, cache.getDocumentCount());
+    }
+
+    @Test
+    public void testCachedDocumentGetsNewTreeId() throws IOException {
+        DocumentCache cache = new DocumentCache(100);
+        String a = new File(DIR, "a.xml").getPath();
+        CountingNodeIdProvider firstJob = new CountingNodeIdProvider();
+        TreeIdParser parser = new TreeIdParser(firstJob);
+        cache.read(a, DocumentCache.KIND_XML, parser, firstJob, abvs, result);
+        Assert.assertEquals(0, getTreeId());
+
+        // A later job starts its tree ids at 0 again, after it has already created a tree of its own.
+        CountingNodeIdProvider secondJob = new CountingNodeIdProvider();
+        Assert.assertEquals(0, secondJob.getId());
+        cache.read(a, DocumentCache.KIND_XML, parser, secondJob, abvs, result);
+        Assert.assertEquals(1, parser.count);
+        Assert.assertEquals(1, getTreeId());
+        cache.read(a, DocumentCache.KIND_XML, parser, secondJob, abvs, result);
+        Assert.assertEquals(2, getTreeId());
+
+        // The cached document keeps the id it was parsed with.
+        cache.read(a, DocumentCache.KIND_XML, parser, null, abvs, result);
+        Assert.assertEquals(1, parser.count);
+        Assert.assertEquals(0, getTreeId());
+    }
+
+    private int getTreeId() {
+        Assert.assertEquals(6, result.getLength());
+        Assert.assertEquals(ValueTag.NODE_TREE_TAG, result.getByteArray()[result.getStartOffset()]);
+        return IntegerPointable.getInteger(result.getByteArray(), result.getStartOffset() + 2);
+    }
+
+    @Test
+    public void testChangedDocumentIsParsedAgain() throws IOException {
+        DocumentCache cache = new DocumentCache(100);
+        CountingParser parser = new CountingParser();
+        File b = new File(DIR, "b.xml");
+        cache.read(b.getPath(), DocumentCache.KIND_XML, parser, null, abvs, result);
+        FileUtils.writeStringToFile(b, "bbbbbbbbbbbb");
+        cache.read(b.getPath(), DocumentCache.KIND_XML, parser, null, abvs, result);
+        Assert.assertEquals(2, parser.count);
+        Assert.assertEquals(12, result.getLength());
+        Assert.assertEquals(12, cache.getByteCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedDocumentIsEvicted() throws IOException {
+        FileUtils.writeStringToFile(new File(DIR, "b.xml"), "bbbbbbbbbb");
+        DocumentCache cache = new DocumentCache(25);
+        CountingParser parser = new CountingParser();
+        String a = new File(DIR, "a.xml").getPath();
+        String b = new File(DIR, "b.xml").getPath();
+        cache.read(a, DocumentCache.KIND_XML, parser, null, abvs, result);
+        cache.read(b, DocumentCache.KIND_XML, parser, null, abvs, result);
+        cache.read(a, DocumentCache.KIND_XML, parser, null, abvs, result);
+        cache.read(a, DocumentCache.KIND_JSON, parser, null, abvs, result);
+        Assert.assertEquals(3, parser.count);
+        Assert.assertEquals(2, cache.getDocumentCount());
+
+        // b was used least recently, so it was evicted.
+        cache.read(a, DocumentCache.KIND_XML, parser, null, abvs, result);
+        Assert.assertEquals(3, parser.count);
+        cache.read(b, DocumentCache.KIND_XML, parser, null, abvs, result);
+        Assert.assertEquals(4, parser.count);
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        FileUtils.deleteDirectory(DIR);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.xmlparser;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for the tree ids of scanned documents and of documents read by functions such as fn:doc.
+ */
+public class TreeNodeIdProviderTest {
+    @Test
+    public void testScanIdsIncrease() {
+        TreeNodeIdProvider provider = new TreeNodeIdProvider((short) 1, (short) 4, (short) 2, (short) 3);
+        int previous = provider.getId();
+        for (int i = 0; i < 1000; ++i) {
+            int id = provider.getId();
+            Assert.assertTrue(id > previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    public void testReadDocumentsDifferFromScans() {
+        Set<Integer> ids = new HashSet<>();
+        TreeNodeIdProvider scan = new TreeNodeIdProvider((short) 0, (short) 1, (short) 0, (short) 1);
+        TreeNodeIdProvider document = new TreeNodeIdProvider((short) 0);
+        for (int i = 0; i < 1000; ++i) {
+            Assert.assertTrue(ids.add(scan.getId()));
+            Assert.assertTrue(ids.add(document.getId()));
+        }
+    }
+
+    @Test
+    public void testReadDocumentProvidersShareCounter() {
+        Set<Integer> ids = new HashSet<>();
+        TreeNodeIdProvider first = new TreeNodeIdProvider((short) 0);
+        TreeNodeIdProvider second = new TreeNodeIdProvider((short) 0);
+        for (int i = 0; i < 70000; ++i) {
+            Assert.assertTrue(ids.add(first.getId()));
+            Assert.assertTrue(ids.add(second.getId()));
+        }
+    }
+
+    @Test
+    public void testReadDocumentPartitionsDiffer() {
+        TreeNodeIdProvider first = new TreeNodeIdProvider((short) 0);
+        TreeNodeIdProvider second = new TreeNodeIdProvider((short) 1);
+        Assert.assertNotEquals(first.getId() & 0xFFE00000, second.getId() & 0xFFE00000);
+    }
+}
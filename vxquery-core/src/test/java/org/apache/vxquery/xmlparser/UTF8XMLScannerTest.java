@@ -0,0 +1,380 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.xmlparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+/**
+ * Test cases for the UTF-8 XML scanner. Well-formed documents must be reported the same way the SAX parser reports
+ * them, and malformed documents must be rejected like the SAX parser rejects them. Each document is scanned with
+ * chunks of a few bytes as well, so that every token and multi byte character also crosses the edge of a chunk.
+ */
+public class UTF8XMLScannerTest {
+    private static final File DIR = new File("/tmp/vxquery_xml_scanner");
+    private static final int[] CHUNK_SIZES = { 1, 2, 3, 7, 64, 1 << 16 };
+
+    /**
+     * Records the nodes reported by the scanner or the SAX parser as text. Adjacent text is joined, since the SAX
+     * parser may split it differently.
+     */
+    private static class RecordingHandler extends SAXContentHandler {
+        private final StringBuilder events = new StringBuilder();
+        private final StringBuilder text = new StringBuilder();
+        private final String skippedElement;
+        private boolean skip;
+
+        RecordingHandler(String skippedElement) {
+            super(false, null, true);
+            this.skippedElement = skippedElement;
+        }
+
+        String getEvents() {
+            return events.toString();
+        }
+
+        @Override
+        public void startDocument() {
+            events.setLength(0);
+            text.setLength(0);
+            events.append("[");
+        }
+
+        @Override
+        public void endDocument() {
+            flush();
+            events.append("]");
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String name, Attributes atts) throws SAXException {
+            int idx = name.indexOf(':');
+            startElementNode(uri, localName, idx < 0 ? "" : name.substring(0, idx));
+            for (int i = 0; i < atts.getLength(); ++i) {
+                int aIdx = atts.getQName(i).indexOf(':');
+                attribute(atts.getURI(i), atts.getLocalName(i),
+                        aIdx < 0 ? "" : atts.getQName(i).substring(0, aIdx), atts.getValue(i));
+            }
+            endAttributes();
+        }
+
+        @Override
+        public boolean startElementNode(String uri, String localName, String prefix) {
+            flush();
+            events.append("<{").append(uri).append('}').append(prefix).append(':').append(localName);
+            skip = localName.equals(skippedElement);
+            return !skip;
+        }
+
+        @Override
+        public boolean canSkipChildren() {
+            return skip;
+        }
+
+        @Override
+        public void attributeNode(String uri, String localName, String prefix, byte[] bytes, int start, int length) {
+            attribute(uri, localName, prefix, decode(bytes, start, length));
+        }
+
+        private void attribute(String uri, String localName, String prefix, String value) {
+            events.append(" {").append(uri).append('}').append(prefix).append(':').append(localName).append("=\"")
+                    .append(value).append('"');
+        }
+
+        @Override
+        public void endAttributes() {
+            events.append('>');
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String name) {
+            flush();
+            events.append("</{").append(uri).append('}').append(name).append('>');
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            text.append(ch, start, length);
+        }
+
+        @Override
+        public void characters(byte[] bytes, int start, int length) {
+            text.append(decode(bytes, start, length));
+        }
+
+        @Override
+        public void comment(char[] ch, int start, int length) {
+            flush();
+            events.append("<!--").append(ch, start, length).append("-->");
+        }
+
+        @Override
+        public void comment(byte[] bytes, int start, int length) {
+            flush();
+            events.append("<!--").append(decode(bytes, start, length)).append("-->");
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) {
+            flush();
+            events.append("<?").append(target).append(' ').append(data).append("?>");
+        }
+
+        private void flush() {
+            if (text.length() > 0) {
+                events.append('"').append(text).append('"');
+                text.setLength(0);
+            }
+        }
+
+        /**
+         * Decodes modified UTF-8, where a supplementary character is a surrogate pair of three byte sequences.
+         */
+        private static String decode(byte[] bytes, int start, int length) {
+            StringBuilder sb = new StringBuilder();
+            int i = start;
+            while (i < start + length) {
+                int b = bytes[i] & 0xFF;
+                if (b < 0x80) {
+                    sb.append((char) b);
+                    i += 1;
+                } else if ((b & 0xE0) == 0xC0) {
+                    sb.append((char) (((b & 0x1F) << 6) | (bytes[i + 1] & 0x3F)));
+                    i += 2;
+                } else {
+                    sb.append((char) (((b & 0x0F) << 12) | ((bytes[i + 1] & 0x3F) << 6) | (bytes[i + 2] & 0x3F)));
+                    i += 3;
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    @BeforeClass
+    public static void setup() throws IOException {
+        FileUtils.forceMkdir(DIR);
+    }
+
+    @Test
+    public void testEntityReferences() throws Exception {
+        assertSameAsSAX("<a x=\"&lt;&gt;&amp;&apos;&quot;\" y='&quot;\"'>&lt;b&gt; &amp; &apos;&quot;</a>");
+    }
+
+    @Test
+    public void testCharacterReferences() throws Exception {
+        assertSameAsSAX("<a t=\"&#x9;&#10;&#13;\">&#65;&#x42;&#x4a;&#0000000000000000000067;&#x000000000001F600;"
+                + "&#xe9;&#20013;&#x10FFFF;</a>");
+    }
+
+    @Test
+    public void testCData() throws Exception {
+        assertSameAsSAX("<a>x<![CDATA[<b>&amp;]]]]><![CDATA[>]]>y<![CDATA[]]><![CDATA[\u00e9\r\n]]></a>");
+    }
+
+    @Test
+    public void testCommentsAndProcessingInstructions() throws Exception {
+        assertSameAsSAX("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- before -->\n<?pi before?>\n"
+                + "<a><!-- in - side --><?target  data with ? marks ?><?empty?><!----></a>\n<!-- after -->"
+                + "<?pi after?>\n");
+    }
+
+    @Test
+    public void testNamespaces() throws Exception {
+        assertSameAsSAX("<a xmlns=\"urn:d\" xmlns:p=\"urn:p\" p:x=\"1\" x=\"2\"><p:b xmlns:p=\"urn:q\" p:x=\"3\"/>"
+                + "<c xmlns=\"\" xml:lang=\"en\"/><p:d q:x=\"4\" xmlns:q=\"urn:q\"/><e/>"
+                + "<f xmlns:r=\"urn:\u00e9\ud83d\ude00&amp;&#x4e2d;\" r:x=\"5\"/></a>");
+    }
+
+    @Test
+    public void testMultiByteCharacters() throws Exception {
+        String chars = "\u00e9\u00df\u4e2d\u6587\ud83d\ude00\ud800\udc00\uffef";
+        assertSameAsSAX("<?xml version=\"1.0\"?><\u00fc\u4e2d a\u00e9=\"" + chars + "\">" + chars + "<!--" + chars
+                + "--><?pi " + chars + "?><![CDATA[" + chars + "]]></\u00fc\u4e2d>");
+        // A byte order mark.
+        assertSameAsSAX("\ufeff<a>" + chars + "</a>");
+    }
+
+    @Test
+    public void testLineEnds() throws Exception {
+        assertSameAsSAX("<a x=\"1\r\n2\r3\n4\t5\">a\r\nb\rc\nd\r\r\n</a>");
+    }
+
+    @Test
+    public void testTokensLargerThanTheWindow() throws Exception {
+        StringBuilder sb = new StringBuilder("<a v=\"");
+        for (int i = 0; i < 70000; ++i) {
+            sb.append(i % 10);
+        }
+        sb.append("\">");
+        for (int i = 0; i < 100000; ++i) {
+            sb.append(i % 7 == 0 ? "\u4e2d" : "x");
+        }
+        sb.append("<!--");
+        for (int i = 0; i < 100000; ++i) {
+            sb.append('c');
+        }
+        sb.append("--></a>");
+        assertSameAsSAX(sb.toString());
+    }
+
+    @Test
+    public void testSkippedChildren() throws Exception {
+        String xml = "<a><skip x=\"&gt;\"><b>text</b><!-- </skip> --><![CDATA[</skip>]]><?pi </skip>?>"
+                + "<c attr=\"</skip>\"/><skip/><skip></skip></skip><d>\u4e2d</d></a>";
+        for (int chunkSize : CHUNK_SIZES) {
+            RecordingHandler handler = new RecordingHandler("skip");
+            Assert.assertTrue(new UTF8XMLScanner(handler, chunkSize).parse(write(xml)));
+            Assert.assertEquals("[<{}:a><{}:skip</{}skip><{}:d>\"\u4e2d\"</{}d></{}a>]", handler.getEvents());
+        }
+    }
+
+    @Test
+    public void testDocumentsLeftToTheSAXParser() throws Exception {
+        RecordingHandler handler = new RecordingHandler(null);
+        UTF8XMLScanner scanner = new UTF8XMLScanner(handler);
+        Assert.assertFalse(scanner.parse(write("<!DOCTYPE a [<!ENTITY e \"x\">]><a>&e;</a>")));
+        Assert.assertFalse(scanner.parse(write("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><a/>")));
+        Assert.assertTrue(scanner.parse(write("<?xml version=\"1.0\" encoding=\"utf-8\"?><a/>")));
+    }
+
+    @Test
+    public void testMalformedDocuments() throws Exception {
+        assertRejected("<a>&#xD800;</a>");
+        assertRejected("<a>&#1114112;</a>");
+        assertRejected("<a>&#99999999999999999999;</a>");
+        assertRejected("<a>&#;</a>");
+        assertRejected("<a>&#x;</a>");
+        assertRejected("<a>&#12a;</a>");
+        assertRejected("<a>&#1;</a>");
+        assertRejected("<a>&foo;</a>");
+        assertRejected("<a>&amp</a>");
+        assertRejected("<a>&amp more text;</a>");
+        assertRejected("<a x=\"&lt\"/>");
+        assertRejected("<a>]]></a>");
+        assertRejected("<a><!-- a -- b --></a>");
+        assertRejected("<a><!-- a ---></a>");
+        assertRejected("<a><![CDATA[x</a>");
+        assertRejected("<a><?xml version=\"1.0\"?></a>");
+        assertRejected("<a><b></a>");
+        assertRejected("<a></a><b/>");
+        assertRejected("text<a/>");
+        assertRejected("<a/>text");
+        assertRejected("<a>");
+        assertRejected("");
+        assertRejected("<1a/>");
+        assertRejected("<a x=1/>");
+        assertRejected("<a x=\"<\"/>");
+        assertRejected("<a x=\"1\"y=\"2\"/>");
+        assertRejected("<a x=\"1\" x=\"2\"/>");
+        assertRejected("<a xmlns:p=\"urn:x\" xmlns:q=\"urn:x\" p:x=\"1\" q:x=\"2\"/>");
+        assertRejected("<a p:x=\"1\" xmlns:p=\"urn:x\" xmlns:q=\"urn:x\" q:x=\"2\"/>");
+        assertRejected("<a p:x=\"1\"/>");
+        assertRejected("<p:a/>");
+        assertRejected("<a>\u0001</a>");
+        assertRejected(bytes("<a>", new byte[] { (byte) 0xC3, (byte) 0x28 }, "</a>"));
+        assertRejected(bytes("<a>", new byte[] { (byte) 0xC0, (byte) 0xAF }, "</a>"));
+        assertRejected(bytes("<a>", new byte[] { (byte) 0xED, (byte) 0xA0, (byte) 0x80 }, "</a>"));
+        assertRejected(bytes("<a>", new byte[] { (byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80 }, "</a>"));
+        assertRejected(bytes("<a>", new byte[] { (byte) 0xE4, (byte) 0xB8 }, "</a>"));
+        assertRejected(bytes("<a>", new byte[] { (byte) 0xEF, (byte) 0xBF, (byte) 0xBE }, "</a>"));
+    }
+
+    /**
+     * Checks that the scanner reports the document like the SAX parser, for each chunk size.
+     */
+    private void assertSameAsSAX(String xml) throws Exception {
+        File file = write(xml);
+        RecordingHandler saxHandler = new RecordingHandler(null);
+        parseWithSAX(file, saxHandler);
+        for (int chunkSize : CHUNK_SIZES) {
+            RecordingHandler handler = new RecordingHandler(null);
+            Assert.assertTrue(new UTF8XMLScanner(handler, chunkSize).parse(file));
+            Assert.assertEquals("Chunk size " + chunkSize, saxHandler.getEvents(), handler.getEvents());
+        }
+    }
+
+    private void assertRejected(String xml) throws Exception {
+        assertRejected(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Checks that the SAX parser and the scanner reject the document, for each chunk size.
+     */
+    private void assertRejected(byte[] xml) throws Exception {
+        File file = write(xml);
+        try {
+            parseWithSAX(file, new RecordingHandler(null));
+            Assert.fail("The SAX parser accepted " + new String(xml, StandardCharsets.UTF_8));
+        } catch (SAXException e) {
+            // Expected.
+        }
+        for (int chunkSize : CHUNK_SIZES) {
+            try {
+                new UTF8XMLScanner(new RecordingHandler(null), chunkSize).parse(file);
+                Assert.fail("Chunk size " + chunkSize + " accepted " + new String(xml, StandardCharsets.UTF_8));
+            } catch (SAXException e) {
+                // Expected.
+            }
+        }
+    }
+
+    private static void parseWithSAX(File file, RecordingHandler handler) throws SAXException, IOException {
+        XMLReader reader = XMLReaderFactory.createXMLReader();
+        reader.setContentHandler(handler);
+        reader.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
+        reader.setErrorHandler(new DefaultHandler());
+        reader.parse(new InputSource(file.toURI().toString()));
+    }
+
+    private static byte[] bytes(String before, byte[] bytes, String after) {
+        byte[] b = before.getBytes(StandardCharsets.UTF_8);
+        byte[] a = after.getBytes(StandardCharsets.UTF_8);
+        byte[] result = new byte[b.length + bytes.length + a.length];
+        System.arraycopy(b, 0, result, 0, b.length);
+        System.arraycopy(bytes, 0, result, b.length, bytes.length);
+        System.arraycopy(a, 0, result, b.length + bytes.length, a.length);
+        return result;
+    }
+
+    private static File write(String xml) throws IOException {
+        return write(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static File write(byte[] xml) throws IOException {
+        File file = new File(DIR, "test.xml");
+        FileUtils.writeByteArrayToFile(file, xml);
+        return file;
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        FileUtils.deleteDirectory(DIR);
+    }
+}
@@ -21,6 +21,7 @@ import static org.apache.vxquery.rest.Constants.Properties.AVAILABLE_PROCESSORS;
 import static org.apache.vxquery.rest.Constants.Properties.HDFS_CONFIG;
 import static org.apache.vxquery.rest.Constants.Properties.JOIN_HASH_SIZE;
 import static org.apache.vxquery.rest.Constants.Properties.MAXIMUM_DATA_SIZE;
+import static org.apache.vxquery.rest.Constants.Properties.PLAN_CACHE_SIZE;
 
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -135,9 +136,11 @@ public class VXQueryApplication implements ICCApplicationEntryPoint {
         vxqConfig.setJoinHashSize(Long.getLong(JOIN_HASH_SIZE, -1));
         vxqConfig.setHdfsConf(System.getProperty(HDFS_CONFIG));
         vxqConfig.setMaximumDataSize(Long.getLong(MAXIMUM_DATA_SIZE, -1));
+        vxqConfig.setPlanCacheSize(Integer.getInteger(PLAN_CACHE_SIZE, vxqConfig.getPlanCacheSize()));
 
         vxqConfig.setHyracksClientIp(clusterControllerInfo.getClientNetAddress());
         vxqConfig.setHyracksClientPort(clusterControllerInfo.getClientNetPort());
+        vxqConfig.setHyracksWebPort(clusterControllerInfo.getWebPort());
 
         return vxqConfig;
     }
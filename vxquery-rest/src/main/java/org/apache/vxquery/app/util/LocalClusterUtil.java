@@ -91,6 +91,7 @@ public class LocalClusterUtil {
         // REST controller
         config.setHyracksClientIp(ccConfig.clientNetIpAddress);
         config.setHyracksClientPort(ccConfig.clientNetPort);
+        config.setHyracksWebPort(ccConfig.httpPort);
         vxQueryService = new VXQueryService(config);
         vxQueryService.start();
     }
@@ -26,6 +26,7 @@ import static org.apache.vxquery.rest.Constants.Parameters.FRAME_SIZE;
 import static org.apache.vxquery.rest.Constants.Parameters.METRICS;
 import static org.apache.vxquery.rest.Constants.Parameters.MODE;
 import static org.apache.vxquery.rest.Constants.Parameters.OPTIMIZATION;
+import static org.apache.vxquery.rest.Constants.Parameters.PROFILE;
 import static org.apache.vxquery.rest.Constants.Parameters.REPEAT_EXECUTIONS;
 import static org.apache.vxquery.rest.Constants.Parameters.SHOW_AST;
 import static org.apache.vxquery.rest.Constants.Parameters.SHOW_OET;
@@ -100,6 +101,9 @@ public class RestUtils {
         if (request.isShowMetrics()) {
             builder.addParameter(METRICS, String.valueOf(request.isShowMetrics()));
         }
+        if (request.isShowProfile()) {
+            builder.addParameter(PROFILE, String.valueOf(request.isShowProfile()));
+        }
         if (request.isShowAbstractSyntaxTree()) {
             builder.addParameter(SHOW_AST, String.valueOf(request.isShowAbstractSyntaxTree()));
         }
@@ -139,6 +143,9 @@ public class RestUtils {
         if (resultRequest.isShowMetrics()) {
             builder.setParameter(METRICS, String.valueOf(resultRequest.isShowMetrics()));
         }
+        if (resultRequest.isShowProfile()) {
+            builder.setParameter(PROFILE, String.valueOf(resultRequest.isShowProfile()));
+        }
 
         return builder.build();
     }
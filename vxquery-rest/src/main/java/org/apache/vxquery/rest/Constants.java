@@ -30,11 +30,13 @@ public class Constants {
         public static final String FRAME_SIZE = "frameSize";
         public static final String REPEAT_EXECUTIONS = "repeatExecutions";
         public static final String METRICS = "metrics";
+        public static final String PROFILE = "profile";
         public static final String SHOW_AST = "showAbstractSyntaxTree";
         public static final String SHOW_TET = "showTranslatedExpressionTree";
         public static final String SHOW_OET = "showOptimizedExpressionTree";
         public static final String SHOW_RP = "showRuntimePlan";
         public static final String MODE = "mode";
+        public static final String STREAM = "stream";
     }
 
     public class URLs {
@@ -50,6 +52,7 @@ public class Constants {
         public static final String JOIN_HASH_SIZE = "org.apache.vxquery.join_hash";
         public static final String MAXIMUM_DATA_SIZE = "org.apache.vxquery.data_size";
         public static final String HDFS_CONFIG = "org.apache.vxquery.hdfs_config";
+        public static final String PLAN_CACHE_SIZE = "org.apache.vxquery.plan_cache_size";
     }
 
     public class HttpHeaderValues {
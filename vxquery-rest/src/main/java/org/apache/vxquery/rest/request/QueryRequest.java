@@ -40,6 +40,8 @@ public class QueryRequest {
     private int frameSize = DEFAULT_FRAMESIZE;
     private int repeatExecutions = 1;
     private boolean showMetrics = false;
+    /** Add the runtime counters of the operators to the metrics. Sync queries wait for the job to complete. */
+    private boolean showProfile = false;
     private boolean showAbstractSyntaxTree = false;
     private boolean showTranslatedExpressionTree = false;
     private boolean showOptimizedExpressionTree = false;
@@ -139,6 +141,14 @@ public class QueryRequest {
         this.showMetrics = showMetrics;
     }
 
+    public boolean isShowProfile() {
+        return showProfile;
+    }
+
+    public void setShowProfile(boolean showProfile) {
+        this.showProfile = showProfile;
+    }
+
     public String toString() {
         return String.format("{ statement : %s }", statement);
     }
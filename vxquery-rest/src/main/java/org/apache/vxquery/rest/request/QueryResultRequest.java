@@ -28,6 +28,10 @@ public class QueryResultRequest {
 
     private long resultId;
     private boolean showMetrics = false;
+    /** Add the runtime counters of the operators to the metrics, once the job completed */
+    private boolean showProfile = false;
+    /** Results are written with VXQueryService#writeResults instead of being read into the response */
+    private boolean stream = false;
     private String requestId;
 
     public QueryResultRequest(long resultId) {
@@ -51,6 +55,22 @@ public class QueryResultRequest {
         this.showMetrics = showMetrics;
     }
 
+    public boolean isShowProfile() {
+        return showProfile;
+    }
+
+    public void setShowProfile(boolean showProfile) {
+        this.showProfile = showProfile;
+    }
+
+    public boolean isStream() {
+        return stream;
+    }
+
+    public void setStream(boolean stream) {
+        this.stream = stream;
+    }
+
     public String getRequestId() {
         return requestId;
     }
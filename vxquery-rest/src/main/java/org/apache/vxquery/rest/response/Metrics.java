@@ -17,12 +17,18 @@
 
 package org.apache.vxquery.rest.response;
 
+import java.util.List;
+
 import javax.xml.bind.annotation.XmlRootElement;
 
 @XmlRootElement
 public class Metrics {
     private long compileTime;
     private long elapsedTime;
+    private boolean planCacheHit;
+    private long planCacheHits;
+    private long planCacheMisses;
+    private List<OperatorMetrics> operators;
 
     public long getCompileTime() {
         return compileTime;
@@ -39,4 +45,39 @@ public class Metrics {
     public void setElapsedTime(long elapsedTime) {
         this.elapsedTime = elapsedTime;
     }
+
+    public boolean isPlanCacheHit() {
+        return planCacheHit;
+    }
+
+    public void setPlanCacheHit(boolean planCacheHit) {
+        this.planCacheHit = planCacheHit;
+    }
+
+    public long getPlanCacheHits() {
+        return planCacheHits;
+    }
+
+    public void setPlanCacheHits(long planCacheHits) {
+        this.planCacheHits = planCacheHits;
+    }
+
+    public long getPlanCacheMisses() {
+        return planCacheMisses;
+    }
+
+    public void setPlanCacheMisses(long planCacheMisses) {
+        this.planCacheMisses = planCacheMisses;
+    }
+
+    /**
+     * @return the runtime counters of the VXQuery operators of the job, if a profile was requested
+     */
+    public List<OperatorMetrics> getOperators() {
+        return operators;
+    }
+
+    public void setOperators(List<OperatorMetrics> operators) {
+        this.operators = operators;
+    }
 }
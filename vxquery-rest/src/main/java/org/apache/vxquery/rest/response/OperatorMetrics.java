@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.rest.response;
+
+/**
+ * Runtime counters of one operator of a query, summed up over all its partitions. CPU time is in nanoseconds, and -1
+ * for operators that do not measure it, such as unnesting evaluators.
+ */
+public class OperatorMetrics {
+    private String operator;
+    private long tuplesIn;
+    private long tuplesOut;
+    private long bytesIn;
+    private long bytesOut;
+    private long cpuTime = -1;
+
+    public OperatorMetrics() {
+    }
+
+    public OperatorMetrics(String operator) {
+        this.operator = operator;
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public void setOperator(String operator) {
+        this.operator = operator;
+    }
+
+    public long getTuplesIn() {
+        return tuplesIn;
+    }
+
+    public void setTuplesIn(long tuplesIn) {
+        this.tuplesIn = tuplesIn;
+    }
+
+    public long getTuplesOut() {
+        return tuplesOut;
+    }
+
+    public void setTuplesOut(long tuplesOut) {
+        this.tuplesOut = tuplesOut;
+    }
+
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    public void setBytesIn(long bytesIn) {
+        this.bytesIn = bytesIn;
+    }
+
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    public void setBytesOut(long bytesOut) {
+        this.bytesOut = bytesOut;
+    }
+
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    public void setCpuTime(long cpuTime) {
+        this.cpuTime = cpuTime;
+    }
+}
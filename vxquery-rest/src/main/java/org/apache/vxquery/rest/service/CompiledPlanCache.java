@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.rest.service;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hyracks.api.dataset.ResultSetId;
+import org.apache.vxquery.metadata.CollectionStatistics;
+import org.apache.vxquery.xmlquery.query.Module;
+
+/**
+ * A least recently used cache of compiled queries. A cached {@link Module} holds the hyracks job specification
+ * together with the static context of the query, so a query sent again with the same options can be submitted
+ * without parsing, translating and optimizing it again. A plan whose optimization read the statistics of a
+ * collection that has changed since is dropped and compiled again.
+ */
+public class CompiledPlanCache {
+
+    private final int maxEntries;
+    private final Map<Key, CompiledPlan> plans;
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    /**
+     * @param maxEntries
+     *            maximum number of compiled plans kept. Caching is disabled if this is not positive.
+     */
+    public CompiledPlanCache(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        plans = new LinkedHashMap<Key, CompiledPlan>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompiledPlan> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    public synchronized CompiledPlan get(Key key) {
+        CompiledPlan plan = plans.get(key);
+        if (plan != null && !plan.isCurrent()) {
+            plans.remove(key);
+            plan = null;
+        }
+        if (plan == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return plan;
+    }
+
+    public synchronized void put(Key key, CompiledPlan plan) {
+        if (isEnabled()) {
+            plans.put(key, plan);
+        }
+    }
+
+    public synchronized void clear() {
+        plans.clear();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * A compiled query along with the {@link ResultSetId} its result writer was compiled with.
+     */
+    public static class CompiledPlan {
+        private final Module module;
+        private final ResultSetId resultSetId;
+
+        public CompiledPlan(Module module, ResultSetId resultSetId) {
+            this.module = module;
+            this.resultSetId = resultSetId;
+        }
+
+        public Module getModule() {
+            return module;
+        }
+
+        public ResultSetId getResultSetId() {
+            return resultSetId;
+        }
+
+        /**
+         * @return true if none of the collections the plan was optimized for has changed
+         */
+        public boolean isCurrent() {
+            for (CollectionStatistics statistics : module.getCollectionStatistics()) {
+                if (!statistics.isCurrent()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Everything a compiled plan depends on: the query text, the compiler options, the indexed collections and the
+     * node controllers the plan was partitioned for.
+     */
+    public static class Key {
+        private final String statement;
+        private final int frameSize;
+        private final int optimization;
+        private final Map<String, File> sourceFileMap;
+        private final List<String> collections;
+        private final Set<String> nodeControllers;
+        private final int hashCode;
+
+        public Key(String statement, int frameSize, int optimization, Map<String, File> sourceFileMap,
+                List<String> collections, Set<String> nodeControllers) {
+            this.statement = statement;
+            this.frameSize = frameSize;
+            this.optimization = optimization;
+            this.sourceFileMap = sourceFileMap == null ? new HashMap<>() : new HashMap<>(sourceFileMap);
+            this.collections = collections;
+            this.nodeControllers = new HashSet<>(nodeControllers);
+
+            int h = statement.hashCode();
+            h = 31 * h + frameSize;
+            h = 31 * h + optimization;
+            h = 31 * h + this.sourceFileMap.hashCode();
+            h = 31 * h + collections.hashCode();
+            h = 31 * h + this.nodeControllers.hashCode();
+            hashCode = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hashCode == other.hashCode && frameSize == other.frameSize && optimization == other.optimization
+                    && statement.equals(other.statement) && sourceFileMap.equals(other.sourceFileMap)
+                    && collections.equals(other.collections) && nodeControllers.equals(other.nodeControllers);
+        }
+    }
+}
@@ -17,6 +17,8 @@
 
 package org.apache.vxquery.rest.service;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.apache.hyracks.api.dataset.ResultSetId;
 import org.apache.hyracks.api.job.JobId;
 
@@ -32,11 +34,18 @@ public class HyracksJobContext {
     private JobId jobId;
     private int frameSize;
     private ResultSetId resultSetId;
+    private boolean indexModification;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
 
     public HyracksJobContext(JobId jobId, int frameSize, ResultSetId resultSetId) {
+        this(jobId, frameSize, resultSetId, false);
+    }
+
+    public HyracksJobContext(JobId jobId, int frameSize, ResultSetId resultSetId, boolean indexModification) {
         this.jobId = jobId;
         this.frameSize = frameSize;
         this.resultSetId = resultSetId;
+        this.indexModification = indexModification;
     }
 
     public JobId getJobId() {
@@ -50,4 +59,19 @@ public class HyracksJobContext {
     public ResultSetId getResultSetId() {
         return resultSetId;
     }
+
+    /**
+     * @return true if the job builds, updates or deletes an index
+     */
+    public boolean isIndexModification() {
+        return indexModification;
+    }
+
+    /**
+     * @return a future completed when hyracks reports the job as finished, exceptionally with the job failure if the
+     *         job failed
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
 }
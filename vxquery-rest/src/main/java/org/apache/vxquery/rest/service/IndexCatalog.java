@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.rest.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Caches the list of indexed collections so that it does not have to be looked up
+ * in the cluster for every query. The catalog is invalidated when a query builds,
+ * updates or deletes an index. Every invalidation increases the catalog version,
+ * which prevents a lookup started before the invalidation from being cached.
+ */
+public class IndexCatalog {
+
+    private List<String> collections;
+    private long version;
+
+    /**
+     * @return the cached indexed collections, or null if they need to be looked up
+     */
+    public synchronized List<String> getCollections() {
+        return collections;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Caches the indexed collections looked up at the given catalog version.
+     *
+     * @param collections
+     *            indexed collections
+     * @param lookupVersion
+     *            catalog version read before the lookup started
+     * @return true if the collections were cached
+     */
+    public synchronized boolean setCollections(List<String> collections, long lookupVersion) {
+        if (lookupVersion != version) {
+            return false;
+        }
+        this.collections = Collections.unmodifiableList(collections);
+        return true;
+    }
+
+    public synchronized void invalidate() {
+        collections = null;
+        ++version;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.rest.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.htrace.fasterxml.jackson.databind.JsonNode;
+import org.apache.htrace.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.hyracks.api.job.JobId;
+import org.apache.vxquery.rest.response.OperatorMetrics;
+import org.apache.vxquery.runtime.profile.RuntimeCounters;
+
+/**
+ * Reads the counters of the VXQuery operators from the profile of a finished job. The profile is served by the web
+ * server of the hyracks cluster controller, which collects the counters of every task when the task completes.
+ */
+public class JobProfileReader {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String ccAddress;
+    private final int webPort;
+
+    public JobProfileReader(String ccAddress, int webPort) {
+        this.ccAddress = ccAddress;
+        this.webPort = webPort;
+    }
+
+    /**
+     * @param jobId
+     *            id of a completed job
+     * @return the counters of each operator, summed up over all tasks of the job
+     * @throws IOException
+     *             if the profile cannot be read from the cluster controller
+     */
+    public List<OperatorMetrics> read(JobId jobId) throws IOException {
+        JsonNode jobRun;
+        try (InputStream in = new URL("http", ccAddress, webPort, "/rest/jobs/" + jobId + "/job-run").openStream()) {
+            jobRun = mapper.readTree(in);
+        }
+        Map<String, OperatorMetrics> operators = new TreeMap<>();
+        for (JsonNode joblet : jobRun.path("profile").path("joblets")) {
+            for (JsonNode task : joblet.path("tasks")) {
+                for (JsonNode counter : task.path("counters")) {
+                    addCounter(operators, counter.path("name").asText(), counter.path("value").asLong());
+                }
+            }
+        }
+        return new ArrayList<>(operators.values());
+    }
+
+    private static void addCounter(Map<String, OperatorMetrics> operators, String name, long value) {
+        int separator = name.lastIndexOf('/');
+        if (!name.startsWith(RuntimeCounters.PREFIX) || separator < RuntimeCounters.PREFIX.length()) {
+            return;
+        }
+        String operator = name.substring(RuntimeCounters.PREFIX.length(), separator);
+        OperatorMetrics metrics = operators.get(operator);
+        if (metrics == null) {
+            metrics = new OperatorMetrics(operator);
+            operators.put(operator, metrics);
+        }
+        switch (name.substring(separator + 1)) {
+            case RuntimeCounters.TUPLES_IN:
+                metrics.setTuplesIn(metrics.getTuplesIn() + value);
+                break;
+            case RuntimeCounters.TUPLES_OUT:
+                metrics.setTuplesOut(metrics.getTuplesOut() + value);
+                break;
+            case RuntimeCounters.BYTES_IN:
+                metrics.setBytesIn(metrics.getBytesIn() + value);
+                break;
+            case RuntimeCounters.BYTES_OUT:
+                metrics.setBytesOut(metrics.getBytesOut() + value);
+                break;
+            case RuntimeCounters.CPU_TIME:
+                metrics.setCpuTime(Math.max(metrics.getCpuTime(), 0) + value);
+                break;
+            default:
+                break;
+        }
+    }
+}
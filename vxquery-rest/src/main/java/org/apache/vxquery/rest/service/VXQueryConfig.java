@@ -36,9 +36,12 @@ public class VXQueryConfig {
     private long maximumDataSize = -1;
     /** Directory path to Hadoop configuration files */
     private String hdfsConf = null;
+    /** Number of compiled queries cached. Caching is disabled if not positive. (default: 128) */
+    private int planCacheSize = 128;
 
     private String hyracksClientIp;
     private int hyracksClientPort;
+    private int hyracksWebPort = -1;
 
     public int getAvailableProcessors() {
         return availableProcessors;
@@ -74,6 +77,14 @@ public class VXQueryConfig {
         this.hdfsConf = hdfsConf;
     }
 
+    public int getPlanCacheSize() {
+        return planCacheSize;
+    }
+
+    public void setPlanCacheSize(int planCacheSize) {
+        this.planCacheSize = planCacheSize;
+    }
+
     public int getHyracksClientPort() {
         return hyracksClientPort;
     }
@@ -90,6 +101,17 @@ public class VXQueryConfig {
         this.hyracksClientIp = hyracksClientIp;
     }
 
+    /**
+     * @return port of the web server of the cluster controller, which serves job profiles, or -1 if unknown
+     */
+    public int getHyracksWebPort() {
+        return hyracksWebPort;
+    }
+
+    public void setHyracksWebPort(int hyracksWebPort) {
+        this.hyracksWebPort = hyracksWebPort;
+    }
+
     public int getFrameSize() {
         return frameSize;
     }
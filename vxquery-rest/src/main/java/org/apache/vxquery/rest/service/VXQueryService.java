@@ -23,7 +23,6 @@ import static org.apache.vxquery.rest.Constants.ErrorCodes.UNFORSEEN_PROBLEM;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -32,6 +31,12 @@ import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -50,8 +55,8 @@ import org.apache.hyracks.api.client.NodeControllerInfo;
 import org.apache.hyracks.api.comm.IFrame;
 import org.apache.hyracks.api.comm.IFrameTupleAccessor;
 import org.apache.hyracks.api.comm.VSizeFrame;
-import org.apache.hyracks.api.dataset.DatasetJobRecord;
 import org.apache.hyracks.api.dataset.IHyracksDatasetReader;
+import org.apache.hyracks.api.dataflow.IOperatorDescriptor;
 import org.apache.hyracks.api.dataset.ResultSetId;
 import org.apache.hyracks.api.exceptions.HyracksException;
 import org.apache.hyracks.api.job.JobFlag;
@@ -70,10 +75,12 @@ import org.apache.vxquery.context.StaticContextImpl;
 import org.apache.vxquery.exceptions.ErrorCode;
 import org.apache.vxquery.exceptions.SystemException;
 import org.apache.vxquery.exceptions.VXQueryRuntimeException;
+import org.apache.vxquery.metadata.VXQueryIndexingOperatorDescriptor;
 import org.apache.vxquery.rest.request.QueryRequest;
 import org.apache.vxquery.rest.request.QueryResultRequest;
 import org.apache.vxquery.rest.response.APIResponse;
 import org.apache.vxquery.rest.response.Error;
+import org.apache.vxquery.rest.response.Metrics;
 import org.apache.vxquery.rest.response.QueryResponse;
 import org.apache.vxquery.rest.response.QueryResultResponse;
 import org.apache.vxquery.rest.response.SyncQueryResponse;
@@ -105,9 +112,15 @@ public class VXQueryService {
     private Map<Long, HyracksJobContext> jobContexts = new ConcurrentHashMap<>();
     private IHyracksClientConnection hyracksClientConnection;
     private HyracksDataset hyracksDataset;
+    private ExecutorService completionExecutor;
+    private final ConcurrentLinkedQueue<HyracksJobContext> runningJobs = new ConcurrentLinkedQueue<>();
+    private JobProfileReader profileReader;
+    private final IndexCatalog indexCatalog = new IndexCatalog();
+    private final CompiledPlanCache planCache;
 
     public VXQueryService(VXQueryConfig config) {
         vxQueryConfig = config;
+        planCache = new CompiledPlanCache(config.getPlanCacheSize());
     }
 
     /**
@@ -138,6 +151,20 @@ public class VXQueryService {
         LOGGER.log(Level.FINE, String.format("Using hyracks connection to %s:%d", vxQueryConfig.getHyracksClientIp(),
                 vxQueryConfig.getHyracksClientPort()));
 
+        completionExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "vxquery-job-completion-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        if (vxQueryConfig.getHyracksWebPort() >= 0) {
+            profileReader = new JobProfileReader(vxQueryConfig.getHyracksClientIp(), vxQueryConfig.getHyracksWebPort());
+        }
+
         setState(State.STARTED);
         LOGGER.log(Level.INFO, "VXQueryService started successfully");
     }
@@ -157,13 +184,33 @@ public class VXQueryService {
      * @return AsyncQueryResponse if no error occurs | ErrorResponse else
      */
     public APIResponse execute(final QueryRequest request) {
+        return execute(request, getIndexedCollections());
+    }
+
+    /**
+     * Returns the indexed collections from the {@link IndexCatalog}, looking them up
+     * with show-indexes() only when the catalog has been invalidated.
+     */
+    private List<String> getIndexedCollections() {
+        List<String> collections = indexCatalog.getCollections();
+        if (collections != null) {
+            return collections;
+        }
+
+        long version = indexCatalog.getVersion();
         QueryRequest indexingRequest = new QueryRequest("show-indexes()");
         indexingRequest.setAsync(false);
-        SyncQueryResponse indexingResponse = (SyncQueryResponse) execute(indexingRequest, new ArrayList<>());
-        LOGGER.log(Level.FINE, String.format("Found indexes: %s", indexingResponse.getResults()));
+        APIResponse indexingResponse = execute(indexingRequest, new ArrayList<>());
+        if (!(indexingResponse instanceof SyncQueryResponse)) {
+            LOGGER.log(Level.WARNING, "Unable to look up indexed collections");
+            return new ArrayList<>();
+        }
+        String results = ((SyncQueryResponse) indexingResponse).getResults();
+        LOGGER.log(Level.FINE, String.format("Found indexes: %s", results));
 
-        List<String> collections = Arrays.asList(indexingResponse.getResults().split("\n"));
-        return execute(request, collections);
+        collections = Arrays.asList(results.split("\n"));
+        indexCatalog.setCollections(collections, version);
+        return collections;
     }
 
     private APIResponse execute(final QueryRequest request, List<String> collections) {
@@ -187,52 +234,67 @@ public class VXQueryService {
                     .withMessage("Hyracks connection problem: " + e.getMessage()).build());
         }
 
-        // Adding a query compilation listener
-        VXQueryCompilationListener listener = new VXQueryCompilationListener(response,
-                request.isShowAbstractSyntaxTree(), request.isShowTranslatedExpressionTree(),
-                request.isShowOptimizedExpressionTree(), request.isShowRuntimePlan());
-
         Date start = new Date();
-        // Compiling the XQuery given
-        final XMLQueryCompiler compiler = new XMLQueryCompiler(listener, nodeControllerInfos, request.getFrameSize(),
-                vxQueryConfig.getAvailableProcessors(), vxQueryConfig.getJoinHashSize(),
-                vxQueryConfig.getMaximumDataSize(), vxQueryConfig.getHdfsConf());
-        CompilerControlBlock compilerControlBlock = new CompilerControlBlock(
-                new StaticContextImpl(RootStaticContextImpl.INSTANCE), resultSetId, request.getSourceFileMap());
-        try {
-            compiler.compile(null, new StringReader(query), compilerControlBlock, request.getOptimization(),
-                    collections);
-        } catch (AlgebricksException e) {
-            LOGGER.log(Level.SEVERE, String.format("Error occurred when compiling query: '%s' with message: '%s'",
-                    query, e.getMessage()));
-            return APIResponse.newErrorResponse(request.getRequestId(), Error.builder().withCode(PROBLEM_WITH_QUERY)
-                    .withMessage("Query compilation failure: " + e.getMessage()).build());
-        } catch (SystemException e) {
-            LOGGER.log(Level.SEVERE, String.format("Error occurred when compiling query: '%s' with message: '%s'",
-                    query, e.getMessage()));
-            return APIResponse.newErrorResponse(request.getRequestId(),
-                    new Error(PROBLEM_WITH_QUERY, "Query compilation failure: " + e.getCode()));
+        CompiledPlanCache.Key planKey = new CompiledPlanCache.Key(query, request.getFrameSize(),
+                request.getOptimization(), request.getSourceFileMap(), collections, nodeControllerInfos.keySet());
+        // Plans are always compiled when intermediate results of the compilation are requested.
+        boolean showCompilation = request.isShowAbstractSyntaxTree() || request.isShowTranslatedExpressionTree()
+                || request.isShowOptimizedExpressionTree() || request.isShowRuntimePlan();
+        CompiledPlanCache.CompiledPlan plan =
+                showCompilation || !planCache.isEnabled() ? null : planCache.get(planKey);
+        boolean planCacheHit = plan != null;
+        if (plan == null) {
+            // Adding a query compilation listener
+            VXQueryCompilationListener listener = new VXQueryCompilationListener(response,
+                    request.isShowAbstractSyntaxTree(), request.isShowTranslatedExpressionTree(),
+                    request.isShowOptimizedExpressionTree(), request.isShowRuntimePlan());
+
+            // Compiling the XQuery given
+            final XMLQueryCompiler compiler = new XMLQueryCompiler(listener, nodeControllerInfos,
+                    request.getFrameSize(), vxQueryConfig.getAvailableProcessors(), vxQueryConfig.getJoinHashSize(),
+                    vxQueryConfig.getMaximumDataSize(), vxQueryConfig.getHdfsConf());
+            CompilerControlBlock compilerControlBlock = new CompilerControlBlock(
+                    new StaticContextImpl(RootStaticContextImpl.INSTANCE), resultSetId, request.getSourceFileMap());
+            try {
+                compiler.compile(null, new StringReader(query), compilerControlBlock, request.getOptimization(),
+                        collections);
+            } catch (AlgebricksException e) {
+                LOGGER.log(Level.SEVERE, String.format("Error occurred when compiling query: '%s' with message: '%s'",
+                        query, e.getMessage()));
+                return APIResponse.newErrorResponse(request.getRequestId(), Error.builder()
+                        .withCode(PROBLEM_WITH_QUERY).withMessage("Query compilation failure: " + e.getMessage()).build());
+            } catch (SystemException e) {
+                LOGGER.log(Level.SEVERE, String.format("Error occurred when compiling query: '%s' with message: '%s'",
+                        query, e.getMessage()));
+                return APIResponse.newErrorResponse(request.getRequestId(),
+                        new Error(PROBLEM_WITH_QUERY, "Query compilation failure: " + e.getCode()));
+            }
+            plan = new CompiledPlanCache.CompiledPlan(compiler.getModule(), resultSetId);
+            planCache.put(planKey, plan);
         }
 
         if (request.isShowMetrics()) {
             response.getMetrics().setCompileTime(new Date().getTime() - start.getTime());
+            response.getMetrics().setPlanCacheHit(planCacheHit);
+            response.getMetrics().setPlanCacheHits(planCache.getHits());
+            response.getMetrics().setPlanCacheMisses(planCache.getMisses());
         }
 
         if (request.isCompileOnly()) {
             return response;
         }
 
-        Module module = compiler.getModule();
+        Module module = plan.getModule();
         JobSpecification js = module.getHyracksJobSpecification();
         DynamicContext dCtx = new DynamicContextImpl(module.getModuleContext());
-        js.setGlobalJobDataFactory(new VXQueryGlobalDataFactory(dCtx.createFactory()));
+        VXQueryGlobalDataFactory globalDataFactory = new VXQueryGlobalDataFactory(dCtx.createFactory());
 
         HyracksJobContext hyracksJobContext;
         start = new Date();
         if (!request.isAsync()) {
             for (int i = 0; i < request.getRepeatExecutions(); i++) {
                 try {
-                    hyracksJobContext = executeJob(js, resultSetId, request);
+                    hyracksJobContext = executeJob(js, globalDataFactory, plan.getResultSetId());
 
                 } catch (Exception e) {
                     LOGGER.log(SEVERE, "Error occurred when submitting job to hyracks for query: " + query, e);
@@ -243,6 +305,9 @@ public class VXQueryService {
                 try {
                     String results = readResults(hyracksJobContext);
                     ((SyncQueryResponse) response).setResults(results);
+                    if (request.isShowProfile()) {
+                        addOperatorMetrics(hyracksJobContext, response.getMetrics());
+                    }
                 } catch (HyracksException e) {
                     LOGGER.log(Level.SEVERE, "Error occurred when reading results", e);
                     SystemException se = getSystemException(e);
@@ -256,7 +321,7 @@ public class VXQueryService {
             }
         } else {
             try {
-                hyracksJobContext = executeJob(js, resultSetId, request);
+                hyracksJobContext = executeJob(js, globalDataFactory, plan.getResultSetId());
             } catch (Exception e) {
                 LOGGER.log(SEVERE, "Error occurred when submitting job to hyracks for query: " + query, e);
                 return APIResponse.newErrorResponse(request.getRequestId(), Error.builder().withCode(UNFORSEEN_PROBLEM)
@@ -272,15 +337,94 @@ public class VXQueryService {
         return response;
     }
 
-    private HyracksJobContext executeJob(JobSpecification js, ResultSetId resultSetId, QueryRequest request)
-            throws Exception {
+    private HyracksJobContext executeJob(JobSpecification js, VXQueryGlobalDataFactory globalDataFactory,
+            ResultSetId resultSetId) throws Exception {
         HyracksJobContext hyracksJobContext;
-        JobId jobId = hyracksClientConnection.startJob(js, EnumSet.of(JobFlag.PROFILE_RUNTIME));
-        hyracksJobContext = new HyracksJobContext(jobId, js.getFrameSize(), resultSetId);
+        boolean indexModification = isIndexModification(js);
+        if (indexModification) {
+            // Queries compiled while the job runs must not use the old catalog.
+            invalidateIndexCatalog();
+        }
+        JobId jobId;
+        // Cached job specifications are shared between requests.
+        synchronized (js) {
+            js.setGlobalJobDataFactory(globalDataFactory);
+            jobId = hyracksClientConnection.startJob(js, EnumSet.of(JobFlag.PROFILE_RUNTIME));
+        }
+        hyracksJobContext = new HyracksJobContext(jobId, js.getFrameSize(), resultSetId, indexModification);
+        watchCompletion(hyracksJobContext);
 
         return hyracksJobContext;
     }
 
+    /**
+     * Completes the {@link HyracksJobContext#getCompletion()} future of a job once hyracks reports the job as
+     * finished. Indexes built, updated or deleted by the job are visible to queries compiled after the future
+     * completes, whether or not the results of the job are ever read.
+     */
+    private void watchCompletion(final HyracksJobContext jobContext) {
+        runningJobs.add(jobContext);
+        completionExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // Blocks until hyracks reports the job as finished, and throws the cause of a failed job.
+                    hyracksClientConnection.waitForCompletion(jobContext.getJobId());
+                    completeJob(jobContext, null);
+                } catch (Exception e) {
+                    completeJob(jobContext, e);
+                }
+            }
+        });
+    }
+
+    private void completeJob(HyracksJobContext jobContext, Exception failure) {
+        if (!runningJobs.remove(jobContext)) {
+            return;
+        }
+        if (jobContext.isIndexModification()) {
+            invalidateIndexCatalog();
+        }
+        if (failure == null) {
+            jobContext.getCompletion().complete(null);
+        } else {
+            jobContext.getCompletion().completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Adds the runtime counters of the operators of a job to the metrics, once the job completed. The metrics are left
+     * unchanged if the profile cannot be read.
+     */
+    private void addOperatorMetrics(HyracksJobContext jobContext, Metrics metrics) {
+        if (profileReader == null) {
+            return;
+        }
+        try {
+            jobContext.getCompletion().get();
+            metrics.setOperators(profileReader.read(jobContext.getJobId()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read the profile of job " + jobContext.getJobId(), e);
+        }
+    }
+
+    private void invalidateIndexCatalog() {
+        indexCatalog.invalidate();
+        planCache.clear();
+    }
+
+    private static boolean isIndexModification(JobSpecification js) {
+        for (IOperatorDescriptor op : js.getOperatorMap().values()) {
+            if (op instanceof VXQueryIndexingOperatorDescriptor
+                    && ((VXQueryIndexingOperatorDescriptor) op).isIndexModification()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static SystemException getSystemException(HyracksException e) {
         Throwable t = e;
         Throwable candidate = t instanceof SystemException ? t : null;
@@ -315,9 +459,17 @@ public class VXQueryService {
         if (jobContexts.containsKey(request.getResultId())) {
             QueryResultResponse resultResponse = APIResponse.newQueryResultResponse(request.getRequestId());
             Date start = new Date();
+            if (request.isStream()) {
+                // The results are read by writeResults.
+                return resultResponse;
+            }
             try {
-                String results = readResults(jobContexts.get(request.getResultId()));
+                HyracksJobContext jobContext = jobContexts.get(request.getResultId());
+                String results = readResults(jobContext);
                 resultResponse.setResults(results);
+                if (request.isShowProfile()) {
+                    addOperatorMetrics(jobContext, resultResponse.getMetrics());
+                }
             } catch (Exception e) {
                 LOGGER.log(Level.SEVERE, "Error occurred when reading results for id : " + request.getResultId());
                 return APIResponse.newErrorResponse(request.getRequestId(), new Error(UNFORSEEN_PROBLEM,
@@ -335,6 +487,26 @@ public class VXQueryService {
         }
     }
 
+    /**
+     * Writes the results of a query submitted asynchronously to a stream. Each result frame is written and flushed as
+     * soon as it is read from hyracks, so only one frame of the results is held in memory and the first results are
+     * written before the job completes.
+     *
+     * @param resultId
+     *            result ID of the query
+     * @param out
+     *            stream the results are written to
+     * @throws Exception
+     *             IOErrors and etc
+     */
+    public void writeResults(long resultId, OutputStream out) throws Exception {
+        HyracksJobContext jobContext = jobContexts.get(resultId);
+        if (jobContext == null) {
+            throw new IllegalArgumentException("No query found for result ID : " + resultId);
+        }
+        readResults(jobContext, createReader(jobContext), out);
+    }
+
     /**
      * Reads results from hyracks given the {@link HyracksJobContext} containing
      * {@link ResultSetId} and {@link JobId} mapping.
@@ -347,35 +519,47 @@ public class VXQueryService {
      *             IOErrors and etc
      */
     private String readResults(HyracksJobContext jobContext) throws Exception {
+        ByteArrayOutputStream resultStream = new ByteArrayOutputStream();
+        readResults(jobContext, createReader(jobContext), resultStream);
+        return resultStream.toString();
+    }
+
+    private IHyracksDatasetReader createReader(HyracksJobContext jobContext) throws Exception {
         int nReaders = 1;
 
         if (hyracksDataset == null) {
             hyracksDataset = new HyracksDataset(hyracksClientConnection, jobContext.getFrameSize(), nReaders);
         }
+        return hyracksDataset.createReader(jobContext.getJobId(), jobContext.getResultSetId());
+    }
 
+    private void readResults(HyracksJobContext jobContext, IHyracksDatasetReader reader, OutputStream out)
+            throws Exception {
         FrameManager resultDisplayFrameMgr = new FrameManager(jobContext.getFrameSize());
         IFrame frame = new VSizeFrame(resultDisplayFrameMgr);
-        IHyracksDatasetReader reader = hyracksDataset.createReader(jobContext.getJobId(), jobContext.getResultSetId());
-        OutputStream resultStream = new ByteArrayOutputStream();
-
-        // This loop is required for XTests to reliably identify the error code of
-        // SystemException.
-        while (reader.getResultStatus() == DatasetJobRecord.Status.RUNNING) {
-            Thread.sleep(100);
-        }
-
         IFrameTupleAccessor frameTupleAccessor = new ResultFrameTupleAccessor();
-        try (PrintWriter writer = new PrintWriter(resultStream, true)) {
+        try {
             while (reader.read(frame) > 0) {
-                writer.print(ResultUtils.getStringFromBuffer(frame.getBuffer(), frameTupleAccessor));
-                writer.flush();
+                ResultUtils.writeBuffer(frame.getBuffer(), frameTupleAccessor, out);
+                out.flush();
                 frame.getBuffer().clear();
             }
+        } catch (HyracksException e) {
+            // The reader only reports that the result partition failed, the job failure holds the cause.
+            waitForCompletion(jobContext);
+            throw e;
         }
 
-        hyracksClientConnection.waitForCompletion(jobContext.getJobId());
+        waitForCompletion(jobContext);
         LOGGER.log(Level.FINE, String.format("Result for resultId %d completed", jobContext.getResultSetId().getId()));
-        return resultStream.toString();
+    }
+
+    private static void waitForCompletion(HyracksJobContext jobContext) throws Exception {
+        try {
+            jobContext.getCompletion().get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
     }
 
     /**
@@ -393,6 +577,10 @@ public class VXQueryService {
         if (!State.STOPPED.equals(state)) {
             setState(State.STOPPING);
             LOGGER.log(Level.FINE, "Stooping VXQueryService");
+            completionExecutor.shutdownNow();
+            for (HyracksJobContext jobContext : runningJobs) {
+                completeJob(jobContext, new IllegalStateException("VXQueryService stopped before the job completed"));
+            }
             setState(State.STOPPED);
             LOGGER.log(Level.INFO, "VXQueryService stopped successfully");
         } else {
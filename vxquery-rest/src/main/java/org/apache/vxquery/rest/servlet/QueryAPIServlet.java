@@ -24,6 +24,7 @@ import static org.apache.vxquery.rest.Constants.Parameters.FRAME_SIZE;
 import static org.apache.vxquery.rest.Constants.Parameters.METRICS;
 import static org.apache.vxquery.rest.Constants.Parameters.MODE;
 import static org.apache.vxquery.rest.Constants.Parameters.OPTIMIZATION;
+import static org.apache.vxquery.rest.Constants.Parameters.PROFILE;
 import static org.apache.vxquery.rest.Constants.Parameters.REPEAT_EXECUTIONS;
 import static org.apache.vxquery.rest.Constants.Parameters.SHOW_AST;
 import static org.apache.vxquery.rest.Constants.Parameters.SHOW_OET;
@@ -48,6 +49,7 @@ import org.apache.vxquery.app.util.RestUtils;
 import org.apache.vxquery.rest.Constants;
 import org.apache.vxquery.rest.request.QueryRequest;
 import org.apache.vxquery.rest.response.APIResponse;
+import org.apache.vxquery.rest.response.AsyncQueryResponse;
 import org.apache.vxquery.rest.response.Error;
 import org.apache.vxquery.rest.service.VXQueryService;
 
@@ -58,11 +60,8 @@ import org.apache.vxquery.rest.service.VXQueryService;
  */
 public class QueryAPIServlet extends RestAPIServlet {
 
-    private VXQueryService vxQueryService;
-
     public QueryAPIServlet(VXQueryService vxQueryService, ConcurrentMap<String, Object> ctx, String... paths) {
-        super(ctx, paths);
-        this.vxQueryService = vxQueryService;
+        super(vxQueryService, ctx, paths);
     }
 
     @Override
@@ -95,6 +94,7 @@ public class QueryAPIServlet extends RestAPIServlet {
         QueryRequest queryRequest = new QueryRequest(UUID.randomUUID().toString(), request.getParameter(STATEMENT));
         queryRequest.setCompileOnly(Boolean.parseBoolean(request.getParameter(COMPILE_ONLY)));
         queryRequest.setShowMetrics(Boolean.parseBoolean(request.getParameter(METRICS)));
+        queryRequest.setShowProfile(Boolean.parseBoolean(request.getParameter(PROFILE)));
 
         queryRequest.setShowAbstractSyntaxTree(Boolean.parseBoolean(request.getParameter(SHOW_AST)));
         queryRequest.setShowTranslatedExpressionTree(Boolean.parseBoolean(request.getParameter(SHOW_TET)));
@@ -133,7 +133,19 @@ public class QueryAPIServlet extends RestAPIServlet {
                     break;
             }
         }
+        if (isStream(request)) {
+            // Streamed results are read once the job has been submitted.
+            queryRequest.setAsync(true);
+        }
 
         return queryRequest;
     }
+
+    @Override
+    protected long getStreamedResultId(IServletRequest request, APIResponse entity) {
+        if (isStream(request) && entity instanceof AsyncQueryResponse) {
+            return ((AsyncQueryResponse) entity).getResultId();
+        }
+        return 0;
+    }
 }
@@ -26,6 +26,7 @@ import org.apache.vxquery.rest.Constants;
 import org.apache.vxquery.rest.request.QueryResultRequest;
 import org.apache.vxquery.rest.response.APIResponse;
 import org.apache.vxquery.rest.response.Error;
+import org.apache.vxquery.rest.response.QueryResultResponse;
 import org.apache.vxquery.rest.service.VXQueryService;
 
 import io.netty.handler.codec.http.HttpResponseStatus;
@@ -37,21 +38,15 @@ import io.netty.handler.codec.http.HttpResponseStatus;
  */
 public class QueryResultAPIServlet extends RestAPIServlet {
 
-    private VXQueryService vxQueryService;
-
     public QueryResultAPIServlet(VXQueryService vxQueryService, ConcurrentMap<String, Object> ctx, String... paths) {
-        super(ctx, paths);
-        this.vxQueryService = vxQueryService;
+        super(vxQueryService, ctx, paths);
     }
 
     @Override
     protected APIResponse doHandle(IServletRequest request) {
-        String uri = request.getHttpRequest().uri();
         long resultId;
         try {
-            String pathParam = uri.substring(uri.lastIndexOf("/") + 1);
-            pathParam = pathParam.contains("?") ? pathParam.split("\\?")[0] : pathParam;
-            resultId = Long.parseLong(pathParam);
+            resultId = getResultId(request);
         } catch (NumberFormatException e) {
             LOGGER.log(Level.SEVERE, "Result ID could not be retrieved from URL");
             return APIResponse.newErrorResponse(null, Error.builder().withCode(HttpResponseStatus.BAD_REQUEST.code())
@@ -60,8 +55,25 @@ public class QueryResultAPIServlet extends RestAPIServlet {
 
         QueryResultRequest resultRequest = new QueryResultRequest(resultId, UUID.randomUUID().toString());
         resultRequest.setShowMetrics(Boolean.parseBoolean(request.getParameter(Constants.Parameters.METRICS)));
+        resultRequest.setShowProfile(Boolean.parseBoolean(request.getParameter(Constants.Parameters.PROFILE)));
+        resultRequest.setStream(isStream(request));
         LOGGER.log(Level.INFO,
                 String.format("Received a result request with resultId : %d", resultRequest.getResultId()));
         return vxQueryService.getResult(resultRequest);
     }
+
+    @Override
+    protected long getStreamedResultId(IServletRequest request, APIResponse entity) {
+        if (isStream(request) && entity instanceof QueryResultResponse) {
+            return getResultId(request);
+        }
+        return 0;
+    }
+
+    private static long getResultId(IServletRequest request) {
+        String uri = request.getHttpRequest().uri();
+        String pathParam = uri.substring(uri.lastIndexOf("/") + 1);
+        pathParam = pathParam.contains("?") ? pathParam.split("\\?")[0] : pathParam;
+        return Long.parseLong(pathParam);
+    }
 }
@@ -19,8 +19,10 @@ package org.apache.vxquery.rest.servlet;
 
 import static org.apache.vxquery.rest.Constants.HttpHeaderValues.CONTENT_TYPE_JSON;
 import static org.apache.vxquery.rest.Constants.HttpHeaderValues.CONTENT_TYPE_XML;
+import static org.apache.vxquery.rest.Constants.Parameters.STREAM;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
@@ -44,7 +46,9 @@ import org.apache.vxquery.rest.response.ErrorResponse;
 import org.apache.vxquery.rest.response.QueryResultResponse;
 import org.apache.vxquery.rest.response.SyncQueryResponse;
 import org.apache.vxquery.rest.service.Status;
+import org.apache.vxquery.rest.service.VXQueryService;
 
+import io.netty.channel.ChannelFuture;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpResponseStatus;
 
@@ -57,10 +61,13 @@ public abstract class RestAPIServlet extends AbstractServlet {
 
     protected final Logger LOGGER;
 
+    protected final VXQueryService vxQueryService;
+
     private JAXBContext jaxbContext;
 
-    public RestAPIServlet(ConcurrentMap<String, Object> ctx, String... paths) {
+    public RestAPIServlet(VXQueryService vxQueryService, ConcurrentMap<String, Object> ctx, String... paths) {
         super(ctx, paths);
+        this.vxQueryService = vxQueryService;
         LOGGER = Logger.getLogger(this.getClass().getName());
         try {
             jaxbContext = JAXBContext.newInstance(QueryResultResponse.class, AsyncQueryResponse.class,
@@ -88,6 +95,8 @@ public abstract class RestAPIServlet extends AbstractServlet {
             if (entity == null) {
                 LOGGER.log(Level.WARNING, "No entity found for request : " + request);
                 response.setStatus(HttpResponseStatus.BAD_REQUEST);
+            } else if (getStreamedResultId(request, entity) != 0) {
+                streamResults(response, getStreamedResultId(request, entity));
             } else {
                 // Important to set Status OK before setting the entity because the response
                 // (chunked) checks it before
@@ -143,6 +152,31 @@ public abstract class RestAPIServlet extends AbstractServlet {
         response.writer().print(entityString);
     }
 
+    /**
+     * Writes the results to the response as plain text while their frames are read from hyracks. The response is sent
+     * in chunks, so neither the REST server nor the client holds the whole result. If reading fails after the first
+     * chunk has been sent, the connection is closed and the client sees a truncated response.
+     */
+    private void streamResults(IServletResponse response, long resultId) throws IOException {
+        response.setStatus(HttpResponseStatus.OK);
+        HttpUtil.setContentType(response, HttpUtil.ContentType.TEXT_PLAIN);
+        OutputStream out = response.outputStream();
+        try {
+            vxQueryService.writeResults(resultId, out);
+            out.flush();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error occurred when streaming results for id : " + resultId, e);
+            // The status line has already been sent, so the only way to tell the client that the results are
+            // incomplete is to drop the connection before the last chunk.
+            response.setStatus(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            response.close();
+            ChannelFuture lastContent = response.lastContentFuture();
+            if (lastContent != null) {
+                lastContent.channel().close();
+            }
+        }
+    }
+
     private void setResponseStatus(IServletResponse response, APIResponse entity) {
         if (Status.SUCCESS.toString().equals(entity.getStatus())) {
             response.setStatus(HttpResponseStatus.OK);
@@ -165,4 +199,22 @@ public abstract class RestAPIServlet extends AbstractServlet {
      * @return Object to be set as the entity of the response
      */
     protected abstract APIResponse doHandle(IServletRequest request);
+
+    /**
+     * Returns the ID of the results to be streamed instead of the response entity. Results are streamed for
+     * successful requests with the 'stream' parameter set to true.
+     *
+     * @param request
+     *            {@link IServletRequest} received
+     * @param entity
+     *            response entity returned by {@link #doHandle(IServletRequest)}
+     * @return ID of the results to be streamed, or 0 if the entity is to be sent
+     */
+    protected long getStreamedResultId(IServletRequest request, APIResponse entity) {
+        return 0;
+    }
+
+    protected static boolean isStream(IServletRequest request) {
+        return Boolean.parseBoolean(request.getParameter(STREAM));
+    }
 }
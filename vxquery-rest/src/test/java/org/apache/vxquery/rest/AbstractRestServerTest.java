@@ -62,9 +62,18 @@ public class AbstractRestServerTest {
     protected static int restPort;
     protected static VXQueryService vxQueryService;
 
+    /**
+     * Starts the cluster with the compiled plan cache disabled, so every request reports the time spent compiling it.
+     */
     @BeforeClass
     public static void setUp() throws Exception {
-        vxqueryLocalCluster.init(new VXQueryConfig());
+        VXQueryConfig config = new VXQueryConfig();
+        config.setPlanCacheSize(0);
+        init(config);
+    }
+
+    protected static void init(VXQueryConfig config) throws Exception {
+        vxqueryLocalCluster.init(config);
         vxQueryService = vxqueryLocalCluster.getVxQueryService();
         restIpAddress = vxqueryLocalCluster.getIpAddress();
         restPort = vxqueryLocalCluster.getRestPort();
@@ -86,10 +95,12 @@ public class AbstractRestServerTest {
     protected static void checkMetrics(QueryResponse response, boolean showMetrics) {
         if (showMetrics) {
             Assert.assertTrue(response.getMetrics().getCompileTime() > 0);
+            Assert.assertFalse(response.getMetrics().isPlanCacheHit());
             Assert.assertTrue(response.getMetrics().getElapsedTime() > 0);
         } else {
             Assert.assertTrue(response.getMetrics().getCompileTime() == 0);
             Assert.assertTrue(response.getMetrics().getElapsedTime() == 0);
+            Assert.assertFalse(response.getMetrics().isPlanCacheHit());
         }
     }
 
@@ -200,6 +211,35 @@ public class AbstractRestServerTest {
         }
     }
 
+    /**
+     * Fetch results streamed as plain text by the query or query result endpoint.
+     *
+     * @param uri
+     *            uri of the request, including the stream parameter
+     * @param method
+     *            Http Method to be used to send the request
+     * @return results received
+     * @throws Exception
+     */
+    protected static String getStreamedResults(URI uri, String method) throws Exception {
+        CloseableHttpClient httpClient = HttpClients.custom().setConnectionTimeToLive(20, TimeUnit.SECONDS).build();
+        try {
+            HttpUriRequest request = getRequest(uri, method);
+
+            try (CloseableHttpResponse httpResponse = httpClient.execute(request)) {
+                Assert.assertEquals(HttpResponseStatus.OK.code(), httpResponse.getStatusLine().getStatusCode());
+                Assert.assertTrue(
+                        httpResponse.getFirstHeader(HttpHeaders.CONTENT_TYPE).getValue().startsWith("text/plain"));
+
+                HttpEntity entity = httpResponse.getEntity();
+                Assert.assertNotNull(entity);
+                return RestUtils.readEntity(entity);
+            }
+        } finally {
+            HttpClientUtils.closeQuietly(httpClient);
+        }
+    }
+
     /**
      * Creates a POST or GET request accordingly from the given {@link URI}
      *
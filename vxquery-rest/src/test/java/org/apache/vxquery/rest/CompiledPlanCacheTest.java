@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.rest;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.ws.rs.HttpMethod;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.vxquery.app.util.RestUtils;
+import org.apache.vxquery.rest.request.QueryRequest;
+import org.apache.vxquery.rest.response.SyncQueryResponse;
+import org.apache.vxquery.rest.service.VXQueryConfig;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that {@link org.apache.vxquery.rest.service.VXQueryService} reuses compiled plans, and compiles a query again
+ * when its options or the collections it was optimized for change. The cluster runs with the default cache size.
+ */
+public class CompiledPlanCacheTest extends AbstractRestServerTest {
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        init(new VXQueryConfig());
+    }
+
+    @Test
+    public void testRepeatedQuery() throws Exception {
+        QueryRequest request = new QueryRequest("for $x in (4, 5, 6) return $x * 2");
+        request.setShowMetrics(true);
+        request.setAsync(false);
+
+        SyncQueryResponse first = (SyncQueryResponse) vxQueryService.execute(request);
+        Assert.assertFalse(first.getMetrics().isPlanCacheHit());
+        Assert.assertTrue(first.getMetrics().getCompileTime() > 0);
+
+        SyncQueryResponse second = (SyncQueryResponse) vxQueryService.execute(request);
+        Assert.assertTrue(second.getMetrics().isPlanCacheHit());
+        Assert.assertTrue(second.getMetrics().getPlanCacheHits() > first.getMetrics().getPlanCacheHits());
+        Assert.assertEquals(first.getResults(), second.getResults());
+
+        request.setOptimization(request.getOptimization() + 1);
+        SyncQueryResponse otherOptions = (SyncQueryResponse) vxQueryService.execute(request);
+        Assert.assertFalse(otherOptions.getMetrics().isPlanCacheHit());
+        Assert.assertTrue(otherOptions.getMetrics().getCompileTime() > 0);
+        Assert.assertEquals(first.getResults(), otherOptions.getResults());
+    }
+
+    @Test
+    public void testRepeatedRestQuery() throws Exception {
+        QueryRequest request = new QueryRequest("for $x in (7, 8, 9) return $x + 1");
+        request.setShowMetrics(true);
+        request.setAsync(false);
+
+        SyncQueryResponse first = getQuerySuccessResponse(RestUtils.buildQueryURI(request, restIpAddress, restPort),
+                null, SyncQueryResponse.class, HttpMethod.GET);
+        Assert.assertFalse(first.getMetrics().isPlanCacheHit());
+        Assert.assertTrue(first.getMetrics().getCompileTime() > 0);
+
+        SyncQueryResponse second = getQuerySuccessResponse(RestUtils.buildQueryURI(request, restIpAddress, restPort),
+                null, SyncQueryResponse.class, HttpMethod.GET);
+        Assert.assertTrue(second.getMetrics().isPlanCacheHit());
+        Assert.assertEquals(normalize(first.getResults()), normalize(second.getResults()));
+    }
+
+    @Test
+    public void testChangedCollection() throws Exception {
+        File small = createCollection("stations", 1);
+        File large = createCollection("sensors", 4);
+        try {
+            QueryRequest request = new QueryRequest("for $a in collection(\"" + small.getAbsolutePath()
+                    + "\")/collection/record for $b in collection(\"" + large.getAbsolutePath()
+                    + "\")/collection/record where $a/id eq $b/id return $b/value");
+            request.setShowMetrics(true);
+            request.setAsync(false);
+
+            SyncQueryResponse first = (SyncQueryResponse) vxQueryService.execute(request);
+            Assert.assertFalse(first.getMetrics().isPlanCacheHit());
+            SyncQueryResponse second = (SyncQueryResponse) vxQueryService.execute(request);
+            Assert.assertTrue(second.getMetrics().isPlanCacheHit());
+
+            // A new document changes the statistics the join was optimized with.
+            writeDocument(small, 1);
+            small.setLastModified(small.lastModified() + 2000);
+            SyncQueryResponse third = (SyncQueryResponse) vxQueryService.execute(request);
+            Assert.assertFalse(third.getMetrics().isPlanCacheHit());
+            Assert.assertTrue(third.getMetrics().getCompileTime() > 0);
+            SyncQueryResponse fourth = (SyncQueryResponse) vxQueryService.execute(request);
+            Assert.assertTrue(fourth.getMetrics().isPlanCacheHit());
+        } finally {
+            FileUtils.deleteDirectory(small);
+            FileUtils.deleteDirectory(large);
+        }
+    }
+
+    private static File createCollection(String name, int documents) throws IOException {
+        File directory = File.createTempFile("vxquery", name);
+        directory.delete();
+        directory.mkdir();
+        for (int d = 0; d < documents; ++d) {
+            writeDocument(directory, d);
+        }
+        return directory;
+    }
+
+    private static void writeDocument(File directory, int document) throws IOException {
+        StringBuilder xml = new StringBuilder("<collection>");
+        for (int r = 0; r < 10; ++r) {
+            xml.append("<record><id>").append(r).append("</id><value>").append(document).append("</value></record>");
+        }
+        xml.append("</collection>");
+        FileUtils.writeStringToFile(new File(directory, "document" + document + ".xml"), xml.toString(), "UTF-8");
+    }
+}
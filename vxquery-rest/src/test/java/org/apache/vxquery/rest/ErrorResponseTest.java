@@ -22,6 +22,7 @@ import static org.apache.vxquery.app.util.RestUtils.buildQueryURI;
 import static org.apache.vxquery.rest.Constants.ErrorCodes.INVALID_INPUT;
 import static org.apache.vxquery.rest.Constants.ErrorCodes.NOT_FOUND;
 import static org.apache.vxquery.rest.Constants.ErrorCodes.PROBLEM_WITH_QUERY;
+import static org.apache.vxquery.rest.Constants.ErrorCodes.UNFORSEEN_PROBLEM;
 import static org.apache.vxquery.rest.Constants.HttpHeaderValues.CONTENT_TYPE_JSON;
 import static org.apache.vxquery.rest.Constants.HttpHeaderValues.CONTENT_TYPE_XML;
 
@@ -40,6 +41,8 @@ import org.apache.http.impl.client.HttpClients;
 import org.apache.vxquery.app.util.RestUtils;
 import org.apache.vxquery.rest.request.QueryRequest;
 import org.apache.vxquery.rest.request.QueryResultRequest;
+import org.apache.vxquery.rest.response.APIResponse;
+import org.apache.vxquery.rest.response.AsyncQueryResponse;
 import org.apache.vxquery.rest.response.ErrorResponse;
 import org.junit.Assert;
 import org.junit.Test;
@@ -162,6 +165,24 @@ public class ErrorResponseTest extends AbstractRestServerTest {
         runTest(buildQueryURI(request, restIpAddress, restPort), CONTENT_TYPE_XML, PROBLEM_WITH_QUERY);
     }
 
+    @Test
+    public void testRuntimeError() throws Exception {
+        QueryRequest request = new QueryRequest("xs:integer(\"a\")");
+        request.setAsync(false);
+        runTest(buildQueryURI(request, restIpAddress, restPort), null, UNFORSEEN_PROBLEM);
+
+        // The error code of the failed job is reported although the results are read before the job completes.
+        APIResponse syncResponse = vxQueryService.execute(request);
+        Assert.assertTrue(syncResponse instanceof ErrorResponse);
+        Assert.assertTrue(((ErrorResponse) syncResponse).getError().getMessage().contains("FORG0001"));
+
+        request.setAsync(true);
+        AsyncQueryResponse asyncResponse = (AsyncQueryResponse) vxQueryService.execute(request);
+        APIResponse resultResponse = vxQueryService.getResult(new QueryResultRequest(asyncResponse.getResultId()));
+        Assert.assertTrue(resultResponse instanceof ErrorResponse);
+        Assert.assertEquals(UNFORSEEN_PROBLEM, ((ErrorResponse) resultResponse).getError().getCode());
+    }
+
     private void runTest(URI uri, String accepts, int expectedStatusCode) throws Exception {
         runTest(uri, accepts, expectedStatusCode, HttpMethod.GET);
         runTest(uri, accepts, expectedStatusCode, HttpMethod.POST);
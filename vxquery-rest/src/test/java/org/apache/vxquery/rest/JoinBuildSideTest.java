@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.vxquery.rest.request.QueryRequest;
+import org.apache.vxquery.rest.response.SyncQueryResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the results of a join whose smaller input is moved to the build side. The swapped join returns its results in
+ * the order of the larger input, so they are compared as a set.
+ */
+public class JoinBuildSideTest extends AbstractRestServerTest {
+    private static final int RECORDS = 10;
+    private static final int LARGE_DOCUMENTS = 4;
+
+    @Test
+    public void testSwappedJoinResults() throws Exception {
+        File small = createCollection("stations", 1);
+        File large = createCollection("sensors", LARGE_DOCUMENTS);
+        try {
+            QueryRequest request = new QueryRequest("for $a in collection(\"" + small.getAbsolutePath()
+                    + "\")/collection/record for $b in collection(\"" + large.getAbsolutePath()
+                    + "\")/collection/record where $a/id eq $b/id return concat($a/id, \":\", $b/value)");
+            request.setAsync(false);
+
+            SyncQueryResponse response = (SyncQueryResponse) vxQueryService.execute(request);
+            List<String> expected = new ArrayList<>();
+            for (int r = 0; r < RECORDS; ++r) {
+                for (int d = 0; d < LARGE_DOCUMENTS; ++d) {
+                    expected.add(r + ":" + d);
+                }
+            }
+            Collections.sort(expected);
+            Assert.assertEquals(expected, sortedItems(response.getResults()));
+        } finally {
+            FileUtils.deleteDirectory(small);
+            FileUtils.deleteDirectory(large);
+        }
+    }
+
+    private static List<String> sortedItems(String results) {
+        List<String> items = new ArrayList<>();
+        for (String item : results.split("\n")) {
+            if (!item.trim().isEmpty()) {
+                items.add(item.trim());
+            }
+        }
+        Collections.sort(items);
+        return items;
+    }
+
+    private static File createCollection(String name, int documents) throws IOException {
+        File directory = File.createTempFile("vxquery", name);
+        directory.delete();
+        directory.mkdir();
+        for (int d = 0; d < documents; ++d) {
+            StringBuilder xml = new StringBuilder("<collection>");
+            for (int r = 0; r < RECORDS; ++r) {
+                xml.append("<record><id>").append(r).append("</id><value>").append(d).append("</value></record>");
+            }
+            xml.append("</collection>");
+            FileUtils.writeStringToFile(new File(directory, "document" + d + ".xml"), xml.toString(), "UTF-8");
+        }
+        return directory;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.vxquery.rest;
+
+import static org.apache.vxquery.rest.Constants.HttpHeaderValues.CONTENT_TYPE_JSON;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.ws.rs.HttpMethod;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.vxquery.app.util.RestUtils;
+import org.apache.vxquery.rest.request.QueryRequest;
+import org.apache.vxquery.rest.response.OperatorMetrics;
+import org.apache.vxquery.rest.response.SyncQueryResponse;
+import org.apache.vxquery.rest.service.Status;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the runtime counters of the operators of a query, returned when a profile is requested.
+ */
+public class ProfileResponseTest extends AbstractRestServerTest {
+    private static final int DOCUMENTS = 3;
+    private static final int RECORDS = 10;
+
+    private static File collection;
+    private static long collectionBytes;
+
+    @BeforeClass
+    public static void createCollection() throws IOException {
+        collection = File.createTempFile("vxquery", "profile");
+        collection.delete();
+        collection.mkdir();
+        for (int d = 0; d < DOCUMENTS; ++d) {
+            StringBuilder xml = new StringBuilder("<collection>");
+            for (int r = 0; r < RECORDS; ++r) {
+                xml.append("<record><value>").append(d * RECORDS + r).append("</value></record>");
+            }
+            xml.append("</collection>");
+            File document = new File(collection, "document" + d + ".xml");
+            FileUtils.writeStringToFile(document, xml.toString(), "UTF-8");
+            collectionBytes += document.length();
+        }
+    }
+
+    @AfterClass
+    public static void deleteCollection() throws IOException {
+        FileUtils.deleteDirectory(collection);
+    }
+
+    @Test
+    public void testProfiledQuery() throws Exception {
+        QueryRequest request = createRequest();
+        request.setShowProfile(true);
+
+        SyncQueryResponse response = getQuerySuccessResponse(RestUtils.buildQueryURI(request, restIpAddress, restPort),
+                CONTENT_TYPE_JSON, SyncQueryResponse.class, HttpMethod.GET);
+        Assert.assertEquals(Status.SUCCESS.toString(), response.getStatus());
+        Assert.assertNotNull(response.getMetrics().getOperators());
+        Assert.assertFalse(response.getMetrics().getOperators().isEmpty());
+
+        OperatorMetrics scan = null;
+        for (OperatorMetrics operator : response.getMetrics().getOperators()) {
+            Assert.assertNotNull(operator.getOperator());
+            if (operator.getOperator().startsWith("VXQueryCollectionOperatorDescriptor")) {
+                scan = operator;
+            } else if (operator.getOperator().endsWith("UnnestingEvaluatorFactory")) {
+                Assert.assertEquals(-1, operator.getCpuTime());
+            }
+        }
+        Assert.assertNotNull(scan);
+        Assert.assertTrue(scan.getTuplesIn() > 0);
+        Assert.assertTrue(scan.getTuplesOut() >= DOCUMENTS * RECORDS);
+        Assert.assertTrue(scan.getBytesIn() >= collectionBytes);
+        Assert.assertTrue(scan.getBytesOut() > 0);
+        Assert.assertTrue(scan.getCpuTime() >= 0);
+    }
+
+    @Test
+    public void testQueryWithoutProfile() throws Exception {
+        QueryRequest request = createRequest();
+
+        SyncQueryResponse response = getQuerySuccessResponse(RestUtils.buildQueryURI(request, restIpAddress, restPort),
+                CONTENT_TYPE_JSON, SyncQueryResponse.class, HttpMethod.GET);
+        Assert.assertEquals(Status.SUCCESS.toString(), response.getStatus());
+        Assert.assertNull(response.getMetrics().getOperators());
+    }
+
+    private static QueryRequest createRequest() {
+        QueryRequest request = new QueryRequest(
+                "for $r in collection(\"" + collection.getAbsolutePath() + "\")/collection/record return $r/value");
+        request.setAsync(false);
+        return request;
+    }
+}
@@ -24,8 +24,11 @@ import java.net.URI;
 
 import javax.ws.rs.HttpMethod;
 
+import org.apache.http.client.utils.URIBuilder;
 import org.apache.vxquery.app.util.RestUtils;
 import org.apache.vxquery.rest.request.QueryRequest;
+import org.apache.vxquery.rest.request.QueryResultRequest;
+import org.apache.vxquery.rest.response.AsyncQueryResponse;
 import org.apache.vxquery.rest.response.SyncQueryResponse;
 import org.apache.vxquery.rest.service.Status;
 import org.junit.Assert;
@@ -133,6 +136,28 @@ public class SuccessSyncResponseTest extends AbstractRestServerTest {
         runTest(CONTENT_TYPE_XML, request);
     }
 
+    @Test
+    public void testStreamedResults() throws Exception {
+        QueryRequest request = new QueryRequest("for $x in 1 to 10000 return <a>{$x}</a>");
+        request.setAsync(false);
+        String expectedResults = ((SyncQueryResponse) vxQueryService.execute(request)).getResults();
+        Assert.assertNotNull(expectedResults);
+
+        URI queryEndpointUri = new URIBuilder(RestUtils.buildQueryURI(request, restIpAddress, restPort))
+                .addParameter(Constants.Parameters.STREAM, String.valueOf(true)).build();
+        Assert.assertEquals(normalize(expectedResults), getStreamedResults(queryEndpointUri, HttpMethod.GET));
+        Assert.assertEquals(normalize(expectedResults), getStreamedResults(queryEndpointUri, HttpMethod.POST));
+
+        request.setAsync(true);
+        AsyncQueryResponse asyncResponse = getQuerySuccessResponse(
+                RestUtils.buildQueryURI(request, restIpAddress, restPort), null, AsyncQueryResponse.class,
+                HttpMethod.GET);
+        QueryResultRequest resultRequest = new QueryResultRequest(asyncResponse.getResultId());
+        URI resultEndpointUri = new URIBuilder(RestUtils.buildQueryResultURI(resultRequest, restIpAddress, restPort))
+                .addParameter(Constants.Parameters.STREAM, String.valueOf(true)).build();
+        Assert.assertEquals(normalize(expectedResults), getStreamedResults(resultEndpointUri, HttpMethod.GET));
+    }
+
     private void runTest(String contentType, QueryRequest request) throws Exception {
         runTest(contentType, request, HttpMethod.GET);
         runTest(contentType, request, HttpMethod.POST);